@@ -1,7 +1,9 @@
 package com.gotocompany.firehose.config;
 
+import com.gotocompany.firehose.config.enums.BackOffJitterType;
 import com.gotocompany.firehose.config.enums.InputSchemaType;
 import com.gotocompany.firehose.config.enums.SinkType;
+import com.gotocompany.firehose.config.converter.BackOffJitterTypeConverter;
 import com.gotocompany.firehose.config.converter.InputSchemaTypeConverter;
 import com.gotocompany.firehose.config.converter.ProtoIndexToFieldMapConverter;
 import com.gotocompany.firehose.config.converter.SchemaRegistryHeadersConverter;
@@ -87,6 +89,18 @@ public interface AppConfig extends Config {
     @DefaultValue("false")
     Boolean isTraceJaegarEnable();
 
+    @Key("METRIC_AGGREGATION_ENABLE")
+    @DefaultValue("false")
+    boolean getMetricAggregationEnable();
+
+    @Key("METRIC_AGGREGATION_FLUSH_INTERVAL_MS")
+    @DefaultValue("10000")
+    Long getMetricAggregationFlushIntervalMs();
+
+    @Key("METRIC_AGGREGATION_MAX_TIMING_SAMPLES")
+    @DefaultValue("100")
+    Integer getMetricAggregationMaxTimingSamples();
+
     @Key("RETRY_EXPONENTIAL_BACKOFF_INITIAL_MS")
     @DefaultValue("10")
     Integer getRetryExponentialBackoffInitialMs();
@@ -99,6 +113,11 @@ public interface AppConfig extends Config {
     @DefaultValue("60000")
     Integer getRetryExponentialBackoffMaxMs();
 
+    @Key("RETRY_EXPONENTIAL_BACKOFF_JITTER")
+    @DefaultValue("NONE")
+    @ConverterClass(BackOffJitterTypeConverter.class)
+    BackOffJitterType getRetryExponentialBackoffJitter();
+
     @Key("RETRY_FAIL_AFTER_MAX_ATTEMPTS_ENABLE")
     @DefaultValue("false")
     boolean getRetryFailAfterMaxAttemptsEnable();
@@ -107,6 +126,30 @@ public interface AppConfig extends Config {
     @DefaultValue("2147483647")
     Integer getRetryMaxAttempts();
 
+    @Key("RETRY_PARKING_ENABLE")
+    @DefaultValue("false")
+    boolean getRetryParkingEnable();
+
+    @Key("RETRY_PARKING_MAX_MESSAGES")
+    @DefaultValue("100000")
+    Integer getRetryParkingMaxMessages();
+
+    @Key("RETRY_PARKING_MAX_BYTES")
+    @DefaultValue("104857600")
+    Long getRetryParkingMaxBytes();
+
+    @Key("RETRY_BUDGET_ENABLE")
+    @DefaultValue("false")
+    boolean getRetryBudgetEnable();
+
+    @Key("RETRY_BUDGET_RATIO")
+    @DefaultValue("0.1")
+    Double getRetryBudgetRatio();
+
+    @Key("RETRY_BUDGET_MAX_TOKENS")
+    @DefaultValue("1000")
+    Integer getRetryBudgetMaxTokens();
+
     @Key("INPUT_SCHEMA_PROTO_ALLOW_UNKNOWN_FIELDS_ENABLE")
     @DefaultValue("true")
     boolean getInputSchemaProtoAllowUnknownFieldsEnable();
@@ -2,9 +2,11 @@ package com.gotocompany.firehose.config;
 
 import com.gotocompany.firehose.config.converter.BlobSinkFilePartitionTypeConverter;
 import com.gotocompany.firehose.config.converter.BlobSinkLocalFileWriterTypeConverter;
+import com.gotocompany.firehose.config.converter.BlobSinkParquetCompressionConverter;
 import com.gotocompany.firehose.config.converter.BlobStorageTypeConverter;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageType;
 import com.gotocompany.firehose.sink.blob.Constants;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 
 public interface BlobSinkConfig extends AppConfig {
 
@@ -30,6 +32,23 @@ public interface BlobSinkConfig extends AppConfig {
     @DefaultValue("1048576")
     int getLocalFileWriterParquetPageSize();
 
+    @Key("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_COMPRESSION")
+    @DefaultValue("GZIP")
+    @ConverterClass(BlobSinkParquetCompressionConverter.class)
+    CompressionCodecName getLocalFileWriterParquetCompression();
+
+    @Key("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_ZSTD_LEVEL")
+    @DefaultValue("3")
+    int getLocalFileWriterParquetZstdLevel();
+
+    @Key("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_DICTIONARY_ENABLE")
+    @DefaultValue("true")
+    boolean getLocalFileWriterParquetDictionaryEnable();
+
+    @Key("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_DICTIONARY_PAGE_SIZE")
+    @DefaultValue("1048576")
+    int getLocalFileWriterParquetDictionaryPageSize();
+
     @Key("SINK_BLOB_OUTPUT_KAFKA_METADATA_COLUMN_NAME")
     @DefaultValue("")
     String getOutputKafkaMetadataColumnName();
@@ -38,6 +57,38 @@ public interface BlobSinkConfig extends AppConfig {
     @DefaultValue("false")
     boolean getOutputIncludeKafkaMetadataEnable();
 
+    @Key("SINK_BLOB_LOCAL_FILE_WRITER_MEMORY_MAX_BYTES")
+    @DefaultValue("536870912")
+    long getLocalFileWriterMemoryMaxBytes();
+
+    @Key("SINK_BLOB_LOCAL_FILE_WRITER_LANES")
+    @DefaultValue("1")
+    int getLocalFileWriterLanes();
+
+    @Key("SINK_BLOB_LOCAL_DISK_MAX_BYTES")
+    @DefaultValue("0")
+    long getLocalDiskMaxBytes();
+
+    @Key("SINK_BLOB_LOCAL_DISK_MAX_FILES")
+    @DefaultValue("0")
+    int getLocalDiskMaxFiles();
+
+    @Key("SINK_BLOB_LOCAL_FILE_RECOVERY_ENABLE")
+    @DefaultValue("false")
+    boolean getLocalFileRecoveryEnable();
+
+    @Key("SINK_BLOB_LOCAL_FILE_COMPACTION_ENABLE")
+    @DefaultValue("false")
+    boolean getLocalFileCompactionEnable();
+
+    @Key("SINK_BLOB_LOCAL_FILE_COMPACTION_TARGET_SIZE_BYTES")
+    @DefaultValue("134217728")
+    long getLocalFileCompactionTargetSizeBytes();
+
+    @Key("SINK_BLOB_LOCAL_FILE_COMPACTION_MAX_WAIT_MS")
+    @DefaultValue("600000")
+    long getLocalFileCompactionMaxWaitMS();
+
     @Key("SINK_BLOB_LOCAL_FILE_ROTATION_DURATION_MS")
     @DefaultValue("3600000")
     long getLocalFileRotationDurationMS();
@@ -65,4 +116,12 @@ public interface BlobSinkConfig extends AppConfig {
     @Key("SINK_BLOB_FILE_PARTITION_TIME_HOUR_PREFIX")
     @DefaultValue("hr=")
     String getFilePartitionTimeHourPrefix();
+
+    @Key("SINK_BLOB_REMOTE_UPLOAD_THREADS_MIN")
+    @DefaultValue("10")
+    int getRemoteUploadThreadsMin();
+
+    @Key("SINK_BLOB_REMOTE_UPLOAD_THREADS_MAX")
+    @DefaultValue("10")
+    int getRemoteUploadThreadsMax();
 }
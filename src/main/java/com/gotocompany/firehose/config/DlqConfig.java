@@ -1,9 +1,11 @@
 package com.gotocompany.firehose.config;
 
 import com.gotocompany.firehose.config.converter.BlobStorageTypeConverter;
+import com.gotocompany.firehose.config.converter.DlqCompressionTypeConverter;
 import com.gotocompany.firehose.config.converter.DlqWriterTypeConverter;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageType;
 import com.gotocompany.firehose.sink.dlq.DLQWriterType;
+import com.gotocompany.firehose.sink.dlq.blobstorage.DlqCompressionType;
 
 public interface DlqConfig extends AppConfig {
 
@@ -17,6 +19,27 @@ public interface DlqConfig extends AppConfig {
     @ConverterClass(BlobStorageTypeConverter.class)
     BlobStorageType getBlobStorageType();
 
+    @Key("DLQ_BLOB_STORAGE_BUFFER_ENABLE")
+    @DefaultValue("false")
+    boolean getDlqBlobStorageBufferEnable();
+
+    @Key("DLQ_BLOB_STORAGE_BUFFER_LOCAL_DIRECTORY")
+    @DefaultValue("/tmp/firehose-dlq")
+    String getDlqBlobStorageBufferLocalDirectory();
+
+    @Key("DLQ_BLOB_STORAGE_BUFFER_MAX_SIZE_BYTES")
+    @DefaultValue("67108864")
+    long getDlqBlobStorageBufferMaxSizeBytes();
+
+    @Key("DLQ_BLOB_STORAGE_BUFFER_MAX_AGE_MS")
+    @DefaultValue("60000")
+    long getDlqBlobStorageBufferMaxAgeMs();
+
+    @Key("DLQ_BLOB_STORAGE_COMPRESSION")
+    @DefaultValue("GZIP")
+    @ConverterClass(DlqCompressionTypeConverter.class)
+    DlqCompressionType getDlqBlobStorageCompression();
+
     @Key("DLQ_RETRY_MAX_ATTEMPTS")
     @DefaultValue("2147483647")
     Integer getDlqRetryMaxAttempts();
@@ -25,6 +48,27 @@ public interface DlqConfig extends AppConfig {
     @DefaultValue("false")
     boolean getDlqRetryFailAfterMaxAttemptEnable();
 
+    @Key("DLQ_LOCAL_JOURNAL_DIRECTORY")
+    @DefaultValue("/tmp/firehose-dlq-journal")
+    String getDlqLocalJournalDirectory();
+
+    @Key("DLQ_LOCAL_JOURNAL_SEGMENT_SIZE_BYTES")
+    @DefaultValue("67108864")
+    int getDlqLocalJournalSegmentSizeBytes();
+
+    @Key("DLQ_LOCAL_JOURNAL_SEGMENT_MAX_AGE_MS")
+    @DefaultValue("10000")
+    long getDlqLocalJournalSegmentMaxAgeMs();
+
+    @Key("DLQ_LOCAL_JOURNAL_SHIP_INTERVAL_MS")
+    @DefaultValue("1000")
+    long getDlqLocalJournalShipIntervalMs();
+
+    @Key("DLQ_LOCAL_JOURNAL_SHIPPER_TYPE")
+    @ConverterClass(DlqWriterTypeConverter.class)
+    @DefaultValue("KAFKA")
+    DLQWriterType getDlqLocalJournalShipperType();
+
     @Key("DLQ_SINK_ENABLE")
     @DefaultValue("false")
     boolean getDlqSinkEnable();
@@ -22,6 +22,18 @@ public interface DlqKafkaProducerConfig extends DlqConfig {
     @DefaultValue("33554432")
     String getDlqKafkaBufferMemory();
 
+    @Key("DLQ_KAFKA_COMPRESSION_TYPE")
+    @DefaultValue("none")
+    String getDlqKafkaCompressionType();
+
+    @Key("DLQ_KAFKA_ENABLE_IDEMPOTENCE")
+    @DefaultValue("false")
+    String getDlqKafkaEnableIdempotence();
+
+    @Key("DLQ_KAFKA_MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION")
+    @DefaultValue("5")
+    String getDlqKafkaMaxInFlightRequestsPerConnection();
+
     @Key("DLQ_KAFKA_KEY_SERIALIZER")
     @DefaultValue("org.apache.kafka.common.serialization.ByteArraySerializer")
     String getDlqKafkaKeySerializer();
@@ -45,4 +45,16 @@ public interface EsSinkConfig extends AppConfig {
 
     @Key("SINK_ES_ROUTING_KEY_NAME")
     String getSinkEsRoutingKeyName();
+
+    @Key("SINK_ES_BULK_MAX_ACTIONS")
+    @DefaultValue("-1")
+    Integer getSinkEsBulkMaxActions();
+
+    @Key("SINK_ES_BULK_MAX_SIZE_BYTES")
+    @DefaultValue("-1")
+    Long getSinkEsBulkMaxSizeBytes();
+
+    @Key("SINK_ES_BULK_CONCURRENT_REQUESTS")
+    @DefaultValue("1")
+    Integer getSinkEsBulkConcurrentRequests();
 }
@@ -67,6 +67,8 @@ public interface GCSConfig extends Config {
     @Key("${GCS_TYPE}_GCS_RETRY_RPC_MAX_TIMEOUT_MS")
     @DefaultValue("5000")
     Long getGCSRetryRPCMaxTimeoutMS();
-}
-
 
+    @Key("${GCS_TYPE}_GCS_UPLOAD_CHUNK_SIZE_BYTES")
+    @DefaultValue("15728640")
+    Integer getGCSUploadChunkSizeBytes();
+}
@@ -1,5 +1,7 @@
 package com.gotocompany.firehose.config;
 
+import com.gotocompany.firehose.config.converter.GrpcSinkBatchModeConverter;
+import com.gotocompany.firehose.config.enums.GrpcSinkBatchMode;
 import org.aeonbits.owner.Config;
 
 
@@ -11,10 +13,51 @@ public interface GrpcSinkConfig extends AppConfig {
     @Config.Key("SINK_GRPC_SERVICE_PORT")
     Integer getSinkGrpcServicePort();
 
+    @Config.Key("SINK_GRPC_SERVICE_TARGET")
+    @DefaultValue("")
+    String getSinkGrpcServiceTarget();
+
+    @Config.Key("SINK_GRPC_LOAD_BALANCING_POLICY")
+    @DefaultValue("pick_first")
+    String getSinkGrpcLoadBalancingPolicy();
+
+    @Config.Key("SINK_GRPC_CHANNEL_POOL_SIZE")
+    @DefaultValue("1")
+    Integer getSinkGrpcChannelPoolSize();
+
+    @Config.Key("SINK_GRPC_KEEPALIVE_TIME_MS")
+    @DefaultValue("0")
+    Long getSinkGrpcKeepaliveTimeMs();
+
+    @Config.Key("SINK_GRPC_KEEPALIVE_TIMEOUT_MS")
+    @DefaultValue("20000")
+    Long getSinkGrpcKeepaliveTimeoutMs();
+
+    @Config.Key("SINK_GRPC_KEEPALIVE_WITHOUT_CALLS")
+    @DefaultValue("false")
+    Boolean getSinkGrpcKeepaliveWithoutCalls();
+
     @Config.Key("SINK_GRPC_METHOD_URL")
     String getSinkGrpcMethodUrl();
 
     @Config.Key("SINK_GRPC_RESPONSE_SCHEMA_PROTO_CLASS")
     String getSinkGrpcResponseSchemaProtoClass();
 
+    @Config.Key("SINK_GRPC_MAX_IN_FLIGHT_REQUESTS")
+    @DefaultValue("1")
+    Integer getSinkGrpcMaxInFlightRequests();
+
+    @Config.Key("SINK_GRPC_BATCH_MODE")
+    @DefaultValue("NONE")
+    @ConverterClass(GrpcSinkBatchModeConverter.class)
+    GrpcSinkBatchMode getSinkGrpcBatchMode();
+
+    @Config.Key("SINK_GRPC_BATCH_ENVELOPE_FIELD_NUMBER")
+    @DefaultValue("1")
+    Integer getSinkGrpcBatchEnvelopeFieldNumber();
+
+    @Config.Key("SINK_GRPC_BATCH_RESPONSE_FAILED_INDEX_FIELD")
+    @DefaultValue("")
+    String getSinkGrpcBatchResponseFailedIndexField();
+
 }
@@ -35,5 +35,8 @@ public interface InfluxSinkConfig extends AppConfig {
 
     @Config.Key("SINK_INFLUX_PASSWORD")
     String getSinkInfluxPassword();
-}
 
+    @Config.Key("SINK_INFLUX_GZIP_ENABLE")
+    @DefaultValue("false")
+    boolean isSinkInfluxGzipEnable();
+}
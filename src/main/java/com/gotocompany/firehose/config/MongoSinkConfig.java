@@ -24,6 +24,14 @@ public interface MongoSinkConfig extends AppConfig {
     @DefaultValue("true")
     Boolean isSinkMongoPreserveProtoFieldNamesEnable();
 
+    @Key("SINK_MONGO_BULK_WRITE_ORDERED_ENABLE")
+    @DefaultValue("true")
+    Boolean isSinkMongoBulkWriteOrderedEnable();
+
+    @Key("SINK_MONGO_PROTO_BSON_ENCODING_ENABLE")
+    @DefaultValue("false")
+    Boolean isSinkMongoProtoBsonEncodingEnable();
+
     @Key("SINK_MONGO_AUTH_ENABLE")
     @DefaultValue("false")
     Boolean isSinkMongoAuthEnable();
@@ -34,4 +34,12 @@ public interface S3Config extends Config {
     @Key("${S3_TYPE}_S3_API_TIMEOUT_MS")
     @DefaultValue("40000")
     Long getS3ApiTimeout();
+
+    @Key("${S3_TYPE}_S3_MULTIPART_PART_SIZE_BYTES")
+    @DefaultValue("16777216")
+    Long getS3MultipartPartSizeBytes();
+
+    @Key("${S3_TYPE}_S3_MULTIPART_UPLOAD_CONCURRENCY")
+    @DefaultValue("4")
+    Integer getS3MultipartUploadConcurrency();
 }
@@ -0,0 +1,13 @@
+package com.gotocompany.firehose.config.converter;
+
+import com.gotocompany.firehose.config.enums.BackOffJitterType;
+import org.aeonbits.owner.Converter;
+
+import java.lang.reflect.Method;
+
+public class BackOffJitterTypeConverter implements Converter<BackOffJitterType> {
+    @Override
+    public BackOffJitterType convert(Method method, String input) {
+        return BackOffJitterType.valueOf(input.toUpperCase());
+    }
+}
@@ -0,0 +1,55 @@
+package com.gotocompany.firehose.config.converter;
+
+import org.aeonbits.owner.Converter;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.ZStandardCodec;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts the parquet compression codec of the blob sink.
+ * <p>
+ * With this parquet version {@code ZSTD} and {@code LZ4} go through the hadoop codecs, which only compress with the
+ * native hadoop library, so they are rejected when the config is loaded unless the library is loaded, instead of
+ * failing every file writer at runtime.
+ */
+public class BlobSinkParquetCompressionConverter implements Converter<CompressionCodecName> {
+    private static final List<CompressionCodecName> SUPPORTED_CODECS = Arrays.asList(
+            CompressionCodecName.UNCOMPRESSED,
+            CompressionCodecName.SNAPPY,
+            CompressionCodecName.GZIP,
+            CompressionCodecName.ZSTD,
+            CompressionCodecName.LZ4);
+
+    @Override
+    public CompressionCodecName convert(Method method, String input) {
+        CompressionCodecName codec = null;
+        try {
+            codec = CompressionCodecName.valueOf(input.trim().toUpperCase());
+        } catch (IllegalArgumentException ignored) {
+            // reported below with the supported codecs
+        }
+        if (codec == null || !SUPPORTED_CODECS.contains(codec)) {
+            throw new IllegalArgumentException("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_COMPRESSION must be UNCOMPRESSED, SNAPPY, GZIP, ZSTD or LZ4");
+        }
+        if (!isNativeCodeLoaded(codec)) {
+            throw new IllegalArgumentException("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_COMPRESSION " + codec
+                    + " needs the native hadoop library with " + codec + " support, which is not loaded");
+        }
+        return codec;
+    }
+
+    private static boolean isNativeCodeLoaded(CompressionCodecName codec) {
+        switch (codec) {
+            case ZSTD:
+                return ZStandardCodec.isNativeCodeLoaded();
+            case LZ4:
+                return Lz4Codec.isNativeCodeLoaded();
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.gotocompany.firehose.config.converter;
+
+import com.gotocompany.firehose.sink.dlq.blobstorage.DlqCompressionType;
+import org.aeonbits.owner.Converter;
+
+import java.lang.reflect.Method;
+
+public class DlqCompressionTypeConverter implements Converter<DlqCompressionType> {
+    @Override
+    public DlqCompressionType convert(Method method, String input) {
+        try {
+            return DlqCompressionType.valueOf(input.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("DLQ_BLOB_STORAGE_COMPRESSION must be NONE, GZIP or ZSTD", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.gotocompany.firehose.config.converter;
+
+import com.gotocompany.firehose.config.enums.GrpcSinkBatchMode;
+import org.aeonbits.owner.Converter;
+
+import java.lang.reflect.Method;
+
+public class GrpcSinkBatchModeConverter implements Converter<GrpcSinkBatchMode> {
+    @Override
+    public GrpcSinkBatchMode convert(Method method, String input) {
+        try {
+            return GrpcSinkBatchMode.valueOf(input.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("SINK_GRPC_BATCH_MODE must be NONE, CLIENT_STREAMING or ENVELOPE");
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.gotocompany.firehose.config.enums;
+
+public enum BackOffJitterType {
+    NONE,
+    FULL,
+    DECORRELATED
+}
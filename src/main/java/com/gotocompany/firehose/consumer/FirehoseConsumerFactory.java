@@ -27,6 +27,7 @@ import com.gotocompany.firehose.sinkdecorator.BackOff;
 import com.gotocompany.firehose.sinkdecorator.BackOffProvider;
 import com.gotocompany.firehose.error.ErrorHandler;
 import com.gotocompany.firehose.sinkdecorator.ExponentialBackOffProvider;
+import com.gotocompany.firehose.sinkdecorator.RetryBudget;
 import com.gotocompany.firehose.sinkdecorator.SinkFinal;
 import com.gotocompany.firehose.sinkdecorator.SinkWithDlq;
 import com.gotocompany.firehose.sinkdecorator.SinkWithFailHandler;
@@ -40,6 +41,7 @@ import com.gotocompany.stencil.client.StencilClient;
 import io.opentracing.Tracer;
 import io.opentracing.noop.NoopTracerFactory;
 import org.aeonbits.owner.ConfigFactory;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -61,16 +63,20 @@ public class FirehoseConsumerFactory {
     private final FirehoseInstrumentation firehoseInstrumentation;
     private final KeyOrMessageParser parser;
     private final OffsetManager offsetManager = new OffsetManager();
+    private final RetryBudget retryBudget;
+    private final List<ConsumerRebalanceListener> rebalanceListeners = new ArrayList<>();
 
     /**
      * Instantiates a new Firehose consumer factory.
      *
      * @param kafkaConsumerConfig the kafka consumer config
      * @param statsDReporter      the stats d reporter
+     * @param retryBudget         the retry budget shared by the consumers, null to retry without a budget
      */
-    public FirehoseConsumerFactory(KafkaConsumerConfig kafkaConsumerConfig, StatsDReporter statsDReporter) {
+    public FirehoseConsumerFactory(KafkaConsumerConfig kafkaConsumerConfig, StatsDReporter statsDReporter, RetryBudget retryBudget) {
         this.kafkaConsumerConfig = kafkaConsumerConfig;
         this.statsDReporter = statsDReporter;
+        this.retryBudget = retryBudget;
         firehoseInstrumentation = new FirehoseInstrumentation(this.statsDReporter, FirehoseConsumerFactory.class);
 
         String additionalConsumerConfig = String.format(""
@@ -121,13 +127,13 @@ public class FirehoseConsumerFactory {
         if (kafkaConsumerConfig.isTraceJaegarEnable()) {
             tracer = Configuration.fromEnv("Firehose" + ": " + kafkaConsumerConfig.getSourceKafkaConsumerGroupId()).getTracer();
         }
-        FirehoseKafkaConsumer firehoseKafkaConsumer = KafkaUtils.createConsumer(kafkaConsumerConfig, config, statsDReporter, tracer);
         SinkTracer firehoseTracer = new SinkTracer(tracer, kafkaConsumerConfig.getSinkType().name() + " SINK",
                 kafkaConsumerConfig.isTraceJaegarEnable());
         SinkFactory sinkFactory = new SinkFactory(kafkaConsumerConfig, statsDReporter, stencilClient, offsetManager);
         sinkFactory.init();
         if (kafkaConsumerConfig.getSourceKafkaConsumerMode().equals(KafkaConsumerMode.SYNC)) {
             Sink sink = createSink(tracer, sinkFactory);
+            FirehoseKafkaConsumer firehoseKafkaConsumer = KafkaUtils.createConsumer(kafkaConsumerConfig, config, statsDReporter, tracer, rebalanceListeners);
             ConsumerAndOffsetManager consumerAndOffsetManager = new ConsumerAndOffsetManager(Collections.singletonList(sink), offsetManager, firehoseKafkaConsumer, kafkaConsumerConfig, new FirehoseInstrumentation(statsDReporter, ConsumerAndOffsetManager.class));
             return new FirehoseSyncConsumer(
                     sink,
@@ -142,6 +148,7 @@ public class FirehoseConsumerFactory {
             for (int ii = 0; ii < nThreads; ii++) {
                 sinks.add(createSink(tracer, sinkFactory));
             }
+            FirehoseKafkaConsumer firehoseKafkaConsumer = KafkaUtils.createConsumer(kafkaConsumerConfig, config, statsDReporter, tracer, rebalanceListeners);
             ConsumerAndOffsetManager consumerAndOffsetManager = new ConsumerAndOffsetManager(sinks, offsetManager, firehoseKafkaConsumer, kafkaConsumerConfig, new FirehoseInstrumentation(statsDReporter, ConsumerAndOffsetManager.class));
             SinkPool sinkPool = new SinkPool(
                     new LinkedBlockingQueue<>(sinks),
@@ -192,7 +199,20 @@ public class FirehoseConsumerFactory {
     private Sink withRetry(Sink sink, ErrorHandler errorHandler) {
         AppConfig appConfig = ConfigFactory.create(AppConfig.class, config);
         BackOffProvider backOffProvider = getBackOffProvider();
-        return new SinkWithRetry(sink, backOffProvider, new FirehoseInstrumentation(statsDReporter, SinkWithRetry.class), appConfig, parser, errorHandler);
+        FirehoseInstrumentation retryInstrumentation = new FirehoseInstrumentation(statsDReporter, SinkWithRetry.class);
+        if (!appConfig.getRetryParkingEnable()) {
+            return new SinkWithRetry(sink, backOffProvider, retryInstrumentation, appConfig, parser, errorHandler, null, retryBudget);
+        }
+        if (sink.canManageOffsets()) {
+            throw new IllegalArgumentException("RETRY_PARKING_ENABLE is not supported for sinks managing their own offsets");
+        }
+        if (!kafkaConsumerConfig.getSourceKafkaConsumerMode().equals(KafkaConsumerMode.SYNC)
+                || !kafkaConsumerConfig.isSourceKafkaCommitOnlyCurrentPartitionsEnable()) {
+            throw new IllegalArgumentException("RETRY_PARKING_ENABLE requires the SYNC consumer mode and SOURCE_KAFKA_COMMIT_ONLY_CURRENT_PARTITIONS_ENABLE");
+        }
+        SinkWithRetry sinkWithRetry = new SinkWithRetry(sink, backOffProvider, retryInstrumentation, appConfig, parser, errorHandler, offsetManager, retryBudget);
+        rebalanceListeners.add(sinkWithRetry);
+        return sinkWithRetry;
     }
 
     private BackOffProvider getBackOffProvider() {
@@ -202,6 +222,7 @@ public class FirehoseConsumerFactory {
                 appConfig.getRetryExponentialBackoffRate(),
                 appConfig.getRetryExponentialBackoffMaxMs(),
                 new FirehoseInstrumentation(statsDReporter, ExponentialBackOffProvider.class),
-                new BackOff(new FirehoseInstrumentation(statsDReporter, BackOff.class)));
+                new BackOff(new FirehoseInstrumentation(statsDReporter, BackOff.class)),
+                appConfig.getRetryExponentialBackoffJitter());
     }
 }
@@ -13,6 +13,7 @@ import lombok.AllArgsConstructor;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 
 import static com.gotocompany.firehose.metrics.Metrics.SOURCE_KAFKA_PARTITIONS_PROCESS_TIME_MILLISECONDS;
@@ -42,6 +43,8 @@ public class FirehoseSyncConsumer implements FirehoseConsumer {
             if (filteredMessages.sizeOfValidMessages() > 0) {
                 sink.pushMessage(filteredMessages.getValidMessages());
                 consumerAndOffsetManager.addOffsetsAndSetCommittable(filteredMessages.getValidMessages());
+            } else if (sink.hasPendingFailedMessages()) {
+                sink.pushMessage(Collections.emptyList());
             }
             consumerAndOffsetManager.commit();
             firehoseInstrumentation.logInfo("Processed {} records in consumer", messages.size());
@@ -4,6 +4,7 @@ import com.gotocompany.firehose.message.Message;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -68,6 +69,17 @@ public class OffsetManager {
         toBeCommittableBatchOffsets.remove(batch);
     }
 
+    /**
+     * Removes the offsets of the partitions, so that the offsets of partitions revoked from the consumer are not committed.
+     *
+     * @param partitions partitions to remove the offsets of
+     */
+    public synchronized void removePartitions(Collection<TopicPartition> partitions) {
+        partitions.forEach(sortedOffsets::remove);
+        toBeCommittableBatchOffsets.values().forEach(nodes -> nodes.removeIf(node -> partitions.contains(node.getTopicPartition())));
+        toBeCommittableBatchOffsets.values().removeIf(Set::isEmpty);
+    }
+
     /**
      * @return offsets for all partitions
      * It also compact internal sorted list per partition by removing redundant offsets.
@@ -3,7 +3,9 @@ package com.gotocompany.firehose.launch;
 import com.gotocompany.firehose.consumer.FirehoseConsumer;
 import com.gotocompany.firehose.consumer.FirehoseConsumerFactory;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.metrics.MetricAggregator;
 import com.gotocompany.firehose.metrics.Metrics;
+import com.gotocompany.firehose.sinkdecorator.RetryBudget;
 import com.gotocompany.depot.config.MetricsConfig;
 import com.gotocompany.depot.metrics.StatsDReporter;
 import com.gotocompany.depot.metrics.StatsDReporterBuilder;
@@ -33,6 +35,13 @@ public class Main {
         StatsDReporter statsDReporter = StatsDReporterBuilder.builder().withMetricConfig(config)
                 .withExtraTags(Metrics.tag(Metrics.CONSUMER_GROUP_ID_TAG, kafkaConsumerConfig.getSourceKafkaConsumerGroupId()))
                 .build();
+        MetricAggregator metricAggregator = kafkaConsumerConfig.getMetricAggregationEnable()
+                ? MetricAggregator.start(statsDReporter, kafkaConsumerConfig.getMetricAggregationFlushIntervalMs(),
+                        kafkaConsumerConfig.getMetricAggregationMaxTimingSamples())
+                : null;
+        RetryBudget retryBudget = kafkaConsumerConfig.getRetryBudgetEnable()
+                ? new RetryBudget(kafkaConsumerConfig.getRetryBudgetRatio(), kafkaConsumerConfig.getRetryBudgetMaxTokens())
+                : null;
         FirehoseInstrumentation firehoseInstrumentation = new FirehoseInstrumentation(statsDReporter, Main.class);
         firehoseInstrumentation.logInfo("Number of consumer threads: " + kafkaConsumerConfig.getApplicationThreadCount());
         firehoseInstrumentation.logInfo("Delay to clean up consumer threads in ms: " + kafkaConsumerConfig.getApplicationThreadCleanupDelay());
@@ -45,7 +54,7 @@ public class Main {
 
                     FirehoseConsumer firehoseConsumer = null;
                     try {
-                        firehoseConsumer = new FirehoseConsumerFactory(kafkaConsumerConfig, statsDReporter).buildConsumer();
+                        firehoseConsumer = new FirehoseConsumerFactory(kafkaConsumerConfig, statsDReporter, retryBudget).buildConsumer();
                         while (true) {
                             if (Thread.interrupted()) {
                                 firehoseInstrumentation.logWarn("Consumer Thread interrupted, leaving the loop!");
@@ -67,6 +76,9 @@ public class Main {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             firehoseInstrumentation.logInfo("Program is going to exit. Have started execution of shutdownHook before this");
             consumerTask.stop();
+            if (metricAggregator != null) {
+                metricAggregator.close();
+            }
         }));
 
         consumerTask.run().waitForCompletion();
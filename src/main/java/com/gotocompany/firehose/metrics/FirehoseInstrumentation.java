@@ -8,16 +8,20 @@ import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.gotocompany.firehose.metrics.Metrics.ERROR_MESSAGES_TOTAL;
 import static com.gotocompany.firehose.metrics.Metrics.ERROR_TYPE_TAG;
 import static com.gotocompany.firehose.metrics.Metrics.GLOBAL_MESSAGES_TOTAL;
 import static com.gotocompany.firehose.metrics.Metrics.MESSAGE_SCOPE_TAG;
 import static com.gotocompany.firehose.metrics.Metrics.MESSAGE_TYPE_TAG;
+import static com.gotocompany.firehose.metrics.Metrics.MessageScope;
 import static com.gotocompany.firehose.metrics.Metrics.MessageType;
 import static com.gotocompany.firehose.metrics.Metrics.PIPELINE_END_LATENCY_MILLISECONDS;
 import static com.gotocompany.firehose.metrics.Metrics.PIPELINE_EXECUTION_LIFETIME_MILLISECONDS;
+import static com.gotocompany.firehose.metrics.Metrics.SINK_GRPC_CHANNEL_CALLS_TOTAL;
 import static com.gotocompany.firehose.metrics.Metrics.SINK_PUSH_BATCH_SIZE_TOTAL;
 import static com.gotocompany.firehose.metrics.Metrics.SINK_RESPONSE_TIME_MILLISECONDS;
 import static com.gotocompany.firehose.metrics.Metrics.SOURCE_KAFKA_MESSAGES_FILTER_TOTAL;
@@ -27,9 +31,15 @@ import static com.gotocompany.firehose.metrics.Metrics.SOURCE_KAFKA_PULL_BATCH_S
  * Instrumentation.
  * <p>
  * Handle logging and metric capturing.
+ * <p>
+ * Per message counts and latencies go through the {@link MetricAggregator} of the reporter when one is started.
  */
 public class FirehoseInstrumentation extends Instrumentation {
+    private static final Map<MessageType, String> MESSAGE_TYPE_TAGS = buildTags(MessageType.class, MESSAGE_TYPE_TAG);
+    private static final Map<ErrorType, String> ERROR_TYPE_TAGS = buildTags(ErrorType.class, ERROR_TYPE_TAG);
+    private static final Map<MessageScope, String> MESSAGE_SCOPE_TAGS = buildTags(MessageScope.class, MESSAGE_SCOPE_TAG);
 
+    private final MetricAggregator metricAggregator;
     private Instant startExecutionTime;
 
     /**
@@ -39,7 +49,19 @@ public class FirehoseInstrumentation extends Instrumentation {
      * @param logger         the logger
      */
     public FirehoseInstrumentation(StatsDReporter statsDReporter, Logger logger) {
+        this(statsDReporter, logger, MetricAggregator.get(statsDReporter));
+    }
+
+    /**
+     * Instantiates a new Instrumentation aggregating per message metrics.
+     *
+     * @param statsDReporter   the stats d reporter
+     * @param logger           the logger
+     * @param metricAggregator the metric aggregator, null to send every metric to the reporter
+     */
+    public FirehoseInstrumentation(StatsDReporter statsDReporter, Logger logger, MetricAggregator metricAggregator) {
         super(statsDReporter, logger);
+        this.metricAggregator = metricAggregator;
     }
 
     /**
@@ -50,6 +72,23 @@ public class FirehoseInstrumentation extends Instrumentation {
      */
     public FirehoseInstrumentation(StatsDReporter statsDReporter, Class clazz) {
         super(statsDReporter, clazz);
+        this.metricAggregator = MetricAggregator.get(statsDReporter);
+    }
+
+    private static <E extends Enum<E>> Map<E, String> buildTags(Class<E> type, String format) {
+        Map<E, String> tags = new EnumMap<>(type);
+        for (E value : type.getEnumConstants()) {
+            tags.put(value, String.format(format, value.name()));
+        }
+        return tags;
+    }
+
+    private void count(String metric, long counter, String... tags) {
+        if (metricAggregator != null) {
+            metricAggregator.count(metric, counter, tags);
+        } else {
+            captureCount(metric, counter, tags);
+        }
     }
 
     /**
@@ -113,27 +152,36 @@ public class FirehoseInstrumentation extends Instrumentation {
     }
 
     public void captureErrorMetrics(ErrorType errorType) {
-        captureCount(ERROR_MESSAGES_TOTAL, 1L, String.format(ERROR_TYPE_TAG, errorType.name()));
+        count(ERROR_MESSAGES_TOTAL, 1L, ERROR_TYPE_TAGS.get(errorType));
     }
 
     // =================== Retry and DLQ Telemetry ======================
 
     public void captureMessageMetrics(String metric, MessageType type, ErrorType errorType, long counter) {
         if (errorType != null) {
-            captureCount(metric, counter, String.format(MESSAGE_TYPE_TAG, type.name()), String.format(ERROR_TYPE_TAG, errorType.name()));
+            count(metric, counter, MESSAGE_TYPE_TAGS.get(type), ERROR_TYPE_TAGS.get(errorType));
         } else {
-            captureCount(metric, counter, String.format(MESSAGE_TYPE_TAG, type.name()));
+            count(metric, counter, MESSAGE_TYPE_TAGS.get(type));
         }
     }
 
     public void captureGlobalMessageMetrics(Metrics.MessageScope scope, long counter) {
-        captureCount(GLOBAL_MESSAGES_TOTAL, counter, String.format(MESSAGE_SCOPE_TAG, scope.name()));
+        count(GLOBAL_MESSAGES_TOTAL, counter, MESSAGE_SCOPE_TAGS.get(scope));
     }
 
     public void captureMessageMetrics(String metric, MessageType type, int counter) {
         captureMessageMetrics(metric, type, null, counter);
     }
 
+    /**
+     * Counts a call on a channel of the grpc channel pool, aggregated when an aggregator is started.
+     *
+     * @param channelTag the tag of the channel
+     */
+    public void captureGrpcChannelCall(String channelTag) {
+        count(SINK_GRPC_CHANNEL_CALLS_TOTAL, 1L, channelTag);
+    }
+
     public void captureDLQErrors(Message message, Exception e) {
         captureNonFatalError("firehose_error_event", e, "Unable to send record with key {} and message {} to DLQ", message.getLogKey(), message.getLogMessage());
     }
@@ -141,6 +189,14 @@ public class FirehoseInstrumentation extends Instrumentation {
     // ===================== Latency / LifetimeTillSink =====================
 
     public void capturePreExecutionLatencies(List<Message> messages) {
+        if (metricAggregator != null) {
+            long now = System.currentTimeMillis();
+            messages.forEach(message -> {
+                metricAggregator.recordDuration(PIPELINE_END_LATENCY_MILLISECONDS, now - message.getTimestamp());
+                metricAggregator.recordDuration(PIPELINE_EXECUTION_LIFETIME_MILLISECONDS, now - message.getConsumeTimestamp());
+            });
+            return;
+        }
         messages.forEach(message -> {
             captureDurationSince(PIPELINE_END_LATENCY_MILLISECONDS, Instant.ofEpochMilli(message.getTimestamp()));
             captureDurationSince(PIPELINE_EXECUTION_LIFETIME_MILLISECONDS, Instant.ofEpochMilli(message.getConsumeTimestamp()));
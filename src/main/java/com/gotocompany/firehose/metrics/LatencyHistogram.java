@@ -0,0 +1,49 @@
+package com.gotocompany.firehose.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durations of a metric recorded in a HdrHistogram {@link Recorder}, a recorded value is kept within 1% of its
+ * actual value.
+ * <p>
+ * Recording is wait free. Taking the samples swaps the histogram recorded so far for an empty one.
+ */
+class LatencyHistogram {
+    private static final int SIGNIFICANT_VALUE_DIGITS = 2;
+    private static final double HALF = 0.5;
+    private static final double PERCENT = 100.0;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_VALUE_DIGITS);
+    private Histogram intervalHistogram;
+
+    void record(long value) {
+        recorder.recordValue(Math.max(0, value));
+    }
+
+    /**
+     * Takes the values recorded since the last call. Beyond maxSamples values, the values at maxSamples evenly
+     * spaced quantiles are taken instead.
+     */
+    synchronized List<Long> takeSamples(int maxSamples) {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        long total = intervalHistogram.getTotalCount();
+        List<Long> samples = new ArrayList<>((int) Math.min(total, maxSamples));
+        if (total <= maxSamples) {
+            for (HistogramIterationValue recorded : intervalHistogram.recordedValues()) {
+                for (long j = 0; j < recorded.getCountAtValueIteratedTo(); j++) {
+                    samples.add(recorded.getValueIteratedTo());
+                }
+            }
+            return samples;
+        }
+        for (int j = 0; j < maxSamples; j++) {
+            samples.add(intervalHistogram.getValueAtPercentile((j + HALF) * PERCENT / maxSamples));
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,150 @@
+package com.gotocompany.firehose.metrics;
+
+import com.gotocompany.depot.metrics.StatsDReporter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates counts and durations in process and flushes them to StatsD at a fixed interval.
+ * <p>
+ * Counts of the same metric and tags are summed into one StatsD count per flush, the count sent is the difference
+ * of the sum to the sum at the previous flush, so counts added while flushing are sent with the next flush. Durations are recorded in a
+ * {@link LatencyHistogram} and flushed as at most maxTimingSamples histogram values per metric and tags, taken at
+ * evenly spaced quantiles, so the number of packets is bounded while the percentiles are kept.
+ * <p>
+ * The aggregator started for a reporter is used by all instrumentations created with that reporter.
+ */
+@Slf4j
+public class MetricAggregator implements Closeable {
+    private static final Map<StatsDReporter, MetricAggregator> AGGREGATORS = new ConcurrentHashMap<>();
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final StatsDReporter statsDReporter;
+    private final int maxTimingSamples;
+    private final Map<MetricKey, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<MetricKey, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler;
+
+    MetricAggregator(StatsDReporter statsDReporter, long flushIntervalMillis, int maxTimingSamples) {
+        this.statsDReporter = statsDReporter;
+        this.maxTimingSamples = maxTimingSamples;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor();
+        this.flushScheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts aggregating the metrics of the instrumentations created with the reporter from now on.
+     */
+    public static MetricAggregator start(StatsDReporter statsDReporter, long flushIntervalMillis, int maxTimingSamples) {
+        return AGGREGATORS.computeIfAbsent(statsDReporter, reporter -> new MetricAggregator(reporter, flushIntervalMillis, maxTimingSamples));
+    }
+
+    /**
+     * @return the aggregator started for the reporter, null if there is none
+     */
+    public static MetricAggregator get(StatsDReporter statsDReporter) {
+        return statsDReporter == null ? null : AGGREGATORS.get(statsDReporter);
+    }
+
+    public void count(String metric, long delta, String... tags) {
+        MetricKey key = new MetricKey(metric, tags);
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new Counter());
+        }
+        counter.add(delta);
+    }
+
+    public void recordDuration(String metric, long durationMillis, String... tags) {
+        MetricKey key = new MetricKey(metric, tags);
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+        }
+        histogram.record(durationMillis);
+    }
+
+    synchronized void flush() {
+        try {
+            counters.forEach((key, counter) -> {
+                long count = counter.takeDelta();
+                if (count != 0) {
+                    statsDReporter.captureCount(key.metric, count, key.tags);
+                }
+            });
+            histograms.forEach((key, histogram) -> histogram.takeSamples(maxTimingSamples)
+                    .forEach(value -> statsDReporter.captureHistogram(key.metric, value, key.tags)));
+        } catch (Exception e) {
+            log.warn("Failed to flush aggregated metrics: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        AGGREGATORS.remove(statsDReporter, this);
+        flushScheduler.shutdown();
+        try {
+            flushScheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static final class Counter {
+        private final LongAdder sum = new LongAdder();
+        private long flushedSum;
+
+        void add(long delta) {
+            sum.add(delta);
+        }
+
+        /**
+         * @return the count added since the last call, called by the flush only
+         */
+        long takeDelta() {
+            long currentSum = sum.sum();
+            long delta = currentSum - flushedSum;
+            flushedSum = currentSum;
+            return delta;
+        }
+    }
+
+    private static final class MetricKey {
+        private final String metric;
+        private final String[] tags;
+        private final int hash;
+
+        MetricKey(String metric, String[] tags) {
+            this.metric = metric;
+            this.tags = tags;
+            this.hash = Objects.hash(metric, Arrays.hashCode(tags));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MetricKey)) {
+                return false;
+            }
+            MetricKey other = (MetricKey) o;
+            return metric.equals(other.metric) && Arrays.equals(tags, other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -12,8 +12,10 @@ public class Metrics {
     public static final String SINK_PREFIX = "sink_";
     public static final String HTTP_SINK_PREFIX = "http_";
     public static final String BLOB_SINK_PREFIX = "blob_";
+    public static final String ES_SINK_PREFIX = "es_";
 
     public static final String MONGO_SINK_PREFIX = "mongo_";
+    public static final String GRPC_SINK_PREFIX = "grpc_";
 
 
     //RETRY PREFIX
@@ -44,19 +46,31 @@ public class Metrics {
     public static final String SINK_HTTP_RESPONSE_CODE_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + HTTP_SINK_PREFIX + "response_code_total";
     public static final String SINK_PUSH_BATCH_SIZE_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + "push_batch_size_total";
 
+    // ES SINK MEASUREMENTS
+    public static final String SINK_ES_BULK_ACTIONS_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + ES_SINK_PREFIX + "bulk_actions_total";
+    public static final String SINK_ES_BULK_SIZE_BYTES = APPLICATION_PREFIX + SINK_PREFIX + ES_SINK_PREFIX + "bulk_size_bytes";
+    public static final String SINK_ES_BULK_RESPONSE_TIME_MILLISECONDS = APPLICATION_PREFIX + SINK_PREFIX + ES_SINK_PREFIX + "bulk_response_time_milliseconds";
+    public static final String SINK_ES_BULK_REJECTED_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + ES_SINK_PREFIX + "bulk_rejected_total";
+
     // MONGO SINK MEASUREMENTS
     public static final String SINK_MONGO_INSERTED_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + MONGO_SINK_PREFIX + "inserted_total";
     public static final String SINK_MONGO_UPDATED_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + MONGO_SINK_PREFIX + "updated_total";
     public static final String SINK_MONGO_MODIFIED_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + MONGO_SINK_PREFIX + "modified_total";
 
+    // GRPC SINK MEASUREMENTS
+    public static final String SINK_GRPC_CHANNEL_CALLS_TOTAL = APPLICATION_PREFIX + SINK_PREFIX + GRPC_SINK_PREFIX + "channel_calls_total";
+
     // RETRY MEASUREMENT
     public static final String RETRY_MESSAGES_TOTAL = APPLICATION_PREFIX + RETRY_PREFIX + "messages_total";
     public static final String RETRY_ATTEMPTS_TOTAL = APPLICATION_PREFIX + RETRY_PREFIX + "attempts_total";
     public static final String RETRY_SLEEP_TIME_MILLISECONDS = APPLICATION_PREFIX + RETRY_PREFIX + "backoff_sleep_milliseconds";
+    public static final String RETRY_PARKED_MESSAGES = APPLICATION_PREFIX + RETRY_PREFIX + "parked_messages";
+    public static final String RETRY_BUDGET_DENIED_TOTAL = APPLICATION_PREFIX + RETRY_PREFIX + "budget_denied_total";
 
     // DLQ MEASUREMENTS
     public static final String DLQ_RETRY_ATTEMPTS_TOTAL = APPLICATION_PREFIX + DLQ_PREFIX + RETRY_PREFIX + "attempts_total";
     public static final String DLQ_MESSAGES_TOTAL = APPLICATION_PREFIX + DLQ_PREFIX + "messages_total";
+    public static final String DLQ_LOCAL_JOURNAL_PENDING_SEGMENTS = APPLICATION_PREFIX + DLQ_PREFIX + "local_journal_pending_segments";
 
     // GLOBAL MEASUREMENTS
     public static final String GLOBAL_MESSAGES_TOTAL = APPLICATION_PREFIX + GLOBAL_PREFIX + "messages_total";
@@ -48,4 +48,14 @@ public interface Sink extends Closeable {
      */
     default void calculateCommittableOffsets() {
     }
+
+    /**
+     * Method that inform that sink holds failed messages which are returned by a push without messages,
+     * such as messages failing their retries in the background.
+     *
+     * @return true if a push without messages returns failed messages
+     */
+    default boolean hasPendingFailedMessages() {
+        return false;
+    }
 }
@@ -6,6 +6,7 @@ import com.gotocompany.firehose.exception.EmptyMessageException;
 import com.gotocompany.firehose.exception.SinkException;
 import com.gotocompany.firehose.exception.UnknownFieldsException;
 import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.metrics.BlobStorageMetrics;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.blob.message.MessageDeSerializer;
 import com.gotocompany.firehose.sink.blob.message.Record;
@@ -16,6 +17,7 @@ import com.gotocompany.firehose.sink.AbstractSink;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -23,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 
 public class BlobSink extends AbstractSink {
+    private static final long LOCAL_STORAGE_BUDGET_WAIT_TIMEOUT_MILLIS = 1000;
 
     private final WriterOrchestrator writerOrchestrator;
     private final OffsetManager offsetManager;
@@ -39,13 +42,34 @@ public class BlobSink extends AbstractSink {
 
     @Override
     protected List<Message> execute() throws Exception {
+        try {
+            awaitLocalStorageBudget();
+        } catch (Exception e) {
+            throw new SinkException("Failed to wait for the local storage budget", e);
+        }
         List<Message> failedMessages = new LinkedList<>();
         Map<Object, List<Message>> fileToMessages = new HashMap<>();
+        Map<Object, List<Message>> recoveredFileToMessages = new HashMap<>();
+        int laneCount = writerOrchestrator.getLaneCount();
+        List<Message> deSerializedMessages = new ArrayList<>();
+        List<Record> records = new ArrayList<>();
+        List<Integer> lanes = new ArrayList<>();
         for (Message message : messages) {
+            String recoveredFilePath = writerOrchestrator.getRecoveredFilePath(message.getTopic(), message.getPartition(), message.getOffset());
+            if (recoveredFilePath != null) {
+                recoveredFileToMessages.computeIfAbsent(recoveredFilePath, key -> new ArrayList<>()).add(message);
+                continue;
+            }
             try {
                 Record record = messageDeSerializer.deSerialize(message);
-                String filePath = writerOrchestrator.write(record);
-                fileToMessages.computeIfAbsent(filePath, key -> new ArrayList<>()).add(message);
+                if (laneCount > 1) {
+                    deSerializedMessages.add(message);
+                    records.add(record);
+                    lanes.add(Math.floorMod(message.getPartition(), laneCount));
+                } else {
+                    String filePath = writerOrchestrator.write(record);
+                    fileToMessages.computeIfAbsent(filePath, key -> new ArrayList<>()).add(message);
+                }
             } catch (EmptyMessageException e) {
                 getFirehoseInstrumentation().logWarn("empty message found on topic: {}, partition: {}, offset: {}",
                         message.getTopic(), message.getPartition(), message.getOffset());
@@ -64,10 +88,60 @@ public class BlobSink extends AbstractSink {
                 throw new SinkException("Failed to deserialize the message", e);
             }
         }
+        if (!records.isEmpty()) {
+            List<String> filePaths;
+            try {
+                filePaths = writerOrchestrator.write(records, lanes);
+            } catch (Exception e) {
+                throw new SinkException("Failed to write the messages", e);
+            }
+            for (int i = 0; i < filePaths.size(); i++) {
+                fileToMessages.computeIfAbsent(filePaths.get(i), key -> new ArrayList<>()).add(deSerializedMessages.get(i));
+            }
+        }
         offsetManager.addOffsetToBatch(fileToMessages);
+        addRecoveredOffsets(recoveredFileToMessages);
         return failedMessages;
     }
 
+    /**
+     * Messages already written to a file recovered on startup are committed with that file.
+     * If the file was uploaded before the messages were read again, they are committable right away.
+     */
+    private void addRecoveredOffsets(Map<Object, List<Message>> recoveredFileToMessages) {
+        offsetManager.addOffsetToBatch(recoveredFileToMessages);
+        for (Object recoveredFilePath : recoveredFileToMessages.keySet()) {
+            if (writerOrchestrator.isRecoveredFileUploaded((String) recoveredFilePath)) {
+                offsetManager.setCommittable(recoveredFilePath);
+            }
+        }
+    }
+
+    /**
+     * Blocks the consumer while the local files waiting for their upload exceed the local disk budget,
+     * or the in memory files reach the memory cap.
+     * Every upload wakes the consumer up, which deletes the uploaded files as it would on commit.
+     * The wait times out now and then to notice a failed writer orchestrator.
+     */
+    private void awaitLocalStorageBudget() throws Exception {
+        if (!writerOrchestrator.isLocalStorageBudgetExceeded()) {
+            return;
+        }
+        Instant startTime = Instant.now();
+        getFirehoseInstrumentation().logWarn("local storage budget exceeded, waiting for uploads");
+        try {
+            calculateCommittableOffsets();
+            while (writerOrchestrator.isLocalStorageBudgetExceeded()) {
+                writerOrchestrator.awaitFlushedPaths(LOCAL_STORAGE_BUDGET_WAIT_TIMEOUT_MILLIS).forEach(offsetManager::setCommittable);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            getFirehoseInstrumentation().captureDurationSince(BlobStorageMetrics.LOCAL_DISK_BACKPRESSURE_TIME_MILLISECONDS, startTime);
+        }
+    }
+
     @Override
     protected void prepare(List<Message> messageList) throws IOException, SQLException {
         this.messages = messageList;
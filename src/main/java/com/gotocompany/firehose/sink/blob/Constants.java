@@ -3,6 +3,7 @@ package com.gotocompany.firehose.sink.blob;
 public class Constants {
     public enum WriterType {
         PARQUET,
+        PARQUET_IN_MEMORY,
     }
 
     public enum FilePartitionType {
@@ -0,0 +1,69 @@
+package com.gotocompany.firehose.sink.blob.message;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.sink.blob.proto.KafkaMetadataProtoMessage;
+import com.gotocompany.firehose.sink.blob.proto.NestedKafkaMetadataProtoMessage;
+import com.gotocompany.firehose.sink.blob.proto.TimestampMetadataProtoMessage;
+
+import java.time.Instant;
+
+/**
+ * Builds the kafka metadata {@link DynamicMessage} of messages, like {@link KafkaMetadataUtils},
+ * with the metadata descriptors and fields resolved once instead of per message.
+ */
+public class KafkaMetadataBuilder {
+    private final Descriptors.Descriptor metadataDescriptor;
+    private final Descriptors.FieldDescriptor loadTimeField;
+    private final Descriptors.FieldDescriptor messageTimestampField;
+    private final Descriptors.FieldDescriptor offsetField;
+    private final Descriptors.FieldDescriptor partitionField;
+    private final Descriptors.FieldDescriptor topicField;
+    private final Descriptors.Descriptor nestedMetadataDescriptor;
+    private final Descriptors.FieldDescriptor nestedMetadataField;
+
+    public KafkaMetadataBuilder(Descriptors.FileDescriptor kafkaMetadataFileDescriptor, String kafkaMetadataColumnName) {
+        this.metadataDescriptor = kafkaMetadataFileDescriptor.findMessageTypeByName(KafkaMetadataProtoMessage.getTypeName());
+        this.loadTimeField = metadataDescriptor.findFieldByName(KafkaMetadataProtoMessage.LOAD_TIME_FIELD_NAME);
+        this.messageTimestampField = metadataDescriptor.findFieldByName(KafkaMetadataProtoMessage.MESSAGE_TIMESTAMP_FIELD_NAME);
+        this.offsetField = metadataDescriptor.findFieldByName(KafkaMetadataProtoMessage.MESSAGE_OFFSET_FIELD_NAME);
+        this.partitionField = metadataDescriptor.findFieldByName(KafkaMetadataProtoMessage.MESSAGE_PARTITION_FIELD_NAME);
+        this.topicField = metadataDescriptor.findFieldByName(KafkaMetadataProtoMessage.MESSAGE_TOPIC_FIELD_NAME);
+        if (kafkaMetadataColumnName.isEmpty()) {
+            this.nestedMetadataDescriptor = null;
+            this.nestedMetadataField = null;
+        } else {
+            this.nestedMetadataDescriptor = kafkaMetadataFileDescriptor.findMessageTypeByName(NestedKafkaMetadataProtoMessage.getTypeName());
+            this.nestedMetadataField = nestedMetadataDescriptor.findFieldByName(kafkaMetadataColumnName);
+        }
+    }
+
+    public DynamicMessage build(Message message) {
+        Instant loadTime = Instant.now();
+        DynamicMessage metadata = DynamicMessage.newBuilder(metadataDescriptor)
+                .setField(loadTimeField, TimestampMetadataProtoMessage.newBuilder()
+                        .setSeconds(loadTime.getEpochSecond())
+                        .setNanos(loadTime.getNano())
+                        .build())
+                .setField(messageTimestampField, toTimestamp(message.getTimestamp()))
+                .setField(offsetField, message.getOffset())
+                .setField(partitionField, message.getPartition())
+                .setField(topicField, message.getTopic())
+                .build();
+        if (nestedMetadataDescriptor == null) {
+            return metadata;
+        }
+        return DynamicMessage.newBuilder(nestedMetadataDescriptor)
+                .setField(nestedMetadataField, metadata)
+                .build();
+    }
+
+    private static com.google.protobuf.Timestamp toTimestamp(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        return TimestampMetadataProtoMessage.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+}
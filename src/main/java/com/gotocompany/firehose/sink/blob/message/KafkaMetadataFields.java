@@ -0,0 +1,67 @@
+package com.gotocompany.firehose.sink.blob.message;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.gotocompany.firehose.sink.blob.proto.KafkaMetadataProtoMessage;
+import com.gotocompany.firehose.sink.blob.proto.NestedKafkaMetadataProtoMessage;
+
+/**
+ * The topic, partition and offset fields of the kafka metadata of records, resolved once per metadata descriptor
+ * instead of per record.
+ */
+public class KafkaMetadataFields {
+    private final String kafkaMetadataColumnName;
+    private volatile Resolved resolved;
+
+    /**
+     * @param kafkaMetadataColumnName column of the metadata, empty if the metadata is not nested
+     */
+    public KafkaMetadataFields(String kafkaMetadataColumnName) {
+        this.kafkaMetadataColumnName = kafkaMetadataColumnName;
+    }
+
+    public String getTopic(DynamicMessage metadata) {
+        Resolved fields = resolve(metadata.getDescriptorForType());
+        return (String) getKafkaMetadata(metadata, fields).getField(fields.topicField);
+    }
+
+    public int getPartition(DynamicMessage metadata) {
+        Resolved fields = resolve(metadata.getDescriptorForType());
+        return (int) getKafkaMetadata(metadata, fields).getField(fields.partitionField);
+    }
+
+    public long getOffset(DynamicMessage metadata) {
+        Resolved fields = resolve(metadata.getDescriptorForType());
+        return (long) getKafkaMetadata(metadata, fields).getField(fields.offsetField);
+    }
+
+    private DynamicMessage getKafkaMetadata(DynamicMessage metadata, Resolved fields) {
+        return fields.nestedMetadataField == null ? metadata : (DynamicMessage) metadata.getField(fields.nestedMetadataField);
+    }
+
+    private Resolved resolve(Descriptors.Descriptor descriptor) {
+        Resolved fields = resolved;
+        if (fields == null || fields.descriptor != descriptor) {
+            fields = new Resolved(descriptor, !kafkaMetadataColumnName.isEmpty());
+            resolved = fields;
+        }
+        return fields;
+    }
+
+    private static final class Resolved {
+        private final Descriptors.Descriptor descriptor;
+        private final Descriptors.FieldDescriptor nestedMetadataField;
+        private final Descriptors.FieldDescriptor topicField;
+        private final Descriptors.FieldDescriptor partitionField;
+        private final Descriptors.FieldDescriptor offsetField;
+
+        private Resolved(Descriptors.Descriptor descriptor, boolean isNested) {
+            this.descriptor = descriptor;
+            this.nestedMetadataField = isNested ? descriptor.findFieldByNumber(NestedKafkaMetadataProtoMessage.METADATA_FIELD_NUMBER) : null;
+            Descriptors.Descriptor kafkaMetadataDescriptor = isNested ? nestedMetadataField.getMessageType() : descriptor;
+            this.topicField = kafkaMetadataDescriptor.findFieldByNumber(KafkaMetadataProtoMessage.MESSAGE_TOPIC_FIELD_NUMBER);
+            this.partitionField = kafkaMetadataDescriptor.findFieldByNumber(KafkaMetadataProtoMessage.MESSAGE_PARTITION_FIELD_NUMBER);
+            this.offsetField = kafkaMetadataDescriptor.findFieldByNumber(KafkaMetadataProtoMessage.MESSAGE_OFFSET_FIELD_NUMBER);
+        }
+    }
+}
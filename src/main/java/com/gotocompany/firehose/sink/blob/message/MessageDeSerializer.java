@@ -12,19 +12,23 @@ import com.gotocompany.firehose.proto.ProtoUtils;
 import com.gotocompany.firehose.sink.blob.proto.KafkaMetadataProtoMessageUtils;
 import com.gotocompany.stencil.client.StencilClient;
 import com.gotocompany.stencil.Parser;
-import lombok.AllArgsConstructor;
 
-@AllArgsConstructor
 public class MessageDeSerializer {
 
-    private final Descriptors.FileDescriptor kafkaMetadataFileDescriptor;
+    private final KafkaMetadataBuilder kafkaMetadataBuilder;
     private final Parser protoParser;
     private final BlobSinkConfig sinkConfig;
 
-    public MessageDeSerializer(BlobSinkConfig sinkConfig, StencilClient stencilClient) {
+    public MessageDeSerializer(Descriptors.FileDescriptor kafkaMetadataFileDescriptor, Parser protoParser, BlobSinkConfig sinkConfig) {
+        this.kafkaMetadataBuilder = new KafkaMetadataBuilder(kafkaMetadataFileDescriptor, sinkConfig.getOutputKafkaMetadataColumnName());
+        this.protoParser = protoParser;
         this.sinkConfig = sinkConfig;
-        this.protoParser = stencilClient.getParser(sinkConfig.getInputSchemaProtoClass());
-        this.kafkaMetadataFileDescriptor = KafkaMetadataProtoMessageUtils.createFileDescriptor(sinkConfig.getOutputKafkaMetadataColumnName());
+    }
+
+    public MessageDeSerializer(BlobSinkConfig sinkConfig, StencilClient stencilClient) {
+        this(KafkaMetadataProtoMessageUtils.createFileDescriptor(sinkConfig.getOutputKafkaMetadataColumnName()),
+                stencilClient.getParser(sinkConfig.getInputSchemaProtoClass()),
+                sinkConfig);
     }
 
     public Record deSerialize(Message message) throws DeserializerException {
@@ -38,7 +42,7 @@ public class MessageDeSerializer {
                 throw new UnknownFieldsException(dynamicMessage);
             }
 
-            DynamicMessage kafkaMetadata = KafkaMetadataUtils.createKafkaMetadata(kafkaMetadataFileDescriptor, message, sinkConfig.getOutputKafkaMetadataColumnName());
+            DynamicMessage kafkaMetadata = kafkaMetadataBuilder.build(message);
             return new Record(dynamicMessage, kafkaMetadata);
         } catch (InvalidProtocolBufferException e) {
             throw new DeserializerException("failed to parse message", e);
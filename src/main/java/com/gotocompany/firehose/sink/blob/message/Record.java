@@ -1,8 +1,6 @@
 package com.gotocompany.firehose.sink.blob.message;
 
-import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
-import com.gotocompany.firehose.sink.blob.proto.KafkaMetadataProtoMessage;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -15,23 +13,34 @@ public class Record {
     private DynamicMessage metadata;
 
     public String getTopic(String fieldName) {
-        Descriptors.Descriptor metadataDescriptor = metadata.getDescriptorForType();
+        return getTopic(new KafkaMetadataFields(fieldName));
+    }
+
+    public String getTopic(KafkaMetadataFields fields) {
+        return fields.getTopic(metadata);
+    }
+
+    public int getPartition(String fieldName) {
+        return getPartition(new KafkaMetadataFields(fieldName));
+    }
 
-        if (!fieldName.isEmpty()) {
-            DynamicMessage nestedMetadataMessage = (DynamicMessage) metadata.getField(metadataDescriptor.findFieldByName(fieldName));
-            Descriptors.Descriptor nestedMetadataMessageDescriptor = nestedMetadataMessage.getDescriptorForType();
-            return (String) nestedMetadataMessage.getField(nestedMetadataMessageDescriptor.findFieldByName(KafkaMetadataProtoMessage.MESSAGE_TOPIC_FIELD_NAME));
-        }
+    public int getPartition(KafkaMetadataFields fields) {
+        return fields.getPartition(metadata);
+    }
+
+    public long getOffset(String fieldName) {
+        return getOffset(new KafkaMetadataFields(fieldName));
+    }
 
-        return (String) metadata.getField(metadataDescriptor.findFieldByName(KafkaMetadataProtoMessage.MESSAGE_TOPIC_FIELD_NAME));
+    public long getOffset(KafkaMetadataFields fields) {
+        return fields.getOffset(metadata);
     }
 
     public Instant getTimestamp(String fieldName) {
-        Descriptors.Descriptor descriptor = message.getDescriptorForType();
-        Descriptors.FieldDescriptor timestampField = descriptor.findFieldByName(fieldName);
-        DynamicMessage timestamp = (DynamicMessage) message.getField(timestampField);
-        long seconds = (long) timestamp.getField(timestamp.getDescriptorForType().findFieldByName("seconds"));
-        int nanos = (int) timestamp.getField(timestamp.getDescriptorForType().findFieldByName("nanos"));
-        return Instant.ofEpochSecond(seconds, nanos);
+        return getTimestamp(new TimestampFields(fieldName));
+    }
+
+    public Instant getTimestamp(TimestampFields fields) {
+        return fields.get(message);
     }
 }
@@ -0,0 +1,52 @@
+package com.gotocompany.firehose.sink.blob.message;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.gotocompany.firehose.sink.blob.proto.TimestampMetadataProtoMessage;
+
+import java.time.Instant;
+
+/**
+ * The timestamp field of messages with its seconds and nanos fields, resolved once per message descriptor
+ * instead of per message.
+ */
+public class TimestampFields {
+    private final String fieldName;
+    private volatile Resolved resolved;
+
+    public TimestampFields(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    public Instant get(DynamicMessage message) {
+        Resolved fields = resolve(message.getDescriptorForType());
+        DynamicMessage timestamp = (DynamicMessage) message.getField(fields.timestampField);
+        long seconds = (long) timestamp.getField(fields.secondsField);
+        int nanos = (int) timestamp.getField(fields.nanosField);
+        return Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    private Resolved resolve(Descriptors.Descriptor descriptor) {
+        Resolved fields = resolved;
+        if (fields == null || fields.descriptor != descriptor) {
+            fields = new Resolved(descriptor, descriptor.findFieldByName(fieldName));
+            resolved = fields;
+        }
+        return fields;
+    }
+
+    private static final class Resolved {
+        private final Descriptors.Descriptor descriptor;
+        private final Descriptors.FieldDescriptor timestampField;
+        private final Descriptors.FieldDescriptor secondsField;
+        private final Descriptors.FieldDescriptor nanosField;
+
+        private Resolved(Descriptors.Descriptor descriptor, Descriptors.FieldDescriptor timestampField) {
+            Descriptors.Descriptor timestampDescriptor = timestampField.getMessageType();
+            this.descriptor = descriptor;
+            this.timestampField = timestampField;
+            this.secondsField = timestampDescriptor.findFieldByNumber(TimestampMetadataProtoMessage.SECONDS_FIELD_NUMBER);
+            this.nanosField = timestampDescriptor.findFieldByNumber(TimestampMetadataProtoMessage.NANOS_FIELD_NUMBER);
+        }
+    }
+}
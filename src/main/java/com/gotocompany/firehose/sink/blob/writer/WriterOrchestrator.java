@@ -2,12 +2,21 @@ package com.gotocompany.firehose.sink.blob.writer;
 
 import com.gotocompany.firehose.config.BlobSinkConfig;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.blob.Constants;
 import com.gotocompany.firehose.sink.blob.message.Record;
+import com.gotocompany.firehose.sink.blob.writer.local.KafkaOffsetRanges;
+import com.gotocompany.firehose.sink.blob.writer.local.LocalFileCompactor;
+import com.gotocompany.firehose.sink.blob.writer.local.LocalFileJournal;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileMetadata;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileWriter;
-import com.gotocompany.firehose.sink.blob.writer.local.path.TimePartitionedPathUtils;
+import com.gotocompany.firehose.sink.blob.writer.local.LocalFileWriterFailedException;
+import com.gotocompany.firehose.sink.blob.writer.local.LocalFileWriterKey;
+import com.gotocompany.firehose.sink.blob.writer.local.path.TimePartitionedPathResolver;
+import lombok.AllArgsConstructor;
+import org.apache.kafka.common.TopicPartition;
 import com.gotocompany.firehose.sink.blob.writer.remote.BlobStorageChecker;
 import com.gotocompany.firehose.sink.blob.writer.remote.BlobStorageWriterFutureHandler;
+import com.gotocompany.firehose.sink.blob.writer.remote.UploadConcurrencyController;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
 import com.gotocompany.depot.metrics.StatsDReporter;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileChecker;
@@ -16,62 +25,145 @@ import com.gotocompany.firehose.sink.blob.writer.local.LocalStorage;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * This class manages threads for local and blob storage checking.
  * It provides apis to write records to correct path based on time partitions.
+ * With more than one writer lane, every lane keeps its own writer per time partition and the lanes of a batch
+ * are written in parallel.
+ * <p>
+ * Files are rotated as soon as they are due: the size policy is checked on the write path after every record and
+ * every new file schedules its time based rotation, which is cancelled once the file is closed. Both close the file on
+ * the LocalFileChecker thread.
  * <p>
  * LocalFileChecker: This thread is responsible for rotation of files based on policies.
  * Once a file is written to disk it adds to a queue to be consumed by ObjectStorageChecker.
+ * Its periodic run is a fallback sweep over all open files.
  * <p>
  * ObjectStorageChecker: Reads the Local Files and Writes to given ObjectStorage.
  * After the file is written to blob storage, it adds to to flushedPath queue.
+ * It runs right after a file is rotated and after every upload finishes, besides its periodic run.
+ * The number of upload threads adapts to the upload throughput when its minimum and maximum differ.
+ * <p>
+ * LocalFileCompactor: Optionally merges small closed files of a partition before they are handed to
+ * ObjectStorageChecker. It runs on its own thread after files are closed and on every periodic run, and releases the
+ * files it holds once the local storage budget is exceeded.
+ * <p>
+ * With local file recovery enabled, closed files are journaled until they are uploaded. The closed files a previous
+ * run did not upload are queued for upload on startup, and their records are looked up by kafka offset instead of
+ * being written again. The offsets of the recovered files are indexed by partition and dropped once the file is
+ * uploaded and the partition was read past them.
  */
 public class WriterOrchestrator implements Closeable {
     private static final int FILE_CHECKER_THREAD_INITIAL_DELAY_SECONDS = 10;
     private static final int FILE_CHECKER_THREAD_FREQUENCY_SECONDS = 5;
-    private final Map<Path, LocalFileWriter> timePartitionWriterMap = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService localFileCheckerScheduler = Executors.newScheduledThreadPool(1);
-    private final ScheduledExecutorService objectStorageCheckerScheduler = Executors.newScheduledThreadPool(1);
-    private final ExecutorService remoteUploadScheduler = Executors.newFixedThreadPool(10);
+    private final Map<LocalFileWriterKey, LocalFileWriter> timePartitionWriterMap = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor localFileCheckerScheduler = new ScheduledThreadPoolExecutor(1);
+    private final ScheduledThreadPoolExecutor objectStorageCheckerScheduler = new ScheduledThreadPoolExecutor(1);
+    private final ThreadPoolExecutor remoteUploadScheduler;
     private final BlockingQueue<String> flushedToRemotePaths = new LinkedBlockingQueue<>();
     private final LocalStorage localStorage;
     private final WriterOrchestratorStatus writerOrchestratorStatus;
     private final BlobSinkConfig sinkConfig;
+    private final TimePartitionedPathResolver pathResolver;
+    private final int laneCount;
+    private final ExecutorService laneWriterPool;
+    private final LocalFileChecker localFileChecker;
+    private final BlobStorageChecker blobStorageChecker;
+    private final LocalFileJournal localFileJournal;
+    private final LocalFileCompactor localFileCompactor;
+    private final ExecutorService localFileCompactionExecutor;
+    private final Map<String, Map<Integer, NavigableMap<Long, RecoveredRun>>> recoveredRuns = new HashMap<>();
+    private final Set<String> recoveredFiles = ConcurrentHashMap.newKeySet();
+    private final Set<String> uploadedRecoveredFiles = ConcurrentHashMap.newKeySet();
 
     public WriterOrchestrator(BlobSinkConfig sinkConfig, LocalStorage localStorage, BlobStorage blobStorage, StatsDReporter statsDReporter) {
         this.localStorage = localStorage;
         this.sinkConfig = sinkConfig;
+        this.pathResolver = new TimePartitionedPathResolver(sinkConfig);
+        this.laneCount = Math.max(1, sinkConfig.getLocalFileWriterLanes());
+        this.laneWriterPool = laneCount > 1 ? Executors.newFixedThreadPool(laneCount) : null;
+        this.localFileCheckerScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.localFileCheckerScheduler.setRemoveOnCancelPolicy(true);
+        this.objectStorageCheckerScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        int maxUploadThreads = Math.max(1, sinkConfig.getRemoteUploadThreadsMax());
+        int minUploadThreads = Math.max(1, Math.min(maxUploadThreads, sinkConfig.getRemoteUploadThreadsMin()));
+        this.remoteUploadScheduler = new ThreadPoolExecutor(minUploadThreads, maxUploadThreads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                triggerObjectStorageCheck();
+            }
+        };
         BlockingQueue<LocalFileMetadata> toBeFlushedToRemotePaths = new LinkedBlockingQueue<>();
+        this.localFileJournal = openLocalFileJournal(sinkConfig);
+        if (localFileJournal != null) {
+            for (LocalFileJournal.RecoveredLocalFile recoveredFile : localFileJournal.getRecoveredFiles()) {
+                indexRecoveredFile(recoveredFile.getMetadata().getFullPath(), recoveredFile.getOffsetRanges());
+                localStorage.trackClosedLocalFile(recoveredFile.getMetadata());
+                toBeFlushedToRemotePaths.add(recoveredFile.getMetadata());
+            }
+        }
+        BlockingQueue<LocalFileMetadata> closedLocalFiles = toBeFlushedToRemotePaths;
+        if (sinkConfig.getLocalFileCompactionEnable()) {
+            closedLocalFiles = new LinkedBlockingQueue<>();
+            this.localFileCompactor = new LocalFileCompactor(closedLocalFiles, toBeFlushedToRemotePaths, localStorage, sinkConfig,
+                    new FirehoseInstrumentation(statsDReporter, LocalFileCompactor.class), localFileJournal);
+            this.localFileCompactionExecutor = Executors.newSingleThreadExecutor();
+        } else {
+            this.localFileCompactor = null;
+            this.localFileCompactionExecutor = null;
+        }
+        this.localFileChecker = new LocalFileChecker(
+                closedLocalFiles,
+                timePartitionWriterMap,
+                localStorage, new FirehoseInstrumentation(statsDReporter, LocalFileChecker.class),
+                localFileJournal);
         ScheduledFuture<?> localWriterFuture = localFileCheckerScheduler.scheduleAtFixedRate(
-                new LocalFileChecker(
-                        toBeFlushedToRemotePaths,
-                        timePartitionWriterMap,
-                        localStorage, new FirehoseInstrumentation(statsDReporter, LocalFileChecker.class)),
+                () -> {
+                    localFileChecker.run();
+                    compactAndTriggerObjectStorageCheck();
+                },
                 FILE_CHECKER_THREAD_INITIAL_DELAY_SECONDS,
                 FILE_CHECKER_THREAD_FREQUENCY_SECONDS,
                 TimeUnit.SECONDS);
 
         Set<BlobStorageWriterFutureHandler> remoteUploadFutures = new HashSet<>();
+        UploadConcurrencyController uploadConcurrencyController = minUploadThreads < maxUploadThreads
+                ? new UploadConcurrencyController(remoteUploadScheduler, minUploadThreads, maxUploadThreads, System.currentTimeMillis())
+                : null;
+        this.blobStorageChecker = new BlobStorageChecker(
+                toBeFlushedToRemotePaths,
+                flushedToRemotePaths,
+                remoteUploadFutures,
+                remoteUploadScheduler,
+                blobStorage,
+                new FirehoseInstrumentation(statsDReporter, BlobStorageChecker.class),
+                uploadConcurrencyController);
         ScheduledFuture<?> objectStorageWriterFuture = objectStorageCheckerScheduler.scheduleWithFixedDelay(
-                new BlobStorageChecker(
-                        toBeFlushedToRemotePaths,
-                        flushedToRemotePaths,
-                        remoteUploadFutures,
-                        remoteUploadScheduler,
-                        blobStorage,
-                        new FirehoseInstrumentation(statsDReporter, BlobStorageChecker.class)),
+                blobStorageChecker,
                 FILE_CHECKER_THREAD_INITIAL_DELAY_SECONDS,
                 FILE_CHECKER_THREAD_FREQUENCY_SECONDS,
                 TimeUnit.SECONDS);
@@ -80,17 +172,124 @@ public class WriterOrchestrator implements Closeable {
         writerOrchestratorStatus.startCheckers();
     }
 
+    private void indexRecoveredFile(String path, KafkaOffsetRanges offsetRanges) {
+        recoveredFiles.add(path);
+        for (Map.Entry<TopicPartition, List<long[]>> partitionRuns : offsetRanges.getRuns().entrySet()) {
+            NavigableMap<Long, RecoveredRun> runs = recoveredRuns
+                    .computeIfAbsent(partitionRuns.getKey().topic(), topic -> new HashMap<>())
+                    .computeIfAbsent(partitionRuns.getKey().partition(), partition -> new TreeMap<>());
+            for (long[] run : partitionRuns.getValue()) {
+                runs.putIfAbsent(run[0], new RecoveredRun(path, run[1]));
+            }
+        }
+    }
+
+    private static LocalFileJournal openLocalFileJournal(BlobSinkConfig sinkConfig) {
+        if (!sinkConfig.getLocalFileRecoveryEnable() || sinkConfig.getLocalFileWriterType() != Constants.WriterType.PARQUET) {
+            return null;
+        }
+        try {
+            return LocalFileJournal.open(sinkConfig.getLocalDirectory());
+        } catch (IOException e) {
+            throw new LocalFileWriterFailedException(e);
+        }
+    }
+
     /**
      * @return Return all paths which are flushed to remote and drain the list.
+     * A merged file is returned together with the files merged into it.
      * It also cleans up local paths from the disk.
      */
     public Set<String> getFlushedPaths() {
         Set<String> flushedPaths = new HashSet<>();
         flushedToRemotePaths.drainTo(flushedPaths);
+        return cleanUpFlushedPaths(flushedPaths);
+    }
+
+    /**
+     * Waits until a file is flushed to remote, then returns as {@link #getFlushedPaths()} does.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return paths flushed to remote, empty if none was flushed before the timeout.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Set<String> awaitFlushedPaths(long timeoutMillis) throws InterruptedException {
+        String flushedPath = flushedToRemotePaths.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (flushedPath == null) {
+            return new HashSet<>();
+        }
+        Set<String> flushedPaths = new HashSet<>();
+        flushedPaths.add(flushedPath);
+        flushedToRemotePaths.drainTo(flushedPaths);
+        return cleanUpFlushedPaths(flushedPaths);
+    }
+
+    private Set<String> cleanUpFlushedPaths(Set<String> flushedPaths) {
         flushedPaths.forEach(localStorage::deleteLocalFile);
+        if (localFileJournal != null) {
+            for (String flushedPath : flushedPaths) {
+                try {
+                    localFileJournal.uploaded(flushedPath);
+                } catch (IOException e) {
+                    throw new LocalFileWriterFailedException(e);
+                }
+                if (recoveredFiles.remove(flushedPath)) {
+                    uploadedRecoveredFiles.add(flushedPath);
+                }
+            }
+        }
+        if (localFileCompactor != null) {
+            return localFileCompactor.expandMergedPaths(flushedPaths);
+        }
         return flushedPaths;
     }
 
+    /**
+     * Called by the consumer thread for every message, with the messages of a partition in offset order.
+     * Runs of offsets of uploaded files which the partition was read past are dropped, a rewind over them after a
+     * rebalance writes their records again.
+     *
+     * @param topic     topic of the kafka message
+     * @param partition partition of the kafka message
+     * @param offset    offset of the kafka message
+     * @return path of the file recovered on startup which holds the kafka message, null if none does.
+     */
+    public String getRecoveredFilePath(String topic, int partition, long offset) {
+        if (recoveredRuns.isEmpty()) {
+            return null;
+        }
+        Map<Integer, NavigableMap<Long, RecoveredRun>> topicRuns = recoveredRuns.get(topic);
+        NavigableMap<Long, RecoveredRun> partitionRuns = topicRuns == null ? null : topicRuns.get(partition);
+        if (partitionRuns == null) {
+            return null;
+        }
+        Iterator<RecoveredRun> runs = partitionRuns.values().iterator();
+        while (runs.hasNext()) {
+            RecoveredRun run = runs.next();
+            if (run.lastOffset >= offset || !uploadedRecoveredFiles.contains(run.path)) {
+                break;
+            }
+            runs.remove();
+        }
+        if (partitionRuns.isEmpty()) {
+            topicRuns.remove(partition);
+            if (topicRuns.isEmpty()) {
+                recoveredRuns.remove(topic);
+            }
+            return null;
+        }
+        Map.Entry<Long, RecoveredRun> run = partitionRuns.floorEntry(offset);
+        return run != null && offset <= run.getValue().lastOffset ? run.getValue().path : null;
+    }
+
+    /**
+     * @param path path of a file recovered on startup
+     * @return true if the file was uploaded and already returned by {@link #getFlushedPaths()}.
+     */
+    public boolean isRecoveredFileUploaded(String path) {
+        return uploadedRecoveredFiles.contains(path);
+    }
+
     private void checkStatus() throws Exception {
         if (writerOrchestratorStatus.isClosed()) {
             throw new IOException(writerOrchestratorStatus.getThrowable());
@@ -106,26 +305,165 @@ public class WriterOrchestrator implements Closeable {
      */
     public String write(Record record) throws Exception {
         checkStatus();
-        Path timePartitionedPath = TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig);
-        return write(record, timePartitionedPath);
+        return write(record, 0);
+    }
+
+    /**
+     * @return true if the local files waiting for their upload exceed the local disk budget,
+     * or the in memory files reach the memory cap.
+     * @throws Exception if the writer orchestrator is closed.
+     */
+    public boolean isLocalStorageBudgetExceeded() throws Exception {
+        checkStatus();
+        if (!localStorage.isBudgetExceeded()) {
+            return false;
+        }
+        if (localFileCompactor != null) {
+            localFileCompactor.releaseHeldFiles();
+            compactAndTriggerObjectStorageCheck();
+        }
+        return true;
     }
 
     /**
-     * Tries to fetch writer from the map, if the writer is closed, try recursive method call.
+     * @return the number of writer lanes, each with its own open file per time partition.
+     */
+    public int getLaneCount() {
+        return laneCount;
+    }
+
+    /**
+     * Writes the records of every lane in parallel, the records of a lane one after another in the given order.
+     *
+     * @param records records to be written
+     * @param lanes   lane of each record, between 0 and {@link #getLaneCount()} exclusive
+     * @return Local path where each record was stored, in the order of the records.
+     * @throws Exception if local storage fails or writer orchestrator is closed.
+     */
+    public List<String> write(List<Record> records, List<Integer> lanes) throws Exception {
+        checkStatus();
+        String[] paths = new String[records.size()];
+        Map<Integer, List<Integer>> laneToRecordIndexes = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            laneToRecordIndexes.computeIfAbsent(lanes.get(i), lane -> new ArrayList<>()).add(i);
+        }
+        if (laneWriterPool == null || laneToRecordIndexes.size() == 1) {
+            for (Map.Entry<Integer, List<Integer>> laneRecords : laneToRecordIndexes.entrySet()) {
+                writeLane(records, laneRecords.getKey(), laneRecords.getValue(), paths);
+            }
+            return Arrays.asList(paths);
+        }
+        List<Future<?>> laneFutures = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> laneRecords : laneToRecordIndexes.entrySet()) {
+            laneFutures.add(laneWriterPool.submit(() -> {
+                writeLane(records, laneRecords.getKey(), laneRecords.getValue(), paths);
+                return null;
+            }));
+        }
+        for (Future<?> laneFuture : laneFutures) {
+            try {
+                laneFuture.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        return Arrays.asList(paths);
+    }
+
+    private void writeLane(List<Record> records, int lane, List<Integer> recordIndexes, String[] paths) throws IOException {
+        for (int index : recordIndexes) {
+            paths[index] = write(records.get(index), lane);
+        }
+    }
+
+    /**
+     * Tries to fetch writer of the partition and lane from the map, if the writer is closed, try again with a new one.
+     * A writer which is due for rotation after the write is removed from the map and closed on the local file checker thread.
      *
-     * @param record              record to write
-     * @param timePartitionedPath partition for the file path
+     * @param record record to write
+     * @param lane   writer lane of the record
      * @return full path of file.
      * @throws IOException if local storage fails.
      */
-    private String write(Record record, Path timePartitionedPath) throws IOException {
-        LocalFileWriter writer = timePartitionWriterMap.computeIfAbsent(
-                timePartitionedPath,
-                x -> localStorage.createLocalFileWriter(timePartitionedPath));
-        if (!writer.write(record)) {
-            return write(record, timePartitionedPath);
+    private String write(Record record, int lane) throws IOException {
+        Path timePartitionedPath = pathResolver.resolve(record);
+        LocalFileWriterKey writerKey = new LocalFileWriterKey(timePartitionedPath, lane);
+        while (true) {
+            LocalFileWriter writer = timePartitionWriterMap.computeIfAbsent(
+                    writerKey,
+                    x -> createLocalFileWriter(writerKey));
+            if (writer.write(record)) {
+                if (localStorage.shouldRotate(writer) && timePartitionWriterMap.remove(writerKey, writer)) {
+                    localStorage.closing(writer);
+                    runOnLocalFileChecker(() -> {
+                        localFileChecker.closeAndQueue(writer);
+                        compactAndTriggerObjectStorageCheck();
+                    });
+                }
+                return writer.getFullPath();
+            }
+        }
+    }
+
+    private LocalFileWriter createLocalFileWriter(LocalFileWriterKey writerKey) {
+        LocalFileWriter writer = localStorage.createLocalFileWriter(writerKey.getPartitionPath());
+        long rotationDurationMs = sinkConfig.getLocalFileRotationDurationMS();
+        if (rotationDurationMs > 0) {
+            ScheduledFuture<?> rotationTimer = localFileCheckerScheduler.schedule(() -> runChecked(() -> {
+                if (localFileChecker.rotate(writerKey, writer)) {
+                    compactAndTriggerObjectStorageCheck();
+                }
+            }), rotationDurationMs, TimeUnit.MILLISECONDS);
+            localFileChecker.setRotationTimer(writer, rotationTimer);
+        }
+        return writer;
+    }
+
+    private void runOnLocalFileChecker(Runnable task) {
+        try {
+            localFileCheckerScheduler.execute(() -> runChecked(task));
+        } catch (RejectedExecutionException ignored) {
+            // the checkers only reject tasks once the orchestrator is closing
+        }
+    }
+
+    /**
+     * Runs after files were closed, the compaction runs on its own thread and then triggers the upload.
+     */
+    private void compactAndTriggerObjectStorageCheck() {
+        if (localFileCompactor == null) {
+            triggerObjectStorageCheck();
+            return;
+        }
+        try {
+            localFileCompactionExecutor.execute(() -> runChecked(() -> {
+                localFileCompactor.run();
+                triggerObjectStorageCheck();
+            }));
+        } catch (RejectedExecutionException ignored) {
+            // the checkers only reject tasks once the orchestrator is closing
+        }
+    }
+
+    private void triggerObjectStorageCheck() {
+        try {
+            objectStorageCheckerScheduler.execute(() -> runChecked(blobStorageChecker));
+        } catch (RejectedExecutionException ignored) {
+            // the checkers only reject tasks once the orchestrator is closing
+        }
+    }
+
+    /**
+     * Runs a task off the periodic checkers, closing the orchestrator on failure as a failed checker does.
+     */
+    private void runChecked(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            writerOrchestratorStatus.setThrowable(e);
+            writerOrchestratorStatus.setClosed(true);
+            throw e;
         }
-        return writer.getMetadata().getFullPath();
     }
 
     @Override
@@ -133,6 +471,12 @@ public class WriterOrchestrator implements Closeable {
         localFileCheckerScheduler.shutdown();
         objectStorageCheckerScheduler.shutdown();
         remoteUploadScheduler.shutdown();
+        if (laneWriterPool != null) {
+            laneWriterPool.shutdown();
+        }
+        if (localFileCompactionExecutor != null) {
+            localFileCompactionExecutor.shutdown();
+        }
         writerOrchestratorStatus.setClosed(true);
         writerOrchestratorStatus.close();
         for (LocalFileWriter writer : timePartitionWriterMap.values()) {
@@ -141,5 +485,14 @@ public class WriterOrchestrator implements Closeable {
         for (LocalFileWriter p : timePartitionWriterMap.values()) {
             localStorage.deleteLocalFile(p.getMetadata().getFullPath());
         }
+        if (localFileJournal != null) {
+            localFileJournal.close();
+        }
+    }
+
+    @AllArgsConstructor
+    private static class RecoveredRun {
+        private final String path;
+        private final long lastOffset;
     }
 }
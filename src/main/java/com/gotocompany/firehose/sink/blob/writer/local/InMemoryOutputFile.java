@@ -0,0 +1,83 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Parquet output file kept in a heap buffer, so a file can be encoded and uploaded without touching the disk.
+ */
+final class InMemoryOutputFile implements OutputFile {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) {
+        return new InMemoryPositionOutputStream();
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+        size = 0;
+        return new InMemoryPositionOutputStream();
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+        return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+        return 0;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the bytes written so far, the buffer is released afterwards.
+     */
+    byte[] release() {
+        byte[] content = Arrays.copyOf(buffer, size);
+        buffer = new byte[0];
+        size = 0;
+        return content;
+    }
+
+    private void ensureCapacity(int extra) throws IOException {
+        long required = (long) size + extra;
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("in memory file cannot grow beyond " + Integer.MAX_VALUE + " bytes");
+        }
+        if (required > buffer.length) {
+            long grown = Math.max(required, (long) buffer.length * 2);
+            buffer = Arrays.copyOf(buffer, (int) Math.min(grown, Integer.MAX_VALUE));
+        }
+    }
+
+    private class InMemoryPositionOutputStream extends PositionOutputStream {
+        @Override
+        public long getPos() {
+            return size;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import com.google.protobuf.Descriptors;
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.sink.blob.message.Record;
+import org.apache.parquet.hadoop.ParquetWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parquet file writer which encodes into a heap buffer instead of a local file.
+ * The encoded bytes are handed over in the metadata returned on close and uploaded from memory.
+ * The full path only identifies the file, nothing is written to it.
+ */
+public class InMemoryParquetFileWriter implements LocalFileWriter {
+
+    private final ParquetWriter<Object> parquetWriter;
+    private final InMemoryOutputFile outputFile;
+    private final long createdTimestampMillis;
+    private final String fullPath;
+    private final String basePath;
+    private final BlobSinkConfig sinkConfig;
+    private final LocalFileMemoryBudget memoryBudget;
+    private long recordCount = 0;
+    private volatile long lastDataSize = 0;
+    private boolean isClosed = false;
+
+    public InMemoryParquetFileWriter(long createdTimestampMillis, String basePath, String fullPath, BlobSinkConfig sinkConfig,
+                                     Descriptors.Descriptor messageDescriptor, List<Descriptors.FieldDescriptor> metadataFieldDescriptor,
+                                     LocalFileMemoryBudget memoryBudget) throws IOException {
+        this.outputFile = new InMemoryOutputFile();
+        this.parquetWriter = ProtoParquetWriterBuilder.build(outputFile, sinkConfig, messageDescriptor, metadataFieldDescriptor);
+        this.createdTimestampMillis = createdTimestampMillis;
+        this.fullPath = fullPath;
+        this.basePath = basePath;
+        this.sinkConfig = sinkConfig;
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public String getFullPath() {
+        return fullPath;
+    }
+
+    @Override
+    public long getCreatedTimestampMillis() {
+        return createdTimestampMillis;
+    }
+
+    @Override
+    public long getLastDataSize() {
+        return lastDataSize;
+    }
+
+    @Override
+    public LocalFileMetadata getMetadata() {
+        return new LocalFileMetadata(
+                basePath,
+                fullPath,
+                createdTimestampMillis,
+                recordCount,
+                parquetWriter.getDataSize());
+    }
+
+    @Override
+    public synchronized boolean write(Record record) throws IOException {
+        if (isClosed) {
+            return false;
+        }
+        if (sinkConfig.getOutputIncludeKafkaMetadataEnable()) {
+            parquetWriter.write(Arrays.asList(record.getMessage(), record.getMetadata()));
+        } else {
+            parquetWriter.write(record.getMessage());
+        }
+        recordCount++;
+        if (recordCount % SIZE_CHECK_INTERVAL_RECORDS == 1) {
+            lastDataSize = parquetWriter.getDataSize();
+            memoryBudget.update(fullPath, lastDataSize);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        this.isClosed = true;
+        parquetWriter.close();
+    }
+
+    @Override
+    public synchronized LocalFileMetadata closeAndFetchMetaData() throws IOException {
+        this.close();
+        byte[] content = outputFile.release();
+        memoryBudget.update(fullPath, content.length);
+        return new LocalFileMetadata(basePath, fullPath, createdTimestampMillis, recordCount, content.length, content);
+    }
+}
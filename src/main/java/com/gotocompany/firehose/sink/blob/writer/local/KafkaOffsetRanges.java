@@ -0,0 +1,124 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kafka offsets of the records in a local file, kept as runs of consecutive offsets per topic partition.
+ * Records of a partition mostly arrive in offset order, so a file usually holds a single run per partition.
+ * Instances are not thread safe.
+ */
+public class KafkaOffsetRanges {
+    private static final String PARTITION_SEPARATOR = ";";
+    private static final String FIELD_SEPARATOR = ":";
+    private static final String RUN_SEPARATOR = ",";
+    private static final String OFFSET_SEPARATOR = "-";
+
+    private final Map<TopicPartition, List<long[]>> runs = new LinkedHashMap<>();
+
+    public void add(String topic, int partition, long offset) {
+        List<long[]> partitionRuns = runs.computeIfAbsent(new TopicPartition(topic, partition), tp -> new ArrayList<>());
+        if (!partitionRuns.isEmpty()) {
+            long[] last = partitionRuns.get(partitionRuns.size() - 1);
+            if (last[1] + 1 == offset) {
+                last[1] = offset;
+                return;
+            }
+            if (contains(partitionRuns, offset)) {
+                return;
+            }
+        }
+        partitionRuns.add(new long[]{offset, offset});
+    }
+
+    /**
+     * Adds the runs of other ranges, as when their files are merged.
+     *
+     * @param other ranges to add
+     */
+    public void addAll(KafkaOffsetRanges other) {
+        for (Map.Entry<TopicPartition, List<long[]>> entry : other.runs.entrySet()) {
+            List<long[]> partitionRuns = runs.computeIfAbsent(entry.getKey(), tp -> new ArrayList<>());
+            for (long[] run : entry.getValue()) {
+                long[] last = partitionRuns.isEmpty() ? null : partitionRuns.get(partitionRuns.size() - 1);
+                if (last != null && last[1] + 1 == run[0]) {
+                    last[1] = run[1];
+                } else {
+                    partitionRuns.add(new long[]{run[0], run[1]});
+                }
+            }
+        }
+    }
+
+    public boolean contains(String topic, int partition, long offset) {
+        List<long[]> partitionRuns = runs.get(new TopicPartition(topic, partition));
+        return partitionRuns != null && contains(partitionRuns, offset);
+    }
+
+    public boolean isEmpty() {
+        return runs.isEmpty();
+    }
+
+    /**
+     * @return the runs of every topic partition, each run as its first and last offset
+     */
+    public Map<TopicPartition, List<long[]>> getRuns() {
+        return Collections.unmodifiableMap(runs);
+    }
+
+    private static boolean contains(List<long[]> partitionRuns, long offset) {
+        for (long[] run : partitionRuns) {
+            if (run[0] <= offset && offset <= run[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the ranges as {@code topic:partition:from-to,from-to;topic:partition:from-to}
+     */
+    public String encode() {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<TopicPartition, List<long[]>> entry : runs.entrySet()) {
+            if (encoded.length() > 0) {
+                encoded.append(PARTITION_SEPARATOR);
+            }
+            encoded.append(entry.getKey().topic()).append(FIELD_SEPARATOR).append(entry.getKey().partition()).append(FIELD_SEPARATOR);
+            List<long[]> partitionRuns = entry.getValue();
+            for (int i = 0; i < partitionRuns.size(); i++) {
+                if (i > 0) {
+                    encoded.append(RUN_SEPARATOR);
+                }
+                encoded.append(partitionRuns.get(i)[0]).append(OFFSET_SEPARATOR).append(partitionRuns.get(i)[1]);
+            }
+        }
+        return encoded.toString();
+    }
+
+    public static KafkaOffsetRanges decode(String encoded) {
+        KafkaOffsetRanges ranges = new KafkaOffsetRanges();
+        if (encoded.isEmpty()) {
+            return ranges;
+        }
+        for (String partitionRanges : encoded.split(PARTITION_SEPARATOR)) {
+            int runsStart = partitionRanges.lastIndexOf(FIELD_SEPARATOR);
+            int partitionStart = partitionRanges.lastIndexOf(FIELD_SEPARATOR, runsStart - 1);
+            TopicPartition topicPartition = new TopicPartition(
+                    partitionRanges.substring(0, partitionStart),
+                    Integer.parseInt(partitionRanges.substring(partitionStart + 1, runsStart)));
+            List<long[]> partitionRuns = new ArrayList<>();
+            for (String run : partitionRanges.substring(runsStart + 1).split(RUN_SEPARATOR)) {
+                int separator = run.indexOf(OFFSET_SEPARATOR);
+                partitionRuns.add(new long[]{Long.parseLong(run.substring(0, separator)), Long.parseLong(run.substring(separator + 1))});
+            }
+            ranges.runs.put(topicPartition, partitionRuns);
+        }
+        return ranges;
+    }
+}
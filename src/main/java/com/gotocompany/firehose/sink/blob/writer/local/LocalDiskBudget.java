@@ -0,0 +1,60 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the local files on disk which are closed and waiting for their upload, from closing until deletion.
+ * A limit of 0 or less disables the limit. Changes are synchronized, so replacing merged files is seen at once.
+ */
+public class LocalDiskBudget {
+    private final long maxBytes;
+    private final int maxFiles;
+    private final Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public LocalDiskBudget(long maxBytes, int maxFiles) {
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    public synchronized void add(String fullPath, long size) {
+        Long previous = fileSizes.put(fullPath, size);
+        usedBytes.addAndGet(size - (previous == null ? 0 : previous));
+    }
+
+    /**
+     * Counts a merged file in place of its inputs.
+     *
+     * @param inputPaths full paths of the files merged
+     * @param fullPath   full path of the merged file
+     * @param size       size of the merged file
+     */
+    public synchronized void replace(List<String> inputPaths, String fullPath, long size) {
+        for (String inputPath : inputPaths) {
+            release(inputPath);
+        }
+        add(fullPath, size);
+    }
+
+    public synchronized void release(String fullPath) {
+        Long previous = fileSizes.remove(fullPath);
+        if (previous != null) {
+            usedBytes.addAndGet(-previous);
+        }
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public int getFileCount() {
+        return fileSizes.size();
+    }
+
+    public synchronized boolean isExceeded() {
+        return (maxBytes > 0 && usedBytes.get() > maxBytes) || (maxFiles > 0 && fileSizes.size() > maxFiles);
+    }
+}
@@ -5,52 +5,112 @@ import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.metrics.Metrics;
 
 import java.io.IOException;
-import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.stream.Collectors;
 
 public class LocalFileChecker implements Runnable {
     private final Queue<LocalFileMetadata> toBeFlushedToRemotePaths;
-    private final Map<Path, LocalFileWriter> timePartitionWriterMap;
+    private final Map<LocalFileWriterKey, LocalFileWriter> timePartitionWriterMap;
     private final LocalStorage localStorage;
     private final FirehoseInstrumentation firehoseInstrumentation;
-
+    private final LocalFileJournal localFileJournal;
+    private final Map<LocalFileWriter, ScheduledFuture<?>> rotationTimers = new ConcurrentHashMap<>();
 
     public LocalFileChecker(Queue<LocalFileMetadata> toBeFlushedToRemotePaths,
-                            Map<Path, LocalFileWriter> timePartitionWriterMap,
+                            Map<LocalFileWriterKey, LocalFileWriter> timePartitionWriterMap,
                             LocalStorage localStorage,
                             FirehoseInstrumentation firehoseInstrumentation) {
+        this(toBeFlushedToRemotePaths, timePartitionWriterMap, localStorage, firehoseInstrumentation, null);
+    }
+
+    /**
+     * @param localFileJournal journal of the closed files, null if closed files are not recovered after a restart
+     */
+    public LocalFileChecker(Queue<LocalFileMetadata> toBeFlushedToRemotePaths,
+                            Map<LocalFileWriterKey, LocalFileWriter> timePartitionWriterMap,
+                            LocalStorage localStorage,
+                            FirehoseInstrumentation firehoseInstrumentation,
+                            LocalFileJournal localFileJournal) {
         this.toBeFlushedToRemotePaths = toBeFlushedToRemotePaths;
         this.timePartitionWriterMap = timePartitionWriterMap;
         this.localStorage = localStorage;
         this.firehoseInstrumentation = firehoseInstrumentation;
+        this.localFileJournal = localFileJournal;
     }
 
+    /**
+     * Sweeps all open writers and rotates the ones due by policy or by the memory cap.
+     * Size and time based rotation is normally triggered earlier, by the write path and the rotation timer.
+     */
     @Override
     public void run() {
         firehoseInstrumentation.captureValue(BlobStorageMetrics.LOCAL_FILE_OPEN_TOTAL, timePartitionWriterMap.size());
-        Map<Path, LocalFileWriter> toBeRotated =
+        Map<LocalFileWriterKey, LocalFileWriter> toBeRotated =
                 timePartitionWriterMap.entrySet().stream().filter(kv -> localStorage.shouldRotate(kv.getValue()))
                         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-        timePartitionWriterMap.entrySet().removeAll(toBeRotated.entrySet());
-        toBeRotated.forEach((path, writer) -> {
-            try {
-                Instant startTime = Instant.now();
-                LocalFileMetadata metadata = writer.closeAndFetchMetaData();
-                firehoseInstrumentation.logInfo("Closing Local File {} ", metadata.getFullPath());
-                toBeFlushedToRemotePaths.add(metadata);
-                captureFileClosedSuccessMetric(startTime, metadata);
-            } catch (IOException e) {
-                e.printStackTrace();
-                captureFileCloseFailedMetric();
-                throw new LocalFileWriterFailedException(e);
-            }
-        });
+        toBeRotated.forEach(this::rotate);
         firehoseInstrumentation.captureValue(BlobStorageMetrics.LOCAL_FILE_OPEN_TOTAL, timePartitionWriterMap.size());
     }
 
+    /**
+     * Closes the writer and queues its file for upload, unless it was already rotated.
+     *
+     * @param key    key of the writer
+     * @param writer writer to rotate
+     * @return true if the writer was rotated by this call
+     */
+    public boolean rotate(LocalFileWriterKey key, LocalFileWriter writer) {
+        if (timePartitionWriterMap.remove(key, writer)) {
+            localStorage.closing(writer);
+            closeAndQueue(writer);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registers the timer of the time based rotation of a writer, it is cancelled once the writer is closed.
+     *
+     * @param writer        writer to rotate
+     * @param rotationTimer scheduled rotation of the writer
+     */
+    public void setRotationTimer(LocalFileWriter writer, ScheduledFuture<?> rotationTimer) {
+        rotationTimers.put(writer, rotationTimer);
+    }
+
+    /**
+     * Closes a writer already removed from the writer map and queues its file for upload.
+     * With a journal, the file is journaled before it is queued.
+     *
+     * @param writer writer to close
+     */
+    public void closeAndQueue(LocalFileWriter writer) {
+        ScheduledFuture<?> rotationTimer = rotationTimers.remove(writer);
+        if (rotationTimer != null) {
+            rotationTimer.cancel(false);
+        }
+        try {
+            Instant startTime = Instant.now();
+            LocalFileMetadata metadata = writer.closeAndFetchMetaData();
+            firehoseInstrumentation.logInfo("Closing Local File {} ", metadata.getFullPath());
+            KafkaOffsetRanges offsetRanges = writer.getOffsetRanges();
+            if (localFileJournal != null && offsetRanges != null) {
+                localFileJournal.closed(metadata, offsetRanges);
+            }
+            localStorage.trackClosedLocalFile(metadata);
+            toBeFlushedToRemotePaths.add(metadata);
+            captureFileClosedSuccessMetric(startTime, metadata);
+        } catch (IOException e) {
+            e.printStackTrace();
+            captureFileCloseFailedMetric();
+            throw new LocalFileWriterFailedException(e);
+        }
+    }
+
     private void captureFileClosedSuccessMetric(Instant startTime, LocalFileMetadata localFileMetadata) {
         firehoseInstrumentation.incrementCounter(BlobStorageMetrics.LOCAL_FILE_CLOSE_TOTAL, Metrics.SUCCESS_TAG);
         firehoseInstrumentation.captureDurationSince(BlobStorageMetrics.LOCAL_FILE_CLOSING_TIME_MILLISECONDS, startTime);
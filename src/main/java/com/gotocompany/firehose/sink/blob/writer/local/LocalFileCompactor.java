@@ -0,0 +1,205 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.metrics.BlobStorageMetrics;
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.metadata.FileMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.hadoop.util.HadoopOutputFile;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Merges small closed local files of the same partition into one parquet file before their upload.
+ * <p>
+ * Closed files smaller than the target size are held per partition directory, until their total size reaches the
+ * target size, the first of them waited for the maximum wait, or the local storage budget is exceeded. The held files
+ * are then merged by appending their row groups to a new file, without decoding the records, and the merged file is
+ * queued for upload in their place. The merged file is synced and journaled in place of its inputs, which are then
+ * deleted. The merged file stands for all of its inputs, so the offsets of every input are committed with it once it
+ * is uploaded. Files held in memory are queued as they are.
+ * <p>
+ * Runs on its own thread only, so merges do not hold up the rotation of files.
+ */
+public class LocalFileCompactor implements Runnable {
+    private static final int NO_PADDING = 0;
+
+    private final Queue<LocalFileMetadata> closedLocalFiles;
+    private final Queue<LocalFileMetadata> toBeFlushedToRemotePaths;
+    private final LocalStorage localStorage;
+    private final BlobSinkConfig sinkConfig;
+    private final FirehoseInstrumentation firehoseInstrumentation;
+    private final LocalFileJournal localFileJournal;
+    private final Map<Path, HeldFiles> heldFiles = new HashMap<>();
+    private final Map<String, List<String>> mergedInputs = new ConcurrentHashMap<>();
+    private volatile boolean releaseRequested;
+
+    public LocalFileCompactor(Queue<LocalFileMetadata> closedLocalFiles,
+                              Queue<LocalFileMetadata> toBeFlushedToRemotePaths,
+                              LocalStorage localStorage,
+                              BlobSinkConfig sinkConfig,
+                              FirehoseInstrumentation firehoseInstrumentation) {
+        this(closedLocalFiles, toBeFlushedToRemotePaths, localStorage, sinkConfig, firehoseInstrumentation, null);
+    }
+
+    /**
+     * @param localFileJournal journal of the closed files, null if closed files are not recovered after a restart
+     */
+    public LocalFileCompactor(Queue<LocalFileMetadata> closedLocalFiles,
+                              Queue<LocalFileMetadata> toBeFlushedToRemotePaths,
+                              LocalStorage localStorage,
+                              BlobSinkConfig sinkConfig,
+                              FirehoseInstrumentation firehoseInstrumentation,
+                              LocalFileJournal localFileJournal) {
+        this.closedLocalFiles = closedLocalFiles;
+        this.toBeFlushedToRemotePaths = toBeFlushedToRemotePaths;
+        this.localStorage = localStorage;
+        this.sinkConfig = sinkConfig;
+        this.firehoseInstrumentation = firehoseInstrumentation;
+        this.localFileJournal = localFileJournal;
+    }
+
+    /**
+     * Makes the next run release all held files without waiting, so they can be uploaded and free the local storage.
+     */
+    public void releaseHeldFiles() {
+        releaseRequested = true;
+    }
+
+    /**
+     * Holds the newly closed small files and queues the files which are due, merged when there is more than one.
+     */
+    @Override
+    public void run() {
+        boolean releaseAll = releaseRequested;
+        releaseRequested = false;
+        long nowMillis = System.currentTimeMillis();
+        long targetSizeBytes = sinkConfig.getLocalFileCompactionTargetSizeBytes();
+        LocalFileMetadata metadata;
+        while ((metadata = closedLocalFiles.poll()) != null) {
+            if (metadata.isInMemory() || metadata.getSize() >= targetSizeBytes) {
+                toBeFlushedToRemotePaths.add(metadata);
+                continue;
+            }
+            Path partitionPath = Paths.get(metadata.getFullPath()).getParent();
+            HeldFiles partitionFiles = heldFiles.computeIfAbsent(partitionPath, path -> new HeldFiles(nowMillis));
+            partitionFiles.add(metadata);
+            if (partitionFiles.sizeBytes >= targetSizeBytes) {
+                heldFiles.remove(partitionPath);
+                release(partitionPath, partitionFiles.files);
+            }
+        }
+        Iterator<Map.Entry<Path, HeldFiles>> iterator = heldFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, HeldFiles> partitionFiles = iterator.next();
+            if (releaseAll || nowMillis - partitionFiles.getValue().heldSinceMillis >= sinkConfig.getLocalFileCompactionMaxWaitMS()) {
+                iterator.remove();
+                release(partitionFiles.getKey(), partitionFiles.getValue().files);
+            }
+        }
+    }
+
+    /**
+     * @param flushedPaths paths of uploaded files
+     * @return the paths with the inputs of the merged files among them added, the inputs are already deleted.
+     */
+    public Set<String> expandMergedPaths(Set<String> flushedPaths) {
+        Set<String> expandedPaths = new HashSet<>(flushedPaths);
+        for (String flushedPath : flushedPaths) {
+            List<String> inputs = mergedInputs.remove(flushedPath);
+            if (inputs != null) {
+                expandedPaths.addAll(inputs);
+            }
+        }
+        return expandedPaths;
+    }
+
+    private void release(Path partitionPath, List<LocalFileMetadata> files) {
+        if (files.size() == 1) {
+            toBeFlushedToRemotePaths.add(files.get(0));
+            return;
+        }
+        List<String> inputPaths = files.stream().map(LocalFileMetadata::getFullPath).collect(Collectors.toList());
+        LocalFileMetadata merged;
+        try {
+            merged = merge(partitionPath, files);
+            try (FileChannel mergedFile = FileChannel.open(Paths.get(merged.getFullPath()), StandardOpenOption.WRITE)) {
+                mergedFile.force(true);
+            }
+            if (localFileJournal != null) {
+                localFileJournal.merged(merged, inputPaths);
+            }
+        } catch (IOException e) {
+            throw new LocalFileWriterFailedException(e);
+        }
+        firehoseInstrumentation.logInfo("Merged {} Local Files into {}", files.size(), merged.getFullPath());
+        firehoseInstrumentation.captureCount(BlobStorageMetrics.LOCAL_FILE_COMPACTED_TOTAL, (long) files.size());
+        mergedInputs.put(merged.getFullPath(), inputPaths);
+        localStorage.trackMergedLocalFile(merged, inputPaths);
+        toBeFlushedToRemotePaths.add(merged);
+    }
+
+    private LocalFileMetadata merge(Path partitionPath, List<LocalFileMetadata> files) throws IOException {
+        Configuration conf = new Configuration();
+        String mergedPath = partitionPath.resolve(UUID.randomUUID().toString()).toString();
+        FileMetaData fileMetaData;
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(toHadoopPath(files.get(0).getFullPath()), conf))) {
+            fileMetaData = reader.getFooter().getFileMetaData();
+        }
+        ParquetFileWriter writer = new ParquetFileWriter(
+                HadoopOutputFile.fromPath(toHadoopPath(mergedPath), conf),
+                fileMetaData.getSchema(),
+                ParquetFileWriter.Mode.CREATE,
+                sinkConfig.getLocalFileWriterParquetBlockSize(),
+                NO_PADDING);
+        writer.start();
+        long createdTimestampMillis = Long.MAX_VALUE;
+        long recordCount = 0;
+        for (LocalFileMetadata file : files) {
+            writer.appendFile(HadoopInputFile.fromPath(toHadoopPath(file.getFullPath()), conf));
+            createdTimestampMillis = Math.min(createdTimestampMillis, file.getCreatedTimestampMillis());
+            recordCount += file.getRecordCount();
+        }
+        writer.end(fileMetaData.getKeyValueMetaData());
+        return new LocalFileMetadata(files.get(0).getBasePath(), mergedPath, createdTimestampMillis, recordCount,
+                Files.size(Paths.get(mergedPath)));
+    }
+
+    private static org.apache.hadoop.fs.Path toHadoopPath(String path) {
+        return new org.apache.hadoop.fs.Path(path);
+    }
+
+    private static class HeldFiles {
+        private final long heldSinceMillis;
+        private final List<LocalFileMetadata> files = new ArrayList<>();
+        private long sizeBytes;
+
+        HeldFiles(long heldSinceMillis) {
+            this.heldSinceMillis = heldSinceMillis;
+        }
+
+        void add(LocalFileMetadata metadata) {
+            files.add(metadata);
+            sizeBytes += metadata.getSize();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append only journal of the local files closed by a writer orchestrator and not yet uploaded.
+ * <p>
+ * Every closed file is journaled with its metadata and the kafka offsets of its records, once the file is synced to disk.
+ * Every uploaded file is journaled again once it is deleted. Each orchestrator appends to its own journal and holds
+ * a lock on it while running. On startup, journals nobody holds a lock on are left over by a previous run: their
+ * closed files still on disk are carried over to the new journal and handed back as recovered files, so they can be
+ * uploaded and their offsets committed without reading them from kafka again. Journals of the same process are never
+ * opened twice, since closing a second channel on a file can drop the locks of the process on it.
+ * <p>
+ * A torn last line of a crashed run is ignored, so at worst a file is uploaded again or its records read again.
+ * <p>
+ * Once enough files were uploaded, the journal is compacted when the next file is closed: the files not yet uploaded
+ * are written to a new journal which replaces the old one.
+ */
+public class LocalFileJournal implements Closeable {
+    public static final String JOURNAL_DIRECTORY = ".firehose-journal";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String COMPACTED_SUFFIX = ".compacted";
+    private static final int MIN_UPLOADED_LINES_TO_COMPACT = 100;
+    private static final String CLOSED = "CLOSED";
+    private static final String UPLOADED = "UPLOADED";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String LINE_SEPARATOR = "\n";
+    private static final int BASE_PATH_FIELD = 1;
+    private static final int FULL_PATH_FIELD = 2;
+    private static final int CREATED_TIMESTAMP_FIELD = 3;
+    private static final int RECORD_COUNT_FIELD = 4;
+    private static final int SIZE_FIELD = 5;
+    private static final int OFFSET_RANGES_FIELD = 6;
+    private static final int CLOSED_FIELDS = 7;
+    private static final int UPLOADED_FIELDS = 2;
+    private static final Set<Path> OPEN_JOURNALS = ConcurrentHashMap.newKeySet();
+
+    private final Path journalPath;
+    private final Map<String, String> closedLines = new LinkedHashMap<>();
+    @Getter
+    private final List<RecoveredLocalFile> recoveredFiles;
+    private FileChannel channel;
+    private FileLock lock;
+    private int uploadedLines;
+
+    private LocalFileJournal(Path journalPath, FileChannel channel, FileLock lock, List<RecoveredLocalFile> recoveredFiles) {
+        this.journalPath = journalPath;
+        this.channel = channel;
+        this.lock = lock;
+        this.recoveredFiles = recoveredFiles;
+    }
+
+    /**
+     * Starts a new journal in the journal directory of the local directory and recovers the left over journals.
+     *
+     * @param localDirectory local directory of the sink
+     * @return the new journal
+     * @throws IOException if the journal directory cannot be read or written
+     */
+    public static LocalFileJournal open(String localDirectory) throws IOException {
+        Path journalDirectory = Paths.get(localDirectory).toAbsolutePath().normalize().resolve(JOURNAL_DIRECTORY);
+        Files.createDirectories(journalDirectory);
+        Path journalPath = journalDirectory.resolve(UUID.randomUUID() + JOURNAL_SUFFIX);
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        LocalFileJournal journal;
+        try {
+            journal = new LocalFileJournal(journalPath, channel, channel.lock(), new ArrayList<>());
+            OPEN_JOURNALS.add(journalPath);
+            List<Path> leftOverJournals = new ArrayList<>();
+            try (DirectoryStream<Path> journals = Files.newDirectoryStream(journalDirectory, "*" + JOURNAL_SUFFIX)) {
+                journals.forEach(leftOverJournals::add);
+            }
+            for (Path leftOverJournal : leftOverJournals) {
+                if (!OPEN_JOURNALS.contains(leftOverJournal)) {
+                    journal.recover(leftOverJournal);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            OPEN_JOURNALS.remove(journalPath);
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    private void recover(Path leftOverJournal) throws IOException {
+        try (FileChannel leftOverChannel = FileChannel.open(leftOverJournal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock leftOverLock;
+            try {
+                leftOverLock = leftOverChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                return;
+            }
+            if (leftOverLock == null || !Files.exists(leftOverJournal)) {
+                return;
+            }
+            List<RecoveredLocalFile> files = replay(new String(Files.readAllBytes(leftOverJournal), StandardCharsets.UTF_8));
+            for (RecoveredLocalFile file : files) {
+                String line = closedLine(file.getMetadata(), file.getOffsetRanges());
+                append(line);
+                closedLines.put(file.getMetadata().getFullPath(), line);
+            }
+            channel.force(false);
+            Files.delete(leftOverJournal);
+            recoveredFiles.addAll(files);
+        } catch (NoSuchFileException e) {
+            // recovered by another orchestrator
+        }
+    }
+
+    private static List<RecoveredLocalFile> replay(String content) {
+        Map<String, RecoveredLocalFile> closedFiles = new LinkedHashMap<>();
+        String[] lines = content.split(LINE_SEPARATOR);
+        int completeLines = content.endsWith(LINE_SEPARATOR) ? lines.length : lines.length - 1;
+        for (int i = 0; i < completeLines; i++) {
+            String[] fields = lines[i].split(FIELD_SEPARATOR, -1);
+            if (fields[0].equals(CLOSED) && fields.length == CLOSED_FIELDS) {
+                LocalFileMetadata metadata = new LocalFileMetadata(fields[BASE_PATH_FIELD], fields[FULL_PATH_FIELD],
+                        Long.parseLong(fields[CREATED_TIMESTAMP_FIELD]), Long.parseLong(fields[RECORD_COUNT_FIELD]),
+                        Long.parseLong(fields[SIZE_FIELD]));
+                closedFiles.put(fields[FULL_PATH_FIELD], new RecoveredLocalFile(metadata, KafkaOffsetRanges.decode(fields[OFFSET_RANGES_FIELD])));
+            } else if (fields[0].equals(UPLOADED) && fields.length == UPLOADED_FIELDS) {
+                closedFiles.remove(fields[1]);
+            }
+        }
+        List<RecoveredLocalFile> files = new ArrayList<>();
+        for (RecoveredLocalFile file : closedFiles.values()) {
+            if (Files.exists(Paths.get(file.getMetadata().getFullPath()))) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Syncs a closed local file to disk and journals it, compacting the journal first if enough files were uploaded.
+     *
+     * @param metadata     metadata of the closed file
+     * @param offsetRanges kafka offsets of the records in the file
+     * @throws IOException if the file cannot be synced or the journal written
+     */
+    public synchronized void closed(LocalFileMetadata metadata, KafkaOffsetRanges offsetRanges) throws IOException {
+        try (FileChannel file = FileChannel.open(Paths.get(metadata.getFullPath()), StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        if (uploadedLines >= MIN_UPLOADED_LINES_TO_COMPACT && uploadedLines >= closedLines.size()) {
+            compact();
+        }
+        String line = closedLine(metadata, offsetRanges);
+        append(line);
+        channel.force(false);
+        closedLines.put(metadata.getFullPath(), line);
+    }
+
+    /**
+     * Journals a merged local file in place of its inputs, with the kafka offsets of all of them.
+     * The inputs are journaled as uploaded, so they can be deleted right away.
+     *
+     * @param metadata   metadata of the merged file, which must already be synced to disk
+     * @param inputPaths full paths of the journaled files merged into it
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void merged(LocalFileMetadata metadata, List<String> inputPaths) throws IOException {
+        KafkaOffsetRanges offsetRanges = new KafkaOffsetRanges();
+        for (String inputPath : inputPaths) {
+            String inputLine = closedLines.get(inputPath);
+            if (inputLine != null) {
+                String[] fields = inputLine.substring(0, inputLine.length() - LINE_SEPARATOR.length()).split(FIELD_SEPARATOR, -1);
+                offsetRanges.addAll(KafkaOffsetRanges.decode(fields[OFFSET_RANGES_FIELD]));
+            }
+        }
+        String line = closedLine(metadata, offsetRanges);
+        append(line);
+        closedLines.put(metadata.getFullPath(), line);
+        for (String inputPath : inputPaths) {
+            uploaded(inputPath);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Journals an uploaded local file.
+     *
+     * @param fullPath full path of the file
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void uploaded(String fullPath) throws IOException {
+        append(UPLOADED + FIELD_SEPARATOR + fullPath + LINE_SEPARATOR);
+        closedLines.remove(fullPath);
+        uploadedLines++;
+    }
+
+    /**
+     * Writes the files not yet uploaded to a new locked journal, which then replaces this one.
+     * A crash before the replacement leaves the old journal, which holds the same files.
+     */
+    private void compact() throws IOException {
+        Path compactedPath = journalPath.resolveSibling(journalPath.getFileName() + COMPACTED_SUFFIX);
+        FileChannel compactedChannel = FileChannel.open(compactedPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            FileLock compactedLock = compactedChannel.lock();
+            for (String line : closedLines.values()) {
+                write(compactedChannel, line);
+            }
+            compactedChannel.force(false);
+            Files.move(compactedPath, journalPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (lock.isValid()) {
+                lock.release();
+            }
+            channel.close();
+            channel = compactedChannel;
+            lock = compactedLock;
+            uploadedLines = 0;
+        } catch (IOException | RuntimeException e) {
+            compactedChannel.close();
+            Files.deleteIfExists(compactedPath);
+            throw e;
+        }
+    }
+
+    private static String closedLine(LocalFileMetadata metadata, KafkaOffsetRanges offsetRanges) {
+        return String.join(FIELD_SEPARATOR, CLOSED, metadata.getBasePath(), metadata.getFullPath(),
+                String.valueOf(metadata.getCreatedTimestampMillis()), String.valueOf(metadata.getRecordCount()),
+                String.valueOf(metadata.getSize()), offsetRanges.encode()) + LINE_SEPARATOR;
+    }
+
+    private void append(String line) throws IOException {
+        write(channel, line);
+    }
+
+    private static void write(FileChannel fileChannel, String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (lock.isValid()) {
+            lock.release();
+        }
+        channel.close();
+        OPEN_JOURNALS.remove(journalPath);
+    }
+
+    /**
+     * A closed local file of a previous run which was not uploaded.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static class RecoveredLocalFile {
+        private final LocalFileMetadata metadata;
+        private final KafkaOffsetRanges offsetRanges;
+    }
+}
@@ -0,0 +1,84 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the heap used by in memory files, from the first record written until the file is uploaded.
+ * Open files are tracked apart from closed ones: only open files can be rotated to stay under the cap, while closed
+ * files only free their heap once uploaded.
+ */
+public class LocalFileMemoryBudget {
+    private final long maxBytes;
+    private final Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+    private final Set<String> closedFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong openBytes = new AtomicLong();
+
+    public LocalFileMemoryBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Records the current size of a file.
+     *
+     * @param fullPath path identifying the file
+     * @param size     bytes held by the file
+     */
+    public void update(String fullPath, long size) {
+        Long previous = fileSizes.put(fullPath, size);
+        long delta = size - (previous == null ? 0 : previous);
+        usedBytes.addAndGet(delta);
+        if (!closedFiles.contains(fullPath)) {
+            openBytes.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Stops counting a closed file against the open files, it is still counted until released.
+     *
+     * @param fullPath path identifying the file
+     */
+    public void closed(String fullPath) {
+        if (closedFiles.add(fullPath)) {
+            Long size = fileSizes.get(fullPath);
+            if (size != null) {
+                openBytes.addAndGet(-size);
+            }
+        }
+    }
+
+    public void release(String fullPath) {
+        Long previous = fileSizes.remove(fullPath);
+        if (previous != null) {
+            usedBytes.addAndGet(-previous);
+            if (!closedFiles.remove(fullPath)) {
+                openBytes.addAndGet(-previous);
+            }
+        }
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getOpenBytes() {
+        return openBytes.get();
+    }
+
+    /**
+     * @return true if the open files reach the cap, they are then rotated early.
+     */
+    public boolean isOpenExceeded() {
+        return openBytes.get() >= maxBytes;
+    }
+
+    /**
+     * @return true if the open and closed files reach the cap, new writes then wait for uploads.
+     */
+    public boolean isExceeded() {
+        return usedBytes.get() >= maxBytes;
+    }
+}
@@ -13,4 +13,16 @@ public class LocalFileMetadata {
     private final long createdTimestampMillis;
     private final long recordCount;
     private final long size;
+    /**
+     * Encoded file of an in memory writer, null when the file is on the local disk.
+     */
+    private final byte[] content;
+
+    public LocalFileMetadata(String basePath, String fullPath, long createdTimestampMillis, long recordCount, long size) {
+        this(basePath, fullPath, createdTimestampMillis, recordCount, size, null);
+    }
+
+    public boolean isInMemory() {
+        return content != null;
+    }
 }
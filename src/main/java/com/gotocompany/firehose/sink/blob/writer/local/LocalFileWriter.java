@@ -6,6 +6,11 @@ import java.io.Closeable;
 import java.io.IOException;
 
 public interface LocalFileWriter extends Closeable {
+    /**
+     * Number of records after which the writers compute the size of their file again, computing it walks every column.
+     */
+    int SIZE_CHECK_INTERVAL_RECORDS = 100;
+
     /**
      * @param record to write
      * @return true if write succeeds, false if the writer is closed.
@@ -15,5 +20,22 @@ public interface LocalFileWriter extends Closeable {
 
     LocalFileMetadata getMetadata();
 
+    String getFullPath();
+
+    long getCreatedTimestampMillis();
+
+    /**
+     * @return size of the file as last computed by the writer, on its first record and then every
+     * {@link #SIZE_CHECK_INTERVAL_RECORDS} records, cheap enough to be checked on every write.
+     */
+    long getLastDataSize();
+
     LocalFileMetadata closeAndFetchMetaData() throws IOException;
+
+    /**
+     * @return kafka offsets of the records written, or null if the file cannot be recovered after a restart.
+     */
+    default KafkaOffsetRanges getOffsetRanges() {
+        return null;
+    }
 }
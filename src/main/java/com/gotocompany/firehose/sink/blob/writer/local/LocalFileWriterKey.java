@@ -0,0 +1,21 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.file.Path;
+
+/**
+ * Identifies an open local file writer: the time partition it writes to and the writer lane it belongs to.
+ * Each lane is written by a single thread, so writers of the same partition in different lanes encode in parallel.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class LocalFileWriterKey {
+    private final Path partitionPath;
+    private final int lane;
+}
@@ -2,11 +2,10 @@ package com.gotocompany.firehose.sink.blob.writer.local;
 
 import com.google.protobuf.Descriptors;
 import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.sink.blob.message.KafkaMetadataFields;
 import com.gotocompany.firehose.sink.blob.message.Record;
 import org.apache.hadoop.fs.Path;
 import org.apache.parquet.hadoop.ParquetWriter;
-import org.apache.parquet.hadoop.metadata.CompressionCodecName;
-import org.apache.parquet.proto.ProtoParquetWriter;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -14,25 +13,39 @@ import java.util.List;
 
 public class LocalParquetFileWriter implements LocalFileWriter {
 
-    private final ParquetWriter parquetWriter;
+    private final ParquetWriter<Object> parquetWriter;
     private final long createdTimestampMillis;
     private final String fullPath;
     private final String basePath;
     private long recordCount = 0;
+    private volatile long lastDataSize = 0;
     private boolean isClosed = false;
     private final BlobSinkConfig sinkConfig;
+    private final KafkaOffsetRanges offsetRanges = new KafkaOffsetRanges();
+    private final KafkaMetadataFields kafkaMetadataFields;
 
     public LocalParquetFileWriter(long createdTimestampMillis, String basePath, String fullPath, BlobSinkConfig sinkConfig, Descriptors.Descriptor messageDescriptor, List<Descriptors.FieldDescriptor> metadataFieldDescriptor) throws IOException {
-        this.parquetWriter = new ProtoParquetWriter(new Path(fullPath),
-                messageDescriptor,
-                metadataFieldDescriptor,
-                CompressionCodecName.GZIP,
-                sinkConfig.getLocalFileWriterParquetBlockSize(),
-                sinkConfig.getLocalFileWriterParquetPageSize());
+        this.parquetWriter = ProtoParquetWriterBuilder.build(new Path(fullPath), sinkConfig, messageDescriptor, metadataFieldDescriptor);
         this.createdTimestampMillis = createdTimestampMillis;
         this.fullPath = fullPath;
         this.basePath = basePath;
         this.sinkConfig = sinkConfig;
+        this.kafkaMetadataFields = new KafkaMetadataFields(sinkConfig.getOutputKafkaMetadataColumnName());
+    }
+
+    @Override
+    public String getFullPath() {
+        return fullPath;
+    }
+
+    @Override
+    public long getCreatedTimestampMillis() {
+        return createdTimestampMillis;
+    }
+
+    @Override
+    public long getLastDataSize() {
+        return lastDataSize;
     }
 
     @Override
@@ -55,9 +68,20 @@ public class LocalParquetFileWriter implements LocalFileWriter {
             parquetWriter.write(record.getMessage());
         }
         recordCount++;
+        if (recordCount % SIZE_CHECK_INTERVAL_RECORDS == 1) {
+            lastDataSize = parquetWriter.getDataSize();
+        }
+        if (sinkConfig.getLocalFileRecoveryEnable()) {
+            offsetRanges.add(record.getTopic(kafkaMetadataFields), record.getPartition(kafkaMetadataFields), record.getOffset(kafkaMetadataFields));
+        }
         return true;
     }
 
+    @Override
+    public synchronized KafkaOffsetRanges getOffsetRanges() {
+        return offsetRanges;
+    }
+
     @Override
     public synchronized void close() throws IOException {
         this.isClosed = true;
@@ -4,8 +4,8 @@ import com.google.protobuf.Descriptors;
 import com.gotocompany.firehose.config.BlobSinkConfig;
 import com.gotocompany.firehose.exception.ConfigurationException;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.blob.Constants;
 import com.gotocompany.firehose.sink.blob.writer.local.policy.WriterPolicy;
-import lombok.AllArgsConstructor;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -14,7 +14,6 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.UUID;
 
-@AllArgsConstructor
 public class LocalStorage {
 
     private final BlobSinkConfig sinkConfig;
@@ -22,6 +21,22 @@ public class LocalStorage {
     private final List<Descriptors.FieldDescriptor> metadataFieldDescriptor;
     private final List<WriterPolicy> policies;
     private final FirehoseInstrumentation firehoseInstrumentation;
+    private final LocalFileMemoryBudget memoryBudget;
+    private final LocalDiskBudget diskBudget;
+
+    public LocalStorage(BlobSinkConfig sinkConfig,
+                        Descriptors.Descriptor messageDescriptor,
+                        List<Descriptors.FieldDescriptor> metadataFieldDescriptor,
+                        List<WriterPolicy> policies,
+                        FirehoseInstrumentation firehoseInstrumentation) {
+        this.sinkConfig = sinkConfig;
+        this.messageDescriptor = messageDescriptor;
+        this.metadataFieldDescriptor = metadataFieldDescriptor;
+        this.policies = policies;
+        this.firehoseInstrumentation = firehoseInstrumentation;
+        this.memoryBudget = new LocalFileMemoryBudget(sinkConfig.getLocalFileWriterMemoryMaxBytes());
+        this.diskBudget = new LocalDiskBudget(sinkConfig.getLocalDiskMaxBytes(), sinkConfig.getLocalDiskMaxFiles());
+    }
 
     public LocalFileWriter createLocalFileWriter(Path partitionPath) {
         Path basePath = Paths.get(sinkConfig.getLocalDirectory());
@@ -31,7 +46,7 @@ public class LocalStorage {
         return createWriter(basePath, fullPath);
     }
 
-    private LocalParquetFileWriter createWriter(Path basePath, Path fullPath) {
+    private LocalFileWriter createWriter(Path basePath, Path fullPath) {
         switch (sinkConfig.getLocalFileWriterType()) {
             case PARQUET:
                 try {
@@ -46,6 +61,20 @@ public class LocalStorage {
                 } catch (IOException e) {
                     throw new LocalFileWriterFailedException(e);
                 }
+            case PARQUET_IN_MEMORY:
+                try {
+                    firehoseInstrumentation.logInfo("Creating In Memory File " + fullPath);
+                    return new InMemoryParquetFileWriter(
+                            System.currentTimeMillis(),
+                            basePath.toString(),
+                            fullPath.toString(),
+                            sinkConfig,
+                            messageDescriptor,
+                            metadataFieldDescriptor,
+                            memoryBudget);
+                } catch (IOException e) {
+                    throw new LocalFileWriterFailedException(e);
+                }
             default:
                 throw new ConfigurationException("unsupported file writer type");
         }
@@ -60,10 +89,14 @@ public class LocalStorage {
                     firehoseInstrumentation.logInfo("Deleting Local File {}", filePath);
                     firehoseInstrumentation.logInfo("Deleting Local File {}", crcFilePath);
                     deleteLocalFile(filePath, crcFilePath);
+                    diskBudget.release(pathString);
                 } catch (IOException e) {
                     throw new LocalFileWriterFailedException(e);
                 }
                 break;
+            case PARQUET_IN_MEMORY:
+                memoryBudget.release(pathString);
+                break;
             default:
                 throw new ConfigurationException("unsupported file writer type");
         }
@@ -75,7 +108,71 @@ public class LocalStorage {
         }
     }
 
+    /**
+     * In memory files are also rotated early once the open files held in memory reach the memory cap.
+     * The policies check the size last computed by the writer, so no metadata is built on the write path.
+     */
     public Boolean shouldRotate(LocalFileWriter writer) {
-        return policies.stream().anyMatch(writerPolicy -> writerPolicy.shouldRotate(writer.getMetadata()));
+        if (writer instanceof InMemoryParquetFileWriter && memoryBudget.isOpenExceeded()) {
+            return true;
+        }
+        long size = writer.getLastDataSize();
+        long createdTimestampMillis = writer.getCreatedTimestampMillis();
+        for (WriterPolicy writerPolicy : policies) {
+            if (writerPolicy.shouldRotate(size, createdTimestampMillis)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops counting an in memory file against the open files as soon as its writer is removed for rotation, before
+     * it is closed on the local file checker thread, so the next writers are not rotated early for its bytes.
+     */
+    public void closing(LocalFileWriter writer) {
+        if (writer instanceof InMemoryParquetFileWriter) {
+            memoryBudget.closed(writer.getFullPath());
+        }
+    }
+
+    /**
+     * Counts a closed file on disk against the disk budget until it is deleted.
+     * A closed file in memory stays counted against the memory budget, but no longer as an open file.
+     */
+    public void trackClosedLocalFile(LocalFileMetadata metadata) {
+        if (metadata.isInMemory()) {
+            memoryBudget.closed(metadata.getFullPath());
+        } else {
+            diskBudget.add(metadata.getFullPath(), metadata.getSize());
+        }
+    }
+
+    /**
+     * Counts a merged file on disk against the disk budget in place of its inputs, which are then deleted.
+     *
+     * @param merged     metadata of the merged file
+     * @param inputPaths full paths of the files merged into it
+     */
+    public void trackMergedLocalFile(LocalFileMetadata merged, List<String> inputPaths) {
+        diskBudget.replace(inputPaths, merged.getFullPath(), merged.getSize());
+        inputPaths.forEach(this::deleteLocalFile);
+    }
+
+    /**
+     * @return true if the closed files on disk exceed the disk budget or the files in memory reach the memory cap,
+     * new writes then wait for uploads.
+     */
+    public boolean isBudgetExceeded() {
+        return diskBudget.isExceeded()
+                || (sinkConfig.getLocalFileWriterType() == Constants.WriterType.PARQUET_IN_MEMORY && memoryBudget.isExceeded());
+    }
+
+    public LocalDiskBudget getDiskBudget() {
+        return diskBudget;
+    }
+
+    public LocalFileMemoryBudget getMemoryBudget() {
+        return memoryBudget;
     }
 }
@@ -0,0 +1,67 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import com.google.protobuf.Descriptors;
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.proto.ProtoWriteSupport;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Builds proto parquet writers with the compression, row group, page and dictionary settings of the sink.
+ */
+final class ProtoParquetWriterBuilder extends ParquetWriter.Builder<Object, ProtoParquetWriterBuilder> {
+    static final String ZSTD_LEVEL_CONF = "io.compression.codec.zstd.level";
+
+    private final Descriptors.Descriptor messageDescriptor;
+    private final List<Descriptors.FieldDescriptor> metadataFieldDescriptor;
+
+    private ProtoParquetWriterBuilder(Path path, Descriptors.Descriptor messageDescriptor, List<Descriptors.FieldDescriptor> metadataFieldDescriptor) {
+        super(path);
+        this.messageDescriptor = messageDescriptor;
+        this.metadataFieldDescriptor = metadataFieldDescriptor;
+    }
+
+    private ProtoParquetWriterBuilder(OutputFile outputFile, Descriptors.Descriptor messageDescriptor, List<Descriptors.FieldDescriptor> metadataFieldDescriptor) {
+        super(outputFile);
+        this.messageDescriptor = messageDescriptor;
+        this.metadataFieldDescriptor = metadataFieldDescriptor;
+    }
+
+    static ParquetWriter<Object> build(Path path, BlobSinkConfig sinkConfig, Descriptors.Descriptor messageDescriptor,
+                                       List<Descriptors.FieldDescriptor> metadataFieldDescriptor) throws IOException {
+        return new ProtoParquetWriterBuilder(path, messageDescriptor, metadataFieldDescriptor).configure(sinkConfig).build();
+    }
+
+    static ParquetWriter<Object> build(OutputFile outputFile, BlobSinkConfig sinkConfig, Descriptors.Descriptor messageDescriptor,
+                                       List<Descriptors.FieldDescriptor> metadataFieldDescriptor) throws IOException {
+        return new ProtoParquetWriterBuilder(outputFile, messageDescriptor, metadataFieldDescriptor).configure(sinkConfig).build();
+    }
+
+    private ProtoParquetWriterBuilder configure(BlobSinkConfig sinkConfig) {
+        Configuration conf = new Configuration();
+        conf.setInt(ZSTD_LEVEL_CONF, sinkConfig.getLocalFileWriterParquetZstdLevel());
+        return withConf(conf)
+                .withCompressionCodec(sinkConfig.getLocalFileWriterParquetCompression())
+                .withRowGroupSize(sinkConfig.getLocalFileWriterParquetBlockSize())
+                .withPageSize(sinkConfig.getLocalFileWriterParquetPageSize())
+                .withDictionaryEncoding(sinkConfig.getLocalFileWriterParquetDictionaryEnable())
+                .withDictionaryPageSize(sinkConfig.getLocalFileWriterParquetDictionaryPageSize());
+    }
+
+    @Override
+    protected ProtoParquetWriterBuilder self() {
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected WriteSupport<Object> getWriteSupport(Configuration conf) {
+        return (WriteSupport<Object>) (WriteSupport<?>) new ProtoWriteSupport(messageDescriptor, metadataFieldDescriptor);
+    }
+}
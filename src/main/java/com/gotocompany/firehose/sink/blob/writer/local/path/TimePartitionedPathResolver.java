@@ -0,0 +1,101 @@
+package com.gotocompany.firehose.sink.blob.writer.local.path;
+
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.sink.blob.Constants;
+import com.gotocompany.firehose.sink.blob.message.KafkaMetadataFields;
+import com.gotocompany.firehose.sink.blob.message.Record;
+import com.gotocompany.firehose.sink.blob.message.TimestampFields;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the time partitioned path of records, producing the same paths as {@link TimePartitionedPathUtils}.
+ * <p>
+ * The config and the field descriptors of the topic and timestamp are read once, and the path of the current time
+ * bucket (hour or day, in the configured zone) is cached per topic, so records of the same bucket only compare their
+ * timestamp against the cached bucket bounds.
+ */
+public class TimePartitionedPathResolver {
+
+    private final KafkaMetadataFields kafkaMetadataFields;
+    private final TimestampFields timestampFields;
+    private final Constants.FilePartitionType partitionType;
+    private final ZoneId zoneId;
+    private final String datePrefix;
+    private final String hourPrefix;
+    private final Map<String, PartitionBucket> currentBuckets = new ConcurrentHashMap<>();
+
+    public TimePartitionedPathResolver(BlobSinkConfig sinkConfig) {
+        this.kafkaMetadataFields = new KafkaMetadataFields(sinkConfig.getOutputKafkaMetadataColumnName());
+        this.timestampFields = new TimestampFields(sinkConfig.getFilePartitionProtoTimestampFieldName());
+        this.partitionType = sinkConfig.getFilePartitionTimeGranularityType();
+        this.zoneId = partitionType == Constants.FilePartitionType.NONE ? null : ZoneId.of(sinkConfig.getFilePartitionProtoTimestampTimezone());
+        this.datePrefix = sinkConfig.getFilePartitionTimeDatePrefix();
+        this.hourPrefix = sinkConfig.getFilePartitionTimeHourPrefix();
+    }
+
+    public Path resolve(Record record) {
+        String topic = record.getTopic(kafkaMetadataFields);
+        if (partitionType == Constants.FilePartitionType.NONE) {
+            return currentBuckets.computeIfAbsent(topic, t -> new PartitionBucket(Long.MIN_VALUE, Long.MAX_VALUE, Paths.get(t))).path;
+        }
+        long epochMillis = record.getTimestamp(timestampFields).toEpochMilli();
+        PartitionBucket bucket = currentBuckets.get(topic);
+        if (bucket == null || !bucket.contains(epochMillis)) {
+            bucket = createBucket(topic, epochMillis);
+            currentBuckets.put(topic, bucket);
+        }
+        return bucket.path;
+    }
+
+    private PartitionBucket createBucket(String topic, long epochMillis) {
+        LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId);
+        StringBuilder path = new StringBuilder(topic).append('/')
+                .append(datePrefix).append(TimePartitionedPathUtils.DATE_FORMATTER.format(localDateTime));
+        LocalDateTime start;
+        LocalDateTime end;
+        switch (partitionType) {
+            case DAY:
+                start = localDateTime.truncatedTo(ChronoUnit.DAYS);
+                end = start.plusDays(1);
+                break;
+            case HOUR:
+                path.append('/').append(hourPrefix).append(TimePartitionedPathUtils.HOUR_FORMATTER.format(localDateTime));
+                start = localDateTime.truncatedTo(ChronoUnit.HOURS);
+                end = start.plusHours(1);
+                break;
+            default:
+                throw new IllegalArgumentException();
+        }
+        return new PartitionBucket(
+                start.atZone(zoneId).toInstant().toEpochMilli(),
+                end.atZone(zoneId).toInstant().toEpochMilli(),
+                Paths.get(path.toString()));
+    }
+
+    /**
+     * Path of the records with a timestamp in [startMillis, endMillis).
+     */
+    private static final class PartitionBucket {
+        private final long startMillis;
+        private final long endMillis;
+        private final Path path;
+
+        private PartitionBucket(long startMillis, long endMillis, Path path) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.path = path;
+        }
+
+        private boolean contains(long epochMillis) {
+            return epochMillis >= startMillis && epochMillis < endMillis;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.gotocompany.firehose.sink.blob.writer.local.policy;
 
-import com.gotocompany.firehose.sink.blob.writer.local.LocalFileMetadata;
-
 public class SizeBasedRotatingPolicy implements WriterPolicy {
 
     private final long maxSize;
@@ -14,7 +12,7 @@ public class SizeBasedRotatingPolicy implements WriterPolicy {
     }
 
     @Override
-    public boolean shouldRotate(LocalFileMetadata metadata) {
-        return metadata.getSize() >= maxSize;
+    public boolean shouldRotate(long size, long createdTimestampMillis) {
+        return size >= maxSize;
     }
 }
@@ -1,7 +1,5 @@
 package com.gotocompany.firehose.sink.blob.writer.local.policy;
 
-import com.gotocompany.firehose.sink.blob.writer.local.LocalFileMetadata;
-
 public class TimeBasedRotatingPolicy implements WriterPolicy {
 
     private final long maxRotatingDurationMillis;
@@ -14,7 +12,7 @@ public class TimeBasedRotatingPolicy implements WriterPolicy {
     }
 
     @Override
-    public boolean shouldRotate(LocalFileMetadata metadata) {
-        return System.currentTimeMillis() - metadata.getCreatedTimestampMillis() >= maxRotatingDurationMillis;
+    public boolean shouldRotate(long size, long createdTimestampMillis) {
+        return System.currentTimeMillis() - createdTimestampMillis >= maxRotatingDurationMillis;
     }
 }
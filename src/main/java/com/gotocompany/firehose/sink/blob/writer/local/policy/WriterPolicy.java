@@ -3,5 +3,16 @@ package com.gotocompany.firehose.sink.blob.writer.local.policy;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileMetadata;
 
 public interface WriterPolicy {
-    boolean shouldRotate(LocalFileMetadata metadata);
+    default boolean shouldRotate(LocalFileMetadata metadata) {
+        return shouldRotate(metadata.getSize(), metadata.getCreatedTimestampMillis());
+    }
+
+    /**
+     * Checks a file without building its metadata, as done on the write path.
+     *
+     * @param size                   size of the file
+     * @param createdTimestampMillis creation time of the file
+     * @return true if the file should be rotated
+     */
+    boolean shouldRotate(long size, long createdTimestampMillis);
 }
@@ -1,9 +1,9 @@
 package com.gotocompany.firehose.sink.blob.writer.remote;
 
+import com.gotocompany.firehose.metrics.BlobStorageMetrics;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileMetadata;
-import lombok.AllArgsConstructor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,8 +13,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
-@AllArgsConstructor
 public class BlobStorageChecker implements Runnable {
+    private static final long BYTES_PER_KILOBYTE = 1024;
 
     private final BlockingQueue<LocalFileMetadata> toBeFlushedToRemotePaths;
     private final BlockingQueue<String> flushedToRemotePaths;
@@ -22,6 +22,36 @@ public class BlobStorageChecker implements Runnable {
     private final ExecutorService remoteUploadScheduler;
     private final BlobStorage blobStorage;
     private final FirehoseInstrumentation firehoseInstrumentation;
+    private final UploadConcurrencyController uploadConcurrencyController;
+
+    public BlobStorageChecker(BlockingQueue<LocalFileMetadata> toBeFlushedToRemotePaths,
+                              BlockingQueue<String> flushedToRemotePaths,
+                              Set<BlobStorageWriterFutureHandler> remoteUploadFutures,
+                              ExecutorService remoteUploadScheduler,
+                              BlobStorage blobStorage,
+                              FirehoseInstrumentation firehoseInstrumentation) {
+        this(toBeFlushedToRemotePaths, flushedToRemotePaths, remoteUploadFutures, remoteUploadScheduler, blobStorage,
+                firehoseInstrumentation, null);
+    }
+
+    /**
+     * @param uploadConcurrencyController adapts the upload threads to the throughput, null to keep them fixed
+     */
+    public BlobStorageChecker(BlockingQueue<LocalFileMetadata> toBeFlushedToRemotePaths,
+                              BlockingQueue<String> flushedToRemotePaths,
+                              Set<BlobStorageWriterFutureHandler> remoteUploadFutures,
+                              ExecutorService remoteUploadScheduler,
+                              BlobStorage blobStorage,
+                              FirehoseInstrumentation firehoseInstrumentation,
+                              UploadConcurrencyController uploadConcurrencyController) {
+        this.toBeFlushedToRemotePaths = toBeFlushedToRemotePaths;
+        this.flushedToRemotePaths = flushedToRemotePaths;
+        this.remoteUploadFutures = remoteUploadFutures;
+        this.remoteUploadScheduler = remoteUploadScheduler;
+        this.blobStorage = blobStorage;
+        this.firehoseInstrumentation = firehoseInstrumentation;
+        this.uploadConcurrencyController = uploadConcurrencyController;
+    }
 
     @Override
     public void run() {
@@ -31,6 +61,14 @@ public class BlobStorageChecker implements Runnable {
         Set<BlobStorageWriterFutureHandler> flushed = remoteUploadFutures.stream().filter(BlobStorageWriterFutureHandler::isFinished).collect(Collectors.toSet());
         remoteUploadFutures.removeAll(flushed);
         flushedToRemotePaths.addAll(flushed.stream().map(BlobStorageWriterFutureHandler::getFullPath).collect(Collectors.toSet()));
+        long pendingBytes = remoteUploadFutures.stream().mapToLong(handler -> handler.getLocalFileMetadata().getSize()).sum();
+        firehoseInstrumentation.captureValue(BlobStorageMetrics.FILE_UPLOAD_PENDING_TOTAL, remoteUploadFutures.size());
+        firehoseInstrumentation.captureValue(BlobStorageMetrics.FILE_UPLOAD_PENDING_KILOBYTES, (int) (pendingBytes / BYTES_PER_KILOBYTE));
+        if (uploadConcurrencyController != null) {
+            uploadConcurrencyController.recordUploaded(flushed.stream().mapToLong(handler -> handler.getLocalFileMetadata().getSize()).sum());
+            uploadConcurrencyController.adjust(System.currentTimeMillis());
+            firehoseInstrumentation.captureValue(BlobStorageMetrics.FILE_UPLOAD_CONCURRENCY, uploadConcurrencyController.getConcurrency());
+        }
     }
 
     private BlobStorageWriterFutureHandler submitTask(LocalFileMetadata localFileMetadata) {
@@ -39,4 +77,3 @@ public class BlobStorageChecker implements Runnable {
         return new BlobStorageWriterFutureHandler(f, localFileMetadata, firehoseInstrumentation);
     }
 }
-
@@ -11,7 +11,7 @@ import java.time.Instant;
 import java.util.concurrent.Callable;
 
 /**
- * Uploads a local file to object-storage and returns the total time taken.
+ * Uploads a local file, or the content of an in memory file, to object-storage and returns the total time taken.
  */
 @AllArgsConstructor
 public class BlobStorageWorker implements Callable<Long> {
@@ -23,7 +23,11 @@ public class BlobStorageWorker implements Callable<Long> {
     public Long call() throws BlobStorageException {
         Instant start = Instant.now();
         String objectName = Paths.get(metadata.getBasePath()).relativize(Paths.get(metadata.getFullPath())).toString();
-        blobStorage.store(objectName, metadata.getFullPath());
+        if (metadata.isInMemory()) {
+            blobStorage.store(objectName, metadata.getContent());
+        } else {
+            blobStorage.store(objectName, metadata.getFullPath());
+        }
         return Duration.between(start, Instant.now()).toMillis();
     }
 }
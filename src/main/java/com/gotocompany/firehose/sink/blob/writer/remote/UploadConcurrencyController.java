@@ -0,0 +1,72 @@
+package com.gotocompany.firehose.sink.blob.writer.remote;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adapts the number of upload threads to the observed upload throughput.
+ * <p>
+ * Every adjustment interval, the bytes uploaded in the interval are compared with the previous interval.
+ * While uploads are queued up, a thread is added. If the throughput did not improve with the thread last added,
+ * it is removed again. Once nothing is queued, idle threads are removed.
+ * The number of threads stays between the configured minimum and maximum.
+ */
+public class UploadConcurrencyController {
+    private static final long ADJUSTMENT_INTERVAL_MILLIS = 10000;
+    private static final double MIN_THROUGHPUT_GAIN = 0.05;
+
+    private final ThreadPoolExecutor uploadExecutor;
+    private final int minThreads;
+    private final int maxThreads;
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private long intervalStartMillis;
+    private double lastThroughput;
+    private boolean lastIncreased;
+
+    public UploadConcurrencyController(ThreadPoolExecutor uploadExecutor, int minThreads, int maxThreads, long nowMillis) {
+        this.uploadExecutor = uploadExecutor;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.intervalStartMillis = nowMillis;
+    }
+
+    public void recordUploaded(long bytes) {
+        uploadedBytes.addAndGet(bytes);
+    }
+
+    public int getConcurrency() {
+        return uploadExecutor.getCorePoolSize();
+    }
+
+    /**
+     * Adjusts the number of threads once the adjustment interval elapsed. Called from a single thread.
+     *
+     * @param nowMillis current time
+     */
+    public void adjust(long nowMillis) {
+        long elapsedMillis = nowMillis - intervalStartMillis;
+        if (elapsedMillis < ADJUSTMENT_INTERVAL_MILLIS) {
+            return;
+        }
+        double throughput = (double) uploadedBytes.getAndSet(0) * TimeUnit.SECONDS.toMillis(1) / elapsedMillis;
+        intervalStartMillis = nowMillis;
+        int threads = uploadExecutor.getCorePoolSize();
+        boolean queued = !uploadExecutor.getQueue().isEmpty();
+        boolean increased = false;
+        if (lastIncreased && throughput < lastThroughput * (1 + MIN_THROUGHPUT_GAIN)) {
+            setThreads(threads - 1);
+        } else if (queued && threads < maxThreads) {
+            setThreads(threads + 1);
+            increased = true;
+        } else if (!queued && uploadExecutor.getActiveCount() < threads) {
+            setThreads(threads - 1);
+        }
+        lastIncreased = increased;
+        lastThroughput = throughput;
+    }
+
+    private void setThreads(int threads) {
+        uploadExecutor.setCorePoolSize(Math.max(minThreads, Math.min(maxThreads, threads)));
+    }
+}
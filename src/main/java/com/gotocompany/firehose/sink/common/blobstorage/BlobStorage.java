@@ -4,6 +4,9 @@ package com.gotocompany.firehose.sink.common.blobstorage;
  * Abstraction of any storage that store binary bytes as file.
  */
 public interface BlobStorage {
+    /**
+     * Uploads a local file, streaming it from disk rather than loading it in memory.
+     */
     void store(String objectName, String filePath) throws BlobStorageException;
 
     void store(String objectName, byte[] content) throws BlobStorageException;
@@ -2,6 +2,7 @@ package com.gotocompany.firehose.sink.common.blobstorage.gcs;
 
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Bucket;
@@ -19,8 +20,10 @@ import org.threeten.bp.Duration;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 
 public class GoogleCloudStorage implements BlobStorage {
@@ -82,15 +85,39 @@ public class GoogleCloudStorage implements BlobStorage {
         }
     }
 
+    /**
+     * Streams the local file to GCS through a resumable upload, sending it one chunk at a time.
+     */
     @Override
     public void store(String objectName, String filePath) throws BlobStorageException {
-        try {
-            byte[] content = Files.readAllBytes(Paths.get(filePath));
-            store(objectName, content);
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(gcsConfig.getGCSBucketName(), objectName)).build();
+        String blobPath = String.join(File.separator, blobInfo.getBucket(), blobInfo.getName());
+        int chunkSize = gcsConfig.getGCSUploadChunkSizeBytes();
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+             WriteChannel writer = storage.writer(blobInfo, Storage.BlobWriteOption.userProject(gcsConfig.getGCloudProjectID()))) {
+            writer.setChunkSize(chunkSize);
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            while (fileChannel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    writer.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (StorageException e) {
+            LOGGER.error("Failed to create object in GCS {}", blobPath);
+            String gcsErrorType = GCSErrorType.valueOfCode(e.getCode()).name();
+            throw new BlobStorageException(gcsErrorType, "GCS Upload failed", e);
         } catch (IOException e) {
+            if (e.getCause() instanceof StorageException) {
+                LOGGER.error("Failed to create object in GCS {}", blobPath);
+                String gcsErrorType = GCSErrorType.valueOfCode(((StorageException) e.getCause()).getCode()).name();
+                throw new BlobStorageException(gcsErrorType, "GCS Upload failed", e);
+            }
             LOGGER.error("Failed to read local file {}", filePath);
             throw new BlobStorageException("file_io_error", "File Read failed", e);
         }
+        LOGGER.info("Created object in GCS {}", blobPath);
     }
 
     @Override
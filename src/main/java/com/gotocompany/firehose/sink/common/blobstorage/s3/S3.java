@@ -4,6 +4,7 @@ package com.gotocompany.firehose.sink.common.blobstorage.s3;
 import com.gotocompany.firehose.config.S3Config;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageException;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
@@ -14,18 +15,37 @@ import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class S3 implements BlobStorage {
     private static final Logger LOGGER = LoggerFactory.getLogger(S3.class);
+    private static final long MIN_PART_SIZE_BYTES = 5L * 1024 * 1024;
+    private static final String CONTENT_TYPE = "application/octet-stream";
     private final S3Client s3Client;
     private final S3Config s3Config;
 
@@ -70,14 +90,111 @@ public class S3 implements BlobStorage {
         }
     }
 
+    /**
+     * Streams the local file to S3, as a multipart upload with parts read in parallel from the file
+     * when it is larger than a single part, so the file is never held in memory.
+     */
     @Override
     public void store(String objectName, String filePath) throws BlobStorageException {
+        Path path = Paths.get(filePath);
+        long partSize = Math.max(MIN_PART_SIZE_BYTES, s3Config.getS3MultipartPartSizeBytes());
         try {
-            byte[] content = Files.readAllBytes(Paths.get(filePath));
-            store(objectName, content);
+            long fileSize = Files.size(path);
+            if (fileSize <= partSize) {
+                s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(s3Config.getS3BucketName())
+                        .key(objectName)
+                        .build(), RequestBody.fromFile(path));
+            } else {
+                storeMultipart(objectName, path, fileSize, partSize);
+            }
+            LOGGER.info("Created object in S3 {}", objectName);
         } catch (IOException e) {
             LOGGER.error("Failed to read local file {}", filePath);
             throw new BlobStorageException("file_io_error", "File Read failed", e);
+        } catch (SdkServiceException | SdkClientException ase) {
+            LOGGER.error("Failed to create object in S3 {}", objectName);
+            throw new BlobStorageException(ase.getMessage(), ase.getMessage(), ase);
+        }
+    }
+
+    private void storeMultipart(String objectName, Path path, long fileSize, long partSize) throws IOException {
+        String bucketName = s3Config.getS3BucketName();
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(objectName)
+                .build()).uploadId();
+        int partCount = (int) ((fileSize + partSize - 1) / partSize);
+        ExecutorService partUploadPool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(partCount, s3Config.getS3MultipartUploadConcurrency())));
+        try {
+            List<CompletableFuture<CompletedPart>> parts = new ArrayList<>(partCount);
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                long offset = (partNumber - 1) * partSize;
+                long length = Math.min(partSize, fileSize - offset);
+                int currentPartNumber = partNumber;
+                parts.add(CompletableFuture.supplyAsync(
+                        () -> uploadPart(objectName, uploadId, path, currentPartNumber, offset, length), partUploadPool));
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(partCount);
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(part.join());
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectName)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+        } catch (CompletionException e) {
+            abortMultipart(objectName, uploadId);
+            Throwable cause = e.getCause();
+            if (cause instanceof SdkServiceException) {
+                throw (SdkServiceException) cause;
+            }
+            if (cause instanceof SdkClientException) {
+                throw (SdkClientException) cause;
+            }
+            throw new IOException(cause);
+        } catch (SdkServiceException | SdkClientException e) {
+            abortMultipart(objectName, uploadId);
+            throw e;
+        } finally {
+            partUploadPool.shutdownNow();
+        }
+    }
+
+    private CompletedPart uploadPart(String objectName, String uploadId, Path path, int partNumber, long offset, long length) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(s3Config.getS3BucketName())
+                .key(objectName)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(length)
+                .build();
+        RequestBody body = RequestBody.fromContentProvider(() -> openPart(path, offset, length), length, CONTENT_TYPE);
+        String eTag = s3Client.uploadPart(request, body).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private static InputStream openPart(Path path, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ).position(offset);
+            return new BoundedInputStream(Channels.newInputStream(channel), length);
+        } catch (IOException e) {
+            throw SdkClientException.create("Failed to read part of local file " + path, e);
+        }
+    }
+
+    private void abortMultipart(String objectName, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(s3Config.getS3BucketName())
+                    .key(objectName)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (SdkServiceException | SdkClientException e) {
+            LOGGER.warn("Failed to abort multipart upload {} of {}", uploadId, objectName, e);
         }
     }
 
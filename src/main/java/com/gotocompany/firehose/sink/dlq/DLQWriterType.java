@@ -3,5 +3,6 @@ package com.gotocompany.firehose.sink.dlq;
 public enum DLQWriterType {
     KAFKA,
     BLOB_STORAGE,
-    LOG
+    LOG,
+    LOCAL_JOURNAL
 }
@@ -2,10 +2,11 @@ package com.gotocompany.firehose.sink.dlq;
 
 import com.gotocompany.firehose.message.Message;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 
-public interface DlqWriter {
+public interface DlqWriter extends Closeable {
 
     /**
      * Method to write messages to dead letter queues destination.
@@ -14,4 +15,12 @@ public interface DlqWriter {
      * @throws IOException can be thrown for non retry able error
      */
     List<Message> write(List<Message> messages) throws IOException;
+
+    /**
+     * Method to flush and release the resources of the writer.
+     * @throws IOException if flushing the buffered messages fails
+     */
+    @Override
+    default void close() throws IOException {
+    }
 }
@@ -6,6 +6,8 @@ import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageFactory;
 import com.gotocompany.firehose.sink.dlq.blobstorage.BlobStorageDlqWriter;
+import com.gotocompany.firehose.sink.dlq.blobstorage.BufferedBlobStorageDlqWriter;
+import com.gotocompany.firehose.sink.dlq.journal.LocalJournalDlqWriter;
 import com.gotocompany.firehose.sink.dlq.kafka.KafkaDlqWriter;
 import com.gotocompany.firehose.sink.dlq.log.LogDlqWriter;
 import com.gotocompany.firehose.utils.KafkaUtils;
@@ -15,14 +17,19 @@ import io.opentracing.contrib.kafka.TracingKafkaProducer;
 import org.aeonbits.owner.ConfigFactory;
 import org.apache.kafka.clients.producer.KafkaProducer;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Map;
 
 public class DlqWriterFactory {
 
     public static DlqWriter create(Map<String, String> configuration, StatsDReporter client, Tracer tracer) {
         DlqConfig dlqConfig = ConfigFactory.create(DlqConfig.class, configuration);
+        return create(dlqConfig.getDlqWriterType(), dlqConfig, configuration, client, tracer);
+    }
 
-        switch (dlqConfig.getDlqWriterType()) {
+    private static DlqWriter create(DLQWriterType writerType, DlqConfig dlqConfig, Map<String, String> configuration, StatsDReporter client, Tracer tracer) {
+        switch (writerType) {
             case KAFKA:
                 DlqKafkaProducerConfig dlqKafkaProducerConfig = ConfigFactory.create(DlqKafkaProducerConfig.class, configuration);
                 KafkaProducer<byte[], byte[]> kafkaProducer = KafkaUtils.getKafkaProducer(dlqKafkaProducerConfig);
@@ -42,12 +49,35 @@ public class DlqWriterFactory {
                         throw new IllegalArgumentException("DLQ Blob Storage type " + dlqConfig.getBlobStorageType() + "is not supported");
                 }
                 BlobStorage blobStorage = BlobStorageFactory.createObjectStorage(dlqConfig.getBlobStorageType(), configuration);
+                if (dlqConfig.getDlqBlobStorageBufferEnable()) {
+                    try {
+                        return new BufferedBlobStorageDlqWriter(blobStorage, dlqConfig);
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Exception while recovering DLQ local files", e);
+                    }
+                }
                 return new BlobStorageDlqWriter(blobStorage);
             case LOG:
                 return new LogDlqWriter(new FirehoseInstrumentation(client, LogDlqWriter.class));
+            case LOCAL_JOURNAL:
+                DLQWriterType shipperType = dlqConfig.getDlqLocalJournalShipperType();
+                if (shipperType == DLQWriterType.LOCAL_JOURNAL) {
+                    throw new IllegalArgumentException("DLQ local journal can't be shipped to another local journal");
+                }
+                DlqWriter shipper = create(shipperType, dlqConfig, configuration, client, tracer);
+                try {
+                    return new LocalJournalDlqWriter(Paths.get(dlqConfig.getDlqLocalJournalDirectory()),
+                            dlqConfig.getDlqLocalJournalSegmentSizeBytes(),
+                            dlqConfig.getDlqLocalJournalSegmentMaxAgeMs(),
+                            dlqConfig.getDlqLocalJournalShipIntervalMs(),
+                            shipper,
+                            new FirehoseInstrumentation(client, LocalJournalDlqWriter.class));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Exception while opening DLQ local journal", e);
+                }
 
             default:
-                throw new IllegalArgumentException("DLQ Writer type " + dlqConfig.getDlqWriterType() + " is not supported");
+                throw new IllegalArgumentException("DLQ Writer type " + writerType + " is not supported");
         }
     }
 }
@@ -0,0 +1,193 @@
+package com.gotocompany.firehose.sink.dlq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A directory of its own for a DLQ writer inside a local directory shared by the writers, locked while it is in use.
+ * <p>
+ * Every writer creates a new directory and holds a lock on the lock file in it until it closes. Directories of the
+ * shared directory nobody holds a lock on are left over by a previous run, a writer locks them before recovering their
+ * files, so a directory is recovered by one writer only and never while its own writer runs. Directories of the same
+ * process are never locked twice, since closing a second channel on a file can drop the locks of the process on it.
+ * A new directory is locked under a hidden name before it is moved in place, hidden directories are never recovered.
+ */
+public final class LocalDlqDirectory implements Closeable {
+    public static final String LOCK_FILE = ".lock";
+    private static final String HIDDEN_PREFIX = ".";
+    private static final Set<Path> OPEN_DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private LocalDlqDirectory(Path path, FileChannel channel, FileLock lock) {
+        this.path = path;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Creates and locks a new directory in the shared directory.
+     *
+     * @param sharedDirectory local directory shared by the writers
+     * @return the locked directory
+     * @throws IOException if the directory cannot be created or locked
+     */
+    public static LocalDlqDirectory create(Path sharedDirectory) throws IOException {
+        String name = UUID.randomUUID().toString();
+        Path normalizedDirectory = sharedDirectory.toAbsolutePath().normalize();
+        Path hiddenPath = normalizedDirectory.resolve(HIDDEN_PREFIX + name);
+        Path path = normalizedDirectory.resolve(name);
+        Files.createDirectories(hiddenPath);
+        OPEN_DIRECTORIES.add(path);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(hiddenPath.resolve(LOCK_FILE), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            FileLock lock = channel.lock();
+            Files.move(hiddenPath, path, StandardCopyOption.ATOMIC_MOVE);
+            return new LocalDlqDirectory(path, channel, lock);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            OPEN_DIRECTORIES.remove(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Locks the directories of the shared directory which are left over by a previous run.
+     *
+     * @param sharedDirectory local directory shared by the writers
+     * @return the locked directories, to be deleted once their files are recovered
+     * @throws IOException if the shared directory cannot be read
+     */
+    public static List<LocalDlqDirectory> lockLeftOver(Path sharedDirectory) throws IOException {
+        Path normalizedDirectory = sharedDirectory.toAbsolutePath().normalize();
+        List<LocalDlqDirectory> leftOver = new ArrayList<>();
+        if (!Files.isDirectory(normalizedDirectory)) {
+            return leftOver;
+        }
+        List<Path> directories = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(normalizedDirectory, Files::isDirectory)) {
+            paths.forEach(directories::add);
+        }
+        for (Path directory : directories) {
+            if (directory.getFileName().toString().startsWith(HIDDEN_PREFIX) || !OPEN_DIRECTORIES.add(directory)) {
+                continue;
+            }
+            LocalDlqDirectory locked = tryLock(directory);
+            if (locked == null) {
+                OPEN_DIRECTORIES.remove(directory);
+            } else {
+                leftOver.add(locked);
+            }
+        }
+        return leftOver;
+    }
+
+    private static LocalDlqDirectory tryLock(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            // recovered by another writer
+            return null;
+        }
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null && Files.isDirectory(directory)) {
+                return new LocalDlqDirectory(directory, channel, lock);
+            }
+        } catch (OverlappingFileLockException e) {
+            // locked by a writer of this process
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the files of the directory, without its lock file
+     * @throws IOException if the directory cannot be read
+     */
+    public List<Path> listFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(file -> !file.equals(path.resolve(LOCK_FILE)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Deletes the empty directories of the directory, then the directory itself if it holds nothing else than its
+     * lock file, and releases the lock.
+     *
+     * @throws IOException if the directory cannot be read or deleted
+     */
+    public void delete() throws IOException {
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(path)) {
+            directories = paths.filter(Files::isDirectory).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        try {
+            for (Path directory : directories) {
+                if (!directory.equals(path)) {
+                    deleteIfEmpty(directory);
+                }
+            }
+            if (listFiles().isEmpty()) {
+                Files.delete(path.resolve(LOCK_FILE));
+                deleteIfEmpty(path);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private static void deleteIfEmpty(Path directory) throws IOException {
+        try {
+            Files.delete(directory);
+        } catch (DirectoryNotEmptyException e) {
+            // files are left for the next run
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (lock.isValid()) {
+                lock.release();
+            }
+            channel.close();
+        } finally {
+            OPEN_DIRECTORIES.remove(path);
+        }
+    }
+}
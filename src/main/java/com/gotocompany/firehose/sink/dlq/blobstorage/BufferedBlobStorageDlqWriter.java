@@ -0,0 +1,293 @@
+package com.gotocompany.firehose.sink.dlq.blobstorage;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.gotocompany.firehose.config.DlqConfig;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
+import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageException;
+import com.gotocompany.firehose.sink.dlq.DlqWriter;
+import com.gotocompany.firehose.sink.dlq.LocalDlqDirectory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers DLQ records per topic and consume date in compressed local files and uploads each file as one object
+ * once it reaches the configured size or age.
+ * <p>
+ * A write returns once its records are synced to the local file, so the offsets of the messages are committed
+ * before the upload. Every writer buffers into a locked directory of its own in the local directory. Files left behind
+ * by a previous run in directories nobody holds a lock on are uploaded on start, after cutting a torn last record off.
+ */
+@Slf4j
+public class BufferedBlobStorageDlqWriter implements DlqWriter {
+    private static final String REPAIR_SUFFIX = ".repair";
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final int COPY_BUFFER_SIZE = 8192;
+    private static final int OBJECT_NAME_COUNT = 3;
+
+    private final BlobStorage blobStorage;
+    private final LocalDlqDirectory localDirectory;
+    private final DlqCompressionType compression;
+    private final long maxSizeBytes;
+    private final long maxAgeMillis;
+    private final JsonFactory jsonFactory;
+    private final Map<Path, DlqBuffer> buffers = new HashMap<>();
+    private final Map<Path, Boolean> pendingFiles = new LinkedHashMap<>();
+    private final List<LocalDlqDirectory> recoveredDirectories = new ArrayList<>();
+    private final ScheduledExecutorService flushScheduler;
+    private final Object uploadLock = new Object();
+
+    public BufferedBlobStorageDlqWriter(BlobStorage blobStorage, DlqConfig dlqConfig) throws IOException {
+        this.blobStorage = blobStorage;
+        Path sharedDirectory = Paths.get(dlqConfig.getDlqBlobStorageBufferLocalDirectory());
+        recoverLocalFiles(sharedDirectory);
+        this.localDirectory = LocalDlqDirectory.create(sharedDirectory);
+        this.compression = dlqConfig.getDlqBlobStorageCompression();
+        this.maxSizeBytes = dlqConfig.getDlqBlobStorageBufferMaxSizeBytes();
+        this.maxAgeMillis = dlqConfig.getDlqBlobStorageBufferMaxAgeMs();
+        this.jsonFactory = new JsonFactory().setRootValueSeparator(null);
+        this.flushScheduler = Executors.newScheduledThreadPool(1);
+        this.flushScheduler.scheduleWithFixedDelay(() -> flush(System.currentTimeMillis()),
+                FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized List<Message> write(List<Message> messages) throws IOException {
+        long nowMillis = System.currentTimeMillis();
+        Map<Path, List<Message>> messagesByPartition = messages.stream().collect(Collectors.groupingBy(this::createPartition));
+        List<Message> failedMessages = new LinkedList<>();
+        messagesByPartition.forEach((partition, partitionedMessages) -> {
+            if (!append(partition, partitionedMessages, nowMillis)) {
+                failedMessages.addAll(partitionedMessages);
+            }
+        });
+        closeDueBuffers(nowMillis, false);
+        return failedMessages;
+    }
+
+    /**
+     * Closes the buffers that reached the size or age limit and uploads all closed files.
+     */
+    void flush(long nowMillis) {
+        closeDueBuffers(nowMillis, false);
+        uploadPendingFiles();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushScheduler.shutdown();
+        try {
+            flushScheduler.awaitTermination(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeDueBuffers(System.currentTimeMillis(), true);
+        uploadPendingFiles();
+        synchronized (uploadLock) {
+            for (LocalDlqDirectory recoveredDirectory : recoveredDirectories) {
+                recoveredDirectory.close();
+            }
+            recoveredDirectories.clear();
+            localDirectory.delete();
+        }
+    }
+
+    private boolean append(Path partition, List<Message> messages, long nowMillis) {
+        DlqBuffer buffer = buffers.get(partition);
+        try {
+            if (buffer == null) {
+                Path path = localDirectory.getPath().resolve(partition).resolve(UUID.randomUUID() + compression.getExtension());
+                buffer = new DlqBuffer(path, compression, jsonFactory, nowMillis);
+                buffers.put(partition, buffer);
+            }
+            for (Message message : messages) {
+                buffer.append(message);
+            }
+            buffer.sync();
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to buffer DLQ messages of {} into local file", partition, e);
+            if (buffer != null) {
+                buffers.remove(partition);
+                closeBuffer(buffer, true);
+            }
+            return false;
+        }
+    }
+
+    private synchronized void closeDueBuffers(long nowMillis, boolean closeAll) {
+        Iterator<DlqBuffer> iterator = buffers.values().iterator();
+        while (iterator.hasNext()) {
+            DlqBuffer buffer = iterator.next();
+            try {
+                if (closeAll || buffer.getSize() >= maxSizeBytes || nowMillis - buffer.getCreatedMillis() >= maxAgeMillis) {
+                    iterator.remove();
+                    closeBuffer(buffer, false);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read size of DLQ buffer {}", buffer.getPath(), e);
+                iterator.remove();
+                closeBuffer(buffer, true);
+            }
+        }
+    }
+
+    /**
+     * Queues the file of the buffer for upload, a file that failed to be written or closed is repaired before.
+     */
+    private synchronized void closeBuffer(DlqBuffer buffer, boolean repair) {
+        try {
+            buffer.close();
+            pendingFiles.put(buffer.getPath(), repair);
+        } catch (IOException e) {
+            log.warn("Failed to close DLQ buffer {}", buffer.getPath(), e);
+            pendingFiles.put(buffer.getPath(), true);
+        }
+    }
+
+    private void uploadPendingFiles() {
+        synchronized (uploadLock) {
+            List<Map.Entry<Path, Boolean>> files;
+            synchronized (this) {
+                files = new ArrayList<>(pendingFiles.entrySet());
+            }
+            files.forEach(this::upload);
+            deleteRecoveredDirectories();
+        }
+    }
+
+    /**
+     * Deletes the directories left over by a previous run once all of their files are uploaded.
+     */
+    private void deleteRecoveredDirectories() {
+        Iterator<LocalDlqDirectory> iterator = recoveredDirectories.iterator();
+        while (iterator.hasNext()) {
+            LocalDlqDirectory recoveredDirectory = iterator.next();
+            boolean uploaded;
+            synchronized (this) {
+                uploaded = pendingFiles.keySet().stream().noneMatch(path -> path.startsWith(recoveredDirectory.getPath()));
+            }
+            if (uploaded) {
+                iterator.remove();
+                try {
+                    recoveredDirectory.delete();
+                } catch (IOException e) {
+                    log.warn("Failed to delete recovered DLQ directory {}", recoveredDirectory.getPath(), e);
+                }
+            }
+        }
+    }
+
+    private void upload(Map.Entry<Path, Boolean> file) {
+        Path path = file.getKey();
+        try {
+            if (!file.getValue() || repair(path)) {
+                blobStorage.store(path.subpath(path.getNameCount() - OBJECT_NAME_COUNT, path.getNameCount()).toString(), path.toString());
+            }
+            Files.deleteIfExists(path);
+            synchronized (this) {
+                pendingFiles.remove(path);
+            }
+        } catch (BlobStorageException | IOException e) {
+            log.warn("Failed to upload DLQ file {}, it is retried on the next flush", path, e);
+        }
+    }
+
+    /**
+     * Locks the directories left over by a previous run and queues their files for upload, named as
+     * topic, date and file name.
+     */
+    private void recoverLocalFiles(Path sharedDirectory) throws IOException {
+        for (LocalDlqDirectory recoveredDirectory : LocalDlqDirectory.lockLeftOver(sharedDirectory)) {
+            recoveredDirectories.add(recoveredDirectory);
+            for (Path path : recoveredDirectory.listFiles()) {
+                if (path.getFileName().toString().endsWith(REPAIR_SUFFIX)) {
+                    Files.delete(path);
+                } else {
+                    log.info("Recovered DLQ file {}", path);
+                    pendingFiles.put(path, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with the complete records that can be decompressed from it.
+     *
+     * @return false if the file has no complete record
+     */
+    private boolean repair(Path path) throws IOException {
+        DlqCompressionType fileCompression = DlqCompressionType.fromFileName(path.getFileName().toString());
+        long completeLength = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream inputStream = fileCompression.decompress(new BufferedInputStream(Files.newInputStream(path)))) {
+            long position = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        completeLength = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            log.warn("DLQ file {} is truncated, keeping its first {} bytes", path, completeLength);
+        }
+        if (completeLength == 0) {
+            return false;
+        }
+        Path repaired = path.resolveSibling(path.getFileName() + REPAIR_SUFFIX);
+        try (InputStream inputStream = fileCompression.decompress(new BufferedInputStream(Files.newInputStream(path)));
+             OutputStream outputStream = fileCompression.compress(new BufferedOutputStream(Files.newOutputStream(repaired)))) {
+            long remaining = completeLength;
+            while (remaining > 0) {
+                int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("DLQ file " + path + " changed while being repaired");
+                }
+                outputStream.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(repaired, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+        Files.move(repaired, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    private Path createPartition(Message message) {
+        LocalDate consumeLocalDate = LocalDate.from(Instant.ofEpochMilli(message.getConsumeTimestamp())
+                .atZone(ZoneId.of("UTC")));
+        String consumeDate = DateTimeFormatter.ISO_LOCAL_DATE.format(consumeLocalDate);
+        return Paths.get(message.getTopic(), consumeDate);
+    }
+}
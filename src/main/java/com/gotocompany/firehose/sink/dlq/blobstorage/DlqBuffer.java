@@ -0,0 +1,82 @@
+package com.gotocompany.firehose.sink.dlq.blobstorage;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.gotocompany.firehose.message.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A local file collecting the DLQ records of one topic and date, one json object per line.
+ * <p>
+ * Records are serialized and base64 encoded straight into the compressed stream. After {@link #sync()} all the
+ * records appended so far are on disk and can be decompressed even if the file is never closed.
+ */
+class DlqBuffer implements Closeable {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path path;
+    private final long createdMillis;
+    private final FileOutputStream fileOutputStream;
+    private final JsonGenerator generator;
+
+    DlqBuffer(Path path, DlqCompressionType compression, JsonFactory jsonFactory, long createdMillis) throws IOException {
+        this.path = path;
+        this.createdMillis = createdMillis;
+        Files.createDirectories(path.getParent());
+        this.fileOutputStream = new FileOutputStream(path.toFile());
+        this.generator = jsonFactory.createGenerator(compression.compress(new BufferedOutputStream(fileOutputStream)));
+    }
+
+    void append(Message message) throws IOException {
+        generator.writeStartObject();
+        generator.writeBinaryField("key", message.getLogKey() == null ? EMPTY : message.getLogKey());
+        generator.writeBinaryField("value", message.getLogMessage() == null ? EMPTY : message.getLogMessage());
+        generator.writeStringField("topic", message.getTopic());
+        generator.writeNumberField("partition", message.getPartition());
+        generator.writeNumberField("offset", message.getOffset());
+        generator.writeNumberField("timestamp", message.getTimestamp());
+        generator.writeStringField("error", message.getErrorInfo().toString());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    void sync() throws IOException {
+        generator.flush();
+        fileOutputStream.getChannel().force(false);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    long getSize() throws IOException {
+        return fileOutputStream.getChannel().size();
+    }
+
+    /**
+     * Finishes the compressed stream and syncs the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            generator.close();
+        } finally {
+            fileOutputStream.close();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+}
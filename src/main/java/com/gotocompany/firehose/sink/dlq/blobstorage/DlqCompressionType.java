@@ -0,0 +1,65 @@
+package com.gotocompany.firehose.sink.dlq.blobstorage;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the DLQ objects, the object names end with its extension.
+ */
+public enum DlqCompressionType {
+    NONE(""),
+    GZIP(".gz"),
+    ZSTD(".zst");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String extension;
+
+    DlqCompressionType(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Wraps the stream into a compressing stream, whose flush makes all the bytes written so far decompressible.
+     */
+    public OutputStream compress(OutputStream outputStream) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(outputStream, BUFFER_SIZE, true);
+            case ZSTD:
+                return new ZstdOutputStream(outputStream);
+            default:
+                return outputStream;
+        }
+    }
+
+    public InputStream decompress(InputStream inputStream) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(inputStream, BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdInputStream(inputStream);
+            default:
+                return inputStream;
+        }
+    }
+
+    public static DlqCompressionType fromFileName(String fileName) {
+        for (DlqCompressionType type : values()) {
+            if (type != NONE && fileName.endsWith(type.extension)) {
+                return type;
+            }
+        }
+        return NONE;
+    }
+}
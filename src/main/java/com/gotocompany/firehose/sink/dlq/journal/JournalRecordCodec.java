@@ -0,0 +1,106 @@
+package com.gotocompany.firehose.sink.dlq.journal;
+
+import com.gotocompany.depot.error.ErrorInfo;
+import com.gotocompany.depot.error.ErrorType;
+import com.gotocompany.firehose.exception.DefaultException;
+import com.gotocompany.firehose.message.Message;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of a DLQ message in the journal. The error is kept as its type and exception message.
+ */
+final class JournalRecordCodec {
+    private static final int NULL_LENGTH = -1;
+
+    private JournalRecordCodec() {
+    }
+
+    static byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeBytes(out, message.getLogKey());
+        writeBytes(out, message.getLogMessage());
+        writeString(out, message.getTopic());
+        out.writeInt(message.getPartition());
+        out.writeLong(message.getOffset());
+        out.writeLong(message.getTimestamp());
+        out.writeLong(message.getConsumeTimestamp());
+        Headers headers = message.getHeaders();
+        if (headers == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            Header[] headerArray = headers.toArray();
+            out.writeInt(headerArray.length);
+            for (Header header : headerArray) {
+                writeString(out, header.key());
+                writeBytes(out, header.value());
+            }
+        }
+        ErrorInfo errorInfo = message.getErrorInfo();
+        writeString(out, errorInfo == null ? null : errorInfo.getErrorType().name());
+        writeString(out, errorInfo == null || errorInfo.getException() == null ? null : errorInfo.getException().getMessage());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Message decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte[] logKey = readBytes(in);
+        byte[] logMessage = readBytes(in);
+        String topic = readString(in);
+        int partition = in.readInt();
+        long offset = in.readLong();
+        long timestamp = in.readLong();
+        long consumeTimestamp = in.readLong();
+        Headers headers = null;
+        int headerCount = in.readInt();
+        if (headerCount != NULL_LENGTH) {
+            headers = new RecordHeaders();
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(new RecordHeader(readString(in), readBytes(in)));
+            }
+        }
+        String errorType = readString(in);
+        String errorMessage = readString(in);
+        ErrorInfo errorInfo = errorType == null ? null : new ErrorInfo(new DefaultException(errorMessage), ErrorType.valueOf(errorType));
+        return new Message(logKey, logMessage, topic, partition, offset, headers, timestamp, consumeTimestamp, errorInfo);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] value = readBytes(in);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,122 @@
+package com.gotocompany.firehose.sink.dlq.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A memory mapped file of the journal, holding records as length, crc32 and payload.
+ * <p>
+ * The mapped file is zero filled, a zero length marks the end of the records. A record whose crc doesn't match,
+ * torn by a crash before it was forced, ends the records as well.
+ */
+final class JournalSegment implements Closeable {
+    static final String SUFFIX = ".segment";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int CRC_OFFSET = 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long createdMillis;
+
+    private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer, long createdMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.createdMillis = createdMillis;
+    }
+
+    /**
+     * Creates a segment for appending, large enough for at least one record of the given size.
+     */
+    static JournalSegment create(Path directory, long sequence, int sizeBytes, int minRecordBytes, long nowMillis) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", sequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = Math.max(sizeBytes, RECORD_HEADER_BYTES + minRecordBytes);
+        return new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), nowMillis);
+    }
+
+    /**
+     * Opens a sealed segment for reading.
+     */
+    static JournalSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), 0);
+    }
+
+    /**
+     * Appends the record, the length is written last so a reader never sees a partially copied record.
+     *
+     * @return false if the segment has no space left for the record
+     */
+    boolean append(byte[] record) {
+        int position = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_BYTES + record.length) {
+            return false;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + RECORD_HEADER_BYTES);
+        payload.put(record);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        buffer.putInt(position + CRC_OFFSET, (int) crc.getValue());
+        buffer.putInt(position, record.length);
+        buffer.position(position + RECORD_HEADER_BYTES + record.length);
+        return true;
+    }
+
+    /**
+     * Reads up to maxRecords records starting at the position.
+     *
+     * @return the position after the records read
+     */
+    int read(int position, int maxRecords, List<byte[]> records) {
+        int current = position;
+        while (records.size() < maxRecords && current + RECORD_HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(current);
+            if (length <= 0 || current + RECORD_HEADER_BYTES + length > buffer.limit()) {
+                break;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(current + RECORD_HEADER_BYTES);
+            payload.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if (buffer.getInt(current + CRC_OFFSET) != (int) crc.getValue()) {
+                break;
+            }
+            records.add(record);
+            current += RECORD_HEADER_BYTES + length;
+        }
+        return current;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,234 @@
+package com.gotocompany.firehose.sink.dlq.journal;
+
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.dlq.DlqWriter;
+import com.gotocompany.firehose.sink.dlq.LocalDlqDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.gotocompany.firehose.metrics.Metrics.DLQ_LOCAL_JOURNAL_PENDING_SEGMENTS;
+
+/**
+ * Appends DLQ messages to a journal of memory mapped segments on local disk, a background shipper drains
+ * sealed segments in order to another DLQ writer.
+ * <p>
+ * A write returns once its records are forced to disk. Concurrent writes share one force of the active segment.
+ * The active segment is sealed when full or older than the max age. A segment is deleted once all of its
+ * messages are shipped. Every writer keeps its segments in a locked directory of its own in the journal directory.
+ * Segments left by a previous run in directories nobody holds a lock on are shipped on start, before the segments of
+ * the writer, so a crash ships a segment at least once.
+ */
+public class LocalJournalDlqWriter implements DlqWriter {
+    private static final int SHIP_BATCH_SIZE = 500;
+
+    private final LocalDlqDirectory directory;
+    private final Deque<LocalDlqDirectory> recoveredDirectories = new ArrayDeque<>();
+    private final int segmentSizeBytes;
+    private final long segmentMaxAgeMillis;
+    private final DlqWriter shipper;
+    private final FirehoseInstrumentation firehoseInstrumentation;
+    private final Deque<Path> sealedSegments = new ArrayDeque<>();
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService shipScheduler;
+    private JournalSegment activeSegment;
+    private long nextSequence;
+    private long appendedRecords;
+    private long syncedRecords;
+    private JournalSegment shippingSegment;
+    private int shipPosition;
+    private List<Message> unshippedMessages = Collections.emptyList();
+
+    public LocalJournalDlqWriter(Path directory, int segmentSizeBytes, long segmentMaxAgeMillis, long shipIntervalMillis,
+                                 DlqWriter shipper, FirehoseInstrumentation firehoseInstrumentation) throws IOException {
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.segmentMaxAgeMillis = segmentMaxAgeMillis;
+        this.shipper = shipper;
+        this.firehoseInstrumentation = firehoseInstrumentation;
+        Files.createDirectories(directory);
+        for (LocalDlqDirectory recoveredDirectory : LocalDlqDirectory.lockLeftOver(directory)) {
+            recoveredDirectories.add(recoveredDirectory);
+            List<Path> segments = recoveredDirectory.listFiles().stream()
+                    .filter(path -> path.getFileName().toString().endsWith(JournalSegment.SUFFIX))
+                    .collect(Collectors.toList());
+            sealedSegments.addAll(segments);
+            firehoseInstrumentation.logInfo("Recovered {} DLQ journal segments from {}", segments.size(), recoveredDirectory.getPath());
+        }
+        deleteShippedDirectories();
+        this.directory = LocalDlqDirectory.create(directory);
+        this.activeSegment = JournalSegment.create(this.directory.getPath(), nextSequence++, segmentSizeBytes, 0, System.currentTimeMillis());
+        this.shipScheduler = Executors.newScheduledThreadPool(1);
+        this.shipScheduler.scheduleWithFixedDelay(() -> ship(System.currentTimeMillis()),
+                shipIntervalMillis, shipIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<Message> write(List<Message> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> records = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            records.add(JournalRecordCodec.encode(message));
+        }
+        long position;
+        try {
+            synchronized (this) {
+                for (byte[] record : records) {
+                    if (!activeSegment.append(record)) {
+                        rollSegment(record.length);
+                        activeSegment.append(record);
+                    }
+                }
+                appendedRecords += records.size();
+                position = appendedRecords;
+            }
+            sync(position);
+        } catch (IOException e) {
+            firehoseInstrumentation.logWarn("Failed to append {} messages to the DLQ journal: {}", messages.size(), e.getMessage());
+            return new ArrayList<>(messages);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Seals the active segment if it is due and ships the sealed segments until the shipper fails.
+     */
+    void ship(long nowMillis) {
+        try {
+            synchronized (this) {
+                if (!activeSegment.isEmpty() && nowMillis - activeSegment.getCreatedMillis() >= segmentMaxAgeMillis) {
+                    rollSegment(0);
+                }
+            }
+            shipSealedSegments();
+        } catch (Exception e) {
+            firehoseInstrumentation.logWarn("Failed to ship the DLQ journal, retrying on the next run: {}", e.getMessage());
+        }
+        synchronized (this) {
+            firehoseInstrumentation.captureValue(DLQ_LOCAL_JOURNAL_PENDING_SEGMENTS, sealedSegments.size());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        shipScheduler.shutdown();
+        try {
+            shipScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            rollSegment(0);
+        }
+        ship(System.currentTimeMillis());
+        synchronized (this) {
+            activeSegment.close();
+            Files.deleteIfExists(activeSegment.getPath());
+            for (LocalDlqDirectory recoveredDirectory : recoveredDirectories) {
+                recoveredDirectory.close();
+            }
+            directory.delete();
+        }
+        if (shippingSegment != null) {
+            shippingSegment.close();
+        }
+        shipper.close();
+    }
+
+    /**
+     * Forces the active segment unless a concurrent write already forced the records up to the position.
+     */
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (syncedRecords >= position) {
+                return;
+            }
+            JournalSegment segment;
+            long appended;
+            synchronized (this) {
+                segment = activeSegment;
+                appended = appendedRecords;
+            }
+            segment.force();
+            syncedRecords = appended;
+        }
+    }
+
+    private void rollSegment(int minRecordBytes) throws IOException {
+        JournalSegment sealed = activeSegment;
+        sealed.force();
+        sealed.close();
+        activeSegment = JournalSegment.create(directory.getPath(), nextSequence++, segmentSizeBytes, minRecordBytes, System.currentTimeMillis());
+        if (sealed.isEmpty()) {
+            Files.delete(sealed.getPath());
+        } else {
+            sealedSegments.add(sealed.getPath());
+        }
+    }
+
+    /**
+     * Deletes the directories left over by a previous run once all of their segments are shipped.
+     */
+    private void deleteShippedDirectories() throws IOException {
+        while (!recoveredDirectories.isEmpty()) {
+            Path recoveredPath = recoveredDirectories.peekFirst().getPath();
+            Path nextSegment = sealedSegments.peekFirst();
+            if (nextSegment != null && nextSegment.startsWith(recoveredPath)) {
+                return;
+            }
+            recoveredDirectories.pollFirst().delete();
+        }
+    }
+
+    private void shipSealedSegments() throws IOException {
+        while (true) {
+            if (!unshippedMessages.isEmpty()) {
+                unshippedMessages = shipper.write(unshippedMessages);
+                if (!unshippedMessages.isEmpty()) {
+                    firehoseInstrumentation.logWarn("Failed to ship {} DLQ journal messages", unshippedMessages.size());
+                    return;
+                }
+            }
+            Path segmentPath;
+            synchronized (this) {
+                segmentPath = sealedSegments.peekFirst();
+            }
+            if (segmentPath == null) {
+                return;
+            }
+            if (shippingSegment == null) {
+                shippingSegment = JournalSegment.open(segmentPath);
+                shipPosition = 0;
+            }
+            List<byte[]> records = new ArrayList<>(SHIP_BATCH_SIZE);
+            shipPosition = shippingSegment.read(shipPosition, SHIP_BATCH_SIZE, records);
+            if (records.isEmpty()) {
+                shippingSegment.close();
+                shippingSegment = null;
+                Files.delete(segmentPath);
+                synchronized (this) {
+                    sealedSegments.pollFirst();
+                    deleteShippedDirectories();
+                }
+                continue;
+            }
+            List<Message> messages = new ArrayList<>(records.size());
+            for (byte[] record : records) {
+                messages.add(JournalRecordCodec.decode(record));
+            }
+            unshippedMessages = messages;
+        }
+    }
+}
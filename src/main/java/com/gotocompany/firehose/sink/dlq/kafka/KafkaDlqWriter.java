@@ -11,9 +11,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+/**
+ * Writes messages to a kafka topic.
+ * <p>
+ * All messages of a batch are sent without waiting for each other, the write then blocks until every send of the
+ * batch is acknowledged or failed, so the caller decides on retries and offsets with the outcome of the whole batch.
+ */
 public class KafkaDlqWriter implements DlqWriter {
+    private static final int PENDING = 0;
+    private static final int ACKNOWLEDGED = 1;
+    private static final int FAILED = 2;
 
     private Producer<byte[], byte[]> kafkaProducer;
     private final String topic;
@@ -30,32 +39,51 @@ public class KafkaDlqWriter implements DlqWriter {
         if (messages.isEmpty()) {
             return Collections.emptyList();
         }
-        CountDownLatch completedLatch = new CountDownLatch(1);
-        AtomicInteger recordsProcessed = new AtomicInteger();
-        List<Message> failedMessages = new ArrayList<>();
-
-        firehoseInstrumentation.logInfo("Pushing {} messages to retry queue topic : {}", messages.size(), topic);
-        for (Message message : messages) {
-            kafkaProducer.send(new ProducerRecord<>(topic, null, null, message.getLogKey(), message.getLogMessage(),
-                    message.getHeaders()), (metadata, e) -> {
-                recordsProcessed.incrementAndGet();
-
-                if (e != null) {
-                    synchronized (failedMessages) {
-                        failedMessages.add(message);
-                    }
-                }
-                if (recordsProcessed.get() == messages.size()) {
-                    completedLatch.countDown();
-                }
-            });
-        }
+        AtomicIntegerArray sendStates = new AtomicIntegerArray(messages.size());
+        CountDownLatch completedSends = new CountDownLatch(messages.size());
+        send(messages, sendStates, completedSends);
         try {
-            completedLatch.await();
+            completedSends.await();
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             firehoseInstrumentation.logWarn(e.getMessage());
             firehoseInstrumentation.captureNonFatalError("firehose_error_event", e, "");
         }
+        return getFailedMessages(messages, sendStates);
+    }
+
+    /**
+     * Sends the messages, the state of each send is set once its message is acknowledged or its send failed.
+     */
+    private void send(List<Message> messages, AtomicIntegerArray sendStates, CountDownLatch completedSends) {
+        firehoseInstrumentation.logInfo("Pushing {} messages to retry queue topic : {}", messages.size(), topic);
+        for (int i = 0; i < messages.size(); i++) {
+            int index = i;
+            Message message = messages.get(i);
+            try {
+                kafkaProducer.send(new ProducerRecord<>(topic, null, null, message.getLogKey(), message.getLogMessage(),
+                        message.getHeaders()), (metadata, e) -> {
+                    sendStates.set(index, e == null ? ACKNOWLEDGED : FAILED);
+                    completedSends.countDown();
+                });
+            } catch (RuntimeException e) {
+                firehoseInstrumentation.logWarn("Failed to send message to {}: {}", topic, e.getMessage());
+                sendStates.set(index, FAILED);
+                completedSends.countDown();
+            }
+        }
+    }
+
+    /**
+     * Messages whose send failed or is not acknowledged yet.
+     */
+    private List<Message> getFailedMessages(List<Message> messages, AtomicIntegerArray sendStates) {
+        List<Message> failedMessages = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (sendStates.get(i) != ACKNOWLEDGED) {
+                failedMessages.add(messages.get(i));
+            }
+        }
         firehoseInstrumentation.logInfo("Successfully pushed {} messages to {}", messages.size() - failedMessages.size(), topic);
         return failedMessages;
     }
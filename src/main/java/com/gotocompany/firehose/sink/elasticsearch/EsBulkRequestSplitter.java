@@ -0,0 +1,56 @@
+package com.gotocompany.firehose.sink.elasticsearch;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the write requests of a batch into bulk requests bounded by action count and estimated size.
+ * <p>
+ * Like the Elasticsearch {@code BulkProcessor}, a bulk request is closed as soon as it reaches either limit.
+ * A non-positive limit disables that bound.
+ */
+public class EsBulkRequestSplitter {
+    private final long requestTimeoutInMs;
+    private final Integer waitForActiveShardsCount;
+    private final int maxActions;
+    private final long maxSizeInBytes;
+
+    public EsBulkRequestSplitter(long requestTimeoutInMs, Integer waitForActiveShardsCount, int maxActions, long maxSizeInBytes) {
+        this.requestTimeoutInMs = requestTimeoutInMs;
+        this.waitForActiveShardsCount = waitForActiveShardsCount;
+        this.maxActions = maxActions;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    public List<BulkRequest> split(List<DocWriteRequest> requests) {
+        List<BulkRequest> bulkRequests = new ArrayList<>();
+        BulkRequest bulkRequest = null;
+        for (DocWriteRequest request : requests) {
+            if (bulkRequest == null) {
+                bulkRequest = createBulkRequest();
+                bulkRequests.add(bulkRequest);
+            }
+            bulkRequest.add(request);
+            if (isFull(bulkRequest)) {
+                bulkRequest = null;
+            }
+        }
+        return bulkRequests;
+    }
+
+    private BulkRequest createBulkRequest() {
+        BulkRequest bulkRequest = new BulkRequest();
+        bulkRequest.timeout(TimeValue.timeValueMillis(requestTimeoutInMs));
+        bulkRequest.waitForActiveShards(waitForActiveShardsCount);
+        return bulkRequest;
+    }
+
+    private boolean isFull(BulkRequest bulkRequest) {
+        return (maxActions > 0 && bulkRequest.numberOfActions() >= maxActions)
+                || (maxSizeInBytes > 0 && bulkRequest.estimatedSizeInBytes() >= maxSizeInBytes);
+    }
+}
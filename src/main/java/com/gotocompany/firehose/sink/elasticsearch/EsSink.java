@@ -1,34 +1,49 @@
 package com.gotocompany.firehose.sink.elasticsearch;
 
-import com.gotocompany.firehose.exception.NeedToRetry;
+import com.gotocompany.depot.error.ErrorInfo;
+import com.gotocompany.depot.error.ErrorType;
+import com.gotocompany.firehose.exception.DefaultException;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.metrics.Metrics;
 import com.gotocompany.firehose.sink.elasticsearch.request.EsRequestHandler;
 import com.gotocompany.firehose.sink.AbstractSink;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Collectors;
 
 /**
  * Elastic search sink.
+ * <p>
+ * Every batch is split into bulk requests by {@link EsBulkRequestSplitter}. When more than one concurrent
+ * request is allowed, the bulk requests of a batch are sent in parallel, and their item responses are merged
+ * back to the messages they were built from.
  */
 public class EsSink extends AbstractSink {
     private RestHighLevelClient client;
     private EsRequestHandler esRequestHandler;
-    private BulkRequest bulkRequest;
-    private long esRequestTimeoutInMs;
-    private Integer esWaitForActiveShardsCount;
+    private EsBulkRequestSplitter esBulkRequestSplitter;
+    private ExecutorService bulkRequestExecutor;
+    private List<BulkRequest> bulkRequests;
+    private List<Message> messages;
     private List<String> esRetryStatusCodeBlacklist;
 
     /**
-     * Instantiates a new Es sink.
+     * Instantiates a new Es sink which sends each batch as a single bulk request.
      *
      * @param firehoseInstrumentation            the instrumentation
      * @param sinkType                   the sink type
@@ -40,57 +55,142 @@ public class EsSink extends AbstractSink {
      */
     public EsSink(FirehoseInstrumentation firehoseInstrumentation, String sinkType, RestHighLevelClient client, EsRequestHandler esRequestHandler,
                   long esRequestTimeoutInMs, Integer esWaitForActiveShardsCount, List<String> esRetryStatusCodeBlacklist) {
+        this(firehoseInstrumentation, sinkType, client, esRequestHandler,
+                new EsBulkRequestSplitter(esRequestTimeoutInMs, esWaitForActiveShardsCount, -1, -1), 1, esRetryStatusCodeBlacklist);
+    }
+
+    /**
+     * Instantiates a new Es sink.
+     *
+     * @param firehoseInstrumentation    the instrumentation
+     * @param sinkType                   the sink type
+     * @param client                     the client
+     * @param esRequestHandler           the es request handler
+     * @param esBulkRequestSplitter      the splitter bounding each bulk request
+     * @param esBulkConcurrentRequests   the maximum number of bulk requests in flight
+     * @param esRetryStatusCodeBlacklist the es retry status code blacklist
+     */
+    public EsSink(FirehoseInstrumentation firehoseInstrumentation, String sinkType, RestHighLevelClient client, EsRequestHandler esRequestHandler,
+                  EsBulkRequestSplitter esBulkRequestSplitter, int esBulkConcurrentRequests, List<String> esRetryStatusCodeBlacklist) {
         super(firehoseInstrumentation, sinkType);
         this.client = client;
         this.esRequestHandler = esRequestHandler;
-        this.esRequestTimeoutInMs = esRequestTimeoutInMs;
-        this.esWaitForActiveShardsCount = esWaitForActiveShardsCount;
+        this.esBulkRequestSplitter = esBulkRequestSplitter;
         this.esRetryStatusCodeBlacklist = esRetryStatusCodeBlacklist;
+        if (esBulkConcurrentRequests > 1) {
+            this.bulkRequestExecutor = Executors.newFixedThreadPool(esBulkConcurrentRequests);
+        }
     }
 
     @Override
-    protected void prepare(List<Message> messages) {
-        bulkRequest = new BulkRequest();
-        bulkRequest.timeout(TimeValue.timeValueMillis(esRequestTimeoutInMs));
-        bulkRequest.waitForActiveShards(esWaitForActiveShardsCount);
-        messages.forEach(message -> bulkRequest.add(esRequestHandler.getRequest(message)));
+    protected void prepare(List<Message> messageList) {
+        messages = messageList;
+        List<DocWriteRequest> requests = messages.stream().map(esRequestHandler::getRequest).collect(Collectors.toList());
+        bulkRequests = esBulkRequestSplitter.split(requests);
     }
 
+    /**
+     * Sends the bulk requests and maps every failed item back to the message it was built from.
+     * Items failing with a blacklisted status are dropped, the rest are returned for retry
+     * with the failure recorded on the message.
+     *
+     * @return the messages whose bulk items failed with a retryable status
+     * @throws InterruptedException when interrupted while waiting for bulk responses
+     */
     @Override
-    protected List<Message> execute() throws Exception {
-        BulkResponse bulkResponse = getBulkResponse();
-        if (bulkResponse.hasFailures()) {
-            getFirehoseInstrumentation().logWarn("Bulk request failed");
-            handleResponse(bulkResponse);
+    protected List<Message> execute() throws InterruptedException {
+        List<Future<BulkResponse>> bulkResponses = new ArrayList<>();
+        bulkRequests.forEach(bulkRequest -> bulkResponses.add(submit(bulkRequest)));
+
+        List<Message> failedMessages = new ArrayList<>();
+        int firstMessageIndex = 0;
+        for (int i = 0; i < bulkRequests.size(); i++) {
+            int actions = bulkRequests.get(i).numberOfActions();
+            try {
+                BulkResponse bulkResponse = bulkResponses.get(i).get();
+                if (bulkResponse.hasFailures()) {
+                    getFirehoseInstrumentation().logWarn("Bulk request failed");
+                    failedMessages.addAll(handleResponse(bulkResponse, firstMessageIndex));
+                }
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                getFirehoseInstrumentation().captureNonFatalError("firehose_error_event", cause, "Bulk request of {} actions failed", actions);
+                ErrorInfo errorInfo = new ErrorInfo(cause, ErrorType.DEFAULT_ERROR);
+                messages.subList(firstMessageIndex, firstMessageIndex + actions).forEach(message -> failedMessages.add(new Message(message, errorInfo)));
+            }
+            firstMessageIndex += actions;
         }
-        return new ArrayList<>();
+        return failedMessages;
     }
 
     @Override
     public void close() throws IOException {
         getFirehoseInstrumentation().logInfo("Elastic Search connection closing");
+        if (bulkRequestExecutor != null) {
+            bulkRequestExecutor.shutdown();
+        }
         this.client.close();
     }
 
-    BulkResponse getBulkResponse() throws IOException {
+    BulkResponse getBulkResponse(BulkRequest bulkRequest) throws IOException {
         return client.bulk(bulkRequest);
     }
 
-    private void handleResponse(BulkResponse bulkResponse) throws NeedToRetry {
+    private Future<BulkResponse> submit(BulkRequest bulkRequest) {
+        if (bulkRequestExecutor == null) {
+            FutureTask<BulkResponse> bulkResponse = new FutureTask<>(() -> sendBulkRequest(bulkRequest));
+            bulkResponse.run();
+            return bulkResponse;
+        }
+        return bulkRequestExecutor.submit(() -> sendBulkRequest(bulkRequest));
+    }
+
+    private BulkResponse sendBulkRequest(BulkRequest bulkRequest) throws IOException {
+        getFirehoseInstrumentation().captureHistogram(Metrics.SINK_ES_BULK_ACTIONS_TOTAL, bulkRequest.numberOfActions());
+        getFirehoseInstrumentation().captureHistogram(Metrics.SINK_ES_BULK_SIZE_BYTES, bulkRequest.estimatedSizeInBytes());
+        Instant bulkStartTime = Instant.now();
+        try {
+            return getBulkResponse(bulkRequest);
+        } finally {
+            getFirehoseInstrumentation().captureDurationSince(Metrics.SINK_ES_BULK_RESPONSE_TIME_MILLISECONDS, bulkStartTime);
+        }
+    }
+
+    private List<Message> handleResponse(BulkResponse bulkResponse, int firstMessageIndex) {
+        List<Message> failedMessages = new ArrayList<>();
         int failedResponseCount = 0;
+        int rejectedResponseCount = 0;
         for (BulkItemResponse response : bulkResponse.getItems()) {
             if (response.isFailed()) {
                 failedResponseCount++;
+                if (response.status() == RestStatus.TOO_MANY_REQUESTS) {
+                    rejectedResponseCount++;
+                }
                 String responseStatus = String.valueOf(response.status().getStatus());
                 if (esRetryStatusCodeBlacklist.contains(responseStatus)) {
                     getFirehoseInstrumentation().logInfo("Not retrying due to response status: {} is under blacklisted status code", responseStatus);
                     getFirehoseInstrumentation().incrementCounter(Metrics.SINK_MESSAGES_DROP_TOTAL, "cause=" + response.status().name());
                     getFirehoseInstrumentation().logInfo("Message dropped because of status code: " + responseStatus);
                 } else {
-                    throw new NeedToRetry(bulkResponse.buildFailureMessage());
+                    failedMessages.add(new Message(messages.get(firstMessageIndex + response.getItemId()), getErrorInfo(response)));
                 }
             }
         }
+        if (rejectedResponseCount > 0) {
+            getFirehoseInstrumentation().captureCount(Metrics.SINK_ES_BULK_REJECTED_TOTAL, (long) rejectedResponseCount);
+        }
         getFirehoseInstrumentation().logWarn("Bulk request failed count: {}", failedResponseCount);
+        return failedMessages;
+    }
+
+    private ErrorInfo getErrorInfo(BulkItemResponse response) {
+        Exception cause = null;
+        if (response.getFailure() != null) {
+            cause = response.getFailure().getCause();
+        }
+        if (cause == null) {
+            cause = new DefaultException(String.format("Status code fall under retry range. StatusCode: %s", response.status().getStatus()));
+        }
+        return new ErrorInfo(cause, ErrorType.DEFAULT_ERROR);
     }
 }
@@ -9,6 +9,7 @@ import com.gotocompany.firehose.sink.elasticsearch.request.EsRequestHandler;
 import com.gotocompany.firehose.sink.elasticsearch.request.EsRequestHandlerFactory;
 import com.gotocompany.depot.metrics.StatsDReporter;
 import com.gotocompany.firehose.sink.Sink;
+import com.gotocompany.stencil.Parser;
 import com.gotocompany.stencil.client.StencilClient;
 import org.aeonbits.owner.ConfigFactory;
 import org.apache.http.HttpHost;
@@ -40,25 +41,31 @@ public class EsSinkFactory {
         String esConfig = String.format("\n\tES connection urls: %s\n\tES index name: %s\n\tES id field: %s\n\tES message type: %s"
                         + "\n\tES type name: %s\n\tES request timeout in ms: %s\n\tES retry status code blacklist: %s"
                         + "\n\tES routing key name: %s\n\tES wait for active shards count: %s\n\tES update only mode: %s"
-                        + "\n\tES should preserve proto filed names: %s",
+                        + "\n\tES should preserve proto filed names: %s\n\tES bulk max actions: %s\n\tES bulk max size bytes: %s"
+                        + "\n\tES bulk concurrent requests: %s",
                 esSinkConfig.getSinkEsConnectionUrls(), esSinkConfig.getSinkEsIndexName(), esSinkConfig.getSinkEsIdField(), esSinkConfig.getSinkEsInputMessageType(),
                 esSinkConfig.getSinkEsTypeName(), esSinkConfig.getSinkEsRequestTimeoutMs(), esSinkConfig.getSinkEsRetryStatusCodeBlacklist(),
                 esSinkConfig.getSinkEsRoutingKeyName(), esSinkConfig.getSinkEsShardsActiveWaitCount(), esSinkConfig.isSinkEsModeUpdateOnlyEnable(),
-                esSinkConfig.isSinkEsPreserveProtoFieldNamesEnable());
+                esSinkConfig.isSinkEsPreserveProtoFieldNamesEnable(), esSinkConfig.getSinkEsBulkMaxActions(), esSinkConfig.getSinkEsBulkMaxSizeBytes(),
+                esSinkConfig.getSinkEsBulkConcurrentRequests());
         firehoseInstrumentation.logDebug(esConfig);
+        Parser protoParser = stencilClient.getParser(esSinkConfig.getInputSchemaProtoClass());
         EsRequestHandler esRequestHandler = new EsRequestHandlerFactory(esSinkConfig, new FirehoseInstrumentation(statsDReporter, EsRequestHandlerFactory.class),
                 esSinkConfig.getSinkEsIdField(), esSinkConfig.getSinkEsInputMessageType(),
-                new MessageToJson(stencilClient.getParser(esSinkConfig.getInputSchemaProtoClass()), esSinkConfig.isSinkEsPreserveProtoFieldNamesEnable(), false),
+                new MessageToJson(protoParser, esSinkConfig.isSinkEsPreserveProtoFieldNamesEnable(), false),
                 esSinkConfig.getSinkEsTypeName(),
                 esSinkConfig.getSinkEsIndexName(),
-                esSinkConfig.getSinkEsRoutingKeyName())
+                esSinkConfig.getSinkEsRoutingKeyName(),
+                protoParser)
                 .getRequestHandler();
 
         HttpHost[] httpHosts = getHttpHosts(esSinkConfig.getSinkEsConnectionUrls(), firehoseInstrumentation);
         RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(httpHosts));
         firehoseInstrumentation.logInfo("ES connection established");
+        EsBulkRequestSplitter esBulkRequestSplitter = new EsBulkRequestSplitter(esSinkConfig.getSinkEsRequestTimeoutMs(), esSinkConfig.getSinkEsShardsActiveWaitCount(),
+                esSinkConfig.getSinkEsBulkMaxActions(), esSinkConfig.getSinkEsBulkMaxSizeBytes());
         return new EsSink(new FirehoseInstrumentation(statsDReporter, EsSink.class), SinkType.ELASTICSEARCH.name().toLowerCase(), client, esRequestHandler,
-                esSinkConfig.getSinkEsRequestTimeoutMs(), esSinkConfig.getSinkEsShardsActiveWaitCount(), getStatusCodesAsList(esSinkConfig.getSinkEsRetryStatusCodeBlacklist()));
+                esBulkRequestSplitter, esSinkConfig.getSinkEsBulkConcurrentRequests(), getStatusCodesAsList(esSinkConfig.getSinkEsRetryStatusCodeBlacklist()));
     }
 
     protected static HttpHost[] getHttpHosts(String esConnectionUrls, FirehoseInstrumentation firehoseInstrumentation) {
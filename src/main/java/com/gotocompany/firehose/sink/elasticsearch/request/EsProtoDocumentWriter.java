@@ -0,0 +1,195 @@
+package com.gotocompany.firehose.sink.elasticsearch.request;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+import com.gotocompany.firehose.exception.JsonParseException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a protobuf message straight into an {@link XContentBuilder}.
+ * <p>
+ * The produced document is equivalent to the output of {@link JsonFormat#printer()}, which is what
+ * {@link com.gotocompany.firehose.serializer.MessageToJson} used to generate, without the intermediate
+ * JSON strings.
+ */
+public class EsProtoDocumentWriter {
+    private static final String TIMESTAMP = "google.protobuf.Timestamp";
+    private static final String DURATION = "google.protobuf.Duration";
+    private static final String NULL_VALUE = "google.protobuf.NullValue";
+    private static final String WELL_KNOWN_TYPE_PREFIX = "google.protobuf.";
+    private static final Set<String> WRAPPERS = new HashSet<>(Arrays.asList(
+            "google.protobuf.DoubleValue", "google.protobuf.FloatValue", "google.protobuf.Int64Value",
+            "google.protobuf.UInt64Value", "google.protobuf.Int32Value", "google.protobuf.UInt32Value",
+            "google.protobuf.BoolValue", "google.protobuf.StringValue", "google.protobuf.BytesValue"));
+
+    private final boolean preserveProtoFieldNames;
+
+    public EsProtoDocumentWriter(boolean preserveProtoFieldNames) {
+        this.preserveProtoFieldNames = preserveProtoFieldNames;
+    }
+
+    public XContentBuilder write(Message message) throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        writeMessage(builder, message);
+        return builder;
+    }
+
+    public String getFieldName(Descriptors.FieldDescriptor fieldDescriptor) {
+        return preserveProtoFieldNames ? fieldDescriptor.getName() : fieldDescriptor.getJsonName();
+    }
+
+    /**
+     * Returns the text of a singular field as it would appear in the JSON document.
+     *
+     * @param fieldDescriptor the field descriptor
+     * @param value           the field value
+     * @return the field value as text
+     */
+    public String toText(Descriptors.FieldDescriptor fieldDescriptor, Object value) {
+        if (fieldDescriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            Message message = (Message) value;
+            String typeName = message.getDescriptorForType().getFullName();
+            if (TIMESTAMP.equals(typeName)) {
+                return Timestamps.toString(toTimestamp(message));
+            }
+            if (DURATION.equals(typeName)) {
+                return Durations.toString(toDuration(message));
+            }
+            if (WRAPPERS.contains(typeName)) {
+                Descriptors.FieldDescriptor valueField = message.getDescriptorForType().findFieldByNumber(1);
+                return toText(valueField, message.getField(valueField));
+            }
+            throw new IllegalArgumentException("Field: " + fieldDescriptor.getName() + " of type " + typeName + " can not be used as a key");
+        }
+        return String.valueOf(toScalar(fieldDescriptor, value));
+    }
+
+    private void writeMessage(XContentBuilder builder, Message message) throws IOException {
+        builder.startObject();
+        for (Map.Entry<Descriptors.FieldDescriptor, Object> field : message.getAllFields().entrySet()) {
+            builder.field(getFieldName(field.getKey()));
+            writeField(builder, field.getKey(), field.getValue());
+        }
+        builder.endObject();
+    }
+
+    private void writeField(XContentBuilder builder, Descriptors.FieldDescriptor fieldDescriptor, Object value) throws IOException {
+        if (fieldDescriptor.isMapField()) {
+            writeMap(builder, fieldDescriptor, (List<?>) value);
+        } else if (fieldDescriptor.isRepeated()) {
+            builder.startArray();
+            for (Object element : (List<?>) value) {
+                writeValue(builder, fieldDescriptor, element);
+            }
+            builder.endArray();
+        } else {
+            writeValue(builder, fieldDescriptor, value);
+        }
+    }
+
+    private void writeMap(XContentBuilder builder, Descriptors.FieldDescriptor fieldDescriptor, List<?> entries) throws IOException {
+        Descriptors.FieldDescriptor keyField = fieldDescriptor.getMessageType().findFieldByName("key");
+        Descriptors.FieldDescriptor valueField = fieldDescriptor.getMessageType().findFieldByName("value");
+        builder.startObject();
+        for (Object entry : entries) {
+            Message mapEntry = (Message) entry;
+            builder.field(String.valueOf(toScalar(keyField, mapEntry.getField(keyField))));
+            writeValue(builder, valueField, mapEntry.getField(valueField));
+        }
+        builder.endObject();
+    }
+
+    private void writeValue(XContentBuilder builder, Descriptors.FieldDescriptor fieldDescriptor, Object value) throws IOException {
+        if (fieldDescriptor.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            builder.value(toScalar(fieldDescriptor, value));
+            return;
+        }
+        Message message = (Message) value;
+        String typeName = message.getDescriptorForType().getFullName();
+        if (TIMESTAMP.equals(typeName)) {
+            builder.value(Timestamps.toString(toTimestamp(message)));
+        } else if (DURATION.equals(typeName)) {
+            builder.value(Durations.toString(toDuration(message)));
+        } else if (WRAPPERS.contains(typeName)) {
+            Descriptors.FieldDescriptor valueField = message.getDescriptorForType().findFieldByNumber(1);
+            writeValue(builder, valueField, message.getField(valueField));
+        } else if (typeName.startsWith(WELL_KNOWN_TYPE_PREFIX)) {
+            // Struct, ListValue, Any and FieldMask have bespoke JSON mappings, defer to JsonFormat for those.
+            builder.value(parseJson(JsonFormat.printer().print(message)));
+        } else {
+            writeMessage(builder, message);
+        }
+    }
+
+    private Object toScalar(Descriptors.FieldDescriptor fieldDescriptor, Object value) {
+        switch (fieldDescriptor.getType()) {
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return value.toString();
+            case UINT32:
+            case FIXED32:
+                return Integer.toUnsignedLong((Integer) value);
+            case UINT64:
+            case FIXED64:
+                return Long.toUnsignedString((Long) value);
+            case FLOAT:
+                Float floatValue = (Float) value;
+                return floatValue.isNaN() || floatValue.isInfinite() ? floatValue.toString() : floatValue;
+            case DOUBLE:
+                Double doubleValue = (Double) value;
+                return doubleValue.isNaN() || doubleValue.isInfinite() ? doubleValue.toString() : doubleValue;
+            case BYTES:
+                return Base64.getEncoder().encodeToString(((ByteString) value).toByteArray());
+            case ENUM:
+                Descriptors.EnumValueDescriptor enumValue = (Descriptors.EnumValueDescriptor) value;
+                if (NULL_VALUE.equals(enumValue.getType().getFullName())) {
+                    return null;
+                }
+                return enumValue.getIndex() == -1 ? (Object) enumValue.getNumber() : enumValue.getName();
+            default:
+                return value;
+        }
+    }
+
+    private Timestamp toTimestamp(Message message) {
+        Descriptors.Descriptor descriptor = message.getDescriptorForType();
+        return Timestamp.newBuilder()
+                .setSeconds((Long) message.getField(descriptor.findFieldByNumber(1)))
+                .setNanos((Integer) message.getField(descriptor.findFieldByNumber(2)))
+                .build();
+    }
+
+    private Duration toDuration(Message message) {
+        Descriptors.Descriptor descriptor = message.getDescriptorForType();
+        return Duration.newBuilder()
+                .setSeconds((Long) message.getField(descriptor.findFieldByNumber(1)))
+                .setNanos((Integer) message.getField(descriptor.findFieldByNumber(2)))
+                .build();
+    }
+
+    private Object parseJson(String json) {
+        try {
+            return new JSONParser().parse(json);
+        } catch (ParseException e) {
+            throw new JsonParseException(e.getMessage(), e);
+        }
+    }
+}
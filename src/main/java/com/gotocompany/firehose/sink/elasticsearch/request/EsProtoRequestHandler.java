@@ -0,0 +1,131 @@
+package com.gotocompany.firehose.sink.elasticsearch.request;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.gotocompany.firehose.config.enums.EsSinkMessageType;
+import com.gotocompany.firehose.config.enums.EsSinkRequestType;
+import com.gotocompany.firehose.exception.DeserializerException;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.stencil.Parser;
+import org.apache.commons.lang.StringUtils;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * Request handler for PROTOBUF input messages.
+ * <p>
+ * Reads the id and routing fields straight from the parsed message using field descriptors resolved once per
+ * schema, and writes the document into an {@link XContentBuilder} in a single pass, instead of serializing the
+ * message to JSON and parsing it back for every field lookup.
+ */
+public class EsProtoRequestHandler extends EsRequestHandler {
+    private final EsSinkMessageType messageType;
+    private final Parser protoParser;
+    private final EsProtoDocumentWriter documentWriter;
+    private final String esTypeName;
+    private final String esIndexName;
+    private final EsSinkRequestType esSinkRequestType;
+    private final String esIdFieldName;
+    private final String esRoutingKeyName;
+    private volatile KeyFields keyFields;
+
+    public EsProtoRequestHandler(EsSinkMessageType messageType, Parser protoParser, boolean preserveProtoFieldNames, String esTypeName,
+                                 String esIndexName, EsSinkRequestType esSinkRequestType, String esIdFieldName, String esRoutingKeyName) {
+        super(messageType, null);
+        this.messageType = messageType;
+        this.protoParser = protoParser;
+        this.documentWriter = new EsProtoDocumentWriter(preserveProtoFieldNames);
+        this.esTypeName = esTypeName;
+        this.esIndexName = esIndexName;
+        this.esSinkRequestType = esSinkRequestType;
+        this.esIdFieldName = esIdFieldName;
+        this.esRoutingKeyName = esRoutingKeyName;
+    }
+
+    @Override
+    public boolean canCreate() {
+        return messageType == EsSinkMessageType.PROTOBUF && protoParser != null;
+    }
+
+    @Override
+    public DocWriteRequest getRequest(Message message) {
+        DynamicMessage protoMessage = parse(message);
+        KeyFields fields = getKeyFields(protoMessage.getDescriptorForType());
+        String id = getFieldValue(protoMessage, fields.idField, esIdFieldName);
+        String routing = StringUtils.isNotEmpty(esRoutingKeyName) ? getFieldValue(protoMessage, fields.routingField, esRoutingKeyName) : null;
+        XContentBuilder document = buildDocument(protoMessage);
+        if (esSinkRequestType == EsSinkRequestType.UPDATE_ONLY) {
+            UpdateRequest request = new UpdateRequest(esIndexName, esTypeName, id);
+            request.routing(routing);
+            request.doc(document);
+            return request;
+        }
+        IndexRequest request = new IndexRequest(esIndexName, esTypeName, id);
+        request.routing(routing);
+        request.source(document);
+        return request;
+    }
+
+    private DynamicMessage parse(Message message) {
+        try {
+            return protoParser.parse(message.getLogMessage());
+        } catch (InvalidProtocolBufferException e) {
+            throw new DeserializerException(e.getMessage(), e);
+        }
+    }
+
+    private XContentBuilder buildDocument(DynamicMessage protoMessage) {
+        try {
+            return documentWriter.write(protoMessage);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String getFieldValue(DynamicMessage protoMessage, Descriptors.FieldDescriptor fieldDescriptor, String key) {
+        if (fieldDescriptor == null || fieldDescriptor.isRepeated() || !protoMessage.hasField(fieldDescriptor)) {
+            throw new IllegalArgumentException("Key: " + key + " not found in ESB Message");
+        }
+        return documentWriter.toText(fieldDescriptor, protoMessage.getField(fieldDescriptor));
+    }
+
+    private KeyFields getKeyFields(Descriptors.Descriptor descriptor) {
+        KeyFields fields = keyFields;
+        if (fields == null || fields.descriptor != descriptor) {
+            fields = new KeyFields(descriptor, findField(descriptor, esIdFieldName), findField(descriptor, esRoutingKeyName));
+            keyFields = fields;
+        }
+        return fields;
+    }
+
+    private Descriptors.FieldDescriptor findField(Descriptors.Descriptor descriptor, String key) {
+        if (StringUtils.isEmpty(key)) {
+            return null;
+        }
+        return descriptor.getFields()
+                .stream()
+                .filter(fieldDescriptor -> documentWriter.getFieldName(fieldDescriptor).equals(key))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Id and routing field descriptors, resolved against the schema they were looked up in.
+     */
+    private static class KeyFields {
+        private final Descriptors.Descriptor descriptor;
+        private final Descriptors.FieldDescriptor idField;
+        private final Descriptors.FieldDescriptor routingField;
+
+        KeyFields(Descriptors.Descriptor descriptor, Descriptors.FieldDescriptor idField, Descriptors.FieldDescriptor routingField) {
+            this.descriptor = descriptor;
+            this.idField = idField;
+            this.routingField = routingField;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.gotocompany.firehose.config.enums.EsSinkMessageType;
 import com.gotocompany.firehose.config.enums.EsSinkRequestType;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.serializer.MessageToJson;
+import com.gotocompany.stencil.Parser;
 import lombok.AllArgsConstructor;
 
 import java.util.ArrayList;
@@ -20,12 +21,15 @@ public class EsRequestHandlerFactory {
     private final String esTypeName;
     private final String esIndexName;
     private final String esRoutingKeyName;
+    private final Parser protoParser;
 
     public EsRequestHandler getRequestHandler() {
         EsSinkRequestType esSinkRequestType = esSinkConfig.isSinkEsModeUpdateOnlyEnable() ? EsSinkRequestType.UPDATE_ONLY : EsSinkRequestType.INSERT_OR_UPDATE;
         firehoseInstrumentation.logInfo("ES request mode: {}", esSinkRequestType);
 
         ArrayList<EsRequestHandler> esRequestHandlers = new ArrayList<>();
+        esRequestHandlers.add(new EsProtoRequestHandler(messageType, protoParser, esSinkConfig.isSinkEsPreserveProtoFieldNamesEnable(),
+                esTypeName, esIndexName, esSinkRequestType, esIdFieldName, esRoutingKeyName));
         esRequestHandlers.add(new EsUpdateRequestHandler(messageType, jsonSerializer, esTypeName, esIndexName, esSinkRequestType, esIdFieldName, esRoutingKeyName));
         esRequestHandlers.add(new EsUpsertRequestHandler(messageType, jsonSerializer, esTypeName, esIndexName, esSinkRequestType, esIdFieldName, esRoutingKeyName));
 
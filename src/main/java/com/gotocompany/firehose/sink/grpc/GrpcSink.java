@@ -13,6 +13,9 @@ import com.gotocompany.stencil.client.StencilClient;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * GrpcSink allows messages consumed from kafka to be relayed to a http service.
@@ -21,34 +24,75 @@ import java.util.List;
 public class GrpcSink extends AbstractSink {
 
     private final GrpcClient grpcClient;
+    private final int maxInFlightRequests;
     private List<Message> messages;
     private StencilClient stencilClient;
 
     public GrpcSink(FirehoseInstrumentation firehoseInstrumentation, GrpcClient grpcClient, StencilClient stencilClient) {
+        this(firehoseInstrumentation, grpcClient, stencilClient, 1);
+    }
+
+    public GrpcSink(FirehoseInstrumentation firehoseInstrumentation, GrpcClient grpcClient, StencilClient stencilClient, int maxInFlightRequests) {
         super(firehoseInstrumentation, "grpc");
         this.grpcClient = grpcClient;
         this.stencilClient = stencilClient;
+        this.maxInFlightRequests = maxInFlightRequests;
     }
 
     @Override
     protected List<Message> execute() throws Exception {
         ArrayList<Message> failedMessages = new ArrayList<>();
 
-        for (Message message : this.messages) {
-            DynamicMessage response = grpcClient.execute(message.getLogMessage(), message.getHeaders());
-            getFirehoseInstrumentation().logDebug("Response: {}", response);
-            Object m = response.getField(response.getDescriptorForType().findFieldByName("success"));
-            boolean success = (m != null) ? Boolean.valueOf(String.valueOf(m)) : false;
-
-            if (!success) {
-                getFirehoseInstrumentation().logWarn("Grpc Service returned error");
-                failedMessages.add(message);
+        if (grpcClient.isBatchEnabled()) {
+            for (int index : grpcClient.executeBatch(this.messages)) {
+                failedMessages.add(this.messages.get(index));
+            }
+        } else if (maxInFlightRequests > 1) {
+            List<DynamicMessage> responses = executeConcurrently();
+            for (int i = 0; i < this.messages.size(); i++) {
+                addIfFailed(this.messages.get(i), responses.get(i), failedMessages);
+            }
+        } else {
+            for (Message message : this.messages) {
+                addIfFailed(message, grpcClient.execute(message.getLogMessage(), message.getHeaders()), failedMessages);
             }
         }
         getFirehoseInstrumentation().logDebug("Failed messages count: {}", failedMessages.size());
         return failedMessages;
     }
 
+    /**
+     * Sends all the messages of the batch with at most {@code maxInFlightRequests} calls awaiting their response.
+     *
+     * @return the responses, in the order of the messages
+     */
+    private List<DynamicMessage> executeConcurrently() throws InterruptedException, ExecutionException {
+        Semaphore inFlightRequests = new Semaphore(maxInFlightRequests);
+        List<CompletableFuture<DynamicMessage>> futures = new ArrayList<>(this.messages.size());
+        for (Message message : this.messages) {
+            inFlightRequests.acquire();
+            CompletableFuture<DynamicMessage> future = grpcClient.executeAsync(message.getLogMessage(), message.getHeaders());
+            future.whenComplete((response, throwable) -> inFlightRequests.release());
+            futures.add(future);
+        }
+        List<DynamicMessage> responses = new ArrayList<>(futures.size());
+        for (CompletableFuture<DynamicMessage> future : futures) {
+            responses.add(future.get());
+        }
+        return responses;
+    }
+
+    private void addIfFailed(Message message, DynamicMessage response, List<Message> failedMessages) {
+        getFirehoseInstrumentation().logDebug("Response: {}", response);
+        Object m = response.getField(response.getDescriptorForType().findFieldByName("success"));
+        boolean success = (m != null) ? Boolean.valueOf(String.valueOf(m)) : false;
+
+        if (!success) {
+            getFirehoseInstrumentation().logWarn("Grpc Service returned error");
+            failedMessages.add(message);
+        }
+    }
+
     @Override
     protected void prepare(List<Message> messages2) throws DeserializerException {
         this.messages = messages2;
@@ -3,6 +3,7 @@ package com.gotocompany.firehose.sink.grpc;
 
 import com.gotocompany.firehose.config.GrpcSinkConfig;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.grpc.client.GrpcChannelPool;
 import com.gotocompany.firehose.sink.grpc.client.GrpcClient;
 import com.gotocompany.depot.metrics.StatsDReporter;
 import com.gotocompany.firehose.sink.AbstractSink;
@@ -11,7 +12,10 @@ import io.grpc.ManagedChannelBuilder;
 import com.gotocompany.stencil.client.StencilClient;
 import org.aeonbits.owner.ConfigFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory class to create the GrpcSink.
@@ -25,16 +29,40 @@ public class GrpcSinkFactory {
     public static AbstractSink create(Map<String, String> configuration, StatsDReporter statsDReporter, StencilClient stencilClient) {
         GrpcSinkConfig grpcConfig = ConfigFactory.create(GrpcSinkConfig.class, configuration);
         FirehoseInstrumentation firehoseInstrumentation = new FirehoseInstrumentation(statsDReporter, GrpcSinkFactory.class);
-        String grpcSinkConfig = String.format("\n\tService host: %s\n\tService port: %s\n\tMethod url: %s\n\tResponse proto schema: %s",
-                grpcConfig.getSinkGrpcServiceHost(), grpcConfig.getSinkGrpcServicePort(), grpcConfig.getSinkGrpcMethodUrl(), grpcConfig.getSinkGrpcResponseSchemaProtoClass());
+        String grpcSinkConfig = String.format("\n\tService host: %s\n\tService port: %s\n\tMethod url: %s\n\tResponse proto schema: %s\n\tMax in-flight requests: %s\n\tBatch mode: %s\n\tService target: %s\n\tLoad balancing policy: %s\n\tChannel pool size: %s",
+                grpcConfig.getSinkGrpcServiceHost(), grpcConfig.getSinkGrpcServicePort(), grpcConfig.getSinkGrpcMethodUrl(), grpcConfig.getSinkGrpcResponseSchemaProtoClass(),
+                grpcConfig.getSinkGrpcMaxInFlightRequests(), grpcConfig.getSinkGrpcBatchMode(),
+                grpcConfig.getSinkGrpcServiceTarget(), grpcConfig.getSinkGrpcLoadBalancingPolicy(), grpcConfig.getSinkGrpcChannelPoolSize());
         firehoseInstrumentation.logDebug(grpcSinkConfig);
 
-        ManagedChannel managedChannel = ManagedChannelBuilder.forAddress(grpcConfig.getSinkGrpcServiceHost(), grpcConfig.getSinkGrpcServicePort()).usePlaintext().build();
+        ManagedChannel managedChannel;
+        if (grpcConfig.getSinkGrpcChannelPoolSize() > 1) {
+            List<ManagedChannel> channels = new ArrayList<>();
+            for (int i = 0; i < grpcConfig.getSinkGrpcChannelPoolSize(); i++) {
+                channels.add(createChannel(grpcConfig));
+            }
+            managedChannel = new GrpcChannelPool(channels, new FirehoseInstrumentation(statsDReporter, GrpcChannelPool.class));
+        } else {
+            managedChannel = createChannel(grpcConfig);
+        }
 
         GrpcClient grpcClient = new GrpcClient(new FirehoseInstrumentation(statsDReporter, GrpcClient.class), grpcConfig, managedChannel, stencilClient);
         firehoseInstrumentation.logInfo("GRPC connection established");
 
-        return new GrpcSink(new FirehoseInstrumentation(statsDReporter, GrpcSink.class), grpcClient, stencilClient);
+        return new GrpcSink(new FirehoseInstrumentation(statsDReporter, GrpcSink.class), grpcClient, stencilClient, grpcConfig.getSinkGrpcMaxInFlightRequests());
+    }
+
+    private static ManagedChannel createChannel(GrpcSinkConfig grpcConfig) {
+        ManagedChannelBuilder<?> channelBuilder = grpcConfig.getSinkGrpcServiceTarget().isEmpty()
+                ? ManagedChannelBuilder.forAddress(grpcConfig.getSinkGrpcServiceHost(), grpcConfig.getSinkGrpcServicePort())
+                : ManagedChannelBuilder.forTarget(grpcConfig.getSinkGrpcServiceTarget());
+        channelBuilder.usePlaintext().defaultLoadBalancingPolicy(grpcConfig.getSinkGrpcLoadBalancingPolicy());
+        if (grpcConfig.getSinkGrpcKeepaliveTimeMs() > 0) {
+            channelBuilder.keepAliveTime(grpcConfig.getSinkGrpcKeepaliveTimeMs(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(grpcConfig.getSinkGrpcKeepaliveTimeoutMs(), TimeUnit.MILLISECONDS)
+                    .keepAliveWithoutCalls(grpcConfig.getSinkGrpcKeepaliveWithoutCalls());
+        }
+        return channelBuilder.build();
     }
 
 }
@@ -0,0 +1,85 @@
+package com.gotocompany.firehose.sink.grpc.client;
+
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.metrics.Metrics;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of channels, each with its own connections, that spreads calls round-robin across them.
+ * <p>
+ * A single channel multiplexes all calls over one HTTP/2 connection per backend, bounded by its flow control
+ * window. Calls are counted per channel in {@link Metrics#SINK_GRPC_CHANNEL_CALLS_TOTAL}, through the metric aggregator
+ * when it is started, so calls don't send a packet each.
+ */
+public class GrpcChannelPool extends ManagedChannel {
+
+    private final List<ManagedChannel> channels;
+    private final String[] channelTags;
+    private final FirehoseInstrumentation firehoseInstrumentation;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+
+    public GrpcChannelPool(List<ManagedChannel> channels, FirehoseInstrumentation firehoseInstrumentation) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("channel pool cannot be empty");
+        }
+        this.channels = new ArrayList<>(channels);
+        this.firehoseInstrumentation = firehoseInstrumentation;
+        this.channelTags = new String[channels.size()];
+        for (int i = 0; i < channels.size(); i++) {
+            channelTags[i] = "channel=" + i;
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        int index = Math.floorMod(nextChannel.getAndIncrement(), channels.size());
+        firehoseInstrumentation.captureGrpcChannelCall(channelTags[index]);
+        return channels.get(index).newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return channels.stream().allMatch(ManagedChannel::isShutdown);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return channels.stream().allMatch(ManagedChannel::isTerminated);
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,14 +3,21 @@ package com.gotocompany.firehose.sink.grpc.client;
 
 
 import com.gotocompany.firehose.config.GrpcSinkConfig;
+import com.gotocompany.firehose.config.enums.GrpcSinkBatchMode;
+import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
 import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.stub.ClientCalls;
-import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
 import io.grpc.Channel;
 import io.grpc.ClientInterceptors;
 import io.grpc.CallOptions;
@@ -22,58 +29,214 @@ import org.apache.kafka.common.header.Headers;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
  * Custom GRPC client for all GRPC communication.
+ * <p>
+ * The method descriptor and the header attaching channel are built once; the kafka headers of each message
+ * are passed to the call through its {@link CallOptions}.
+ * In a batch mode a whole batch is sent in one call, either as the messages of a client streaming call or as
+ * the repeated field of an envelope message sent to a unary method.
  */
 public class GrpcClient {
 
+    private static final CallOptions.Key<Metadata> HEADERS_KEY = CallOptions.Key.create("firehose-headers");
+
     private FirehoseInstrumentation firehoseInstrumentation;
     private final GrpcSinkConfig grpcSinkConfig;
     private StencilClient stencilClient;
     private ManagedChannel managedChannel;
+    private final Channel decoratedChannel;
+    private final MethodDescriptor<byte[], byte[]> methodDescriptor;
+    private final GrpcSinkBatchMode batchMode;
 
     public GrpcClient(FirehoseInstrumentation firehoseInstrumentation, GrpcSinkConfig grpcSinkConfig, ManagedChannel managedChannel, StencilClient stencilClient) {
         this.firehoseInstrumentation = firehoseInstrumentation;
         this.grpcSinkConfig = grpcSinkConfig;
         this.stencilClient = stencilClient;
         this.managedChannel = managedChannel;
+        this.decoratedChannel = ClientInterceptors.intercept(managedChannel, new HeadersInterceptor());
+        this.batchMode = grpcSinkConfig.getSinkGrpcBatchMode();
+        MethodDescriptor.Marshaller<byte[]> marshaller = getMarshaller();
+        this.methodDescriptor = MethodDescriptor.newBuilder(marshaller, marshaller)
+                .setType(batchMode == GrpcSinkBatchMode.CLIENT_STREAMING ? MethodDescriptor.MethodType.CLIENT_STREAMING : MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName(grpcSinkConfig.getSinkGrpcMethodUrl())
+                .build();
     }
 
     public DynamicMessage execute(byte[] logMessage, Headers headers) {
-
-        MethodDescriptor.Marshaller<byte[]> marshaller = getMarshaller();
         DynamicMessage dynamicMessage;
-
         try {
+            byte[] response = ClientCalls.blockingUnaryCall(decoratedChannel, methodDescriptor, getCallOptions(headers), logMessage);
+            dynamicMessage = stencilClient.parse(grpcSinkConfig.getSinkGrpcResponseSchemaProtoClass(), response);
+        } catch (Exception e) {
+            firehoseInstrumentation.logWarn(e.getMessage());
+            dynamicMessage = getEmptyResponse();
+        }
+        return dynamicMessage;
+    }
 
+    /**
+     * Starts the call without waiting for its response.
+     * Like {@link #execute(byte[], Headers)}, a failed call completes with an empty response.
+     *
+     * @param logMessage the request bytes
+     * @param headers    the kafka headers sent as call metadata
+     * @return the future response
+     */
+    public CompletableFuture<DynamicMessage> executeAsync(byte[] logMessage, Headers headers) {
+        CompletableFuture<DynamicMessage> future = new CompletableFuture<>();
+        try {
+            ClientCalls.asyncUnaryCall(decoratedChannel.newCall(methodDescriptor, getCallOptions(headers)), logMessage,
+                    new StreamObserver<byte[]>() {
+                        @Override
+                        public void onNext(byte[] response) {
+                            try {
+                                future.complete(stencilClient.parse(grpcSinkConfig.getSinkGrpcResponseSchemaProtoClass(), response));
+                            } catch (Exception e) {
+                                onError(e);
+                            }
+                        }
 
-            Metadata metadata = new Metadata();
-            for (Header header : headers) {
-                metadata.put(Metadata.Key.of(header.key(), Metadata.ASCII_STRING_MARSHALLER), new String(header.value()));
-            }
+                        @Override
+                        public void onError(Throwable t) {
+                            firehoseInstrumentation.logWarn(t.getMessage());
+                            future.complete(getEmptyResponse());
+                        }
 
-            Channel decoratedChannel = ClientInterceptors.intercept(managedChannel,
-                     MetadataUtils.newAttachHeadersInterceptor(metadata));
-            byte[] response = ClientCalls.blockingUnaryCall(
-                    decoratedChannel,
-                    MethodDescriptor.newBuilder(marshaller, marshaller)
-                            .setType(MethodDescriptor.MethodType.UNARY)
-                            .setFullMethodName(grpcSinkConfig.getSinkGrpcMethodUrl())
-                            .build(),
-                    CallOptions.DEFAULT,
-                    logMessage);
+                        @Override
+                        public void onCompleted() {
+                            if (!future.isDone()) {
+                                future.complete(getEmptyResponse());
+                            }
+                        }
+                    });
+        } catch (Exception e) {
+            firehoseInstrumentation.logWarn(e.getMessage());
+            future.complete(getEmptyResponse());
+        }
+        return future;
+    }
 
-            dynamicMessage = stencilClient.parse(grpcSinkConfig.getSinkGrpcResponseSchemaProtoClass(), response);
+    public boolean isBatchEnabled() {
+        return batchMode != GrpcSinkBatchMode.NONE;
+    }
 
+    /**
+     * Sends the whole batch in one call and maps the response back to the messages.
+     * <p>
+     * The messages listed in the configured repeated failed index field of the response are failed.
+     * Without such indexes, either all or none of the messages are failed depending on the success field.
+     * Kafka headers are not sent in batch modes.
+     *
+     * @param messages the batch
+     * @return the indexes of the failed messages, in ascending order
+     */
+    public List<Integer> executeBatch(List<Message> messages) {
+        DynamicMessage response;
+        try {
+            byte[] responseBytes = batchMode == GrpcSinkBatchMode.CLIENT_STREAMING
+                    ? streamBatch(messages)
+                    : ClientCalls.blockingUnaryCall(decoratedChannel, methodDescriptor, CallOptions.DEFAULT, encodeEnvelope(messages));
+            response = stencilClient.parse(grpcSinkConfig.getSinkGrpcResponseSchemaProtoClass(), responseBytes);
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             firehoseInstrumentation.logWarn(e.getMessage());
-            dynamicMessage = DynamicMessage.newBuilder(this.stencilClient.get(this.grpcSinkConfig.getSinkGrpcResponseSchemaProtoClass())).build();
+            response = getEmptyResponse();
+        }
+        firehoseInstrumentation.logDebug("Batch response: {}", response);
+        return getFailedIndexes(response, messages.size());
+    }
+
+    private byte[] streamBatch(List<Message> messages) throws Exception {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        StreamObserver<byte[]> requestObserver = ClientCalls.asyncClientStreamingCall(
+                decoratedChannel.newCall(methodDescriptor, CallOptions.DEFAULT),
+                new StreamObserver<byte[]>() {
+                    @Override
+                    public void onNext(byte[] response) {
+                        future.complete(response);
+                    }
 
+                    @Override
+                    public void onError(Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        future.completeExceptionally(new IllegalStateException("Grpc Service completed the call without a response"));
+                    }
+                });
+        try {
+            for (Message message : messages) {
+                requestObserver.onNext(message.getLogMessage());
+            }
+        } catch (RuntimeException e) {
+            requestObserver.onError(e);
+            throw e;
         }
+        requestObserver.onCompleted();
+        return future.get();
+    }
 
-        return dynamicMessage;
+    private byte[] encodeEnvelope(List<Message> messages) throws IOException {
+        int fieldNumber = grpcSinkConfig.getSinkGrpcBatchEnvelopeFieldNumber();
+        int size = 0;
+        for (Message message : messages) {
+            size += CodedOutputStream.computeByteArraySize(fieldNumber, message.getLogMessage());
+        }
+        byte[] envelope = new byte[size];
+        CodedOutputStream output = CodedOutputStream.newInstance(envelope);
+        for (Message message : messages) {
+            output.writeByteArray(fieldNumber, message.getLogMessage());
+        }
+        output.checkNoSpaceLeft();
+        return envelope;
+    }
+
+    private List<Integer> getFailedIndexes(DynamicMessage response, int batchSize) {
+        Descriptors.Descriptor descriptor = response.getDescriptorForType();
+        String failedIndexFieldName = grpcSinkConfig.getSinkGrpcBatchResponseFailedIndexField();
+        Descriptors.FieldDescriptor failedIndexField = failedIndexFieldName.isEmpty() ? null : descriptor.findFieldByName(failedIndexFieldName);
+        if (failedIndexField != null && failedIndexField.isRepeated() && response.getRepeatedFieldCount(failedIndexField) > 0) {
+            TreeSet<Integer> failedIndexes = new TreeSet<>();
+            for (int i = 0; i < response.getRepeatedFieldCount(failedIndexField); i++) {
+                int index = ((Number) response.getRepeatedField(failedIndexField, i)).intValue();
+                if (index >= 0 && index < batchSize) {
+                    failedIndexes.add(index);
+                }
+            }
+            return new ArrayList<>(failedIndexes);
+        }
+        Descriptors.FieldDescriptor successField = descriptor.findFieldByName("success");
+        boolean success = successField != null && Boolean.parseBoolean(String.valueOf(response.getField(successField)));
+        List<Integer> failedIndexes = new ArrayList<>();
+        if (!success) {
+            for (int i = 0; i < batchSize; i++) {
+                failedIndexes.add(i);
+            }
+        }
+        return failedIndexes;
+    }
+
+    private DynamicMessage getEmptyResponse() {
+        return DynamicMessage.newBuilder(this.stencilClient.get(this.grpcSinkConfig.getSinkGrpcResponseSchemaProtoClass())).build();
+    }
+
+    private CallOptions getCallOptions(Headers headers) {
+        Metadata metadata = new Metadata();
+        for (Header header : headers) {
+            metadata.put(Metadata.Key.of(header.key(), Metadata.ASCII_STRING_MARSHALLER), new String(header.value()));
+        }
+        return CallOptions.DEFAULT.withOption(HEADERS_KEY, metadata);
     }
 
     private MethodDescriptor.Marshaller<byte[]> getMarshaller() {
@@ -93,4 +256,23 @@ public class GrpcClient {
             }
         };
     }
+
+    /**
+     * Attaches the metadata carried in the call options to the outgoing headers.
+     */
+    private static class HeadersInterceptor implements ClientInterceptor {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    Metadata extraHeaders = callOptions.getOption(HEADERS_KEY);
+                    if (extraHeaders != null) {
+                        headers.merge(extraHeaders);
+                    }
+                    super.start(responseListener, headers);
+                }
+            };
+        }
+    }
 }
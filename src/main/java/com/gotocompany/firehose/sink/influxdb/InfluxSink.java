@@ -5,14 +5,12 @@ package com.gotocompany.firehose.sink.influxdb;
 import com.gotocompany.firehose.config.InfluxSinkConfig;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
-import com.gotocompany.firehose.sink.influxdb.builder.PointBuilder;
+import com.gotocompany.firehose.sink.influxdb.builder.LineProtocolEncoder;
 import com.gotocompany.firehose.sink.AbstractSink;
 import com.google.protobuf.DynamicMessage;
 import com.gotocompany.stencil.client.StencilClient;
 import com.gotocompany.stencil.Parser;
 import org.influxdb.InfluxDB;
-import org.influxdb.dto.BatchPoints;
-import org.influxdb.dto.Point;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -26,9 +24,9 @@ public class InfluxSink extends AbstractSink {
 
     private InfluxSinkConfig config;
     private Parser protoParser;
-    private PointBuilder pointBuilder;
+    private LineProtocolEncoder lineProtocolEncoder;
     private InfluxDB client;
-    private BatchPoints batchPoints;
+    private final StringBuilder lineProtocol = new StringBuilder();
     private StencilClient stencilClient;
 
     /**
@@ -45,26 +43,25 @@ public class InfluxSink extends AbstractSink {
         super(firehoseInstrumentation, sinkType);
         this.config = config;
         this.protoParser = protoParser;
-        this.pointBuilder = new PointBuilder(config);
+        this.lineProtocolEncoder = new LineProtocolEncoder(config);
         this.client = client;
         this.stencilClient = stencilClient;
     }
 
     @Override
     protected void prepare(List<Message> messages) throws IOException {
-        batchPoints = BatchPoints.database(config.getSinkInfluxDbName()).retentionPolicy(config.getSinkInfluxRetentionPolicy()).build();
+        lineProtocol.setLength(0);
         for (Message message : messages) {
             DynamicMessage dynamicMessage = protoParser.parse(message.getLogMessage());
-            Point point = pointBuilder.buildPoint(dynamicMessage);
-            getFirehoseInstrumentation().logDebug("Data point: {}", point.toString());
-            batchPoints.point(point);
+            lineProtocolEncoder.encode(dynamicMessage, lineProtocol);
         }
     }
 
     @Override
     protected List<Message> execute() {
-        getFirehoseInstrumentation().logDebug("Batch points: {}", batchPoints.toString());
-        client.write(batchPoints);
+        String records = lineProtocol.toString();
+        getFirehoseInstrumentation().logDebug("Batch points: {}", records);
+        client.write(config.getSinkInfluxDbName(), config.getSinkInfluxRetentionPolicy(), InfluxDB.ConsistencyLevel.ONE, records);
         return new ArrayList<>();
     }
 
@@ -31,7 +31,10 @@ public class InfluxSinkFactory {
         firehoseInstrumentation.logDebug("\nInflux Url: {}\nInflux Username: {}", config.getSinkInfluxUrl(), config.getSinkInfluxUsername());
 
         InfluxDB client = InfluxDBFactory.connect(config.getSinkInfluxUrl(), config.getSinkInfluxUsername(), config.getSinkInfluxPassword());
-        firehoseInstrumentation.logInfo("InfluxDB connection established");
+        if (config.isSinkInfluxGzipEnable()) {
+            client.enableGzip();
+        }
+        firehoseInstrumentation.logInfo("InfluxDB connection established, gzip enabled: {}", config.isSinkInfluxGzipEnable());
 
         return new InfluxSink(new FirehoseInstrumentation(statsDReporter, InfluxSink.class), "influx.db", config, stencilClient.getParser(config.getInputSchemaProtoClass()), client, stencilClient);
     }
@@ -0,0 +1,113 @@
+package com.gotocompany.firehose.sink.influxdb.builder;
+
+import com.gotocompany.firehose.config.InfluxSinkConfig;
+import com.google.protobuf.DynamicMessage;
+
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes messages straight into influx line protocol.
+ * <p>
+ * Produces the same lines as {@link PointBuilder} followed by {@link org.influxdb.dto.Point#lineProtocol()},
+ * without building the intermediate point, its tag and field maps and a string per point.
+ * Instances are not thread safe.
+ */
+public class LineProtocolEncoder {
+    private static final int MAX_FRACTION_DIGITS = 340;
+
+    private final InfluxSinkConfig config;
+    private final String measurementName;
+    private final NumberFormat numberFormat;
+    private PointMapping pointMapping;
+
+    /**
+     * Instantiates a new Line protocol encoder.
+     *
+     * @param config the config
+     */
+    public LineProtocolEncoder(InfluxSinkConfig config) {
+        this.config = config;
+        this.measurementName = escape(config.getSinkInfluxMeasurementName(), false);
+        this.numberFormat = NumberFormat.getInstance(Locale.ENGLISH);
+        this.numberFormat.setMaximumFractionDigits(MAX_FRACTION_DIGITS);
+        this.numberFormat.setMinimumFractionDigits(1);
+        this.numberFormat.setGroupingUsed(false);
+    }
+
+    /**
+     * Appends the line of the message to the buffer, separated from any previous line by a new line.
+     *
+     * @param message the message
+     * @param buffer  the buffer
+     */
+    public void encode(DynamicMessage message, StringBuilder buffer) {
+        PointMapping mapping = getPointMapping(message);
+        if (buffer.length() > 0) {
+            buffer.append('\n');
+        }
+        buffer.append(measurementName);
+        for (PointMapping.MappedField tag : mapping.getTags()) {
+            buffer.append(',').append(escape(tag.getName(), true)).append('=').append(escape(tag.getTagValue(message), true));
+        }
+        buffer.append(' ');
+        List<PointMapping.MappedField> fields = mapping.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            PointMapping.MappedField field = fields.get(i);
+            buffer.append(escape(field.getName(), true)).append('=');
+            appendFieldValue(field.getFieldValue(message), buffer);
+        }
+        buffer.append(' ').append(TimeUnit.MILLISECONDS.toNanos(mapping.getTimeMillis(message)));
+    }
+
+    private void appendFieldValue(Object value, StringBuilder buffer) {
+        if (value instanceof Double || value instanceof Float) {
+            buffer.append(numberFormat.format(value));
+        } else if (value instanceof Number) {
+            buffer.append(value).append('i');
+        } else if (value instanceof String) {
+            buffer.append('"');
+            String text = (String) value;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    buffer.append('\\');
+                }
+                buffer.append(c);
+            }
+            buffer.append('"');
+        } else {
+            buffer.append(value);
+        }
+    }
+
+    private static String escape(String key, boolean escapeEquals) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            boolean needsEscape = c == ' ' || c == ',' || (escapeEquals && c == '=');
+            if (needsEscape && escaped == null) {
+                escaped = new StringBuilder(key.length() + 1).append(key, 0, i);
+            }
+            if (escaped != null) {
+                if (needsEscape) {
+                    escaped.append('\\');
+                }
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? key : escaped.toString();
+    }
+
+    private PointMapping getPointMapping(DynamicMessage message) {
+        if (pointMapping == null || pointMapping.getDescriptor() != message.getDescriptorForType()) {
+            pointMapping = PointMapping.compile(message.getDescriptorForType(), config);
+        }
+        return pointMapping;
+    }
+}
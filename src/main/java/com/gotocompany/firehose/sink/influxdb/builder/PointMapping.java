@@ -0,0 +1,172 @@
+package com.gotocompany.firehose.sink.influxdb.builder;
+
+import com.gotocompany.firehose.config.InfluxSinkConfig;
+import com.gotocompany.firehose.exception.ConfigurationException;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Tag, field and timestamp mapping of an influx point, compiled against a proto schema.
+ * <p>
+ * The proto index mappings are parsed and resolved to field descriptors once per schema, so building a point
+ * only walks the resolved descriptors. Tags and fields are kept sorted by name, the order influx expects them in.
+ */
+final class PointMapping {
+    private static final long SECONDS_SCALED_TO_MILLI = 1000L;
+    private static final long MILLIS_SCALED_TO_NANOS = 1000000L;
+    private static final int SECONDS_FIELD_NUMBER = 1;
+    private static final int NANOS_FIELD_NUMBER = 2;
+
+    private final Descriptors.Descriptor descriptor;
+    private final List<MappedField> tags;
+    private final List<MappedField> fields;
+    private final MappedField timestamp;
+
+    private PointMapping(Descriptors.Descriptor descriptor, List<MappedField> tags, List<MappedField> fields, MappedField timestamp) {
+        this.descriptor = descriptor;
+        this.tags = tags;
+        this.fields = fields;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Compiles the mapping of the config against the schema.
+     *
+     * @param descriptor the proto schema
+     * @param config     the config
+     * @return the compiled mapping
+     */
+    static PointMapping compile(Descriptors.Descriptor descriptor, InfluxSinkConfig config) {
+        Map<String, MappedField> tags = new TreeMap<>();
+        compileMapping(descriptor, new ArrayList<>(), config.getSinkInfluxTagNameProtoIndexMapping(), tags, false);
+        Map<String, MappedField> fields = new TreeMap<>();
+        compileMapping(descriptor, new ArrayList<>(), config.getSinkInfluxFieldNameProtoIndexMapping(), fields, true);
+        List<Descriptors.FieldDescriptor> timestampPath = Collections.singletonList(
+                getFieldDescriptor(descriptor, config.getSinkInfluxProtoEventTimestampIndex()));
+        return new PointMapping(descriptor, new ArrayList<>(tags.values()), new ArrayList<>(fields.values()),
+                new MappedField(null, timestampPath, ValueKind.TIME));
+    }
+
+    Descriptors.Descriptor getDescriptor() {
+        return descriptor;
+    }
+
+    List<MappedField> getTags() {
+        return tags;
+    }
+
+    List<MappedField> getFields() {
+        return fields;
+    }
+
+    long getTimeMillis(Message message) {
+        return (Long) timestamp.getFieldValue(message);
+    }
+
+    private static void compileMapping(Descriptors.Descriptor descriptor, List<Descriptors.FieldDescriptor> parentPath,
+                                       Properties protoIndexMapping, Map<String, MappedField> compiled, boolean isField) {
+        if (isField && protoIndexMapping.isEmpty()) {
+            throw new ConfigurationException(PointBuilder.FIELD_NAME_MAPPING_ERROR_MESSAGE);
+        }
+        for (Map.Entry<Object, Object> entry : protoIndexMapping.entrySet()) {
+            Descriptors.FieldDescriptor fieldDescriptor = getFieldDescriptor(descriptor, Integer.parseInt((String) entry.getKey()));
+            List<Descriptors.FieldDescriptor> path = new ArrayList<>(parentPath);
+            path.add(fieldDescriptor);
+            Object name = entry.getValue();
+            if (isTimeField(fieldDescriptor) && name instanceof String) {
+                compiled.put((String) name, new MappedField((String) name, path, ValueKind.TIME));
+            } else if (name instanceof String) {
+                ValueKind kind = fieldDescriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.ENUM ? ValueKind.ENUM : ValueKind.VALUE;
+                compiled.put((String) name, new MappedField((String) name, path, kind));
+            } else if (name instanceof Properties) {
+                compileMapping(fieldDescriptor.getMessageType(), path, (Properties) name, compiled, isField);
+            } else {
+                throw new RuntimeException("column can either be properties or string");
+            }
+        }
+    }
+
+    private static Descriptors.FieldDescriptor getFieldDescriptor(Descriptors.Descriptor descriptor, int protoIndex) {
+        Descriptors.FieldDescriptor fieldDescriptor = descriptor.findFieldByNumber(protoIndex);
+        if (fieldDescriptor == null) {
+            throw new ConfigurationException(String.format("proto index %d not found in %s", protoIndex, descriptor.getFullName()));
+        }
+        return fieldDescriptor;
+    }
+
+    private static boolean isTimeField(Descriptors.FieldDescriptor fieldDescriptor) {
+        if (fieldDescriptor.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            return false;
+        }
+        String typeName = fieldDescriptor.getMessageType().getFullName();
+        return typeName.equals(Timestamp.getDescriptor().getFullName()) || typeName.equals(Duration.getDescriptor().getFullName());
+    }
+
+    private static long getMillis(Message time) {
+        Descriptors.Descriptor timeDescriptor = time.getDescriptorForType();
+        long seconds = (Long) time.getField(timeDescriptor.findFieldByNumber(SECONDS_FIELD_NUMBER));
+        int nanos = (Integer) time.getField(timeDescriptor.findFieldByNumber(NANOS_FIELD_NUMBER));
+        return seconds * SECONDS_SCALED_TO_MILLI + nanos / MILLIS_SCALED_TO_NANOS;
+    }
+
+    /**
+     * How the proto value of a mapped field is converted.
+     */
+    enum ValueKind {
+        TIME,
+        ENUM,
+        VALUE
+    }
+
+    /**
+     * A tag or field, resolved to the descriptors leading to its proto value.
+     */
+    static final class MappedField {
+        private final String name;
+        private final Descriptors.FieldDescriptor[] path;
+        private final ValueKind kind;
+
+        private MappedField(String name, List<Descriptors.FieldDescriptor> path, ValueKind kind) {
+            this.name = name;
+            this.path = path.toArray(new Descriptors.FieldDescriptor[0]);
+            this.kind = kind;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the value to store as an influx field: epoch millis for timestamps and durations,
+         * the name for enums and the proto value otherwise.
+         */
+        Object getFieldValue(Message message) {
+            Message current = message;
+            for (int i = 0; i < path.length - 1; i++) {
+                current = (Message) current.getField(path[i]);
+            }
+            Object value = current.getField(path[path.length - 1]);
+            switch (kind) {
+                case TIME:
+                    return getMillis((Message) value);
+                case ENUM:
+                    return value.toString();
+                default:
+                    return value;
+            }
+        }
+
+        String getTagValue(Message message) {
+            return getFieldValue(message).toString();
+        }
+    }
+}
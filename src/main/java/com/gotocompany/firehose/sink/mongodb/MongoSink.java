@@ -1,5 +1,8 @@
 package com.gotocompany.firehose.sink.mongodb;
 
+import com.gotocompany.depot.error.ErrorInfo;
+import com.gotocompany.depot.error.ErrorType;
+import com.gotocompany.firehose.exception.DefaultException;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.mongodb.request.MongoRequestHandler;
@@ -61,9 +64,10 @@ public class MongoSink extends AbstractSink {
 
     /**
      * This method processes the bulk request and retrieves the BulkWriteErrors
-     * whose status codes are not present in the retry status codes blacklist.
-     * It then retrieves the message corresponding to that error and adds it to
-     * a list which is returned for retry or DLQ operations.
+     * whose status codes are not present in the retry status codes blacklist,
+     * along with the writes of an ordered request which were not executed.
+     * It then retrieves the message corresponding to that error, records the
+     * error on it and adds it to a list which is returned for retry or DLQ operations.
      *
      * @return list of messages which failed to push to the MongoDB sink
      * but excluding those whose error codes were present in the
@@ -74,7 +78,8 @@ public class MongoSink extends AbstractSink {
     protected List<Message> execute() {
         List<BulkWriteError> writeErrors = mongoSinkClient.processRequest(requests);
         return writeErrors.stream()
-                .map(writeError -> messages.get(writeError.getIndex()))
+                .map(writeError -> new Message(messages.get(writeError.getIndex()),
+                        new ErrorInfo(new DefaultException(writeError.getMessage()), ErrorType.DEFAULT_ERROR)))
                 .collect(Collectors.toList());
     }
 
@@ -5,10 +5,12 @@ import com.gotocompany.firehose.config.enums.SinkType;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.serializer.MessageToJson;
 import com.gotocompany.firehose.sink.mongodb.client.MongoSinkClient;
+import com.gotocompany.firehose.sink.mongodb.request.MongoProtoDocumentEncoder;
 import com.gotocompany.firehose.sink.mongodb.request.MongoRequestHandler;
 import com.gotocompany.firehose.sink.mongodb.request.MongoRequestHandlerFactory;
 import com.gotocompany.firehose.sink.mongodb.util.MongoSinkFactoryUtil;
 import com.gotocompany.depot.metrics.StatsDReporter;
+import com.gotocompany.stencil.Parser;
 import com.gotocompany.stencil.client.StencilClient;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
@@ -42,9 +44,12 @@ public class MongoSinkFactory {
         FirehoseInstrumentation firehoseInstrumentation = new FirehoseInstrumentation(statsDReporter, MongoSinkFactory.class);
 
         logMongoConfig(mongoSinkConfig, firehoseInstrumentation);
+        Parser protoParser = stencilClient.getParser(mongoSinkConfig.getInputSchemaProtoClass());
+        MongoProtoDocumentEncoder documentEncoder = mongoSinkConfig.isSinkMongoProtoBsonEncodingEnable()
+                ? new MongoProtoDocumentEncoder(protoParser, mongoSinkConfig.isSinkMongoPreserveProtoFieldNamesEnable()) : null;
         MongoRequestHandler mongoRequestHandler = new MongoRequestHandlerFactory(mongoSinkConfig, new FirehoseInstrumentation(statsDReporter, MongoRequestHandlerFactory.class),
                 mongoSinkConfig.getSinkMongoPrimaryKey(), mongoSinkConfig.getSinkMongoInputMessageType(),
-                new MessageToJson(stencilClient.getParser(mongoSinkConfig.getInputSchemaProtoClass()), mongoSinkConfig.isSinkMongoPreserveProtoFieldNamesEnable(), false)
+                new MessageToJson(protoParser, mongoSinkConfig.isSinkMongoPreserveProtoFieldNamesEnable(), false), documentEncoder
         ).getRequestHandler();
 
         MongoClient mongoClient = buildMongoClient(mongoSinkConfig, firehoseInstrumentation);
@@ -114,6 +119,8 @@ public class MongoSinkFactory {
                         + "\n\tMONGO request timeout in ms: %s"
                         + "\n\tMONGO retry status code blacklist: %s"
                         + "\n\tMONGO update only mode: %s"
+                        + "\n\tMONGO bulk write ordered enable: %s"
+                        + "\n\tMONGO proto BSON encoding enable: %s"
                         + "\n\tMONGO Authentication Enable: %s"
                         + "\n\tMONGO Authentication Username: %s"
                         + "\n\tMONGO Authentication Database: %s",
@@ -126,6 +133,8 @@ public class MongoSinkFactory {
                 mongoSinkConfig.getSinkMongoConnectTimeoutMs(),
                 mongoSinkConfig.getSinkMongoRetryStatusCodeBlacklist(),
                 mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable(),
+                mongoSinkConfig.isSinkMongoBulkWriteOrderedEnable(),
+                mongoSinkConfig.isSinkMongoProtoBsonEncodingEnable(),
                 mongoSinkConfig.isSinkMongoAuthEnable(),
                 mongoSinkConfig.getSinkMongoAuthUsername(),
                 mongoSinkConfig.getSinkMongoAuthDB());
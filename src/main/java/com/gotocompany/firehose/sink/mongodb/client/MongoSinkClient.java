@@ -10,15 +10,20 @@ import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.WriteModel;
 import lombok.AllArgsConstructor;
+import org.bson.BsonDocument;
 import org.bson.Document;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * The Mongo Sink Client.
@@ -32,6 +37,12 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class MongoSinkClient implements Closeable {
 
+    /**
+     * Error code given to the writes of an ordered bulk request which were
+     * not executed because an earlier write of the request failed.
+     */
+    public static final int UNEXECUTED_WRITE_ERROR_CODE = -1;
+
     private MongoCollection<Document> mongoCollection;
     private final FirehoseInstrumentation firehoseInstrumentation;
     private final List<Integer> mongoRetryStatusCodeBlacklist;
@@ -86,30 +97,49 @@ public class MongoSinkClient implements Closeable {
 
     /**
      * Processes the bulk request list of WriteModel.
-     * This method performs a bulk write operation on the MongoCollection
+     * This method performs a bulk write operation on the MongoCollection,
+     * ordered or unordered according to SINK_MONGO_BULK_WRITE_ORDERED_ENABLE.
      * If bulk write succeeds, an empty list is returned
      * If bulk write fails, then failure count is logged to instrumentation
      * and returns a list of BulkWriteErrors, whose status codes are
-     * not present in retry status code blacklist
+     * not present in retry status code blacklist. For an ordered bulk write,
+     * the writes after the first failed one are not executed by MongoDB, so
+     * an error with code UNEXECUTED_WRITE_ERROR_CODE is returned for each of them.
      *
      * @param request the bulk request
      * @return the list of non-blacklisted Bulk Write errors, if any, else returns empty list
      * @since 0.1
      */
     public List<BulkWriteError> processRequest(List<WriteModel<Document>> request) {
-
+        boolean ordered = mongoSinkConfig.isSinkMongoBulkWriteOrderedEnable();
         try {
-            logResults(mongoCollection.bulkWrite(request), request.size());
+            logResults(mongoCollection.bulkWrite(request, new BulkWriteOptions().ordered(ordered)), request.size());
             return Collections.emptyList();
         } catch (MongoBulkWriteException writeException) {
             firehoseInstrumentation.logWarn("Bulk request failed");
             List<BulkWriteError> writeErrors = writeException.getWriteErrors();
 
             logErrors(writeErrors);
-            return writeErrors.stream()
+            List<BulkWriteError> retryableErrors = writeErrors.stream()
                     .filter(writeError -> !mongoRetryStatusCodeBlacklist.contains(writeError.getCode()))
                     .collect(Collectors.toList());
+            if (ordered && !writeErrors.isEmpty()) {
+                retryableErrors.addAll(getUnexecutedWriteErrors(writeErrors, request.size()));
+            }
+            return retryableErrors;
+        }
+    }
+
+    private List<BulkWriteError> getUnexecutedWriteErrors(List<BulkWriteError> writeErrors, int requestCount) {
+        int failedIndex = writeErrors.stream().mapToInt(BulkWriteError::getIndex).max().getAsInt();
+        List<BulkWriteError> unexecutedWriteErrors = IntStream.range(failedIndex + 1, requestCount)
+                .mapToObj(index -> new BulkWriteError(UNEXECUTED_WRITE_ERROR_CODE,
+                        "Write was not executed because an earlier write of the ordered bulk request failed", new BsonDocument(), index))
+                .collect(Collectors.toList());
+        if (!unexecutedWriteErrors.isEmpty()) {
+            firehoseInstrumentation.logWarn("Bulk request unexecuted writes count: {}", unexecutedWriteErrors.size());
         }
+        return unexecutedWriteErrors;
     }
 
     private void logResults(BulkWriteResult writeResult, int messageCount) {
@@ -130,14 +160,10 @@ public class MongoSinkClient implements Closeable {
             firehoseInstrumentation.logWarn("Bulk request failures count: {}", failureCount);
             if (mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()) {
 
-                for (int i = 0; i < failureCount; i++) {
-                    firehoseInstrumentation.incrementCounter(Metrics.SINK_MESSAGES_DROP_TOTAL, "cause=Primary Key value not found");
-                }
+                firehoseInstrumentation.captureCount(Metrics.SINK_MESSAGES_DROP_TOTAL, (long) failureCount, "cause=Primary Key value not found");
                 firehoseInstrumentation.logWarn("Some Messages were dropped because their Primary Key values had no matches");
             } else {
-                for (int i = 0; i < failureCount; i++) {
-                    firehoseInstrumentation.incrementCounter(Metrics.SINK_MESSAGES_DROP_TOTAL);
-                }
+                firehoseInstrumentation.captureCount(Metrics.SINK_MESSAGES_DROP_TOTAL, (long) failureCount);
             }
         }
 
@@ -155,14 +181,14 @@ public class MongoSinkClient implements Closeable {
                 writeResult.getModifiedCount(),
                 totalWriteCount);
 
-        for (int i = 0; i < totalInsertedCount; i++) {
-            firehoseInstrumentation.incrementCounter(Metrics.SINK_MONGO_INSERTED_TOTAL);
-        }
-        for (int i = 0; i < writeResult.getModifiedCount(); i++) {
-            firehoseInstrumentation.incrementCounter(Metrics.SINK_MONGO_UPDATED_TOTAL);
-        }
-        for (int i = 0; i < totalWriteCount; i++) {
-            firehoseInstrumentation.incrementCounter(Metrics.SINK_MONGO_MODIFIED_TOTAL);
+        captureCount(Metrics.SINK_MONGO_INSERTED_TOTAL, totalInsertedCount);
+        captureCount(Metrics.SINK_MONGO_UPDATED_TOTAL, writeResult.getModifiedCount());
+        captureCount(Metrics.SINK_MONGO_MODIFIED_TOTAL, totalWriteCount);
+    }
+
+    private void captureCount(String metric, int count) {
+        if (count > 0) {
+            firehoseInstrumentation.captureCount(metric, (long) count);
         }
     }
 
@@ -171,20 +197,23 @@ public class MongoSinkClient implements Closeable {
      * It also checks whether the status code of a bulk write error
      * belongs to blacklist or not. If so, then it logs that the
      * message has been dropped and will not be retried, due to
-     * blacklisted status code.
+     * blacklisted status code. Dropped messages are counted once
+     * per distinct cause.
      *
      * @param writeErrors the write errors
      * @since 0.1
      */
     private void logErrors(List<BulkWriteError> writeErrors) {
 
-        writeErrors.stream()
-                .filter(writeError -> mongoRetryStatusCodeBlacklist.contains(writeError.getCode()))
-                .forEach(writeError -> {
-                    firehoseInstrumentation.logWarn("Non-retriable error due to response status: {} is under blacklisted status code", writeError.getCode());
-                    firehoseInstrumentation.incrementCounter(Metrics.SINK_MESSAGES_DROP_TOTAL, "cause=" + writeError.getMessage());
-                    firehoseInstrumentation.logInfo("Message dropped because of status code: " + writeError.getCode());
-                });
+        Map<String, Long> droppedCountByCause = new LinkedHashMap<>();
+        for (BulkWriteError writeError : writeErrors) {
+            if (mongoRetryStatusCodeBlacklist.contains(writeError.getCode())) {
+                firehoseInstrumentation.logWarn("Non-retriable error due to response status: {} is under blacklisted status code", writeError.getCode());
+                firehoseInstrumentation.logInfo("Message dropped because of status code: " + writeError.getCode());
+                droppedCountByCause.merge(writeError.getMessage(), 1L, Long::sum);
+            }
+        }
+        droppedCountByCause.forEach((cause, count) -> firehoseInstrumentation.captureCount(Metrics.SINK_MESSAGES_DROP_TOTAL, count, "cause=" + cause));
 
         firehoseInstrumentation.logWarn("Bulk request failed count: {}", writeErrors.size());
     }
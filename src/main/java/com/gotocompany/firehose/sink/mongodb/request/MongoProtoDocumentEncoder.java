@@ -0,0 +1,236 @@
+package com.gotocompany.firehose.sink.mongodb.request;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.gotocompany.firehose.exception.DeserializerException;
+import com.gotocompany.stencil.Parser;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes PROTOBUF input messages straight into {@link BsonDocument}s.
+ * <p>
+ * Unlike the JSON path, which serializes every message to a JSON string and parses it back, the message is
+ * walked once using its descriptors. Timestamps are stored as BSON dates, 64-bit integers as BSON longs,
+ * enums by name, repeated fields as arrays and map fields as sub documents.
+ * The primary key field descriptor is resolved once per schema.
+ */
+public class MongoProtoDocumentEncoder {
+    private static final String TIMESTAMP_TYPE = "google.protobuf.Timestamp";
+    private static final String WRAPPER_TYPE_SUFFIX = "Value";
+    private static final String WRAPPER_PACKAGE = "google.protobuf.";
+
+    private final Parser protoParser;
+    private final boolean preserveProtoFieldNames;
+    private volatile PrimaryKeyField primaryKeyField;
+
+    public MongoProtoDocumentEncoder(Parser protoParser, boolean preserveProtoFieldNames) {
+        this.protoParser = protoParser;
+        this.preserveProtoFieldNames = preserveProtoFieldNames;
+    }
+
+    /**
+     * Parses the raw protobuf bytes of a log key or log message.
+     *
+     * @param payload the raw protobuf bytes
+     * @return the parsed message
+     * @throws DeserializerException if the bytes cannot be parsed with the configured schema
+     */
+    public DynamicMessage parse(byte[] payload) {
+        try {
+            return protoParser.parse(payload);
+        } catch (InvalidProtocolBufferException e) {
+            throw new DeserializerException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encodes all the set fields of the message into a BSON document.
+     *
+     * @param protoMessage the message
+     * @return the BSON document
+     */
+    public BsonDocument encode(Message protoMessage) {
+        BsonDocument document = new BsonDocument();
+        for (Map.Entry<Descriptors.FieldDescriptor, Object> field : protoMessage.getAllFields().entrySet()) {
+            document.append(getFieldName(field.getKey()), encodeField(field.getKey(), field.getValue()));
+        }
+        return document;
+    }
+
+    /**
+     * Returns the text value of the primary key field, as the JSON path would have stored it in {@code _id}.
+     *
+     * @param protoMessage the message
+     * @param key          the primary key field name
+     * @return the text value of the primary key
+     * @throws IllegalArgumentException if the key is not a set, non repeated field of the message
+     */
+    public String getPrimaryKeyValue(DynamicMessage protoMessage, String key) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null");
+        }
+        Descriptors.FieldDescriptor fieldDescriptor = getPrimaryKeyField(protoMessage.getDescriptorForType(), key);
+        if (fieldDescriptor == null || fieldDescriptor.isRepeated() || !protoMessage.hasField(fieldDescriptor)
+                || fieldDescriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            throw new IllegalArgumentException("Key: " + key + " not found in ESB Message");
+        }
+        return toText(fieldDescriptor, protoMessage.getField(fieldDescriptor));
+    }
+
+    private String getFieldName(Descriptors.FieldDescriptor fieldDescriptor) {
+        return preserveProtoFieldNames ? fieldDescriptor.getName() : fieldDescriptor.getJsonName();
+    }
+
+    private BsonValue encodeField(Descriptors.FieldDescriptor fieldDescriptor, Object value) {
+        if (fieldDescriptor.isMapField()) {
+            return encodeMap(fieldDescriptor, (List<?>) value);
+        }
+        if (fieldDescriptor.isRepeated()) {
+            BsonArray array = new BsonArray();
+            for (Object element : (List<?>) value) {
+                array.add(encodeValue(fieldDescriptor, element));
+            }
+            return array;
+        }
+        return encodeValue(fieldDescriptor, value);
+    }
+
+    private BsonDocument encodeMap(Descriptors.FieldDescriptor fieldDescriptor, List<?> entries) {
+        Descriptors.FieldDescriptor keyField = fieldDescriptor.getMessageType().findFieldByName("key");
+        Descriptors.FieldDescriptor valueField = fieldDescriptor.getMessageType().findFieldByName("value");
+        BsonDocument document = new BsonDocument();
+        for (Object entry : entries) {
+            Message entryMessage = (Message) entry;
+            document.append(toText(keyField, entryMessage.getField(keyField)), encodeValue(valueField, entryMessage.getField(valueField)));
+        }
+        return document;
+    }
+
+    private BsonValue encodeValue(Descriptors.FieldDescriptor fieldDescriptor, Object value) {
+        switch (fieldDescriptor.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return new BsonInt32((Integer) value);
+            case UINT32:
+            case FIXED32:
+                return new BsonInt64(Integer.toUnsignedLong((Integer) value));
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return new BsonInt64((Long) value);
+            case UINT64:
+            case FIXED64:
+                long longValue = (Long) value;
+                return longValue >= 0 ? new BsonInt64(longValue)
+                        : new BsonDecimal128(new Decimal128(new BigDecimal(Long.toUnsignedString(longValue))));
+            case FLOAT:
+                return new BsonDouble((Float) value);
+            case DOUBLE:
+                return new BsonDouble((Double) value);
+            case BOOL:
+                return BsonBoolean.valueOf((Boolean) value);
+            case STRING:
+                return new BsonString((String) value);
+            case BYTES:
+                return new BsonBinary(((ByteString) value).toByteArray());
+            case ENUM:
+                return new BsonString(toText(fieldDescriptor, value));
+            case MESSAGE:
+            case GROUP:
+                return encodeMessage((Message) value);
+            default:
+                return BsonNull.VALUE;
+        }
+    }
+
+    private BsonValue encodeMessage(Message message) {
+        Descriptors.Descriptor descriptor = message.getDescriptorForType();
+        String typeName = descriptor.getFullName();
+        if (TIMESTAMP_TYPE.equals(typeName)) {
+            long seconds = (Long) message.getField(descriptor.findFieldByName("seconds"));
+            int nanos = (Integer) message.getField(descriptor.findFieldByName("nanos"));
+            return new BsonDateTime(TimeUnit.SECONDS.toMillis(seconds) + TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+        if (isWrapper(descriptor)) {
+            Descriptors.FieldDescriptor valueField = descriptor.findFieldByName("value");
+            return encodeValue(valueField, message.getField(valueField));
+        }
+        return encode(message);
+    }
+
+    private boolean isWrapper(Descriptors.Descriptor descriptor) {
+        String typeName = descriptor.getFullName();
+        return typeName.startsWith(WRAPPER_PACKAGE) && typeName.endsWith(WRAPPER_TYPE_SUFFIX)
+                && descriptor.getFields().size() == 1 && descriptor.findFieldByName("value") != null
+                && descriptor.findFieldByName("value").getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE;
+    }
+
+    private String toText(Descriptors.FieldDescriptor fieldDescriptor, Object value) {
+        switch (fieldDescriptor.getType()) {
+            case UINT32:
+            case FIXED32:
+                return Integer.toUnsignedString((Integer) value);
+            case UINT64:
+            case FIXED64:
+                return Long.toUnsignedString((Long) value);
+            case BYTES:
+                return Base64.getEncoder().encodeToString(((ByteString) value).toByteArray());
+            case ENUM:
+                Descriptors.EnumValueDescriptor enumValue = (Descriptors.EnumValueDescriptor) value;
+                return enumValue.getIndex() == -1 ? String.valueOf(enumValue.getNumber()) : enumValue.getName();
+            default:
+                return String.valueOf(value);
+        }
+    }
+
+    private Descriptors.FieldDescriptor getPrimaryKeyField(Descriptors.Descriptor descriptor, String key) {
+        PrimaryKeyField field = primaryKeyField;
+        if (field == null || field.descriptor != descriptor || !field.key.equals(key)) {
+            Descriptors.FieldDescriptor fieldDescriptor = descriptor.getFields()
+                    .stream()
+                    .filter(fd -> getFieldName(fd).equals(key))
+                    .findFirst()
+                    .orElse(null);
+            field = new PrimaryKeyField(descriptor, key, fieldDescriptor);
+            primaryKeyField = field;
+        }
+        return field.fieldDescriptor;
+    }
+
+    /**
+     * Primary key field descriptor, resolved against the schema it was looked up in.
+     */
+    private static class PrimaryKeyField {
+        private final Descriptors.Descriptor descriptor;
+        private final String key;
+        private final Descriptors.FieldDescriptor fieldDescriptor;
+
+        PrimaryKeyField(Descriptors.Descriptor descriptor, String key, Descriptors.FieldDescriptor fieldDescriptor) {
+            this.descriptor = descriptor;
+            this.key = key;
+            this.fieldDescriptor = fieldDescriptor;
+        }
+    }
+}
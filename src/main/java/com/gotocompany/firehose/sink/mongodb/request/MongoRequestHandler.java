@@ -1,10 +1,12 @@
 package com.gotocompany.firehose.sink.mongodb.request;
 
+import com.google.protobuf.DynamicMessage;
 import com.gotocompany.firehose.config.enums.MongoSinkMessageType;
 import com.gotocompany.firehose.exception.JsonParseException;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.serializer.MessageToJson;
 import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -22,6 +24,7 @@ public abstract class MongoRequestHandler {
     private final MessageToJson jsonSerializer;
     private final JSONParser jsonParser;
     private final String kafkaRecordParserMode;
+    private final MongoProtoDocumentEncoder documentEncoder;
 
     /**
      * Instantiates a new Mongo request handler.
@@ -31,10 +34,24 @@ public abstract class MongoRequestHandler {
      * @since 0.1
      */
     public MongoRequestHandler(MongoSinkMessageType messageType, MessageToJson jsonSerializer, String kafkaRecordParserMode) {
+        this(messageType, jsonSerializer, kafkaRecordParserMode, null);
+    }
+
+    /**
+     * Instantiates a new Mongo request handler.
+     *
+     * @param messageType           the message type, i.e JSON/Protobuf
+     * @param jsonSerializer        the json serializer
+     * @param kafkaRecordParserMode the kafka record parser mode, i.e. key/message
+     * @param documentEncoder       the encoder used for Protobuf messages, or null to go through JSON
+     */
+    public MongoRequestHandler(MongoSinkMessageType messageType, MessageToJson jsonSerializer, String kafkaRecordParserMode,
+                               MongoProtoDocumentEncoder documentEncoder) {
         this.messageType = messageType;
         this.jsonSerializer = jsonSerializer;
         this.jsonParser = new JSONParser();
         this.kafkaRecordParserMode = kafkaRecordParserMode;
+        this.documentEncoder = documentEncoder;
     }
 
     /**
@@ -60,6 +77,38 @@ public abstract class MongoRequestHandler {
      */
     public abstract WriteModel<Document> getRequest(Message message);
 
+    /**
+     * This method builds the MongoDB document for the provided Message.
+     * If a primary key is provided, its value is stored in the _id field
+     * of the document. Protobuf messages are encoded straight to BSON
+     * when a document encoder is configured, otherwise the payload is
+     * converted to JSON first.
+     *
+     * @param message    the message
+     * @param primaryKey the primary key, or null to let MongoDB generate the _id
+     * @return the document
+     * @throws IllegalArgumentException if the primary key is not found in the message
+     */
+    protected Document getDocument(Message message, String primaryKey) {
+        if (documentEncoder != null && messageType.equals(MongoSinkMessageType.PROTOBUF)) {
+            DynamicMessage protoMessage = documentEncoder.parse(kafkaRecordParserMode.equals("key") ? message.getLogKey() : message.getLogMessage());
+            BsonDocument bsonDocument = documentEncoder.encode(protoMessage);
+            if (primaryKey == null) {
+                return new Document(bsonDocument);
+            }
+            Document document = new Document("_id", documentEncoder.getPrimaryKeyValue(protoMessage, primaryKey));
+            document.putAll(bsonDocument);
+            return document;
+        }
+        JSONObject logMessageJSONObject = getJSONObject(extractPayload(message));
+        if (primaryKey == null) {
+            return new Document(logMessageJSONObject);
+        }
+        Document document = new Document("_id", getFieldFromJSON(logMessageJSONObject, primaryKey));
+        document.putAll(logMessageJSONObject);
+        return document;
+    }
+
     /**
      * This method returns the JSON string parsed from the input message.
      * If the input message type is Protobuf, then the raw Protobuf byte
@@ -20,6 +20,7 @@ public class MongoRequestHandlerFactory {
     private final String mongoPrimaryKey;
     private final MongoSinkMessageType messageType;
     private final MessageToJson jsonSerializer;
+    private final MongoProtoDocumentEncoder documentEncoder;
 
     /**
      * Gets request handler. This method returns the MongoDB update/upsert
@@ -49,8 +50,8 @@ public class MongoRequestHandlerFactory {
         }
 
         ArrayList<MongoRequestHandler> mongoRequestHandlers = new ArrayList<>();
-        mongoRequestHandlers.add(new MongoUpdateRequestHandler(messageType, jsonSerializer, mongoSinkRequestType, mongoPrimaryKey, kafkaRecordParserMode));
-        mongoRequestHandlers.add(new MongoUpsertRequestHandler(messageType, jsonSerializer, mongoSinkRequestType, mongoPrimaryKey, kafkaRecordParserMode));
+        mongoRequestHandlers.add(new MongoUpdateRequestHandler(messageType, jsonSerializer, mongoSinkRequestType, mongoPrimaryKey, kafkaRecordParserMode, documentEncoder));
+        mongoRequestHandlers.add(new MongoUpsertRequestHandler(messageType, jsonSerializer, mongoSinkRequestType, mongoPrimaryKey, kafkaRecordParserMode, documentEncoder));
         return mongoRequestHandlers
                 .stream()
                 .filter(MongoRequestHandler::canCreate)
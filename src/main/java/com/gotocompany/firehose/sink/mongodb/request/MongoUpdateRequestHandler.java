@@ -6,7 +6,6 @@ import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.serializer.MessageToJson;
 import com.mongodb.client.model.ReplaceOneModel;
 import org.bson.Document;
-import org.json.simple.JSONObject;
 
 /**
  * The Mongo update request handler.
@@ -28,7 +27,22 @@ public class MongoUpdateRequestHandler extends MongoRequestHandler {
      * @since 0.1
      */
     public MongoUpdateRequestHandler(MongoSinkMessageType messageType, MessageToJson jsonSerializer, MongoSinkRequestType mongoSinkRequestType, String mongoPrimaryKey, String kafkaRecordParserMode) {
-        super(messageType, jsonSerializer, kafkaRecordParserMode);
+        this(messageType, jsonSerializer, mongoSinkRequestType, mongoPrimaryKey, kafkaRecordParserMode, null);
+    }
+
+    /**
+     * Instantiates a new Mongo update request handler.
+     *
+     * @param messageType           the message type
+     * @param jsonSerializer        the json serializer
+     * @param mongoSinkRequestType  the mongo sink request type
+     * @param mongoPrimaryKey       the mongo primary key
+     * @param kafkaRecordParserMode the kafka record parser mode, i.e. key/message
+     * @param documentEncoder       the encoder used for Protobuf messages, or null to go through JSON
+     */
+    public MongoUpdateRequestHandler(MongoSinkMessageType messageType, MessageToJson jsonSerializer, MongoSinkRequestType mongoSinkRequestType, String mongoPrimaryKey,
+                                     String kafkaRecordParserMode, MongoProtoDocumentEncoder documentEncoder) {
+        super(messageType, jsonSerializer, kafkaRecordParserMode, documentEncoder);
         this.mongoSinkRequestType = mongoSinkRequestType;
         this.mongoPrimaryKey = mongoPrimaryKey;
     }
@@ -40,14 +54,8 @@ public class MongoUpdateRequestHandler extends MongoRequestHandler {
 
     @Override
     public ReplaceOneModel<Document> getRequest(Message message) {
-        String logMessage = extractPayload(message);
-        JSONObject logMessageJSONObject = getJSONObject(logMessage);
-        String primaryKeyValue;
-
-        primaryKeyValue = getFieldFromJSON(logMessageJSONObject, mongoPrimaryKey);
-        Document document = new Document("_id", primaryKeyValue);
-        document.putAll(logMessageJSONObject);
+        Document document = getDocument(message, mongoPrimaryKey);
 
-        return new ReplaceOneModel<>(new Document("_id", primaryKeyValue), document);
+        return new ReplaceOneModel<>(new Document("_id", document.get("_id")), document);
     }
 }
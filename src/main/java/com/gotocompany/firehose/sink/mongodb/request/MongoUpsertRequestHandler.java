@@ -9,7 +9,6 @@ import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.WriteModel;
 import org.bson.Document;
-import org.json.simple.JSONObject;
 
 /**
  * The Mongo update request handler.
@@ -36,7 +35,22 @@ public class MongoUpsertRequestHandler extends MongoRequestHandler {
      * @since 0.1
      */
     public MongoUpsertRequestHandler(MongoSinkMessageType messageType, MessageToJson jsonSerializer, MongoSinkRequestType mongoSinkRequestType, String mongoPrimaryKey, String kafkaRecordParserMode) {
-        super(messageType, jsonSerializer, kafkaRecordParserMode);
+        this(messageType, jsonSerializer, mongoSinkRequestType, mongoPrimaryKey, kafkaRecordParserMode, null);
+    }
+
+    /**
+     * Instantiates a new Mongo upsert request handler.
+     *
+     * @param messageType           the message type
+     * @param jsonSerializer        the json serializer
+     * @param mongoSinkRequestType  the Mongo sink request type, i.e. UPDATE_ONLY/INSERT_OR_UPDATE
+     * @param mongoPrimaryKey       the Mongo primary key
+     * @param kafkaRecordParserMode the kafka record parser mode, i.e. key/message
+     * @param documentEncoder       the encoder used for Protobuf messages, or null to go through JSON
+     */
+    public MongoUpsertRequestHandler(MongoSinkMessageType messageType, MessageToJson jsonSerializer, MongoSinkRequestType mongoSinkRequestType, String mongoPrimaryKey,
+                                     String kafkaRecordParserMode, MongoProtoDocumentEncoder documentEncoder) {
+        super(messageType, jsonSerializer, kafkaRecordParserMode, documentEncoder);
         this.mongoSinkRequestType = mongoSinkRequestType;
         this.mongoPrimaryKey = mongoPrimaryKey;
     }
@@ -48,20 +62,13 @@ public class MongoUpsertRequestHandler extends MongoRequestHandler {
 
     @Override
     public WriteModel<Document> getRequest(Message message) {
-        String logMessage = extractPayload(message);
-        JSONObject logMessageJSONObject = getJSONObject(logMessage);
-
-        Document document;
+        Document document = getDocument(message, mongoPrimaryKey);
         if (mongoPrimaryKey == null) {
-            document = new Document(logMessageJSONObject);
             return new InsertOneModel<>(document);
         }
-        String primaryKeyValue = getFieldFromJSON(logMessageJSONObject, mongoPrimaryKey);
-        document = new Document("_id", primaryKeyValue);
-        document.putAll(logMessageJSONObject);
 
         return new ReplaceOneModel<>(
-                new Document("_id", primaryKeyValue),
+                new Document("_id", document.get("_id")),
                 document,
                 new ReplaceOptions().upsert(true));
     }
@@ -0,0 +1,383 @@
+package com.gotocompany.firehose.sink.prometheus.builder;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import com.gotocompany.firehose.config.PromSinkConfig;
+import com.gotocompany.firehose.exception.ConfigurationException;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.stencil.Parser;
+import org.apache.http.entity.ByteArrayEntity;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.gotocompany.firehose.sink.prometheus.PromSinkConstants.FIELD_NAME_MAPPING_ERROR_MESSAGE;
+import static com.gotocompany.firehose.sink.prometheus.PromSinkConstants.PROMETHEUS_LABEL_FOR_METRIC_NAME;
+
+/**
+ * Encoder for the snappy compressed Cortex WriteRequest of a batch.
+ * <p>
+ * Instead of building a {@code Cortex.TimeSeries} object per metric per message, the label sets are cached by the raw
+ * values of the label fields and the partition of the message, so a label set is only built, sorted and hashed the
+ * first time its values are seen. The samples of the same series are merged into a single time series. The remote
+ * write protobuf is then written straight into a buffer reused across batches, which feeds Snappy into another
+ * reused buffer. Labels of a time series, including the metric name label, are sorted by name, and time series are
+ * sorted by their earliest sample.
+ */
+public class WriteRequestEncoder {
+    private static final int WRITE_REQUEST_TIMESERIES_FIELD = 1;
+    private static final int TIMESERIES_LABELS_FIELD = 1;
+    private static final int TIMESERIES_SAMPLES_FIELD = 2;
+    private static final int LABEL_NAME_FIELD = 1;
+    private static final int LABEL_VALUE_FIELD = 2;
+    private static final int SAMPLE_VALUE_FIELD = 1;
+    private static final int SAMPLE_TIMESTAMP_FIELD = 2;
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int MAX_CACHED_LABEL_SETS = 10000;
+    private static final byte[] METRIC_LABEL_NAME = PROMETHEUS_LABEL_FOR_METRIC_NAME.getBytes(StandardCharsets.UTF_8);
+
+    private final Properties metricNameProtoIndexMapping;
+    private final Properties labelNameProtoIndexMapping;
+    private final boolean isEventTimestampEnabled;
+    private final int timestampIndex;
+    private final Parser protoParser;
+    private final List<int[]> labelFieldPaths = new ArrayList<>();
+    private final Map<List<Object>, LabelSet> labelSetsByValues = new HashMap<>();
+    private final Map<LabelSet, LabelSet> labelSets = new HashMap<>();
+    private final Map<SeriesKey, Series> seriesByKey = new HashMap<>();
+    private byte[] buffer = new byte[0];
+    private byte[] compressedBuffer = new byte[0];
+
+    /**
+     * Instantiates a new write request encoder.
+     *
+     * @param config      the prometheus sink config
+     * @param protoParser the proto parser
+     */
+    public WriteRequestEncoder(PromSinkConfig config, Parser protoParser) {
+        this.metricNameProtoIndexMapping = config.getSinkPromMetricNameProtoIndexMapping() == null ? new Properties() : config.getSinkPromMetricNameProtoIndexMapping();
+        this.labelNameProtoIndexMapping = config.getSinkPromLabelNameProtoIndexMapping() == null ? new Properties() : config.getSinkPromLabelNameProtoIndexMapping();
+        this.isEventTimestampEnabled = config.isEventTimestampEnabled();
+        this.timestampIndex = config.getSinkPromProtoEventTimestampIndex();
+        this.protoParser = protoParser;
+        addLabelFieldPaths(labelNameProtoIndexMapping, new int[0]);
+    }
+
+    /**
+     * Adds the paths of field numbers to the label fields, in the order the labels are read from the message.
+     */
+    private void addLabelFieldPaths(Properties mapping, int[] parentPath) {
+        mapping.forEach((labelIndex, labelKey) -> {
+            int[] path = Arrays.copyOf(parentPath, parentPath.length + 1);
+            path[parentPath.length] = Integer.parseInt((String) labelIndex);
+            if (labelKey instanceof String) {
+                labelFieldPaths.add(path);
+            } else if (labelKey instanceof Properties) {
+                addLabelFieldPaths((Properties) labelKey, path);
+            }
+        });
+    }
+
+    /**
+     * Encode the messages into a snappy compressed Cortex WriteRequest.
+     *
+     * @param messages the list of consumer message
+     * @return the request entity, backed by a buffer which the next call reuses, to be sent before encoding the
+     * next batch
+     * @throws InvalidProtocolBufferException the exception on invalid protobuf
+     * @throws IOException                    the exception on compression
+     */
+    public ByteArrayEntity encode(List<Message> messages) throws IOException {
+        List<Series> seriesList = collectSeries(messages);
+        int[] seriesSizes = new int[seriesList.size()];
+        int size = 0;
+        for (int i = 0; i < seriesList.size(); i++) {
+            seriesSizes[i] = seriesList.get(i).computeSize();
+            size += CodedOutputStream.computeTagSize(WRITE_REQUEST_TIMESERIES_FIELD)
+                    + CodedOutputStream.computeUInt32SizeNoTag(seriesSizes[i]) + seriesSizes[i];
+        }
+        if (buffer.length < size) {
+            buffer = new byte[size];
+        }
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer, 0, size);
+        for (int i = 0; i < seriesList.size(); i++) {
+            output.writeTag(WRITE_REQUEST_TIMESERIES_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(seriesSizes[i]);
+            seriesList.get(i).writeTo(output);
+        }
+        output.checkNoSpaceLeft();
+
+        int maxCompressedLength = Snappy.maxCompressedLength(size);
+        if (compressedBuffer.length < maxCompressedLength) {
+            compressedBuffer = new byte[maxCompressedLength];
+        }
+        int compressedLength = Snappy.compress(buffer, 0, size, compressedBuffer, 0);
+        return new ByteArrayEntity(compressedBuffer, 0, compressedLength);
+    }
+
+    private List<Series> collectSeries(List<Message> messages) throws InvalidProtocolBufferException {
+        if (labelSetsByValues.size() >= MAX_CACHED_LABEL_SETS) {
+            labelSetsByValues.clear();
+            labelSets.clear();
+        }
+        seriesByKey.clear();
+        List<Series> seriesList = new ArrayList<>();
+        for (Message message : messages) {
+            DynamicMessage protoMessage = protoParser.parse(message.getLogMessage());
+            checkValidity();
+            LabelSet labelSet = getLabelSet(protoMessage, message.getPartition());
+            Set<PrometheusMetric> metrics = TimeSeriesBuilderUtils.getMetricsFromMessage(protoMessage, metricNameProtoIndexMapping);
+            long timestamp = TimeSeriesBuilderUtils.getMetricTimestamp(protoMessage, isEventTimestampEnabled, timestampIndex);
+            for (PrometheusMetric metric : metrics) {
+                SeriesKey seriesKey = new SeriesKey(metric.getName(), labelSet);
+                Series series = seriesByKey.get(seriesKey);
+                if (series == null) {
+                    series = new Series(seriesKey);
+                    seriesByKey.put(seriesKey, series);
+                    seriesList.add(series);
+                }
+                series.addSample(timestamp, metric.getValue());
+            }
+        }
+        seriesList.forEach(Series::sortSamples);
+        seriesList.sort(Comparator.comparingLong(Series::getFirstTimestamp));
+        return seriesList;
+    }
+
+    private LabelSet getLabelSet(DynamicMessage protoMessage, int partition) {
+        List<Object> values = new ArrayList<>(labelFieldPaths.size() + 1);
+        values.add(partition);
+        for (int[] path : labelFieldPaths) {
+            Object value = protoMessage;
+            for (int fieldNumber : path) {
+                com.google.protobuf.Message fieldMessage = (com.google.protobuf.Message) value;
+                value = fieldMessage.getField(fieldMessage.getDescriptorForType().findFieldByNumber(fieldNumber));
+            }
+            values.add(value);
+        }
+        LabelSet labelSet = labelSetsByValues.get(values);
+        if (labelSet == null) {
+            labelSet = intern(new LabelSet(TimeSeriesBuilderUtils.getLabelsFromMessage(protoMessage, labelNameProtoIndexMapping, partition)));
+            labelSetsByValues.put(values, labelSet);
+        }
+        return labelSet;
+    }
+
+    private LabelSet intern(LabelSet labelSet) {
+        LabelSet interned = labelSets.putIfAbsent(labelSet, labelSet);
+        return interned == null ? labelSet : interned;
+    }
+
+    private void checkValidity() {
+        if (metricNameProtoIndexMapping.isEmpty()) {
+            throw new ConfigurationException(FIELD_NAME_MAPPING_ERROR_MESSAGE);
+        }
+    }
+
+    private static int computeLabelSize(byte[] name, byte[] value) {
+        return computeByteArraySize(LABEL_NAME_FIELD, name) + computeByteArraySize(LABEL_VALUE_FIELD, value);
+    }
+
+    private static int computeByteArraySize(int fieldNumber, byte[] value) {
+        return value.length == 0 ? 0 : CodedOutputStream.computeByteArraySize(fieldNumber, value);
+    }
+
+    private static int computeLengthDelimitedSize(int fieldNumber, int size) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    private static void writeLabel(CodedOutputStream output, byte[] name, byte[] value) throws IOException {
+        output.writeTag(TIMESERIES_LABELS_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(computeLabelSize(name, value));
+        if (name.length > 0) {
+            output.writeByteArray(LABEL_NAME_FIELD, name);
+        }
+        if (value.length > 0) {
+            output.writeByteArray(LABEL_VALUE_FIELD, value);
+        }
+    }
+
+    private static int computeSampleSize(double value, long timestamp) {
+        return (value != 0D ? CodedOutputStream.computeDoubleSize(SAMPLE_VALUE_FIELD, value) : 0)
+                + (timestamp != 0L ? CodedOutputStream.computeInt64Size(SAMPLE_TIMESTAMP_FIELD, timestamp) : 0);
+    }
+
+    /**
+     * Labels of a message, sorted by name, with the position where the metric name label sorts among them. The UTF-8
+     * bytes of the labels are only encoded for the interned instance of each distinct set.
+     */
+    private static final class LabelSet {
+        private final String[] keys;
+        private final int metricLabelIndex;
+        private final int hash;
+        private byte[][] encodedKeys;
+
+        LabelSet(Set<PrometheusLabel> labels) {
+            PrometheusLabel[] sortedLabels = labels.toArray(new PrometheusLabel[0]);
+            Arrays.sort(sortedLabels, Comparator.comparing(PrometheusLabel::getName).thenComparing(PrometheusLabel::getValue));
+            keys = new String[sortedLabels.length * 2];
+            for (int i = 0; i < sortedLabels.length; i++) {
+                keys[2 * i] = sortedLabels[i].getName();
+                keys[2 * i + 1] = sortedLabels[i].getValue();
+            }
+            int index = 0;
+            while (index < keys.length && keys[index].compareTo(PROMETHEUS_LABEL_FOR_METRIC_NAME) < 0) {
+                index += 2;
+            }
+            metricLabelIndex = index;
+            hash = Arrays.hashCode(keys);
+        }
+
+        byte[][] getEncodedKeys() {
+            if (encodedKeys == null) {
+                encodedKeys = new byte[keys.length][];
+                for (int i = 0; i < keys.length; i++) {
+                    encodedKeys[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            return encodedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof LabelSet && hash == ((LabelSet) o).hash && Arrays.equals(keys, ((LabelSet) o).keys));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Metric name and interned label set identifying a series.
+     */
+    private static final class SeriesKey {
+        private final String metricName;
+        private final LabelSet labelSet;
+        private final int hash;
+
+        SeriesKey(String metricName, LabelSet labelSet) {
+            this.metricName = metricName;
+            this.labelSet = labelSet;
+            this.hash = HASH_MULTIPLIER * metricName.hashCode() + labelSet.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey other = (SeriesKey) o;
+            return hash == other.hash && labelSet == other.labelSet && metricName.equals(other.metricName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A series of the batch, with all of its samples.
+     */
+    private static final class Series {
+        private final LabelSet labelSet;
+        private final byte[] metricName;
+        private long[] timestamps = new long[1];
+        private double[] values = new double[1];
+        private int sampleCount;
+        private boolean sorted = true;
+
+        Series(SeriesKey seriesKey) {
+            this.labelSet = seriesKey.labelSet;
+            this.metricName = seriesKey.metricName.getBytes(StandardCharsets.UTF_8);
+        }
+
+        void addSample(long timestamp, double value) {
+            if (sampleCount == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, sampleCount * 2);
+                values = Arrays.copyOf(values, sampleCount * 2);
+            }
+            if (sampleCount > 0 && timestamp < timestamps[sampleCount - 1]) {
+                sorted = false;
+            }
+            timestamps[sampleCount] = timestamp;
+            values[sampleCount] = value;
+            sampleCount++;
+        }
+
+        void sortSamples() {
+            if (sorted) {
+                return;
+            }
+            Integer[] order = new Integer[sampleCount];
+            for (int i = 0; i < sampleCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> timestamps[i]));
+            long[] sortedTimestamps = new long[sampleCount];
+            double[] sortedValues = new double[sampleCount];
+            for (int i = 0; i < sampleCount; i++) {
+                sortedTimestamps[i] = timestamps[order[i]];
+                sortedValues[i] = values[order[i]];
+            }
+            timestamps = sortedTimestamps;
+            values = sortedValues;
+            sorted = true;
+        }
+
+        long getFirstTimestamp() {
+            return timestamps[0];
+        }
+
+        int computeSize() {
+            int size = computeLengthDelimitedSize(TIMESERIES_LABELS_FIELD, computeLabelSize(METRIC_LABEL_NAME, metricName));
+            byte[][] labels = labelSet.getEncodedKeys();
+            for (int i = 0; i < labels.length; i += 2) {
+                size += computeLengthDelimitedSize(TIMESERIES_LABELS_FIELD, computeLabelSize(labels[i], labels[i + 1]));
+            }
+            for (int i = 0; i < sampleCount; i++) {
+                size += computeLengthDelimitedSize(TIMESERIES_SAMPLES_FIELD, computeSampleSize(values[i], timestamps[i]));
+            }
+            return size;
+        }
+
+        void writeTo(CodedOutputStream output) throws IOException {
+            byte[][] labels = labelSet.getEncodedKeys();
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i == labelSet.metricLabelIndex) {
+                    writeLabel(output, METRIC_LABEL_NAME, metricName);
+                }
+                writeLabel(output, labels[i], labels[i + 1]);
+            }
+            if (labelSet.metricLabelIndex == labels.length) {
+                writeLabel(output, METRIC_LABEL_NAME, metricName);
+            }
+            for (int i = 0; i < sampleCount; i++) {
+                output.writeTag(TIMESERIES_SAMPLES_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(computeSampleSize(values[i], timestamps[i]));
+                if (values[i] != 0D) {
+                    output.writeDouble(SAMPLE_VALUE_FIELD, values[i]);
+                }
+                if (timestamps[i] != 0L) {
+                    output.writeInt64(SAMPLE_TIMESTAMP_FIELD, timestamps[i]);
+                }
+            }
+        }
+    }
+}
@@ -4,9 +4,7 @@ import com.gotocompany.firehose.exception.DeserializerException;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.prometheus.builder.HeaderBuilder;
-import cortexpb.Cortex;
-import com.gotocompany.firehose.sink.prometheus.builder.RequestEntityBuilder;
-import com.gotocompany.firehose.sink.prometheus.builder.WriteRequestBuilder;
+import com.gotocompany.firehose.sink.prometheus.builder.WriteRequestEncoder;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 
@@ -22,28 +20,26 @@ import java.util.Map;
  */
 public class PromRequest {
     private FirehoseInstrumentation firehoseInstrumentation;
-    private WriteRequestBuilder writeRequestBuilder;
     private String url;
-    private RequestEntityBuilder requestEntityBuilder;
     private HeaderBuilder headerBuilder;
+    private WriteRequestEncoder writeRequestEncoder;
 
 
     /**
-     * Instantiates a new Prometheus request.
+     * Instantiates a new Prometheus request, which encodes the write request of a batch with a
+     * {@link WriteRequestEncoder}.
      *
-     * @param firehoseInstrumentation      the instrumentation
-     * @param headerBuilder        the header builder
-     * @param url                  the url
-     * @param requestEntityBuilder the request entity builder
-     * @param writeRequestBuilder  the writeRequest builder
+     * @param firehoseInstrumentation the instrumentation
+     * @param headerBuilder           the header builder
+     * @param url                     the url
+     * @param writeRequestEncoder     the writeRequest encoder
      */
     public PromRequest(FirehoseInstrumentation firehoseInstrumentation, HeaderBuilder headerBuilder, String url,
-                       RequestEntityBuilder requestEntityBuilder, WriteRequestBuilder writeRequestBuilder) {
+                       WriteRequestEncoder writeRequestEncoder) {
         this.firehoseInstrumentation = firehoseInstrumentation;
-        this.writeRequestBuilder = writeRequestBuilder;
         this.headerBuilder = headerBuilder;
         this.url = url;
-        this.requestEntityBuilder = requestEntityBuilder;
+        this.writeRequestEncoder = writeRequestEncoder;
     }
 
     /**
@@ -56,12 +52,11 @@ public class PromRequest {
      * @throws IOException           the io exception
      */
     public List<HttpEntityEnclosingRequestBase> build(List<Message> messages) throws DeserializerException, URISyntaxException, IOException {
-        Cortex.WriteRequest writeRequest = writeRequestBuilder.buildWriteRequest(messages);
         URI uri = new URI(url);
         HttpEntityEnclosingRequestBase request = new HttpPost(uri);
         Map<String, String> headerMap = headerBuilder.build();
         headerMap.forEach(request::addHeader);
-        request.setEntity(requestEntityBuilder.buildHttpEntity(writeRequest));
+        request.setEntity(writeRequestEncoder.encode(messages));
         return Collections.singletonList(request);
     }
 }
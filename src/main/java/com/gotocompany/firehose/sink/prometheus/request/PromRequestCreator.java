@@ -3,11 +3,9 @@ package com.gotocompany.firehose.sink.prometheus.request;
 
 import com.gotocompany.firehose.config.PromSinkConfig;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
-import com.gotocompany.firehose.sink.prometheus.builder.TimeSeriesBuilder;
 import com.gotocompany.depot.metrics.StatsDReporter;
 import com.gotocompany.firehose.sink.prometheus.builder.HeaderBuilder;
-import com.gotocompany.firehose.sink.prometheus.builder.RequestEntityBuilder;
-import com.gotocompany.firehose.sink.prometheus.builder.WriteRequestBuilder;
+import com.gotocompany.firehose.sink.prometheus.builder.WriteRequestEncoder;
 import com.gotocompany.stencil.Parser;
 
 /**
@@ -38,22 +36,11 @@ public class PromRequestCreator {
      * @return PromRequest
      */
     public PromRequest createRequest() {
-        WriteRequestBuilder body = createBody();
+        WriteRequestEncoder body = new WriteRequestEncoder(promSinkConfig, protoParser);
         HeaderBuilder headerBuilder = new HeaderBuilder(promSinkConfig.getSinkPromHeaders());
         String baseUrl = promSinkConfig.getSinkPromServiceUrl();
-        RequestEntityBuilder requestEntityBuilder = new RequestEntityBuilder();
 
         return new PromRequest(new FirehoseInstrumentation(statsDReporter, PromRequest.class),
-                headerBuilder, baseUrl, requestEntityBuilder, body);
-    }
-
-    /**
-     * create prometheus writeRequest builder.
-     *
-     * @return WriteRequestBuilder
-     */
-    private WriteRequestBuilder createBody() {
-        TimeSeriesBuilder timeSeriesBuilder = new TimeSeriesBuilder(promSinkConfig);
-        return new WriteRequestBuilder(timeSeriesBuilder, protoParser);
+                headerBuilder, baseUrl, body);
     }
 }
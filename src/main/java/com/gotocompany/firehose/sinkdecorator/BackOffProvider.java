@@ -11,5 +11,36 @@ public interface BackOffProvider {
      *
      * @param attemptCount the number of attempt.
      */
-    void backOff(int attemptCount);
+    default void backOff(int attemptCount) {
+        backOff(attemptCount, 0);
+    }
+
+    /**
+     * backs off for a specific duration depending on the number of attempts and the previous back off
+     * of the retry sequence.
+     *
+     * @param attemptCount  the number of attempt.
+     * @param previousDelay the previous back off duration of the retry sequence in milliseconds, zero for its first back off.
+     * @return the back off duration in milliseconds
+     */
+    long backOff(int attemptCount, long previousDelay);
+
+    /**
+     * the duration to back off for, without backing off.
+     *
+     * @param attemptCount the number of attempt.
+     * @return the back off duration in milliseconds
+     */
+    default long calculateDelay(int attemptCount) {
+        return calculateDelay(attemptCount, 0);
+    }
+
+    /**
+     * the duration to back off for within a retry sequence, without backing off.
+     *
+     * @param attemptCount  the number of attempt.
+     * @param previousDelay the previous back off duration of the retry sequence in milliseconds, zero for its first back off.
+     * @return the back off duration in milliseconds
+     */
+    long calculateDelay(int attemptCount, long previousDelay);
 }
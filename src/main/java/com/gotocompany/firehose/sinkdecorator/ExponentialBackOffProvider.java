@@ -1,7 +1,10 @@
 package com.gotocompany.firehose.sinkdecorator;
 
+import com.gotocompany.firehose.config.enums.BackOffJitterType;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 import static com.gotocompany.firehose.metrics.Metrics.RETRY_SLEEP_TIME_MILLISECONDS;
 import static java.lang.Math.toIntExact;
 
@@ -11,14 +14,20 @@ import static java.lang.Math.toIntExact;
  * The backoff time is computed as per the following formula.
  * Min{maximumExpiryTimeInMS, initialExpiryTimeInMs * Math.pow(backoffRate,
  * attemptCount)}
+ * <p>
+ * With full jitter the backoff time is random between zero and the above. With decorrelated jitter it is random
+ * between initialExpiryTimeInMs and three times the previous backoff time of the retry sequence, up to
+ * maximumExpiryTimeInMS. The provider holds no state, so sequences retried concurrently do not share their backoff.
  */
 public class ExponentialBackOffProvider implements BackOffProvider {
+    private static final int DECORRELATED_JITTER_FACTOR = 3;
 
     private final int initialExpiryTimeInMs;
     private final int backoffRate;
     private final int maximumExpiryTimeInMS;
     private FirehoseInstrumentation firehoseInstrumentation;
     private final BackOff backOff;
+    private final BackOffJitterType jitterType;
 
     /**
      * Instantiates a new Exponential back off provider.
@@ -31,23 +40,56 @@ public class ExponentialBackOffProvider implements BackOffProvider {
      */
     public ExponentialBackOffProvider(int initialExpiryTimeInMs, int backoffRate, int maximumExpiryTimeInMS,
                                       FirehoseInstrumentation firehoseInstrumentation, BackOff backOff) {
+        this(initialExpiryTimeInMs, backoffRate, maximumExpiryTimeInMS, firehoseInstrumentation, backOff, BackOffJitterType.NONE);
+    }
+
+    /**
+     * Instantiates a new Exponential back off provider with jitter.
+     *
+     * @param initialExpiryTimeInMs   the initial expiry time in ms
+     * @param backoffRate             the backoff rate
+     * @param maximumExpiryTimeInMS   the maximum expiry time in ms
+     * @param firehoseInstrumentation the instrumentation
+     * @param backOff                 the back off
+     * @param jitterType              the jitter applied to the backoff time
+     */
+    public ExponentialBackOffProvider(int initialExpiryTimeInMs, int backoffRate, int maximumExpiryTimeInMS,
+                                      FirehoseInstrumentation firehoseInstrumentation, BackOff backOff, BackOffJitterType jitterType) {
         this.initialExpiryTimeInMs = initialExpiryTimeInMs;
         this.backoffRate = backoffRate;
         this.maximumExpiryTimeInMS = maximumExpiryTimeInMS;
         this.firehoseInstrumentation = firehoseInstrumentation;
         this.backOff = backOff;
+        this.jitterType = jitterType;
     }
 
     @Override
-    public void backOff(int attemptCount) {
-        long sleepTime = this.calculateDelay(attemptCount);
+    public long backOff(int attemptCount, long previousDelay) {
+        long sleepTime = this.calculateDelay(attemptCount, previousDelay);
         firehoseInstrumentation.logWarn("backing off for {} milliseconds ", sleepTime);
         firehoseInstrumentation.captureSleepTime(RETRY_SLEEP_TIME_MILLISECONDS, toIntExact(sleepTime));
         backOff.inMilliSeconds(sleepTime);
+        return sleepTime;
     }
 
-    private long calculateDelay(int attemptCount) {
+    @Override
+    public long calculateDelay(int attemptCount, long previousDelay) {
         double exponentialBackOffTimeInMs = initialExpiryTimeInMs * Math.pow(backoffRate, attemptCount);
-        return (long) Math.min(maximumExpiryTimeInMS, exponentialBackOffTimeInMs);
+        long delay = (long) Math.min(maximumExpiryTimeInMS, exponentialBackOffTimeInMs);
+        switch (jitterType) {
+            case FULL:
+                return ThreadLocalRandom.current().nextLong(delay + 1);
+            case DECORRELATED:
+                return calculateDecorrelatedDelay(previousDelay);
+            default:
+                return delay;
+        }
+    }
+
+    private long calculateDecorrelatedDelay(long previousDelay) {
+        long previous = previousDelay <= 0 ? initialExpiryTimeInMs : previousDelay;
+        long upperBound = Math.max(initialExpiryTimeInMs, Math.min(maximumExpiryTimeInMS, previous * DECORRELATED_JITTER_FACTOR));
+        return Math.min(maximumExpiryTimeInMS,
+                ThreadLocalRandom.current().nextLong(initialExpiryTimeInMs, upperBound + 1));
     }
 }
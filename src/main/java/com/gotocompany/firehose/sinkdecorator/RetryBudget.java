@@ -0,0 +1,35 @@
+package com.gotocompany.firehose.sinkdecorator;
+
+/**
+ * A token bucket limiting retries to a ratio of first attempts, shared by the sinks of a firehose.
+ * <p>
+ * Every first attempt of a message deposits the ratio of a token and every retry of a message withdraws a token.
+ * The bucket starts full, so a burst of up to the maximum tokens is retried after a start or an idle period.
+ */
+public class RetryBudget {
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void deposit(int attempts) {
+        tokens = Math.min(maxTokens, tokens + attempts * ratio);
+    }
+
+    /**
+     * Withdraws a token for each retry as long as there are tokens left.
+     *
+     * @param retries the number of messages to retry
+     * @return the number of messages allowed to retry
+     */
+    public synchronized int withdraw(int retries) {
+        int allowed = (int) Math.min(retries, Math.floor(tokens));
+        tokens -= allowed;
+        return allowed;
+    }
+}
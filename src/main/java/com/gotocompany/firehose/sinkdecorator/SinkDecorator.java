@@ -38,6 +38,11 @@ public class SinkDecorator implements Sink {
         sink.calculateCommittableOffsets();
     }
 
+    @Override
+    public boolean hasPendingFailedMessages() {
+        return sink.hasPendingFailedMessages();
+    }
+
     @Override
     public boolean canManageOffsets() {
         return sink.canManageOffsets();
@@ -67,11 +67,11 @@ public class SinkWithDlq extends SinkDecorator {
         return returnedMessages;
     }
 
-    private void backOff(List<Message> messageList, int attemptCount) {
+    private long backOff(List<Message> messageList, int attemptCount, long previousDelay) {
         if (messageList.isEmpty()) {
-            return;
+            return previousDelay;
         }
-        backOffProvider.backOff(attemptCount);
+        return backOffProvider.backOff(attemptCount, previousDelay);
     }
 
     private List<Message> doDLQ(List<Message> messages) throws IOException {
@@ -81,13 +81,14 @@ public class SinkWithDlq extends SinkDecorator {
             firehoseInstrumentation.captureMessageMetrics(DLQ_MESSAGES_TOTAL, Metrics.MessageType.TOTAL, m.getErrorInfo().getErrorType(), 1);
         });
         int attemptCount = 1;
+        long previousDelay = 0;
         while (attemptCount <= this.dlqConfig.getDlqRetryMaxAttempts() && !retryQueueMessages.isEmpty()) {
             firehoseInstrumentation.incrementCounter(DLQ_RETRY_ATTEMPTS_TOTAL);
             retryQueueMessages = writer.write(retryQueueMessages);
             retryQueueMessages.forEach(message -> Optional.ofNullable(message.getErrorInfo())
                     .flatMap(errorInfo -> Optional.ofNullable(errorInfo.getException()))
                     .ifPresent(e -> firehoseInstrumentation.captureDLQErrors(message, e)));
-            backOff(retryQueueMessages, attemptCount);
+            previousDelay = backOff(retryQueueMessages, attemptCount, previousDelay);
             attemptCount++;
         }
         if (!retryQueueMessages.isEmpty()) {
@@ -102,5 +103,6 @@ public class SinkWithDlq extends SinkDecorator {
     @Override
     public void close() throws IOException {
         super.close();
+        writer.close();
     }
 }
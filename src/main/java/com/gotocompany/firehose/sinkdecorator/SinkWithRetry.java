@@ -2,6 +2,7 @@ package com.gotocompany.firehose.sinkdecorator;
 
 import com.google.protobuf.DynamicMessage;
 import com.gotocompany.firehose.config.AppConfig;
+import com.gotocompany.firehose.consumer.kafka.OffsetManager;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.error.ErrorHandler;
 import com.gotocompany.firehose.error.ErrorScope;
@@ -10,35 +11,80 @@ import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.metrics.Metrics;
 import com.gotocompany.firehose.sink.Sink;
 import com.gotocompany.firehose.sink.common.KeyOrMessageParser;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.gotocompany.firehose.metrics.Metrics.RETRY_MESSAGES_TOTAL;
 import static com.gotocompany.firehose.metrics.Metrics.RETRY_ATTEMPTS_TOTAL;
+import static com.gotocompany.firehose.metrics.Metrics.RETRY_BUDGET_DENIED_TOTAL;
+import static com.gotocompany.firehose.metrics.Metrics.RETRY_PARKED_MESSAGES;
 
 /**
  * Pushes messages with configured retry.
+ * <p>
+ * With an offset manager the failed messages are parked instead of backing off on the calling thread. A scheduler
+ * pushes them again once their back off is due, while their offsets stay uncommitted in the offset manager. Messages
+ * failing after the maximum attempts are returned with the next push, a push without messages returns them when the
+ * topic is quiet. The offsets of returned messages become committable once the caller handled them, when it calculates
+ * the committable offsets. Pushing waits while the parked messages exceed the configured count or size. Parked
+ * messages of partitions revoked from the consumer are dropped, their new consumer reads them again.
+ * <p>
+ * With a retry budget, messages are retried only while the budget has tokens left, the others fail as if
+ * they had reached the maximum attempts.
  */
-public class SinkWithRetry extends SinkDecorator {
+public class SinkWithRetry extends SinkDecorator implements ConsumerRebalanceListener {
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
 
     private final BackOffProvider backOffProvider;
     private final FirehoseInstrumentation firehoseInstrumentation;
     private final AppConfig appConfig;
     private final KeyOrMessageParser parser;
     private final ErrorHandler errorHandler;
+    private final OffsetManager offsetManager;
+    private final RetryBudget retryBudget;
+    private final ScheduledExecutorService retryScheduler;
+    private final Object pushLock = new Object();
+    private final Set<ParkedMessage> parkedMessages = new HashSet<>();
+    private final List<ParkedMessage> exhaustedMessages = new ArrayList<>();
+    private final List<Object> returnedBatches = new ArrayList<>();
+    private long parkedBytes;
 
     public SinkWithRetry(Sink sink, BackOffProvider backOffProvider, FirehoseInstrumentation firehoseInstrumentation, AppConfig appConfig, KeyOrMessageParser parser, ErrorHandler errorHandler) {
+        this(sink, backOffProvider, firehoseInstrumentation, appConfig, parser, errorHandler, null, null);
+    }
+
+    /**
+     * Instantiates a sink with retry which parks the failed messages when an offset manager is given.
+     *
+     * @param offsetManager the offset manager holding the offsets of parked messages, null to back off on the calling thread
+     * @param retryBudget   the retry budget shared by the sinks, null to retry without a budget
+     */
+    public SinkWithRetry(Sink sink, BackOffProvider backOffProvider, FirehoseInstrumentation firehoseInstrumentation, AppConfig appConfig,
+                         KeyOrMessageParser parser, ErrorHandler errorHandler, OffsetManager offsetManager, RetryBudget retryBudget) {
         super(sink);
         this.backOffProvider = backOffProvider;
         this.firehoseInstrumentation = firehoseInstrumentation;
         this.appConfig = appConfig;
         this.parser = parser;
         this.errorHandler = errorHandler;
+        this.offsetManager = offsetManager;
+        this.retryBudget = retryBudget;
+        this.retryScheduler = offsetManager == null ? null : Executors.newSingleThreadScheduledExecutor();
     }
 
     /**
@@ -51,6 +97,12 @@ public class SinkWithRetry extends SinkDecorator {
      */
     @Override
     public List<Message> pushMessage(List<Message> inputMessages) throws IOException, DeserializerException {
+        if (retryBudget != null) {
+            retryBudget.deposit(inputMessages.size());
+        }
+        if (offsetManager != null) {
+            return pushAndPark(inputMessages);
+        }
         List<Message> failedMessages = super.pushMessage(inputMessages);
         if (failedMessages.isEmpty()) {
             return failedMessages;
@@ -90,11 +142,11 @@ public class SinkWithRetry extends SinkDecorator {
         }
     }
 
-    private void backOff(List<Message> messageList, int attemptCount) {
+    private long backOff(List<Message> messageList, int attemptCount, long previousDelay) {
         if (messageList.isEmpty()) {
-            return;
+            return previousDelay;
         }
-        backOffProvider.backOff(attemptCount);
+        return backOffProvider.backOff(attemptCount, previousDelay);
     }
 
     private List<Message> doRetry(List<Message> messages) throws IOException {
@@ -105,23 +157,325 @@ public class SinkWithRetry extends SinkDecorator {
             firehoseInstrumentation.captureMessageMetrics(RETRY_MESSAGES_TOTAL, Metrics.MessageType.TOTAL, m.getErrorInfo().getErrorType(), 1);
         });
 
+        List<Message> deniedMessages = new ArrayList<>();
         int attemptCount = 1;
+        long previousDelay = 0;
         while ((attemptCount <= appConfig.getRetryMaxAttempts() && !retryMessages.isEmpty())
                 || (appConfig.getRetryMaxAttempts() == Integer.MAX_VALUE && !retryMessages.isEmpty())) {
+            int allowed = withdrawRetryBudget(retryMessages.size());
+            if (allowed < retryMessages.size()) {
+                deniedMessages.addAll(retryMessages.subList(allowed, retryMessages.size()));
+                retryMessages = new LinkedList<>(retryMessages.subList(0, allowed));
+                if (retryMessages.isEmpty()) {
+                    break;
+                }
+            }
             firehoseInstrumentation.incrementCounter(RETRY_ATTEMPTS_TOTAL);
             firehoseInstrumentation.logInfo("Retrying messages attempt count: {}, Number of messages: {}", attemptCount, messages.size());
             logDebug(retryMessages);
             retryMessages = super.pushMessage(retryMessages);
-            backOff(retryMessages, attemptCount);
+            previousDelay = backOff(retryMessages, attemptCount, previousDelay);
             attemptCount++;
         }
+        retryMessages.addAll(deniedMessages);
         firehoseInstrumentation.captureMessageMetrics(RETRY_MESSAGES_TOTAL, Metrics.MessageType.SUCCESS, messages.size() - retryMessages.size());
         retryMessages.forEach(m -> firehoseInstrumentation.captureMessageMetrics(RETRY_MESSAGES_TOTAL, Metrics.MessageType.FAILURE, m.getErrorInfo().getErrorType(), 1));
         return retryMessages;
     }
 
+    private int withdrawRetryBudget(int retries) {
+        if (retryBudget == null) {
+            return retries;
+        }
+        int allowed = retryBudget.withdraw(retries);
+        if (allowed < retries) {
+            firehoseInstrumentation.logWarn("Retry budget exhausted, {} messages are not retried", retries - allowed);
+            firehoseInstrumentation.captureCount(RETRY_BUDGET_DENIED_TOTAL, (long) (retries - allowed));
+        }
+        return allowed;
+    }
+
+    private List<Message> pushAndPark(List<Message> inputMessages) throws IOException, DeserializerException {
+        if (inputMessages.isEmpty()) {
+            return returnFailedMessages(new ArrayList<>());
+        }
+        awaitParkingCapacity();
+        List<Message> failedMessages;
+        synchronized (pushLock) {
+            failedMessages = super.pushMessage(inputMessages);
+        }
+        Map<Boolean, List<Message>> splitLists = errorHandler.split(failedMessages, ErrorScope.RETRY);
+        List<Message> retryMessages = splitLists.get(Boolean.TRUE);
+        retryMessages.forEach(m -> {
+            m.setDefaultErrorIfNotPresent();
+            firehoseInstrumentation.captureMessageMetrics(RETRY_MESSAGES_TOTAL, Metrics.MessageType.TOTAL, m.getErrorInfo().getErrorType(), 1);
+        });
+        List<ParkedMessage> parked = park(retryMessages);
+        Set<List<Object>> failedOffsets = failedMessages.stream().map(SinkWithRetry::getOffsetKey).collect(Collectors.toSet());
+        offsetManager.addOffsetsAndSetCommittable(inputMessages.stream()
+                .filter(m -> !failedOffsets.contains(getOffsetKey(m)))
+                .collect(Collectors.toList()));
+        schedule(parked, 1, 0);
+        return returnFailedMessages(splitLists.get(Boolean.FALSE));
+    }
+
+    /**
+     * Returns the failed messages with the messages failing after the maximum attempts, their offsets become
+     * committable once the caller handled them.
+     */
+    private List<Message> returnFailedMessages(List<Message> failedMessages) throws IOException {
+        Object failedBatch = new Object();
+        offsetManager.addOffsetToBatch(failedBatch, failedMessages);
+        List<ParkedMessage> exhausted = takeExhaustedMessages();
+        if (!exhausted.isEmpty() && appConfig.getRetryFailAfterMaxAttemptsEnable()) {
+            throw new IOException("exceeded maximum Sink retry attempts");
+        }
+        List<Message> messages = exhausted.stream().map(ParkedMessage::getMessage).collect(Collectors.toList());
+        messages.addAll(failedMessages);
+        synchronized (this) {
+            returnedBatches.addAll(exhausted);
+            if (!failedMessages.isEmpty()) {
+                returnedBatches.add(failedBatch);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Registers the offsets of the messages as not committable, before the offsets of their batch are added.
+     */
+    private List<ParkedMessage> park(List<Message> messages) {
+        List<ParkedMessage> parked = messages.stream().map(ParkedMessage::new).collect(Collectors.toList());
+        parked.forEach(p -> offsetManager.addOffsetToBatch(p, p.getMessage()));
+        synchronized (this) {
+            parkedMessages.addAll(parked);
+            parkedBytes += parked.stream().mapToLong(ParkedMessage::getBytes).sum();
+            firehoseInstrumentation.captureValue(RETRY_PARKED_MESSAGES, parkedMessages.size());
+        }
+        return parked;
+    }
+
+    private synchronized void unpark(List<ParkedMessage> parked) {
+        for (ParkedMessage p : parked) {
+            if (parkedMessages.remove(p)) {
+                parkedBytes -= p.getBytes();
+            }
+        }
+        firehoseInstrumentation.captureValue(RETRY_PARKED_MESSAGES, parkedMessages.size());
+        notifyAll();
+    }
+
+    /**
+     * @return the messages which are still parked, those of revoked partitions are dropped
+     */
+    private synchronized List<ParkedMessage> stillParked(List<ParkedMessage> parked) {
+        return parked.stream().filter(parkedMessages::contains).collect(Collectors.toList());
+    }
+
+    private synchronized void awaitParkingCapacity() throws IOException {
+        if (parkedMessages.size() < appConfig.getRetryParkingMaxMessages() && parkedBytes < appConfig.getRetryParkingMaxBytes()) {
+            return;
+        }
+        firehoseInstrumentation.logWarn("Waiting for {} parked messages of {} bytes to be retried", parkedMessages.size(), parkedBytes);
+        while (parkedMessages.size() >= appConfig.getRetryParkingMaxMessages() || parkedBytes >= appConfig.getRetryParkingMaxBytes()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for parked messages to be retried", e);
+            }
+        }
+    }
+
+    private synchronized List<ParkedMessage> takeExhaustedMessages() {
+        List<ParkedMessage> exhausted = new ArrayList<>(exhaustedMessages);
+        exhaustedMessages.clear();
+        return exhausted;
+    }
+
+    /**
+     * Schedules the retry of the parked messages, the previous delay is the back off of their last attempt.
+     */
+    private void schedule(List<ParkedMessage> messages, int attemptCount, long previousDelay) {
+        List<ParkedMessage> parked = stillParked(messages);
+        if (parked.isEmpty()) {
+            return;
+        }
+        long delay = backOffProvider.calculateDelay(attemptCount - 1, previousDelay);
+        firehoseInstrumentation.logInfo("Parking {} messages for retry attempt {} in {} milliseconds", parked.size(), attemptCount, delay);
+        try {
+            retryScheduler.schedule(() -> retry(parked, attemptCount, delay), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            firehoseInstrumentation.logWarn("Sink is closed, {} parked messages are not retried", parked.size());
+        }
+    }
+
+    private void retry(List<ParkedMessage> messages, int attemptCount, long delay) {
+        List<ParkedMessage> parked = stillParked(messages);
+        int allowed = withdrawRetryBudget(parked.size());
+        if (allowed < parked.size()) {
+            exhaust(parked.subList(allowed, parked.size()));
+        }
+        List<ParkedMessage> retrying = parked.subList(0, allowed);
+        if (retrying.isEmpty()) {
+            return;
+        }
+        List<Message> retryMessages = retrying.stream().map(ParkedMessage::getMessage).collect(Collectors.toList());
+        List<Message> failedMessages;
+        try {
+            synchronized (pushLock) {
+                firehoseInstrumentation.incrementCounter(RETRY_ATTEMPTS_TOTAL);
+                firehoseInstrumentation.logInfo("Retrying messages attempt count: {}, Number of messages: {}", attemptCount, retryMessages.size());
+                logDebug(retryMessages);
+                failedMessages = super.pushMessage(retryMessages);
+            }
+        } catch (Exception e) {
+            firehoseInstrumentation.logWarn("Failed to retry {} parked messages: {}", retryMessages.size(), e.getMessage());
+            failedMessages = retryMessages;
+        }
+        Map<List<Object>, Message> failedByOffset = failedMessages.stream()
+                .collect(Collectors.toMap(SinkWithRetry::getOffsetKey, m -> m, (first, second) -> second));
+        List<ParkedMessage> unparked = new ArrayList<>();
+        List<ParkedMessage> stillFailing = new ArrayList<>();
+        for (ParkedMessage p : retrying) {
+            Message failedMessage = failedByOffset.get(getOffsetKey(p.getMessage()));
+            if (failedMessage == null) {
+                offsetManager.setCommittable(p);
+                unparked.add(p);
+            } else {
+                failedMessage.setDefaultErrorIfNotPresent();
+                p.setMessage(failedMessage);
+                stillFailing.add(p);
+            }
+        }
+        firehoseInstrumentation.captureMessageMetrics(RETRY_MESSAGES_TOTAL, Metrics.MessageType.SUCCESS, unparked.size());
+        if (!stillFailing.isEmpty() && (attemptCount < appConfig.getRetryMaxAttempts() || appConfig.getRetryMaxAttempts() == Integer.MAX_VALUE)) {
+            schedule(stillFailing, attemptCount + 1, delay);
+        } else if (!stillFailing.isEmpty()) {
+            exhaust(stillFailing);
+        }
+        unpark(unparked);
+    }
+
+    private void exhaust(List<ParkedMessage> parked) {
+        parked.forEach(p -> firehoseInstrumentation.captureMessageMetrics(RETRY_MESSAGES_TOTAL, Metrics.MessageType.FAILURE, p.getMessage().getErrorInfo().getErrorType(), 1));
+        synchronized (this) {
+            parked.stream().filter(parkedMessages::contains).forEach(exhaustedMessages::add);
+        }
+        unpark(parked);
+    }
+
+    private static List<Object> getOffsetKey(Message message) {
+        return Arrays.asList(message.getTopic(), message.getPartition(), message.getOffset());
+    }
+
+    @Override
+    public boolean canManageOffsets() {
+        return offsetManager != null || super.canManageOffsets();
+    }
+
+    @Override
+    public synchronized boolean hasPendingFailedMessages() {
+        return !exhaustedMessages.isEmpty() || super.hasPendingFailedMessages();
+    }
+
+    /**
+     * Marks the offsets of the failed messages returned to the caller as committable, the caller handled them
+     * once it calculates the committable offsets.
+     */
+    @Override
+    public void calculateCommittableOffsets() {
+        if (offsetManager != null) {
+            List<Object> batches;
+            synchronized (this) {
+                batches = new ArrayList<>(returnedBatches);
+                returnedBatches.clear();
+            }
+            batches.forEach(offsetManager::setCommittable);
+        }
+        super.calculateCommittableOffsets();
+    }
+
+    /**
+     * Drops the parked messages of the revoked partitions with their offsets, their new consumer reads them again.
+     *
+     * @param partitions the revoked partitions
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        if (offsetManager == null) {
+            return;
+        }
+        List<ParkedMessage> dropped;
+        synchronized (this) {
+            dropped = parkedMessages.stream().filter(p -> partitions.contains(p.getPartition())).collect(Collectors.toList());
+            exhaustedMessages.removeIf(p -> partitions.contains(p.getPartition()));
+        }
+        if (!dropped.isEmpty()) {
+            firehoseInstrumentation.logWarn("Dropping {} parked messages of revoked partitions {}", dropped.size(), partitions);
+        }
+        unpark(dropped);
+        offsetManager.removePartitions(partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    @Override
+    public void addOffsetsAndSetCommittable(List<Message> messageList) {
+        if (offsetManager == null) {
+            super.addOffsetsAndSetCommittable(messageList);
+            return;
+        }
+        offsetManager.addOffsetsAndSetCommittable(messageList);
+    }
+
     @Override
     public void close() throws IOException {
+        if (retryScheduler != null) {
+            retryScheduler.shutdownNow();
+            try {
+                retryScheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (!parkedMessages.isEmpty()) {
+                    firehoseInstrumentation.logWarn("Closing with {} parked messages, their offsets are not committed", parkedMessages.size());
+                }
+            }
+        }
         super.close();
     }
+
+    /**
+     * A parked message, also the offset manager key of its offset.
+     */
+    private static class ParkedMessage {
+        private final long bytes;
+        private Message message;
+
+        ParkedMessage(Message message) {
+            this.message = message;
+            this.bytes = (message.getLogKey() == null ? 0 : message.getLogKey().length)
+                    + (message.getLogMessage() == null ? 0 : message.getLogMessage().length);
+        }
+
+        Message getMessage() {
+            return message;
+        }
+
+        void setMessage(Message message) {
+            this.message = message;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        TopicPartition getPartition() {
+            return new TopicPartition(message.getTopic(), message.getPartition());
+        }
+    }
 }
@@ -7,14 +7,16 @@ import org.apache.kafka.common.TopicPartition;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /**
- * A callback to log when the partition rebalancing happens.
+ * A callback to log when the partition rebalancing happens, and to pass it on to the listeners.
  */
 @AllArgsConstructor
 public class ConsumerRebalancer implements ConsumerRebalanceListener {
 
     private FirehoseInstrumentation firehoseInstrumentation;
+    private List<ConsumerRebalanceListener> listeners;
 
     /**
      * Function to run On partitions revoked.
@@ -24,6 +26,7 @@ public class ConsumerRebalancer implements ConsumerRebalanceListener {
     @Override
     public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
         firehoseInstrumentation.logWarn("Partitions Revoked {}", Arrays.toString(partitions.toArray()));
+        listeners.forEach(listener -> listener.onPartitionsRevoked(partitions));
     }
 
     /**
@@ -34,5 +37,6 @@ public class ConsumerRebalancer implements ConsumerRebalanceListener {
     @Override
     public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
         firehoseInstrumentation.logInfo("Partitions Assigned {}", Arrays.toString(partitions.toArray()));
+        listeners.forEach(listener -> listener.onPartitionsAssigned(partitions));
     }
 }
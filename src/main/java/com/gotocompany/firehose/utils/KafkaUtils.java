@@ -8,11 +8,13 @@ import com.gotocompany.firehose.parser.KafkaEnvironmentVariables;
 import com.gotocompany.depot.metrics.StatsDReporter;
 import io.opentracing.Tracer;
 import io.opentracing.contrib.kafka.TracingKafkaConsumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
@@ -40,12 +42,14 @@ public class KafkaUtils {
      * @param config         the config
      * @param kafkaConsumer  the kafka consumer
      * @param statsdReporter the statsd reporter
+     * @param listeners      listeners of the partition rebalancing
      */
-    public static void configureSubscription(KafkaConsumerConfig config, KafkaConsumer<byte[], byte[]> kafkaConsumer, StatsDReporter statsdReporter) {
+    public static void configureSubscription(KafkaConsumerConfig config, KafkaConsumer<byte[], byte[]> kafkaConsumer, StatsDReporter statsdReporter,
+                                             List<ConsumerRebalanceListener> listeners) {
         FirehoseInstrumentation firehoseInstrumentation = new FirehoseInstrumentation(statsdReporter, KafkaUtils.class);
         Pattern subscriptionTopicPattern = Pattern.compile(config.getSourceKafkaTopic());
         firehoseInstrumentation.logInfo("consumer subscribed using pattern: {}", subscriptionTopicPattern);
-        kafkaConsumer.subscribe(subscriptionTopicPattern, new ConsumerRebalancer(new FirehoseInstrumentation(statsdReporter, ConsumerRebalancer.class)));
+        kafkaConsumer.subscribe(subscriptionTopicPattern, new ConsumerRebalancer(new FirehoseInstrumentation(statsdReporter, ConsumerRebalancer.class), listeners));
     }
 
     public static Map<String, Object> getConfig(KafkaConsumerConfig config, Map<String, String> extraParameters) {
@@ -75,13 +79,14 @@ public class KafkaUtils {
      * @param config               {@see KafkaConsumerConfig}
      * @param extraKafkaParameters a map containing kafka configurations available as a key/value pair.
      * @param statsDReporter       {@see StatsDClient}
+     * @param rebalanceListeners   listeners of the partition rebalancing
      * @return {@see EsbGenericConsumer}
      */
     public static FirehoseKafkaConsumer createConsumer(KafkaConsumerConfig config, Map<String, String> extraKafkaParameters,
-                                                       StatsDReporter statsDReporter, Tracer tracer) {
+                                                       StatsDReporter statsDReporter, Tracer tracer, List<ConsumerRebalanceListener> rebalanceListeners) {
 
         KafkaConsumer<byte[], byte[]> kafkaConsumer = new KafkaConsumer<>(KafkaUtils.getConfig(config, extraKafkaParameters));
-        KafkaUtils.configureSubscription(config, kafkaConsumer, statsDReporter);
+        KafkaUtils.configureSubscription(config, kafkaConsumer, statsDReporter, rebalanceListeners);
         TracingKafkaConsumer<byte[], byte[]> tracingKafkaConsumer = new TracingKafkaConsumer<>(kafkaConsumer, tracer);
         return new FirehoseKafkaConsumer(
                 tracingKafkaConsumer,
@@ -103,6 +108,9 @@ public class KafkaUtils {
         props.put("batch.size", config.getDlqKafkaBatchSize());
         props.put("linger.ms", config.getDlqKafkaLingerMs());
         props.put("buffer.memory", config.getDlqKafkaBufferMemory());
+        props.put("compression.type", config.getDlqKafkaCompressionType());
+        props.put("enable.idempotence", config.getDlqKafkaEnableIdempotence());
+        props.put("max.in.flight.requests.per.connection", config.getDlqKafkaMaxInFlightRequestsPerConnection());
         props.put("key.serializer", config.getDlqKafkaKeySerializer());
         props.put("value.serializer", config.getDlqKafkaValueSerializer());
 
@@ -67,6 +67,14 @@ public class FirehoseSyncConsumerTest {
         verify(sink, times(0)).pushMessage(new ArrayList<>());
     }
 
+    @Test
+    public void shouldPushWithoutMessagesWhenSinkHoldsFailedMessages() throws IOException {
+        when(firehoseKafkaConsumer.readMessages()).thenReturn(new ArrayList<>());
+        when(sink.hasPendingFailedMessages()).thenReturn(true);
+        firehoseSyncConsumer.process();
+        verify(sink, times(1)).pushMessage(Collections.emptyList());
+    }
+
     @Test
     public void shouldSendNoOfMessagesReceivedCount() throws IOException {
         firehoseSyncConsumer.process();
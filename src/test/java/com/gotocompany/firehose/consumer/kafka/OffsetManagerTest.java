@@ -10,6 +10,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -391,6 +392,22 @@ public class OffsetManagerTest {
 
     }
 
+    @Test
+    public void shouldRemoveOffsetsOfPartitions() {
+        OffsetManager manager = new OffsetManager();
+        manager.addOffsetToBatch("key1", new Message("k".getBytes(), "v".getBytes(), "topic1", 1, 1));
+        manager.addOffsetToBatch("key2", new Message("k".getBytes(), "v".getBytes(), "topic1", 2, 3));
+        manager.addOffsetsAndSetCommittable(Collections.singletonList(new Message("k".getBytes(), "v".getBytes(), "topic1", 2, 4)));
+
+        manager.removePartitions(Collections.singletonList(new TopicPartition("topic1", 2)));
+        manager.setCommittable("key1");
+        manager.setCommittable("key2");
+
+        Assert.assertEquals(Collections.singletonMap(new TopicPartition("topic1", 1), new OffsetAndMetadata(2)), manager.getCommittableOffset());
+        Assert.assertNull(manager.getOffsetsForTopicPartition(new TopicPartition("topic1", 2)));
+        Assert.assertNull(manager.getOffsetsForBatch("key2"));
+    }
+
     @EqualsAndHashCode
     @Data
     @AllArgsConstructor
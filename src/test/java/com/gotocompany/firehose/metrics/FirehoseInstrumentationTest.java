@@ -190,4 +190,23 @@ public class FirehoseInstrumentationTest {
         firehoseInstrumentation.close();
         verify(statsDReporter, times(1)).close();
     }
+
+    @Test
+    public void shouldAggregatePerMessageMetricsWhenAggregatorIsGiven() {
+        MetricAggregator metricAggregator = new MetricAggregator(statsDReporter, 3600000, 10);
+        FirehoseInstrumentation aggregatingInstrumentation = new FirehoseInstrumentation(statsDReporter, logger, metricAggregator);
+
+        aggregatingInstrumentation.captureMessageMetrics(Metrics.SINK_MESSAGES_TOTAL, Metrics.MessageType.SUCCESS, 1);
+        aggregatingInstrumentation.captureMessageMetrics(Metrics.SINK_MESSAGES_TOTAL, Metrics.MessageType.SUCCESS, 1);
+        aggregatingInstrumentation.capturePreExecutionLatencies(Collections.nCopies(3, message));
+        aggregatingInstrumentation.captureGrpcChannelCall("channel=0");
+        aggregatingInstrumentation.captureGrpcChannelCall("channel=0");
+        verifyNoInteractions(statsDReporter);
+
+        metricAggregator.close();
+        verify(statsDReporter, times(1)).captureCount(Metrics.SINK_MESSAGES_TOTAL, 2L, String.format(Metrics.MESSAGE_TYPE_TAG, Metrics.MessageType.SUCCESS));
+        verify(statsDReporter, times(3)).captureHistogram(eq(Metrics.PIPELINE_END_LATENCY_MILLISECONDS), anyLong());
+        verify(statsDReporter, times(3)).captureHistogram(eq(Metrics.PIPELINE_EXECUTION_LIFETIME_MILLISECONDS), anyLong());
+        verify(statsDReporter, times(1)).captureCount(Metrics.SINK_GRPC_CHANNEL_CALLS_TOTAL, 2L, "channel=0");
+    }
 }
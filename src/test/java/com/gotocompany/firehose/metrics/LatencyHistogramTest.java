@@ -0,0 +1,46 @@
+package com.gotocompany.firehose.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldKeepValuesWithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : new long[]{0, 1, 31, 32, 33, 100, 1000, 123456, 86400000L}) {
+            histogram.record(value);
+            long recorded = histogram.takeSamples(1).get(0);
+            Assert.assertTrue(Math.abs(recorded - value) <= value * 0.01);
+        }
+    }
+
+    @Test
+    public void shouldTakeAllValuesUpToMaxSamplesAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.record(3);
+        histogram.record(5);
+
+        Assert.assertEquals(Arrays.asList(3L, 5L, 5L), histogram.takeSamples(10));
+        Assert.assertTrue(histogram.takeSamples(10).isEmpty());
+    }
+
+    @Test
+    public void shouldTakeEvenlySpacedQuantilesBeyondMaxSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 900; i++) {
+            histogram.record(10);
+        }
+        for (int i = 0; i < 100; i++) {
+            histogram.record(20);
+        }
+
+        List<Long> samples = histogram.takeSamples(10);
+
+        Assert.assertEquals(Arrays.asList(10L, 10L, 10L, 10L, 10L, 10L, 10L, 10L, 10L, 20L), samples);
+    }
+}
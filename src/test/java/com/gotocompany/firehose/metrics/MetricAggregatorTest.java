@@ -0,0 +1,82 @@
+package com.gotocompany.firehose.metrics;
+
+import com.gotocompany.depot.metrics.StatsDReporter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MetricAggregatorTest {
+    private static final long FLUSH_INTERVAL_MS = 3600000;
+
+    @Mock
+    private StatsDReporter statsDReporter;
+
+    private MetricAggregator metricAggregator;
+
+    @Before
+    public void setUp() {
+        metricAggregator = new MetricAggregator(statsDReporter, FLUSH_INTERVAL_MS, 2);
+    }
+
+    @After
+    public void tearDown() {
+        metricAggregator.close();
+    }
+
+    @Test
+    public void shouldSendOneCountPerMetricAndTagsOnFlush() {
+        metricAggregator.count("metric", 1, "type=SUCCESS");
+        metricAggregator.count("metric", 2, "type=SUCCESS");
+        metricAggregator.count("metric", 1, "type=FAILURE");
+        verify(statsDReporter, never()).captureCount(anyString(), anyLong());
+
+        metricAggregator.flush();
+        metricAggregator.flush();
+
+        verify(statsDReporter, times(1)).captureCount("metric", 3L, "type=SUCCESS");
+        verify(statsDReporter, times(1)).captureCount("metric", 1L, "type=FAILURE");
+    }
+
+    @Test
+    public void shouldSendCountsAddedSinceThePreviousFlush() {
+        metricAggregator.count("metric", 1, "type=SUCCESS");
+        metricAggregator.flush();
+        metricAggregator.count("metric", 2, "type=SUCCESS");
+        metricAggregator.flush();
+
+        verify(statsDReporter, times(1)).captureCount("metric", 1L, "type=SUCCESS");
+        verify(statsDReporter, times(1)).captureCount("metric", 2L, "type=SUCCESS");
+    }
+
+    @Test
+    public void shouldSendAtMostMaxSamplesPerDurationMetricOnFlush() {
+        for (int i = 0; i < 100; i++) {
+            metricAggregator.recordDuration("latency", 10);
+        }
+
+        metricAggregator.flush();
+
+        verify(statsDReporter, times(2)).captureHistogram("latency", 10);
+    }
+
+    @Test
+    public void shouldBeUsedByInstrumentationsOfTheReporterOnceStarted() {
+        Assert.assertNull(MetricAggregator.get(statsDReporter));
+        MetricAggregator started = MetricAggregator.start(statsDReporter, FLUSH_INTERVAL_MS, 2);
+
+        Assert.assertSame(started, MetricAggregator.get(statsDReporter));
+        started.close();
+        Assert.assertNull(MetricAggregator.get(statsDReporter));
+    }
+}
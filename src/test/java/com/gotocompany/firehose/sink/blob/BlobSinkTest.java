@@ -74,6 +74,35 @@ public class BlobSinkTest {
         assertEquals(0, retryMessages.size());
     }
 
+    @Test
+    public void shouldWriteRecordsInLanesByPartition() throws Exception {
+        Message message1 = new Message("".getBytes(), "".getBytes(), "booking", 1, 1);
+        Message message2 = new Message("".getBytes(), "".getBytes(), "booking", 2, 1);
+        Message message3 = new Message("".getBytes(), "".getBytes(), "booking", 3, 1);
+        Record record1 = mock(Record.class);
+        Record record2 = mock(Record.class);
+        Record record3 = mock(Record.class);
+        String path1 = "/tmp/test1";
+        String path2 = "/tmp/test2";
+
+        when(writerOrchestrator.getLaneCount()).thenReturn(2);
+        when(messageDeSerializer.deSerialize(message1)).thenReturn(record1);
+        when(messageDeSerializer.deSerialize(message2)).thenReturn(record2);
+        when(messageDeSerializer.deSerialize(message3)).thenReturn(record3);
+        when(writerOrchestrator.write(Arrays.asList(record1, record2, record3), Arrays.asList(1, 0, 1))).thenReturn(Arrays.asList(path1, path2, path1));
+
+        List<Message> retryMessages = blobSink.pushMessage(Arrays.asList(message1, message2, message3));
+
+        assertEquals(0, retryMessages.size());
+        verify(writerOrchestrator, never()).write(any(Record.class));
+        when(writerOrchestrator.getFlushedPaths()).thenReturn(new HashSet<>(Collections.singletonList(path1)));
+        blobSink.calculateCommittableOffsets();
+        Map<TopicPartition, OffsetAndMetadata> committableOffsets = offsetManager.getCommittableOffset();
+        assertEquals(2, committableOffsets.size());
+        assertEquals(new OffsetAndMetadata(2), committableOffsets.get(new TopicPartition("booking", 1)));
+        assertEquals(new OffsetAndMetadata(2), committableOffsets.get(new TopicPartition("booking", 3)));
+    }
+
     @Test(expected = SinkException.class)
     public void shouldThrowWriterIOExceptionWhenWritingRecordThrowIOException() throws Exception {
         Message message1 = new Message("".getBytes(), "".getBytes(), "booking", 1, 1);
@@ -141,6 +170,69 @@ public class BlobSinkTest {
         retryMessages.forEach(message -> assertNotNull(message.getErrorInfo()));
     }
 
+    @Test
+    public void shouldCommitMessagesOfUploadedRecoveredFileWithoutWritingThem() throws Exception {
+        Message message1 = new Message("".getBytes(), "".getBytes(), "booking", 1, 1);
+        Message message2 = new Message("".getBytes(), "".getBytes(), "booking", 1, 2);
+        Record record2 = mock(Record.class);
+        String recoveredPath = "/tmp/recovered";
+        String path2 = "/tmp/test2";
+
+        when(writerOrchestrator.getRecoveredFilePath(anyString(), anyInt(), anyLong())).thenReturn(recoveredPath, (String) null);
+        when(writerOrchestrator.isRecoveredFileUploaded(recoveredPath)).thenReturn(true);
+        when(messageDeSerializer.deSerialize(message2)).thenReturn(record2);
+        when(writerOrchestrator.write(record2)).thenReturn(path2);
+        when(writerOrchestrator.getFlushedPaths()).thenReturn(new HashSet<>(Collections.singletonList(path2)));
+
+        List<Message> retryMessages = blobSink.pushMessage(Arrays.asList(message1, message2));
+        blobSink.calculateCommittableOffsets();
+
+        verify(messageDeSerializer, never()).deSerialize(message1);
+        verify(writerOrchestrator, times(1)).write(any(Record.class));
+        assertEquals(0, retryMessages.size());
+        assertEquals(Collections.singletonMap(new TopicPartition("booking", 1), new OffsetAndMetadata(3)), offsetManager.getCommittableOffset());
+    }
+
+    @Test
+    public void shouldDeleteUploadedFilesAndWaitWhileLocalDiskBudgetIsExceeded() throws Exception {
+        Message message1 = new Message("".getBytes(), "".getBytes(), "booking", 1, 1);
+        Record record1 = mock(Record.class);
+
+        when(writerOrchestrator.isLocalStorageBudgetExceeded()).thenReturn(true, true, false);
+        when(writerOrchestrator.getFlushedPaths()).thenReturn(new HashSet<>());
+        when(writerOrchestrator.awaitFlushedPaths(anyLong())).thenReturn(new HashSet<>());
+        when(messageDeSerializer.deSerialize(message1)).thenReturn(record1);
+        when(writerOrchestrator.write(record1)).thenReturn("/tmp/test1");
+
+        List<Message> retryMessages = blobSink.pushMessage(Collections.singletonList(message1));
+
+        verify(writerOrchestrator, times(1)).getFlushedPaths();
+        verify(writerOrchestrator, times(1)).awaitFlushedPaths(anyLong());
+        verify(writerOrchestrator, times(1)).write(record1);
+        assertEquals(0, retryMessages.size());
+    }
+
+    @Test
+    public void shouldRestoreInterruptFlagWhenInterruptedWhileWaitingForLocalStorageBudget() throws Exception {
+        when(writerOrchestrator.isLocalStorageBudgetExceeded()).thenReturn(true);
+        when(writerOrchestrator.getFlushedPaths()).thenReturn(new HashSet<>());
+        when(writerOrchestrator.awaitFlushedPaths(anyLong())).thenThrow(new InterruptedException());
+
+        try {
+            blobSink.pushMessage(Collections.singletonList(new Message("".getBytes(), "".getBytes(), "booking", 1, 1)));
+            fail("expected a SinkException");
+        } catch (SinkException e) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test(expected = SinkException.class)
+    public void shouldThrowSinkExceptionWhenWriterOrchestratorIsClosedWhileWaiting() throws Exception {
+        when(writerOrchestrator.isLocalStorageBudgetExceeded()).thenThrow(new IOException("upload failed"));
+
+        blobSink.pushMessage(Collections.singletonList(new Message("".getBytes(), "".getBytes(), "booking", 1, 1)));
+    }
+
     @Test
     public void shouldManageOffset() {
         TopicPartition topicPartition1 = new TopicPartition("booking", 1);
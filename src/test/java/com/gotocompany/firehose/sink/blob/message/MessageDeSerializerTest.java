@@ -42,10 +42,10 @@ public class MessageDeSerializerTest {
     public void setUp() throws Exception {
         message = new Message(logKey, logMessage, "topic1", 0, 100);
 
-        Descriptors.FileDescriptor fileDescriptor = KafkaMetadataProtoMessageUtils.createFileDescriptor("");
-        deSerializer = new MessageDeSerializer(fileDescriptor, protoParser, sinkConfig);
         when(sinkConfig.getOutputIncludeKafkaMetadataEnable()).thenReturn(true);
         when(sinkConfig.getOutputKafkaMetadataColumnName()).thenReturn("");
+        Descriptors.FileDescriptor fileDescriptor = KafkaMetadataProtoMessageUtils.createFileDescriptor("");
+        deSerializer = new MessageDeSerializer(fileDescriptor, protoParser, sinkConfig);
     }
 
     @Test
@@ -39,4 +39,19 @@ public class RecordTest {
         Record record = new Record(message, metadata);
         Assert.assertEquals(defaultTimestamp, record.getTimestamp("created_time"));
     }
+
+    @Test
+    public void shouldGetFieldsWithFieldsResolvedOnce() {
+        KafkaMetadataFields kafkaMetadataFields = new KafkaMetadataFields("nested_field");
+        TimestampFields timestampFields = new TimestampFields("created_time");
+        for (int i = 0; i < 2; i++) {
+            DynamicMessage message = TestUtils.createMessage(defaultTimestamp.plusSeconds(i), defaultOrderNumber);
+            DynamicMessage metadata = TestUtils.createMetadata("nested_field", defaultTimestamp, defaultOffset + i, defaultPartition, defaultTopic);
+            Record record = new Record(message, metadata);
+            Assert.assertEquals(defaultTopic, record.getTopic(kafkaMetadataFields));
+            Assert.assertEquals(defaultPartition, record.getPartition(kafkaMetadataFields));
+            Assert.assertEquals(defaultOffset + i, record.getOffset(kafkaMetadataFields));
+            Assert.assertEquals(defaultTimestamp.plusSeconds(i), record.getTimestamp(timestampFields));
+        }
+    }
 }
@@ -1,9 +1,15 @@
 package com.gotocompany.firehose.sink.blob.writer;
 
 import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.blob.Constants;
 import com.gotocompany.firehose.sink.blob.TestProtoMessage;
+import com.gotocompany.firehose.sink.blob.TestUtils;
+import com.gotocompany.firehose.sink.blob.message.KafkaMetadataFields;
 import com.gotocompany.firehose.sink.blob.message.Record;
+import com.gotocompany.firehose.sink.blob.message.TimestampFields;
+import com.gotocompany.firehose.sink.blob.writer.local.KafkaOffsetRanges;
+import com.gotocompany.firehose.sink.blob.writer.local.LocalFileJournal;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileMetadata;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileWriter;
 import com.gotocompany.firehose.sink.blob.writer.local.LocalFileWriterFailedException;
@@ -11,11 +17,13 @@ import com.gotocompany.firehose.sink.blob.writer.local.LocalStorage;
 import com.gotocompany.firehose.sink.blob.writer.local.path.TimePartitionedPathUtils;
 import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
 import com.gotocompany.depot.metrics.StatsDReporter;
+import org.aeonbits.owner.ConfigFactory;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -24,7 +32,12 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -34,6 +47,8 @@ public class WriterOrchestratorTest {
 
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
     @Mock
     private LocalFileWriter localFileWriter1;
     @Mock
@@ -70,7 +85,9 @@ public class WriterOrchestratorTest {
         Record record = Mockito.mock(Record.class);
         Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(1L));
         Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
-        Mockito.when(localFileWriter1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp/", "/tmp/test", 0, 0, 0));
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test");
         Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenReturn(localFileWriter1);
         Mockito.when(localFileWriter1.write(record)).thenReturn(true);
         try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
@@ -84,16 +101,20 @@ public class WriterOrchestratorTest {
         Record record1 = Mockito.mock(Record.class);
         Mockito.when(record1.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(3600000L));
         Mockito.when(record1.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record1.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record1.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
         Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record1, sinkConfig))).thenReturn(localFileWriter1);
         Mockito.when(localFileWriter1.write(record1)).thenReturn(true);
-        Mockito.when(localFileWriter1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp/", "/tmp/test1", 0, 0, 0));
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test1");
 
         Record record2 = Mockito.mock(Record.class);
         Mockito.when(record2.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(7200000L));
         Mockito.when(record2.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record2.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(7200000L));
+        Mockito.when(record2.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
         Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record2, sinkConfig))).thenReturn(localFileWriter2);
         Mockito.when(localFileWriter2.write(record2)).thenReturn(true);
-        Mockito.when(localFileWriter2.getMetadata()).thenReturn(new LocalFileMetadata("/tmp/", "/tmp/test2", 0, 0, 0));
+        Mockito.when(localFileWriter2.getFullPath()).thenReturn("/tmp/test2");
 
         try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
             Set<String> paths = new HashSet<>();
@@ -103,12 +124,44 @@ public class WriterOrchestratorTest {
         }
     }
 
+    @Test
+    public void shouldCreateWriterPerLaneOfTheSamePartition() throws Exception {
+        Mockito.when(sinkConfig.getLocalFileWriterLanes()).thenReturn(2);
+        Record record1 = Mockito.mock(Record.class);
+        Mockito.when(record1.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record1.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record1.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record1.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Record record2 = Mockito.mock(Record.class);
+        Mockito.when(record2.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record2.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record2.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record2.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record1, sinkConfig)))
+                .thenReturn(localFileWriter1, localFileWriter2);
+        Mockito.when(localFileWriter1.write(Mockito.any(Record.class))).thenReturn(true);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test1");
+        Mockito.when(localFileWriter2.write(Mockito.any(Record.class))).thenReturn(true);
+        Mockito.when(localFileWriter2.getFullPath()).thenReturn("/tmp/test2");
+
+        try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
+            List<String> paths = writerOrchestrator.write(Arrays.asList(record1, record2, record1), Arrays.asList(0, 1, 0));
+
+            assertEquals(2, writerOrchestrator.getLaneCount());
+            assertEquals(paths.get(0), paths.get(2));
+            assertEquals(2, new HashSet<>(paths).size());
+            Mockito.verify(localStorage, Mockito.times(2)).createLocalFileWriter(Mockito.any());
+        }
+    }
+
     @Test(expected = IOException.class)
     public void shouldThrowIOExceptionWhenWriteThrowsException() throws Exception {
         Record record = Mockito.mock(Record.class);
         Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(3600000L));
         Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
-        Mockito.when(localFileWriter1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp/", "/tmp/test1", 0, 0, 0));
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test1");
         Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenReturn(localFileWriter1);
         try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
             Mockito.doThrow(new IOException("")).when(localFileWriter1).write(record);
@@ -122,7 +175,9 @@ public class WriterOrchestratorTest {
         Record record = Mockito.mock(Record.class);
         Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(3600000L));
         Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
-        Mockito.when(localFileWriter1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp/", "/tmp/test1", 0, 0, 0));
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(3600000L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test1");
         Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenThrow(new LocalFileWriterFailedException(new IOException("Some error")));
         try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
             writerOrchestrator.write(record);
@@ -134,7 +189,9 @@ public class WriterOrchestratorTest {
         Record record = Mockito.mock(Record.class);
         Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(1L));
         Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
-        Mockito.when(localFileWriter1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp/", "/tmp/test", 0, 0, 0));
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test");
         Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenReturn(localFileWriter1);
         Mockito.when(localFileWriter1.write(record)).thenReturn(true);
         try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
@@ -143,4 +200,110 @@ public class WriterOrchestratorTest {
             Assert.assertEquals(new HashSet<>(), writerOrchestrator.getFlushedPaths());
         }
     }
+
+    @Test
+    public void shouldRotateOnWritePathAndUploadRightAway() throws Exception {
+        Record record = Mockito.mock(Record.class);
+        Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        LocalFileMetadata metadata = new LocalFileMetadata("/tmp/", "/tmp/test", 0, 1, 100);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test");
+        Mockito.when(localFileWriter1.closeAndFetchMetaData()).thenReturn(metadata);
+        Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenReturn(localFileWriter1);
+        Mockito.when(localStorage.shouldRotate(localFileWriter1)).thenReturn(true);
+        Mockito.when(localFileWriter1.write(record)).thenReturn(true);
+        try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
+            Assert.assertEquals("/tmp/test", writerOrchestrator.write(record));
+
+            Mockito.verify(blobStorage, Mockito.timeout(2000)).store("test", "/tmp/test");
+            Set<String> flushedPaths = new HashSet<>();
+            for (int i = 0; i < 200 && flushedPaths.isEmpty(); i++) {
+                flushedPaths.addAll(writerOrchestrator.getFlushedPaths());
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(new HashSet<>(Arrays.asList("/tmp/test")), flushedPaths);
+        }
+    }
+
+    @Test
+    public void shouldRotateWhenRotationDurationElapses() throws Exception {
+        Mockito.when(sinkConfig.getLocalFileRotationDurationMS()).thenReturn(50L);
+        Record record = Mockito.mock(Record.class);
+        Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        LocalFileMetadata metadata = new LocalFileMetadata("/tmp/", "/tmp/test", 0, 1, 100);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test");
+        Mockito.when(localFileWriter1.closeAndFetchMetaData()).thenReturn(metadata);
+        Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenReturn(localFileWriter1);
+        Mockito.when(localFileWriter1.write(record)).thenReturn(true);
+        try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
+            writerOrchestrator.write(record);
+
+            Mockito.verify(localFileWriter1, Mockito.timeout(2000)).closeAndFetchMetaData();
+            Mockito.verify(blobStorage, Mockito.timeout(2000)).store("test", "/tmp/test");
+        }
+    }
+
+    @Test
+    public void shouldLookUpRecordsOfRecoveredFilesByOffset() throws Exception {
+        String localDirectory = temporaryFolder.getRoot().getAbsolutePath();
+        String recoveredPath = temporaryFolder.newFile("recovered").getAbsolutePath();
+        KafkaOffsetRanges offsetRanges = new KafkaOffsetRanges();
+        offsetRanges.add(defaultTopic, 1, 10);
+        offsetRanges.add(defaultTopic, 1, 11);
+        offsetRanges.add(defaultTopic, 1, 20);
+        LocalFileJournal journal = LocalFileJournal.open(localDirectory);
+        journal.closed(new LocalFileMetadata(localDirectory, recoveredPath, 0, 3, 100), offsetRanges);
+        journal.close();
+        Mockito.when(sinkConfig.getLocalFileRecoveryEnable()).thenReturn(true);
+        Mockito.when(sinkConfig.getLocalFileWriterType()).thenReturn(Constants.WriterType.PARQUET);
+        Mockito.when(sinkConfig.getLocalDirectory()).thenReturn(localDirectory);
+        Record record = Mockito.mock(Record.class);
+        Mockito.when(record.getTimestamp(timeStampFieldName)).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic("")).thenReturn(defaultTopic);
+        Mockito.when(record.getTimestamp(Mockito.any(TimestampFields.class))).thenReturn(Instant.ofEpochMilli(1L));
+        Mockito.when(record.getTopic(Mockito.any(KafkaMetadataFields.class))).thenReturn(defaultTopic);
+        Mockito.when(localFileWriter1.getFullPath()).thenReturn("/tmp/test");
+        Mockito.when(localStorage.createLocalFileWriter(TimePartitionedPathUtils.getTimePartitionedPath(record, sinkConfig))).thenReturn(localFileWriter1);
+        Mockito.when(localFileWriter1.write(record)).thenReturn(true);
+        try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(sinkConfig, localStorage, blobStorage, statsDReporter)) {
+            Assert.assertEquals(recoveredPath, writerOrchestrator.getRecoveredFilePath(defaultTopic, 1, 11));
+            Assert.assertNull(writerOrchestrator.getRecoveredFilePath(defaultTopic, 1, 12));
+            Assert.assertEquals(recoveredPath, writerOrchestrator.getRecoveredFilePath(defaultTopic, 1, 20));
+            Assert.assertNull(writerOrchestrator.getRecoveredFilePath(defaultTopic, 2, 10));
+            Assert.assertNull(writerOrchestrator.getRecoveredFilePath("other-topic", 1, 10));
+            Assert.assertEquals(recoveredPath, writerOrchestrator.getRecoveredFilePath(defaultTopic, 1, 10));
+            Assert.assertEquals("/tmp/test", writerOrchestrator.write(record));
+        }
+    }
+
+    @Test
+    public void shouldNotRotateEveryRecordOnceInMemoryFilesReachMemoryCap() throws Exception {
+        BlobSinkConfig inMemoryConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<Object, Object>() {{
+            put("SINK_BLOB_LOCAL_DIRECTORY", temporaryFolder.getRoot().getAbsolutePath());
+            put("SINK_BLOB_LOCAL_FILE_WRITER_TYPE", "parquet_in_memory");
+            put("SINK_BLOB_LOCAL_FILE_WRITER_MEMORY_MAX_BYTES", "4096");
+            put("SINK_BLOB_FILE_PARTITION_PROTO_TIMESTAMP_FIELD_NAME", timeStampFieldName);
+        }});
+        Instant timestamp = Instant.ofEpochMilli(1L);
+        Record firstRecord = new Record(TestUtils.createMessage(timestamp, 0), TestUtils.createMetadata("", timestamp, 0, 0, defaultTopic));
+        LocalStorage inMemoryStorage = new LocalStorage(inMemoryConfig, firstRecord.getMessage().getDescriptorForType(),
+                new ArrayList<>(), new ArrayList<>(), new FirehoseInstrumentation(statsDReporter, LocalStorage.class));
+        int recordCount = 2000;
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < recordCount; i++) {
+            records.add(new Record(TestUtils.createMessage(timestamp, i), TestUtils.createMetadata("", timestamp, i, 0, defaultTopic)));
+        }
+
+        try (WriterOrchestrator writerOrchestrator = new WriterOrchestrator(inMemoryConfig, inMemoryStorage, blobStorage, statsDReporter)) {
+            Set<String> files = new HashSet<>(writerOrchestrator.write(records, Collections.nCopies(recordCount, 0)));
+
+            Assert.assertTrue(files.size() > 1);
+            Assert.assertTrue("records per file: " + recordCount / files.size(), files.size() < recordCount / 20);
+        }
+    }
 }
@@ -0,0 +1,151 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import com.google.protobuf.DynamicMessage;
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.config.converter.BlobSinkParquetCompressionConverter;
+import com.gotocompany.firehose.sink.blob.TestUtils;
+import com.gotocompany.firehose.sink.blob.message.Record;
+import org.aeonbits.owner.ConfigFactory;
+import org.apache.hadoop.io.compress.ZStandardCodec;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InMemoryParquetFileWriterTest {
+    private static final byte[] PARQUET_MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    private BlobSinkConfig sinkConfig;
+    private LocalFileMemoryBudget memoryBudget;
+
+    @Before
+    public void setUp() {
+        sinkConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<Object, Object>() {{
+            put("SINK_BLOB_LOCAL_FILE_WRITER_TYPE", "parquet_in_memory");
+        }});
+        memoryBudget = new LocalFileMemoryBudget(1024);
+    }
+
+    private byte[] encode(BlobSinkConfig config, int records) throws IOException {
+        InMemoryParquetFileWriter writer = new InMemoryParquetFileWriter(0L, "/tmp/in-memory", "/tmp/in-memory/file", config,
+                createRecord(0).getMessage().getDescriptorForType(), new ArrayList<>(), new LocalFileMemoryBudget(Long.MAX_VALUE));
+        for (int i = 0; i < records; i++) {
+            writer.write(createRecord(i % 2));
+        }
+        return writer.closeAndFetchMetaData().getContent();
+    }
+
+    private InMemoryParquetFileWriter createWriter(String fullPath) throws IOException {
+        return new InMemoryParquetFileWriter(0L, "/tmp/in-memory", fullPath, sinkConfig,
+                createRecord(0).getMessage().getDescriptorForType(), new ArrayList<>(), memoryBudget);
+    }
+
+    private Record createRecord(int orderNumber) {
+        DynamicMessage message = TestUtils.createMessage(Instant.ofEpochSecond(1000), orderNumber);
+        return new Record(message, null);
+    }
+
+    @Test
+    public void shouldEncodeParquetFileInMemory() throws IOException {
+        String fullPath = "/tmp/in-memory/dt=2021-01-01/file-1";
+        InMemoryParquetFileWriter writer = createWriter(fullPath);
+        writer.write(createRecord(1));
+        writer.write(createRecord(2));
+
+        LocalFileMetadata metadata = writer.closeAndFetchMetaData();
+
+        byte[] content = metadata.getContent();
+        assertTrue(metadata.isInMemory());
+        assertEquals(2, metadata.getRecordCount());
+        assertEquals(content.length, metadata.getSize());
+        assertArrayEquals(PARQUET_MAGIC, Arrays.copyOfRange(content, 0, PARQUET_MAGIC.length));
+        assertArrayEquals(PARQUET_MAGIC, Arrays.copyOfRange(content, content.length - PARQUET_MAGIC.length, content.length));
+        assertEquals(content.length, memoryBudget.getUsedBytes());
+        assertFalse(Files.exists(Paths.get(fullPath)));
+    }
+
+    @Test
+    public void shouldComputeDataSizeOnFirstRecordAndThenEverySizeCheckInterval() throws IOException {
+        InMemoryParquetFileWriter writer = createWriter("/tmp/in-memory/file-4");
+        writer.write(createRecord(0));
+        long firstSize = writer.getLastDataSize();
+        assertTrue(firstSize > 0);
+        assertEquals(firstSize, memoryBudget.getOpenBytes());
+
+        for (int i = 1; i < LocalFileWriter.SIZE_CHECK_INTERVAL_RECORDS; i++) {
+            writer.write(createRecord(i));
+        }
+        assertEquals(firstSize, writer.getLastDataSize());
+
+        writer.write(createRecord(LocalFileWriter.SIZE_CHECK_INTERVAL_RECORDS));
+        assertTrue(writer.getLastDataSize() > firstSize);
+        assertEquals(writer.getLastDataSize(), memoryBudget.getOpenBytes());
+    }
+
+    @Test
+    public void shouldNotWriteAfterClose() throws IOException {
+        InMemoryParquetFileWriter writer = createWriter("/tmp/in-memory/file-2");
+        writer.close();
+
+        assertFalse(writer.write(createRecord(1)));
+    }
+
+    @Test
+    public void shouldReleaseMemoryOfFile() throws IOException {
+        String fullPath = "/tmp/in-memory/file-3";
+        InMemoryParquetFileWriter writer = createWriter(fullPath);
+        writer.write(createRecord(1));
+        writer.closeAndFetchMetaData();
+
+        memoryBudget.release(fullPath);
+
+        assertEquals(0, memoryBudget.getUsedBytes());
+    }
+
+    @Test
+    public void shouldEncodeWithConfiguredCompressionAndDictionary() throws IOException {
+        BlobSinkConfig uncompressedConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<Object, Object>() {{
+            put("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_COMPRESSION", "uncompressed");
+            put("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_DICTIONARY_ENABLE", "false");
+        }});
+        BlobSinkConfig snappyConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<Object, Object>() {{
+            put("SINK_BLOB_LOCAL_FILE_WRITER_PARQUET_COMPRESSION", "snappy");
+        }});
+
+        byte[] uncompressed = encode(uncompressedConfig, 1000);
+        byte[] snappy = encode(snappyConfig, 1000);
+
+        assertArrayEquals(PARQUET_MAGIC, Arrays.copyOfRange(snappy, snappy.length - PARQUET_MAGIC.length, snappy.length));
+        assertTrue(snappy.length < uncompressed.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedCompression() {
+        new BlobSinkParquetCompressionConverter().convert(null, "brotli");
+    }
+
+    @Test
+    public void shouldRejectCompressionWithoutNativeCodec() {
+        Assume.assumeFalse(ZStandardCodec.isNativeCodeLoaded());
+        try {
+            new BlobSinkParquetCompressionConverter().convert(null, "zstd");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("native hadoop library"));
+        }
+    }
+}
@@ -11,13 +11,13 @@ import org.junit.rules.ExpectedException;
 import org.mockito.Mock;
 
 import java.io.IOException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -41,7 +41,7 @@ public class LocalFileCheckerTest {
     public ExpectedException expectedException = ExpectedException.none();
 
     private final BlockingQueue<LocalFileMetadata> toBeFlushedToRemotePaths = new LinkedBlockingQueue<>();
-    private final Map<Path, LocalFileWriter> writerMap = new ConcurrentHashMap<>();
+    private final Map<LocalFileWriterKey, LocalFileWriter> writerMap = new ConcurrentHashMap<>();
     private LocalFileChecker worker;
 
     private final long fileSize = 1024L;
@@ -57,8 +57,8 @@ public class LocalFileCheckerTest {
 
     @Test
     public void shouldRotateBasedOnPolicy() throws IOException {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(localStorage.shouldRotate(writer2)).thenReturn(true);
 
@@ -79,8 +79,8 @@ public class LocalFileCheckerTest {
         long fileSize1 = 128L;
         long fileSize2 = 129L;
 
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         doNothing().when(writer1).close();
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(localStorage.shouldRotate(writer2)).thenReturn(true);
@@ -100,8 +100,8 @@ public class LocalFileCheckerTest {
     @Test
     public void shouldRemoveFromMapIfCloseFails() throws Exception {
         expectedException.expect(LocalFileWriterFailedException.class);
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         doThrow(new IOException("Failed")).when(writer1).closeAndFetchMetaData();
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(localStorage.shouldRotate(writer2)).thenReturn(false);
@@ -110,22 +110,22 @@ public class LocalFileCheckerTest {
 
     @Test
     public void shouldNotRotateBaseOnPolicy() throws Exception {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         doNothing().when(writer1).close();
         when(localStorage.shouldRotate(writer2)).thenReturn(false);
         when(localStorage.shouldRotate(writer2)).thenReturn(false);
         worker.run();
         Assert.assertEquals(0, toBeFlushedToRemotePaths.size());
         Assert.assertEquals(2, writerMap.size());
-        Assert.assertEquals(writer2, writerMap.get(Paths.get("/tmp/b")));
-        Assert.assertEquals(writer1, writerMap.get(Paths.get("/tmp/a")));
+        Assert.assertEquals(writer2, writerMap.get(new LocalFileWriterKey(Paths.get("/tmp/b"), 0)));
+        Assert.assertEquals(writer1, writerMap.get(new LocalFileWriterKey(Paths.get("/tmp/a"), 0)));
     }
 
     @Test
     public void shouldRotateSomeBasedOnPolicy() throws Exception {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         doNothing().when(writer1).close();
         when(writer1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize));
         when(writer2.getMetadata()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-2", 1L, recordCount, fileSize));
@@ -137,12 +137,12 @@ public class LocalFileCheckerTest {
         Assert.assertEquals(1, toBeFlushedToRemotePaths.size());
         Assert.assertTrue(toBeFlushedToRemotePaths.contains(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize)));
         Assert.assertEquals(1, writerMap.size());
-        Assert.assertEquals(writer2, writerMap.get(Paths.get("/tmp/b")));
+        Assert.assertEquals(writer2, writerMap.get(new LocalFileWriterKey(Paths.get("/tmp/b"), 0)));
     }
 
     @Test
     public void shouldRecordMetricOfSuccessfullyClosedFiles() throws IOException {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(writer1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize));
         when(writer1.closeAndFetchMetaData()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize));
@@ -152,7 +152,7 @@ public class LocalFileCheckerTest {
 
     @Test
     public void shouldRecordMetricOfClosingTimeDuration() throws IOException {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
         doNothing().when(writer1).close();
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(writer1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize));
@@ -164,7 +164,7 @@ public class LocalFileCheckerTest {
 
     @Test
     public void shouldRecordMetricOfFileSizeInBytes() throws IOException {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
         doNothing().when(writer1).close();
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(writer1.getMetadata()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize));
@@ -176,8 +176,8 @@ public class LocalFileCheckerTest {
 
     @Test
     public void shouldRecordMetricOfFailedClosedFiles() throws IOException {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         doThrow(new IOException("Failed")).when(writer1).closeAndFetchMetaData();
         when(localStorage.shouldRotate(writer1)).thenReturn(true);
         when(localStorage.shouldRotate(writer2)).thenReturn(false);
@@ -192,8 +192,8 @@ public class LocalFileCheckerTest {
 
     @Test
     public void shouldCaptureValueOfFileOpenCount() throws IOException {
-        writerMap.put(Paths.get("/tmp/a"), writer1);
-        writerMap.put(Paths.get("/tmp/b"), writer2);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/a"), 0), writer1);
+        writerMap.put(new LocalFileWriterKey(Paths.get("/tmp/b"), 0), writer2);
         when(localStorage.shouldRotate(writer1)).thenReturn(false).thenReturn(true);
         when(localStorage.shouldRotate(writer2)).thenReturn(false).thenReturn(true);
 
@@ -214,4 +214,16 @@ public class LocalFileCheckerTest {
         verify(firehoseInstrumentation, times(3)).captureValue(BlobStorageMetrics.LOCAL_FILE_OPEN_TOTAL, 2);
         verify(firehoseInstrumentation, times(3)).captureValue(BlobStorageMetrics.LOCAL_FILE_OPEN_TOTAL, 0);
     }
+
+    @Test
+    public void shouldCancelRotationTimerOfClosedWriter() throws IOException {
+        ScheduledFuture<?> rotationTimer = mock(ScheduledFuture.class);
+        when(writer1.closeAndFetchMetaData()).thenReturn(new LocalFileMetadata("/tmp", "/tmp/a/random-file-name-1", 1L, recordCount, fileSize));
+        worker.setRotationTimer(writer1, rotationTimer);
+
+        worker.closeAndQueue(writer1);
+        worker.closeAndQueue(writer1);
+
+        verify(rotationTimer, times(1)).cancel(false);
+    }
 }
@@ -0,0 +1,172 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.blob.TestUtils;
+import com.gotocompany.firehose.sink.blob.message.Record;
+import org.aeonbits.owner.ConfigFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class LocalFileCompactorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Queue<LocalFileMetadata> closedLocalFiles = new LinkedList<>();
+    private final Queue<LocalFileMetadata> toBeFlushedToRemotePaths = new LinkedList<>();
+    private final LocalStorage localStorage = Mockito.mock(LocalStorage.class);
+
+    private LocalFileCompactor createCompactor(String targetSizeBytes, String maxWaitMs) {
+        BlobSinkConfig sinkConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<Object, Object>() {{
+            put("SINK_BLOB_LOCAL_FILE_COMPACTION_TARGET_SIZE_BYTES", targetSizeBytes);
+            put("SINK_BLOB_LOCAL_FILE_COMPACTION_MAX_WAIT_MS", maxWaitMs);
+        }});
+        return new LocalFileCompactor(closedLocalFiles, toBeFlushedToRemotePaths, localStorage, sinkConfig,
+                Mockito.mock(FirehoseInstrumentation.class));
+    }
+
+    private LocalFileMetadata writeLocalFile(String partition, int records) throws IOException {
+        File partitionDirectory = new File(temporaryFolder.getRoot(), partition);
+        BlobSinkConfig sinkConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<>());
+        LocalParquetFileWriter writer = new LocalParquetFileWriter(0L, temporaryFolder.getRoot().getAbsolutePath(),
+                new File(partitionDirectory, "file-" + closedLocalFiles.size()).getAbsolutePath(), sinkConfig,
+                TestUtils.createMessage(Instant.ofEpochSecond(1000), 0).getDescriptorForType(), new ArrayList<>());
+        for (int i = 0; i < records; i++) {
+            writer.write(new Record(TestUtils.createMessage(Instant.ofEpochSecond(1000), i), null));
+        }
+        return writer.closeAndFetchMetaData();
+    }
+
+    private long countRecords(String fullPath) throws IOException {
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(fullPath), new Configuration()))) {
+            return reader.getFooter().getBlocks().stream().mapToLong(BlockMetaData::getRowCount).sum();
+        }
+    }
+
+    @Test
+    public void shouldMergeSmallFilesOfAPartitionOnceTheyReachTheTargetSize() throws IOException {
+        LocalFileMetadata file1 = writeLocalFile("dt=2021-01-01", 2);
+        closedLocalFiles.add(file1);
+        LocalFileMetadata file2 = writeLocalFile("dt=2021-01-01", 3);
+        closedLocalFiles.add(file2);
+        LocalFileCompactor compactor = createCompactor(String.valueOf(file1.getSize() + file2.getSize()), "3600000");
+
+        compactor.run();
+
+        assertEquals(1, toBeFlushedToRemotePaths.size());
+        LocalFileMetadata merged = toBeFlushedToRemotePaths.poll();
+        assertNotEquals(file1.getFullPath(), merged.getFullPath());
+        assertEquals(new File(file1.getFullPath()).getParent(), new File(merged.getFullPath()).getParent());
+        assertEquals(5, merged.getRecordCount());
+        assertEquals(5, countRecords(merged.getFullPath()));
+        Mockito.verify(localStorage).trackMergedLocalFile(merged, Arrays.asList(file1.getFullPath(), file2.getFullPath()));
+        Set<String> expected = new HashSet<>(Arrays.asList(merged.getFullPath(), file1.getFullPath(), file2.getFullPath()));
+        assertEquals(expected, compactor.expandMergedPaths(new HashSet<>(Arrays.asList(merged.getFullPath()))));
+    }
+
+    @Test
+    public void shouldHoldSmallFilesUntilTheMaximumWait() throws IOException {
+        closedLocalFiles.add(writeLocalFile("dt=2021-01-01", 2));
+        LocalFileCompactor compactor = createCompactor("134217728", "3600000");
+
+        compactor.run();
+
+        assertEquals(0, toBeFlushedToRemotePaths.size());
+    }
+
+    @Test
+    public void shouldReleaseHeldFilesBeforeTheMaximumWaitOnRequest() throws IOException {
+        LocalFileMetadata file1 = writeLocalFile("dt=2021-01-01", 2);
+        closedLocalFiles.add(file1);
+        LocalFileMetadata file2 = writeLocalFile("dt=2021-01-01", 3);
+        closedLocalFiles.add(file2);
+        LocalFileCompactor compactor = createCompactor("134217728", "3600000");
+        compactor.run();
+        assertEquals(0, toBeFlushedToRemotePaths.size());
+
+        compactor.releaseHeldFiles();
+        compactor.run();
+
+        assertEquals(1, toBeFlushedToRemotePaths.size());
+        assertEquals(5, countRecords(toBeFlushedToRemotePaths.poll().getFullPath()));
+    }
+
+    @Test
+    public void shouldJournalMergedFileInPlaceOfItsInputs() throws IOException {
+        LocalFileMetadata file1 = writeLocalFile("dt=2021-01-01", 2);
+        closedLocalFiles.add(file1);
+        LocalFileMetadata file2 = writeLocalFile("dt=2021-01-01", 3);
+        closedLocalFiles.add(file2);
+        String journalDirectory = temporaryFolder.newFolder("journal").getAbsolutePath();
+        LocalFileJournal journal = LocalFileJournal.open(journalDirectory);
+        KafkaOffsetRanges offsetRanges1 = new KafkaOffsetRanges();
+        offsetRanges1.add("booking", 1, 1);
+        journal.closed(file1, offsetRanges1);
+        KafkaOffsetRanges offsetRanges2 = new KafkaOffsetRanges();
+        offsetRanges2.add("booking", 1, 2);
+        journal.closed(file2, offsetRanges2);
+        BlobSinkConfig sinkConfig = ConfigFactory.create(BlobSinkConfig.class, new HashMap<Object, Object>() {{
+            put("SINK_BLOB_LOCAL_FILE_COMPACTION_TARGET_SIZE_BYTES", String.valueOf(file1.getSize() + file2.getSize()));
+        }});
+        LocalFileCompactor compactor = new LocalFileCompactor(closedLocalFiles, toBeFlushedToRemotePaths, localStorage, sinkConfig,
+                Mockito.mock(FirehoseInstrumentation.class), journal);
+
+        compactor.run();
+        journal.close();
+
+        LocalFileMetadata merged = toBeFlushedToRemotePaths.poll();
+        List<LocalFileJournal.RecoveredLocalFile> recoveredFiles = LocalFileJournal.open(journalDirectory).getRecoveredFiles();
+        assertEquals(1, recoveredFiles.size());
+        assertEquals(merged, recoveredFiles.get(0).getMetadata());
+        assertEquals("booking:1:1-2", recoveredFiles.get(0).getOffsetRanges().encode());
+    }
+
+    @Test
+    public void shouldQueueASingleDueFileWithoutMerging() throws IOException {
+        LocalFileMetadata file = writeLocalFile("dt=2021-01-01", 2);
+        closedLocalFiles.add(file);
+        LocalFileCompactor compactor = createCompactor("134217728", "0");
+
+        compactor.run();
+
+        assertEquals(file, toBeFlushedToRemotePaths.poll());
+        Mockito.verifyNoInteractions(localStorage);
+    }
+
+    @Test
+    public void shouldNotMergeFilesOfDifferentPartitionsOrLargeAndInMemoryFiles() throws IOException {
+        LocalFileMetadata file1 = writeLocalFile("dt=2021-01-01", 2);
+        closedLocalFiles.add(file1);
+        LocalFileMetadata file2 = writeLocalFile("dt=2021-01-02", 2);
+        closedLocalFiles.add(file2);
+        LocalFileMetadata inMemoryFile = new LocalFileMetadata("/tmp", "/tmp/dt=2021-01-01/in-memory", 0L, 1L, 1L, new byte[1]);
+        closedLocalFiles.add(inMemoryFile);
+        LocalFileCompactor compactor = createCompactor(String.valueOf(file1.getSize() + 1), "0");
+
+        compactor.run();
+
+        assertEquals(new HashSet<>(Arrays.asList(file1, file2, inMemoryFile)), new HashSet<>(toBeFlushedToRemotePaths));
+    }
+}
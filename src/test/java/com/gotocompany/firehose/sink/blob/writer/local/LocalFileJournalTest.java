@@ -0,0 +1,149 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalFileJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String localDirectory;
+
+    @Before
+    public void setUp() {
+        localDirectory = temporaryFolder.getRoot().getAbsolutePath();
+    }
+
+    private LocalFileMetadata createLocalFile(String name) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        return new LocalFileMetadata(localDirectory, file.getAbsolutePath(), 1L, 3L, 128L);
+    }
+
+    private KafkaOffsetRanges createOffsetRanges(String topic, int partition, long... offsets) {
+        KafkaOffsetRanges offsetRanges = new KafkaOffsetRanges();
+        for (long offset : offsets) {
+            offsetRanges.add(topic, partition, offset);
+        }
+        return offsetRanges;
+    }
+
+    private List<Path> listJournals() throws IOException {
+        try (Stream<Path> journals = Files.list(temporaryFolder.getRoot().toPath().resolve(LocalFileJournal.JOURNAL_DIRECTORY))) {
+            return journals.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void shouldRecoverClosedFilesWhichWereNotUploaded() throws IOException {
+        LocalFileMetadata closedFile = createLocalFile("closed");
+        LocalFileMetadata uploadedFile = createLocalFile("uploaded");
+        LocalFileJournal journal = LocalFileJournal.open(localDirectory);
+        journal.closed(closedFile, createOffsetRanges("booking", 1, 1, 2, 3));
+        journal.closed(uploadedFile, createOffsetRanges("booking", 1, 4));
+        journal.uploaded(uploadedFile.getFullPath());
+        journal.close();
+
+        LocalFileJournal recoveringJournal = LocalFileJournal.open(localDirectory);
+
+        List<LocalFileJournal.RecoveredLocalFile> recoveredFiles = recoveringJournal.getRecoveredFiles();
+        assertEquals(1, recoveredFiles.size());
+        assertEquals(closedFile, recoveredFiles.get(0).getMetadata());
+        assertTrue(recoveredFiles.get(0).getOffsetRanges().contains("booking", 1, 2));
+        assertFalse(recoveredFiles.get(0).getOffsetRanges().contains("booking", 1, 4));
+        assertEquals(1, listJournals().size());
+    }
+
+    @Test
+    public void shouldCarryRecoveredFilesOverToTheNewJournal() throws IOException {
+        LocalFileMetadata closedFile = createLocalFile("closed");
+        LocalFileJournal journal = LocalFileJournal.open(localDirectory);
+        journal.closed(closedFile, createOffsetRanges("booking", 1, 1));
+        journal.close();
+        LocalFileJournal.open(localDirectory).close();
+
+        LocalFileJournal recoveringJournal = LocalFileJournal.open(localDirectory);
+
+        assertEquals(1, recoveringJournal.getRecoveredFiles().size());
+        assertEquals(closedFile, recoveringJournal.getRecoveredFiles().get(0).getMetadata());
+    }
+
+    @Test
+    public void shouldNotRecoverJournalOfARunningOrchestrator() throws IOException {
+        LocalFileJournal journal = LocalFileJournal.open(localDirectory);
+        journal.closed(createLocalFile("closed"), createOffsetRanges("booking", 1, 1));
+
+        LocalFileJournal otherJournal = LocalFileJournal.open(localDirectory);
+
+        assertTrue(otherJournal.getRecoveredFiles().isEmpty());
+        assertEquals(2, listJournals().size());
+    }
+
+    @Test
+    public void shouldSkipMissingFilesAndTornLastLine() throws IOException {
+        LocalFileMetadata closedFile = createLocalFile("closed");
+        Path journalDirectory = temporaryFolder.newFolder(LocalFileJournal.JOURNAL_DIRECTORY).toPath();
+        String content = "CLOSED\t" + localDirectory + "\t" + closedFile.getFullPath() + "\t1\t3\t128\tbooking:1:1-3\n"
+                + "CLOSED\t" + localDirectory + "\t" + localDirectory + "/deleted\t1\t3\t128\tbooking:1:4-6\n"
+                + "CLOSED\t" + localDirectory + "\t" + localDirectory + "/torn\t1\t3";
+        Files.write(journalDirectory.resolve("left-over.journal"), content.getBytes(StandardCharsets.UTF_8));
+        temporaryFolder.newFile("torn");
+
+        List<LocalFileJournal.RecoveredLocalFile> recoveredFiles = LocalFileJournal.open(localDirectory).getRecoveredFiles();
+
+        assertEquals(1, recoveredFiles.size());
+        assertEquals(closedFile, recoveredFiles.get(0).getMetadata());
+    }
+
+    @Test
+    public void shouldCompactJournalOnceEnoughFilesWereUploaded() throws IOException {
+        LocalFileJournal journal = LocalFileJournal.open(localDirectory);
+        for (int i = 0; i < 100; i++) {
+            LocalFileMetadata uploadedFile = createLocalFile("uploaded-" + i);
+            journal.closed(uploadedFile, createOffsetRanges("booking", 1, i));
+            journal.uploaded(uploadedFile.getFullPath());
+        }
+        LocalFileMetadata closedFile = createLocalFile("closed");
+        journal.closed(closedFile, createOffsetRanges("booking", 1, 100));
+
+        List<Path> journals = listJournals();
+        assertEquals(1, journals.size());
+        assertEquals(1, Files.readAllLines(journals.get(0)).size());
+
+        journal.close();
+        List<LocalFileJournal.RecoveredLocalFile> recoveredFiles = LocalFileJournal.open(localDirectory).getRecoveredFiles();
+        assertEquals(1, recoveredFiles.size());
+        assertEquals(closedFile, recoveredFiles.get(0).getMetadata());
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeOffsetRanges() {
+        KafkaOffsetRanges offsetRanges = createOffsetRanges("booking.log-v1", 1, 5, 6, 7, 10, 6);
+        offsetRanges.add("booking.log-v1", 2, 0);
+
+        String encoded = offsetRanges.encode();
+        KafkaOffsetRanges decoded = KafkaOffsetRanges.decode(encoded);
+
+        assertEquals("booking.log-v1:1:5-7,10-10;booking.log-v1:2:0-0", encoded);
+        assertEquals(encoded, decoded.encode());
+        assertTrue(decoded.contains("booking.log-v1", 1, 6));
+        assertFalse(decoded.contains("booking.log-v1", 1, 8));
+        assertTrue(decoded.contains("booking.log-v1", 2, 0));
+        assertFalse(decoded.contains("booking", 1, 6));
+    }
+}
@@ -5,10 +5,13 @@ import com.google.protobuf.Descriptors;
 import com.gotocompany.firehose.config.BlobSinkConfig;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.blob.Constants;
+import com.gotocompany.firehose.sink.blob.writer.local.policy.SizeBasedRotatingPolicy;
 import com.gotocompany.firehose.sink.blob.writer.local.policy.WriterPolicy;
+import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,4 +33,103 @@ public class LocalStorageTest {
         Mockito.verify(firehoseInstrumentation, Mockito.times(1)).logInfo("Deleting Local File {}", Paths.get("/tmp/a"));
         Mockito.verify(firehoseInstrumentation, Mockito.times(1)).logInfo("Deleting Local File {}", Paths.get("/tmp/.a.crc"));
     }
+
+    @Test
+    public void shouldReleaseMemoryInsteadOfDeletingInMemoryFiles() throws Exception {
+        BlobSinkConfig sinkConfig = Mockito.mock(BlobSinkConfig.class);
+        Mockito.when(sinkConfig.getLocalFileWriterMemoryMaxBytes()).thenReturn(100L);
+        LocalStorage storage = Mockito.spy(new LocalStorage(sinkConfig, null, new ArrayList<>(), new ArrayList<>(), Mockito.mock(FirehoseInstrumentation.class)));
+        Mockito.when(sinkConfig.getLocalFileWriterType()).thenReturn(Constants.WriterType.PARQUET_IN_MEMORY);
+        storage.getMemoryBudget().update("/tmp/a", 50);
+
+        storage.deleteLocalFile("/tmp/a");
+
+        Assert.assertEquals(0, storage.getMemoryBudget().getUsedBytes());
+        Mockito.verify(storage, Mockito.never()).deleteLocalFile(Mockito.<Path>any());
+    }
+
+    @Test
+    public void shouldRotateInMemoryFilesWhenMemoryCapIsReached() {
+        BlobSinkConfig sinkConfig = Mockito.mock(BlobSinkConfig.class);
+        Mockito.when(sinkConfig.getLocalFileWriterMemoryMaxBytes()).thenReturn(100L);
+        LocalStorage storage = new LocalStorage(sinkConfig, null, new ArrayList<>(), new ArrayList<>(), Mockito.mock(FirehoseInstrumentation.class));
+        InMemoryParquetFileWriter inMemoryWriter = Mockito.mock(InMemoryParquetFileWriter.class);
+        LocalFileWriter localWriter = Mockito.mock(LocalFileWriter.class);
+
+        storage.getMemoryBudget().update("/tmp/a", 60);
+        Assert.assertFalse(storage.shouldRotate(inMemoryWriter));
+
+        storage.getMemoryBudget().update("/tmp/c", 40);
+        Assert.assertTrue(storage.shouldRotate(inMemoryWriter));
+        Assert.assertFalse(storage.shouldRotate(localWriter));
+    }
+
+    @Test
+    public void shouldRotateByPoliciesWithTheLastDataSizeOfTheWriter() {
+        BlobSinkConfig sinkConfig = Mockito.mock(BlobSinkConfig.class);
+        List<WriterPolicy> policies = new ArrayList<>();
+        policies.add(new SizeBasedRotatingPolicy(100));
+        LocalStorage storage = new LocalStorage(sinkConfig, null, new ArrayList<>(), policies, Mockito.mock(FirehoseInstrumentation.class));
+        LocalFileWriter writer = Mockito.mock(LocalFileWriter.class);
+
+        Mockito.when(writer.getLastDataSize()).thenReturn(99L);
+        Assert.assertFalse(storage.shouldRotate(writer));
+
+        Mockito.when(writer.getLastDataSize()).thenReturn(100L);
+        Assert.assertTrue(storage.shouldRotate(writer));
+        Mockito.verify(writer, Mockito.never()).getMetadata();
+    }
+
+    @Test
+    public void shouldApplyBackpressureInsteadOfRotatingWhenClosedInMemoryFilesReachMemoryCap() {
+        BlobSinkConfig sinkConfig = Mockito.mock(BlobSinkConfig.class);
+        Mockito.when(sinkConfig.getLocalFileWriterMemoryMaxBytes()).thenReturn(100L);
+        Mockito.when(sinkConfig.getLocalFileWriterType()).thenReturn(Constants.WriterType.PARQUET_IN_MEMORY);
+        LocalStorage storage = new LocalStorage(sinkConfig, null, new ArrayList<>(), new ArrayList<>(), Mockito.mock(FirehoseInstrumentation.class));
+        InMemoryParquetFileWriter inMemoryWriter = Mockito.mock(InMemoryParquetFileWriter.class);
+
+        storage.getMemoryBudget().update("/tmp/a", 90);
+        storage.trackClosedLocalFile(new LocalFileMetadata("/tmp", "/tmp/a", 0, 0, 0, new byte[90]));
+        storage.getMemoryBudget().update("/tmp/b", 10);
+
+        Assert.assertFalse(storage.shouldRotate(inMemoryWriter));
+        Assert.assertTrue(storage.isBudgetExceeded());
+        Assert.assertEquals(10, storage.getMemoryBudget().getOpenBytes());
+
+        storage.deleteLocalFile("/tmp/a");
+        Assert.assertFalse(storage.isBudgetExceeded());
+        Assert.assertEquals(10, storage.getMemoryBudget().getOpenBytes());
+    }
+
+    @Test
+    public void shouldTrackClosedFilesAgainstDiskBudgetUntilDeleted() throws Exception {
+        BlobSinkConfig sinkConfig = Mockito.mock(BlobSinkConfig.class);
+        Mockito.when(sinkConfig.getLocalDiskMaxBytes()).thenReturn(100L);
+        Mockito.when(sinkConfig.getLocalDiskMaxFiles()).thenReturn(2);
+        LocalStorage storage = Mockito.spy(new LocalStorage(sinkConfig, null, new ArrayList<>(), new ArrayList<>(), Mockito.mock(FirehoseInstrumentation.class)));
+        Mockito.doNothing().when(storage).deleteLocalFile(Paths.get("/tmp/a"), Paths.get("/tmp/.a.crc"));
+        Mockito.when(sinkConfig.getLocalFileWriterType()).thenReturn(Constants.WriterType.PARQUET);
+
+        storage.trackClosedLocalFile(new LocalFileMetadata("/tmp", "/tmp/a", 0, 0, 60));
+        storage.trackClosedLocalFile(new LocalFileMetadata("/tmp", "/tmp/b", 0, 0, 0, new byte[60]));
+        Assert.assertFalse(storage.getDiskBudget().isExceeded());
+
+        storage.trackClosedLocalFile(new LocalFileMetadata("/tmp", "/tmp/c", 0, 0, 50));
+        Assert.assertTrue(storage.getDiskBudget().isExceeded());
+
+        storage.deleteLocalFile("/tmp/a");
+        Assert.assertFalse(storage.getDiskBudget().isExceeded());
+        Assert.assertEquals(50, storage.getDiskBudget().getUsedBytes());
+        Assert.assertEquals(1, storage.getDiskBudget().getFileCount());
+    }
+
+    @Test
+    public void shouldExceedDiskBudgetByFileCount() {
+        LocalDiskBudget budget = new LocalDiskBudget(0, 1);
+        budget.add("/tmp/a", 10);
+        Assert.assertFalse(budget.isExceeded());
+
+        budget.add("/tmp/b", 10);
+        Assert.assertTrue(budget.isExceeded());
+    }
 }
@@ -0,0 +1,62 @@
+package com.gotocompany.firehose.sink.blob.writer.local;
+
+import com.gotocompany.firehose.config.BlobSinkConfig;
+import com.gotocompany.firehose.sink.blob.TestProtoMessage;
+import com.gotocompany.firehose.sink.blob.TestUtils;
+import com.gotocompany.firehose.sink.blob.message.Record;
+import com.gotocompany.firehose.sink.blob.writer.local.path.TimePartitionedPathResolver;
+import com.gotocompany.firehose.sink.blob.writer.local.path.TimePartitionedPathUtils;
+import org.aeonbits.owner.ConfigFactory;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimePartitionedPathResolverTest {
+
+    private BlobSinkConfig createConfig(String granularity, String zone, String metadataColumnName) {
+        Map<String, String> config = new HashMap<>();
+        config.put("SINK_BLOB_FILE_PARTITION_TIME_GRANULARITY_TYPE", granularity);
+        config.put("SINK_BLOB_FILE_PARTITION_PROTO_TIMESTAMP_TIMEZONE", zone);
+        config.put("SINK_BLOB_FILE_PARTITION_PROTO_TIMESTAMP_FIELD_NAME", TestProtoMessage.CREATED_TIME_FIELD_NAME);
+        config.put("SINK_BLOB_OUTPUT_KAFKA_METADATA_COLUMN_NAME", metadataColumnName);
+        return ConfigFactory.create(BlobSinkConfig.class, config);
+    }
+
+    private Record createRecord(String topic, Instant timestamp, String metadataColumnName) {
+        return new Record(TestUtils.createMessage(timestamp, 1), TestUtils.createMetadata(metadataColumnName, timestamp, 1, 1, topic));
+    }
+
+    @Test
+    public void shouldResolveSamePathsAsPathUtils() {
+        String[] granularities = {"hour", "day", "none"};
+        String[] zones = {"UTC", "Asia/Kolkata", "America/New_York"};
+        Instant start = Instant.parse("2021-03-13T00:10:00Z");
+        for (String granularity : granularities) {
+            for (String zone : zones) {
+                BlobSinkConfig config = createConfig(granularity, zone, "meta");
+                TimePartitionedPathResolver resolver = new TimePartitionedPathResolver(config);
+                for (int i = 0; i < 96; i++) {
+                    Record record = createRecord("booking-log", start.plusSeconds(i * 1799L), "meta");
+                    assertEquals(granularity + " " + zone + " " + i,
+                            TimePartitionedPathUtils.getTimePartitionedPath(record, config), resolver.resolve(record));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepBucketPerTopic() {
+        TimePartitionedPathResolver resolver = new TimePartitionedPathResolver(createConfig("hour", "UTC", ""));
+        Instant timestamp = Instant.parse("2020-01-01T10:59:59Z");
+
+        assertEquals(Paths.get("booking-log/dt=2020-01-01/hr=10"), resolver.resolve(createRecord("booking-log", timestamp, "")));
+        assertEquals(Paths.get("payment-log/dt=2020-01-01/hr=11"), resolver.resolve(createRecord("payment-log", timestamp.plusSeconds(1), "")));
+        assertEquals(Paths.get("booking-log/dt=2020-01-01/hr=10"), resolver.resolve(createRecord("booking-log", timestamp, "")));
+        assertEquals(Paths.get("booking-log/dt=2020-01-01/hr=09"), resolver.resolve(createRecord("booking-log", timestamp.minusSeconds(3600), "")));
+    }
+}
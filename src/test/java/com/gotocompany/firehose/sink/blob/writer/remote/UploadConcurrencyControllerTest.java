@@ -0,0 +1,91 @@
+package com.gotocompany.firehose.sink.blob.writer.remote;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class UploadConcurrencyControllerTest {
+    private static final long INTERVAL = 10000;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ThreadPoolExecutor uploadExecutor;
+    private UploadConcurrencyController controller;
+
+    @Before
+    public void setUp() {
+        uploadExecutor = new ThreadPoolExecutor(1, 3, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        controller = new UploadConcurrencyController(uploadExecutor, 1, 3, 0);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        uploadExecutor.shutdownNow();
+    }
+
+    private void queueUploads(int count) {
+        for (int i = 0; i < count; i++) {
+            uploadExecutor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void shouldAddThreadsWhileUploadsAreQueuedAndThroughputImproves() {
+        queueUploads(10);
+
+        controller.recordUploaded(100);
+        controller.adjust(INTERVAL);
+        Assert.assertEquals(2, controller.getConcurrency());
+
+        controller.recordUploaded(200);
+        controller.adjust(2 * INTERVAL);
+        Assert.assertEquals(3, controller.getConcurrency());
+
+        controller.recordUploaded(300);
+        controller.adjust(3 * INTERVAL);
+        Assert.assertEquals(3, controller.getConcurrency());
+    }
+
+    @Test
+    public void shouldRemoveThreadWhenThroughputDidNotImprove() {
+        queueUploads(10);
+        controller.recordUploaded(100);
+        controller.adjust(INTERVAL);
+        Assert.assertEquals(2, controller.getConcurrency());
+
+        controller.recordUploaded(100);
+        controller.adjust(2 * INTERVAL);
+
+        Assert.assertEquals(1, controller.getConcurrency());
+    }
+
+    @Test
+    public void shouldNotAdjustBeforeTheIntervalElapsed() {
+        queueUploads(10);
+
+        controller.adjust(INTERVAL - 1);
+
+        Assert.assertEquals(1, controller.getConcurrency());
+    }
+
+    @Test
+    public void shouldRemoveIdleThreadsWhenNothingIsQueued() {
+        uploadExecutor.setCorePoolSize(3);
+
+        controller.adjust(INTERVAL);
+
+        Assert.assertEquals(2, controller.getConcurrency());
+    }
+}
@@ -1,5 +1,6 @@
 package com.gotocompany.firehose.sink.common.gcs;
 
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
@@ -9,14 +10,24 @@ import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageException;
 import com.gotocompany.firehose.sink.common.blobstorage.gcs.GoogleCloudStorage;
 import org.aeonbits.owner.ConfigFactory;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.jupiter.api.Assertions;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.HashMap;
 
 public class GoogleCloudStorageTest {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void shouldCallStorage() throws BlobStorageException {
         GCSConfig config = ConfigFactory.create(GCSConfig.class, new HashMap<Object, Object>() {{
@@ -48,4 +59,61 @@ public class GoogleCloudStorageTest {
         Assert.assertEquals(new BlobStorageException("UNAUTHORIZED", "GCS Upload failed", storageException), thrown);
         Mockito.verify(storage, Mockito.times(1)).create(blobInfo, new byte[]{}, Storage.BlobTargetOption.userProject("projectID"));
     }
+
+    @Test
+    public void shouldStreamFileThroughWriteChannel() throws BlobStorageException, IOException {
+        GCSConfig config = ConfigFactory.create(GCSConfig.class, new HashMap<Object, Object>() {{
+            put("GCS_TYPE", "SOME_TYPE");
+            put("SOME_TYPE_GCS_BUCKET_NAME", "TestBucket");
+            put("SOME_TYPE_GCS_GOOGLE_CLOUD_PROJECT_ID", "projectID");
+            put("SOME_TYPE_GCS_UPLOAD_CHUNK_SIZE_BYTES", "4");
+        }});
+        Storage storage = Mockito.mock(Storage.class);
+        WriteChannel writeChannel = Mockito.mock(WriteChannel.class);
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of("TestBucket", "test")).build();
+        Mockito.when(storage.writer(blobInfo, Storage.BlobWriteOption.userProject("projectID"))).thenReturn(writeChannel);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        Mockito.when(writeChannel.write(Mockito.any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                written.write(buffer.get());
+            }
+            return length;
+        });
+        File file = tempFolder.newFile();
+        Files.write(file.toPath(), "streamed-content".getBytes());
+        GoogleCloudStorage gcs = new GoogleCloudStorage(config, storage);
+
+        gcs.store("test", file.getAbsolutePath());
+
+        Assert.assertEquals("streamed-content", written.toString());
+        Mockito.verify(writeChannel, Mockito.times(1)).setChunkSize(4);
+        Mockito.verify(writeChannel, Mockito.times(4)).write(Mockito.any(ByteBuffer.class));
+        Mockito.verify(writeChannel, Mockito.times(1)).close();
+        Mockito.verify(storage, Mockito.times(1)).writer(blobInfo, Storage.BlobWriteOption.userProject("projectID"));
+    }
+
+    @Test
+    public void shouldThrowBlobStorageExceptionWhenStreamingFails() throws IOException {
+        GCSConfig config = ConfigFactory.create(GCSConfig.class, new HashMap<Object, Object>() {{
+            put("GCS_TYPE", "SOME_TYPE");
+            put("SOME_TYPE_GCS_BUCKET_NAME", "TestBucket");
+            put("SOME_TYPE_GCS_GOOGLE_CLOUD_PROJECT_ID", "projectID");
+        }});
+        Storage storage = Mockito.mock(Storage.class);
+        WriteChannel writeChannel = Mockito.mock(WriteChannel.class);
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of("TestBucket", "test")).build();
+        Mockito.when(storage.writer(blobInfo, Storage.BlobWriteOption.userProject("projectID"))).thenReturn(writeChannel);
+        StorageException storageException = new StorageException(401, "some error");
+        Mockito.when(writeChannel.write(Mockito.any(ByteBuffer.class))).thenThrow(storageException);
+        File file = tempFolder.newFile();
+        Files.write(file.toPath(), "content".getBytes());
+        GoogleCloudStorage gcs = new GoogleCloudStorage(config, storage);
+
+        BlobStorageException thrown = Assertions
+                .assertThrows(BlobStorageException.class, () -> gcs.store("test", file.getAbsolutePath()), "BlobStorageException error was expected");
+
+        Assert.assertEquals(new BlobStorageException("UNAUTHORIZED", "GCS Upload failed", storageException), thrown);
+    }
 }
@@ -5,19 +5,57 @@ import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageException;
 import com.gotocompany.firehose.sink.common.blobstorage.s3.S3;
 import org.aeonbits.owner.ConfigFactory;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.jupiter.api.Assertions;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class S3Test {
+    private static final int MIB = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private S3Config createMultipartConfig() {
+        return ConfigFactory.create(S3Config.class, new HashMap<Object, Object>() {{
+            put("S3_TYPE", "SOME_TYPE");
+            put("SOME_TYPE_S3_BUCKET_NAME", "TestBucket");
+            put("SOME_TYPE_S3_REGION", "asia");
+            put("SOME_TYPE_S3_MULTIPART_PART_SIZE_BYTES", String.valueOf(5 * MIB));
+            put("SOME_TYPE_S3_MULTIPART_UPLOAD_CONCURRENCY", "2");
+        }});
+    }
+
+    private File createFile(int size) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        File file = tempFolder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
 
     @Test
     public void shouldCallStorage() throws BlobStorageException, IOException {
@@ -74,5 +112,75 @@ public class S3Test {
         Assert.assertEquals(new String(expectedBytes), new String(actualBytes));
         Assertions.assertEquals(new BlobStorageException("test", "test", exception), thrown);
     }
-}
 
+    @Test
+    public void shouldPutSmallFileInSingleRequest() throws BlobStorageException, IOException {
+        S3Client s3Client = Mockito.mock(S3Client.class);
+        S3 s3Storage = new S3(createMultipartConfig(), s3Client);
+        File file = createFile(4);
+
+        s3Storage.store("test", file.getAbsolutePath());
+
+        ArgumentCaptor<RequestBody> requestBodyArgumentCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        Mockito.verify(s3Client, Mockito.times(1)).putObject(Mockito.eq(PutObjectRequest.builder().bucket("TestBucket").key("test").build()),
+                requestBodyArgumentCaptor.capture());
+        Assert.assertEquals(4L, requestBodyArgumentCaptor.getValue().contentLength());
+        Mockito.verify(s3Client, Mockito.never()).createMultipartUpload(Mockito.any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void shouldUploadLargeFileInParts() throws BlobStorageException, IOException {
+        S3Client s3Client = Mockito.mock(S3Client.class);
+        S3 s3Storage = new S3(createMultipartConfig(), s3Client);
+        File file = createFile(11 * MIB);
+        Mockito.when(s3Client.createMultipartUpload(Mockito.any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        Mockito.when(s3Client.uploadPart(Mockito.any(UploadPartRequest.class), Mockito.any(RequestBody.class)))
+                .thenAnswer(invocation -> {
+                    UploadPartRequest request = invocation.getArgument(0);
+                    return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+                });
+
+        s3Storage.store("test", file.getAbsolutePath());
+
+        ArgumentCaptor<UploadPartRequest> uploadPartCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+        ArgumentCaptor<RequestBody> requestBodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        Mockito.verify(s3Client, Mockito.times(3)).uploadPart(uploadPartCaptor.capture(), requestBodyCaptor.capture());
+        List<Long> partLengths = uploadPartCaptor.getAllValues().stream()
+                .sorted((a, b) -> a.partNumber() - b.partNumber())
+                .map(UploadPartRequest::contentLength)
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(5L * MIB, 5L * MIB, 1L * MIB), partLengths);
+        for (int i = 0; i < 3; i++) {
+            UploadPartRequest request = uploadPartCaptor.getAllValues().get(i);
+            byte[] firstByte = new byte[1];
+            requestBodyCaptor.getAllValues().get(i).contentStreamProvider().newStream().read(firstByte);
+            Assert.assertEquals((byte) ((request.partNumber() - 1) * 5 * MIB), firstByte[0]);
+        }
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        Mockito.verify(s3Client, Mockito.times(1)).completeMultipartUpload(completeCaptor.capture());
+        Assert.assertEquals("upload-1", completeCaptor.getValue().uploadId());
+        Assert.assertEquals(Arrays.asList("etag-1", "etag-2", "etag-3"), completeCaptor.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::eTag).collect(Collectors.toList()));
+        Mockito.verify(s3Client, Mockito.never()).putObject(Mockito.any(PutObjectRequest.class), Mockito.any(RequestBody.class));
+    }
+
+    @Test
+    public void shouldAbortMultipartUploadWhenPartFails() throws IOException {
+        S3Client s3Client = Mockito.mock(S3Client.class);
+        S3 s3Storage = new S3(createMultipartConfig(), s3Client);
+        File file = createFile(6 * MIB);
+        SdkClientException exception = SdkClientException.create("test");
+        Mockito.when(s3Client.createMultipartUpload(Mockito.any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        Mockito.when(s3Client.uploadPart(Mockito.any(UploadPartRequest.class), Mockito.any(RequestBody.class))).thenThrow(exception);
+
+        BlobStorageException thrown = Assertions
+                .assertThrows(BlobStorageException.class, () -> s3Storage.store("test", file.getAbsolutePath()), "BlobStorageException error was expected");
+
+        Assertions.assertEquals(new BlobStorageException("test", "test", exception), thrown);
+        Mockito.verify(s3Client, Mockito.times(1)).abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket("TestBucket").key("test").uploadId("upload-1").build());
+        Mockito.verify(s3Client, Mockito.never()).completeMultipartUpload(Mockito.any(CompleteMultipartUploadRequest.class));
+    }
+}
@@ -9,6 +9,7 @@ import com.gotocompany.firehose.sink.dlq.kafka.KafkaDlqWriter;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.header.internals.RecordHeader;
 import org.apache.kafka.common.header.internals.RecordHeaders;
@@ -22,6 +23,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -212,4 +214,26 @@ public class KafkaDlqWriterTest {
         completedLatch.await();
         assertEquals(1, retryMessages.size());
     }
+
+    @Test
+    public void shouldReturnMessagesAsFailedWhenSendThrows() throws IOException {
+        when(kafkaProducer.send(any(), any())).thenThrow(new KafkaException("buffer exhausted"));
+        List<Message> messages = Arrays.asList(message, message);
+
+        List<Message> failedMessages = kafkaDlqWriter.write(messages);
+
+        assertEquals(2, failedMessages.size());
+        verify(firehoseInstrumentation, times(1)).logInfo("Successfully pushed {} messages to {}", 0, "test-topic");
+    }
+
+    @Test
+    public void shouldReturnUnacknowledgedMessagesAsFailedWhenInterrupted() throws IOException {
+        List<Message> messages = Arrays.asList(message, message);
+
+        Thread.currentThread().interrupt();
+        List<Message> failedMessages = kafkaDlqWriter.write(messages);
+
+        assertTrue(Thread.interrupted());
+        assertEquals(2, failedMessages.size());
+    }
 }
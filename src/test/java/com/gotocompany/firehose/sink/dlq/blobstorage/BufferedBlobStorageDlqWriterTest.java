@@ -0,0 +1,220 @@
+package com.gotocompany.firehose.sink.dlq.blobstorage;
+
+import com.gotocompany.depot.error.ErrorInfo;
+import com.gotocompany.depot.error.ErrorType;
+import com.gotocompany.firehose.config.DlqConfig;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.sink.common.blobstorage.BlobStorage;
+import com.gotocompany.firehose.sink.common.blobstorage.BlobStorageException;
+import com.gotocompany.firehose.sink.dlq.LocalDlqDirectory;
+import org.aeonbits.owner.ConfigFactory;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BufferedBlobStorageDlqWriterTest {
+    private static final String RECORD_1 = "{\"key\":\"MTIz\",\"value\":\"YWJj\",\"topic\":\"booking\",\"partition\":1,\"offset\":1,\"timestamp\":1577836800000,\"error\":\"Exception test, ErrorType: DESERIALIZATION_ERROR\"}\n";
+    private static final String RECORD_2 = "{\"key\":\"MTIz\",\"value\":\"YWJj\",\"topic\":\"booking\",\"partition\":1,\"offset\":2,\"timestamp\":1577836800000,\"error\":\"Exception test, ErrorType: DESERIALIZATION_ERROR\"}\n";
+    private static final String RECORD_3 = "{\"key\":\"MTIz\",\"value\":\"YWJj\",\"topic\":\"booking\",\"partition\":1,\"offset\":3,\"timestamp\":1577923200000,\"error\":\"Exception test, ErrorType: DESERIALIZATION_ERROR\"}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private BlobStorage blobStorage;
+
+    private Properties properties;
+    private Map<String, String> storedObjects;
+    private BufferedBlobStorageDlqWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        properties = new Properties();
+        properties.setProperty("DLQ_BLOB_STORAGE_BUFFER_LOCAL_DIRECTORY", temporaryFolder.getRoot().getAbsolutePath());
+        properties.setProperty("DLQ_BLOB_STORAGE_BUFFER_MAX_AGE_MS", "3600000");
+        storedObjects = new HashMap<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private BufferedBlobStorageDlqWriter createWriter() throws IOException {
+        return new BufferedBlobStorageDlqWriter(blobStorage, ConfigFactory.create(DlqConfig.class, properties));
+    }
+
+    private void captureStoredObjects() throws BlobStorageException {
+        doAnswer(invocation -> {
+            String objectName = invocation.getArgument(0);
+            Path path = Paths.get((String) invocation.getArgument(1));
+            try (InputStream inputStream = DlqCompressionType.fromFileName(objectName).decompress(Files.newInputStream(path))) {
+                storedObjects.put(objectName, IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+            }
+            return null;
+        }).when(blobStorage).store(anyString(), anyString());
+    }
+
+    private long countLocalFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(temporaryFolder.getRoot().toPath())) {
+            return paths.filter(Files::isRegularFile).filter(path -> !path.getFileName().toString().equals(LocalDlqDirectory.LOCK_FILE)).count();
+        }
+    }
+
+    private Message createMessage(long offset, String consumeTime) {
+        long timestamp = Instant.parse(consumeTime).toEpochMilli();
+        return new Message("123".getBytes(), "abc".getBytes(), "booking", 1, offset, null, timestamp, timestamp,
+                new ErrorInfo(new IOException("test"), ErrorType.DESERIALIZATION_ERROR));
+    }
+
+    @Test
+    public void shouldBufferBatchesIntoOneObjectPerTopicAndDate() throws Exception {
+        captureStoredObjects();
+        writer = createWriter();
+
+        Assert.assertEquals(0, writer.write(Arrays.asList(createMessage(1, "2020-01-01T00:00:00Z"), createMessage(3, "2020-01-02T00:00:00Z"))).size());
+        Assert.assertEquals(0, writer.write(Collections.singletonList(createMessage(2, "2020-01-01T00:00:00Z"))).size());
+        writer.flush(System.currentTimeMillis());
+        verifyNoInteractions(blobStorage);
+        writer.close();
+        writer = null;
+
+        Assert.assertEquals(2, storedObjects.size());
+        storedObjects.forEach((objectName, content) -> {
+            Assert.assertTrue(objectName.endsWith(".gz"));
+            if (objectName.startsWith("booking/2020-01-01/")) {
+                Assert.assertEquals(RECORD_1 + RECORD_2, content);
+            } else {
+                Assert.assertTrue(objectName.startsWith("booking/2020-01-02/"));
+                Assert.assertEquals(RECORD_3, content);
+            }
+        });
+        Assert.assertEquals(0, countLocalFiles());
+    }
+
+    @Test
+    public void shouldUploadBufferWhenMaxAgeIsReached() throws Exception {
+        captureStoredObjects();
+        properties.setProperty("DLQ_BLOB_STORAGE_COMPRESSION", "zstd");
+        writer = createWriter();
+
+        writer.write(Collections.singletonList(createMessage(1, "2020-01-01T00:00:00Z")));
+        writer.flush(System.currentTimeMillis() + 3600000);
+
+        Assert.assertEquals(1, storedObjects.size());
+        String objectName = storedObjects.keySet().iterator().next();
+        Assert.assertTrue(objectName.endsWith(".zst"));
+        Assert.assertEquals(RECORD_1, storedObjects.get(objectName));
+    }
+
+    @Test
+    public void shouldUploadBufferWhenMaxSizeIsReached() throws Exception {
+        captureStoredObjects();
+        properties.setProperty("DLQ_BLOB_STORAGE_BUFFER_MAX_SIZE_BYTES", "1");
+        writer = createWriter();
+
+        writer.write(Collections.singletonList(createMessage(1, "2020-01-01T00:00:00Z")));
+        writer.write(Collections.singletonList(createMessage(2, "2020-01-01T00:00:00Z")));
+        writer.flush(System.currentTimeMillis());
+
+        Assert.assertEquals(2, storedObjects.size());
+        Assert.assertTrue(storedObjects.containsValue(RECORD_1));
+        Assert.assertTrue(storedObjects.containsValue(RECORD_2));
+    }
+
+    @Test
+    public void shouldKeepLocalFileAndRetryWhenUploadFails() throws Exception {
+        doThrow(new BlobStorageException("", "", new IOException())).doNothing().when(blobStorage).store(anyString(), anyString());
+        writer = createWriter();
+
+        writer.write(Collections.singletonList(createMessage(1, "2020-01-01T00:00:00Z")));
+        writer.flush(System.currentTimeMillis() + 3600000);
+        Assert.assertEquals(1, countLocalFiles());
+
+        writer.flush(System.currentTimeMillis() + 3600000);
+        verify(blobStorage, times(2)).store(anyString(), anyString());
+        Assert.assertEquals(0, countLocalFiles());
+    }
+
+    @Test
+    public void shouldUploadCompleteRecordsOfTruncatedFileOfPreviousRun() throws Exception {
+        captureStoredObjects();
+        Path file = temporaryFolder.newFolder("booking", "2020-01-01").toPath().resolve("previous.gz");
+        OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file), 8192, true);
+        outputStream.write((RECORD_1 + RECORD_2 + "{\"key\":\"MT").getBytes(StandardCharsets.UTF_8));
+        outputStream.flush();
+
+        writer = createWriter();
+        writer.flush(System.currentTimeMillis());
+
+        Assert.assertEquals(RECORD_1 + RECORD_2, storedObjects.get("booking/2020-01-01/previous.gz"));
+        Assert.assertFalse(Files.exists(file));
+        outputStream.close();
+    }
+
+    @Test
+    public void shouldUploadFilesLeftInDirectoryOfPreviousRun() throws Exception {
+        captureStoredObjects();
+        Path file = temporaryFolder.newFolder("previous-run", "booking", "2020-01-01").toPath().resolve("previous.gz");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file))) {
+            outputStream.write(RECORD_1.getBytes(StandardCharsets.UTF_8));
+        }
+
+        writer = createWriter();
+        writer.flush(System.currentTimeMillis());
+
+        Assert.assertEquals(RECORD_1, storedObjects.get("booking/2020-01-01/previous.gz"));
+        Assert.assertFalse(Files.exists(temporaryFolder.getRoot().toPath().resolve("previous-run")));
+    }
+
+    @Test
+    public void shouldNotRecoverFilesOfARunningWriter() throws Exception {
+        captureStoredObjects();
+        writer = createWriter();
+        writer.write(Collections.singletonList(createMessage(1, "2020-01-01T00:00:00Z")));
+
+        BufferedBlobStorageDlqWriter otherWriter = createWriter();
+        otherWriter.flush(System.currentTimeMillis());
+        otherWriter.close();
+
+        verifyNoInteractions(blobStorage);
+        Assert.assertEquals(1, countLocalFiles());
+        writer.close();
+        writer = null;
+        Assert.assertEquals(1, storedObjects.size());
+        Assert.assertEquals(0, countLocalFiles());
+    }
+}
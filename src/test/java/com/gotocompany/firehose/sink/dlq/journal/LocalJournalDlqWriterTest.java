@@ -0,0 +1,206 @@
+package com.gotocompany.firehose.sink.dlq.journal;
+
+import com.gotocompany.depot.error.ErrorInfo;
+import com.gotocompany.depot.error.ErrorType;
+import com.gotocompany.firehose.exception.DefaultException;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.dlq.DlqWriter;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocalJournalDlqWriterTest {
+    private static final long MAX_AGE_MS = 60000;
+    private static final long SHIP_INTERVAL_MS = 3600000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private DlqWriter shipper;
+
+    @Mock
+    private FirehoseInstrumentation firehoseInstrumentation;
+
+    private Path directory;
+    private LocalJournalDlqWriter writer;
+
+    @Before
+    public void setUp() {
+        directory = temporaryFolder.getRoot().toPath().resolve("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private LocalJournalDlqWriter createWriter(int segmentSizeBytes, DlqWriter segmentShipper) throws IOException {
+        return new LocalJournalDlqWriter(directory, segmentSizeBytes, MAX_AGE_MS, SHIP_INTERVAL_MS, segmentShipper, firehoseInstrumentation);
+    }
+
+    private Message createMessage(long offset) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(new RecordHeader("key1", "value1".getBytes()));
+        return new Message("123".getBytes(), ("abc" + offset).getBytes(), "booking", 1, offset, headers, 1000L, 2000L,
+                new ErrorInfo(new DefaultException("failed " + offset), ErrorType.SINK_UNKNOWN_ERROR));
+    }
+
+    private void assertShipped(Message expected, Message actual) {
+        Assert.assertArrayEquals(expected.getLogKey(), actual.getLogKey());
+        Assert.assertArrayEquals(expected.getLogMessage(), actual.getLogMessage());
+        Assert.assertEquals(expected.getTopic(), actual.getTopic());
+        Assert.assertEquals(expected.getPartition(), actual.getPartition());
+        Assert.assertEquals(expected.getOffset(), actual.getOffset());
+        Assert.assertEquals(expected.getHeaders(), actual.getHeaders());
+        Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        Assert.assertEquals(expected.getConsumeTimestamp(), actual.getConsumeTimestamp());
+        Assert.assertEquals(expected.getErrorInfo().getErrorType(), actual.getErrorInfo().getErrorType());
+        Assert.assertEquals(expected.getErrorInfo().getException().getMessage(), actual.getErrorInfo().getException().getMessage());
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(JournalSegment.SUFFIX)).count();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldShipWrittenMessagesOnceTheSegmentIsSealed() throws Exception {
+        when(shipper.write(anyList())).thenReturn(Collections.emptyList());
+        writer = createWriter(1024 * 1024, shipper);
+        List<Message> messages = Arrays.asList(createMessage(1), createMessage(2));
+
+        Assert.assertTrue(writer.write(messages).isEmpty());
+        writer.ship(System.currentTimeMillis());
+        verifyNoInteractions(shipper);
+
+        writer.ship(System.currentTimeMillis() + MAX_AGE_MS);
+        ArgumentCaptor<List<Message>> shipped = ArgumentCaptor.forClass(List.class);
+        verify(shipper).write(shipped.capture());
+        Assert.assertEquals(2, shipped.getValue().size());
+        assertShipped(messages.get(0), shipped.getValue().get(0));
+        assertShipped(messages.get(1), shipped.getValue().get(1));
+        Assert.assertEquals(1, countSegments());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRollSegmentsWhenFullAndShipThemInOrder() throws Exception {
+        List<Long> shippedOffsets = new ArrayList<>();
+        when(shipper.write(anyList())).thenAnswer(invocation -> {
+            ((List<Message>) invocation.getArgument(0)).forEach(message -> shippedOffsets.add(message.getOffset()));
+            return Collections.emptyList();
+        });
+        writer = createWriter(16, shipper);
+
+        writer.write(Arrays.asList(createMessage(1), createMessage(2)));
+        writer.write(Collections.singletonList(createMessage(3)));
+        Assert.assertEquals(3, countSegments());
+        writer.ship(System.currentTimeMillis());
+
+        Assert.assertEquals(Arrays.asList(1L, 2L), shippedOffsets);
+        Assert.assertEquals(1, countSegments());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRetryUnshippedMessagesOnTheNextRun() throws Exception {
+        Message message = createMessage(1);
+        when(shipper.write(anyList())).thenAnswer(invocation -> new ArrayList<>((List<Message>) invocation.getArgument(0)))
+                .thenReturn(Collections.emptyList());
+        writer = createWriter(1024 * 1024, shipper);
+
+        writer.write(Collections.singletonList(message));
+        writer.ship(System.currentTimeMillis() + MAX_AGE_MS);
+        Assert.assertEquals(2, countSegments());
+        writer.ship(System.currentTimeMillis() + MAX_AGE_MS);
+
+        ArgumentCaptor<List<Message>> shipped = ArgumentCaptor.forClass(List.class);
+        verify(shipper, times(2)).write(shipped.capture());
+        assertShipped(message, shipped.getAllValues().get(1).get(0));
+        Assert.assertEquals(1, countSegments());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldShipSegmentsLeftByPreviousRun() throws Exception {
+        DlqWriter previousShipper = mock(DlqWriter.class);
+        when(previousShipper.write(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        LocalJournalDlqWriter previousWriter = createWriter(1024 * 1024, previousShipper);
+        Message message = createMessage(1);
+        previousWriter.write(Collections.singletonList(message));
+        previousWriter.close();
+
+        when(shipper.write(anyList())).thenReturn(Collections.emptyList());
+        writer = createWriter(1024 * 1024, shipper);
+        writer.ship(System.currentTimeMillis());
+
+        ArgumentCaptor<List<Message>> shipped = ArgumentCaptor.forClass(List.class);
+        verify(shipper).write(shipped.capture());
+        assertShipped(message, shipped.getValue().get(0));
+        Assert.assertEquals(1, countSegments());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotShipSegmentsOfARunningWriter() throws Exception {
+        when(shipper.write(anyList())).thenReturn(Collections.emptyList());
+        writer = createWriter(16, shipper);
+        writer.write(Arrays.asList(createMessage(1), createMessage(2)));
+
+        DlqWriter otherShipper = mock(DlqWriter.class);
+        LocalJournalDlqWriter otherWriter = createWriter(16, otherShipper);
+        otherWriter.write(Collections.singletonList(createMessage(3)));
+        otherWriter.ship(System.currentTimeMillis());
+        verifyNoInteractions(otherShipper);
+        when(otherShipper.write(anyList())).thenReturn(Collections.emptyList());
+        otherWriter.close();
+
+        writer.ship(System.currentTimeMillis());
+        ArgumentCaptor<List<Message>> shipped = ArgumentCaptor.forClass(List.class);
+        verify(shipper).write(shipped.capture());
+        Assert.assertEquals(1, shipped.getValue().size());
+        Assert.assertEquals(1L, shipped.getValue().get(0).getOffset());
+    }
+
+    @Test
+    public void shouldDeleteItsDirectoryOnceAllSegmentsAreShippedOnClose() throws Exception {
+        when(shipper.write(anyList())).thenReturn(Collections.emptyList());
+        LocalJournalDlqWriter closingWriter = createWriter(1024 * 1024, shipper);
+        closingWriter.write(Collections.singletonList(createMessage(1)));
+        closingWriter.close();
+        Assert.assertEquals(0, countSegments());
+        Assert.assertEquals(0, Files.list(directory).count());
+    }
+}
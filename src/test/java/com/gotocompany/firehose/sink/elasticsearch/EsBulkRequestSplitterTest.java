@@ -0,0 +1,61 @@
+package com.gotocompany.firehose.sink.elasticsearch;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class EsBulkRequestSplitterTest {
+
+    private List<DocWriteRequest> requests;
+
+    @Before
+    public void setUp() {
+        requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(new IndexRequest("booking", "customer", String.valueOf(i)).source("{\"customer_id\":\"544131618\"}", XContentType.JSON));
+        }
+    }
+
+    @Test
+    public void shouldCreateSingleBulkRequestWhenLimitsAreDisabled() {
+        List<BulkRequest> bulkRequests = new EsBulkRequestSplitter(5000, 1, -1, -1).split(requests);
+
+        assertEquals(1, bulkRequests.size());
+        assertEquals(5, bulkRequests.get(0).numberOfActions());
+        assertEquals(5000, bulkRequests.get(0).timeout().millis());
+    }
+
+    @Test
+    public void shouldSplitBulkRequestsByActionCount() {
+        List<BulkRequest> bulkRequests = new EsBulkRequestSplitter(5000, 1, 2, -1).split(requests);
+
+        assertEquals(3, bulkRequests.size());
+        assertEquals(2, bulkRequests.get(0).numberOfActions());
+        assertEquals(2, bulkRequests.get(1).numberOfActions());
+        assertEquals(1, bulkRequests.get(2).numberOfActions());
+        assertEquals("2", bulkRequests.get(1).requests().get(0).id());
+    }
+
+    @Test
+    public void shouldSplitBulkRequestsBySize() {
+        long requestSize = new BulkRequest().add(requests.get(0)).estimatedSizeInBytes();
+
+        List<BulkRequest> bulkRequests = new EsBulkRequestSplitter(5000, 1, -1, requestSize * 2).split(requests);
+
+        assertEquals(3, bulkRequests.size());
+        assertEquals(2, bulkRequests.get(0).numberOfActions());
+    }
+
+    @Test
+    public void shouldReturnNoBulkRequestForEmptyBatch() {
+        assertEquals(0, new EsBulkRequestSplitter(5000, 1, 2, -1).split(new ArrayList<>()).size());
+    }
+}
@@ -1,13 +1,14 @@
 package com.gotocompany.firehose.sink.elasticsearch;
 
 import com.gotocompany.firehose.config.enums.SinkType;
-import com.gotocompany.firehose.exception.NeedToRetry;
+import com.gotocompany.depot.error.ErrorType;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.elasticsearch.request.EsRequestHandler;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
@@ -87,10 +88,9 @@ public class EsSinkTest {
     }
 
     @Test
-    public void shouldThrowNeedToRetryExceptionWhenBulkResponseHasFailuresExceptMentionedInBlacklist() {
-        when(bulkResponse.buildFailureMessage()).thenReturn("400");
+    public void shouldReturnFailedMessagesWithErrorInfoWhenBulkResponseHasFailuresExceptMentionedInBlacklist() throws Exception {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -99,18 +99,17 @@ public class EsSinkTest {
         esSinkMock.setBulkResponse(bulkResponse);
 
         esSinkMock.prepare(messages);
-        try {
-            esSinkMock.execute();
-        } catch (Exception e) {
-            Assert.assertEquals(NeedToRetry.class, e.getClass());
-            Assert.assertEquals("Status code fall under retry range. StatusCode: 400", e.getMessage());
-        }
+        List<Message> failedMessages = esSinkMock.execute();
+
+        Assert.assertEquals(2, failedMessages.size());
+        Assert.assertEquals(ErrorType.DEFAULT_ERROR, failedMessages.get(0).getErrorInfo().getErrorType());
+        Assert.assertEquals("Status code fall under retry range. StatusCode: 400", failedMessages.get(0).getErrorInfo().getException().getMessage());
     }
 
     @Test
     public void shouldReturnEsbMessagesListWhenBulkResponseHasFailuresAndEmptyBlacklist() throws IOException {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -119,14 +118,15 @@ public class EsSinkTest {
         esSinkMock.setBulkResponse(bulkResponse);
 
         List<Message> failedMessages = esSinkMock.pushMessage(this.messages);
-        Assert.assertEquals(messages.get(0), failedMessages.get(0));
-        Assert.assertEquals(messages.get(1), failedMessages.get(1));
+        Assert.assertEquals(2, failedMessages.size());
+        Assert.assertEquals(messages.get(0).getOffset(), failedMessages.get(0).getOffset());
+        Assert.assertEquals(messages.get(1).getOffset(), failedMessages.get(1).getOffset());
     }
 
     @Test
     public void shouldReturnEsbMessagesListWhenBulkResponseHasFailuresWithStatusOtherThanBlacklist() throws IOException {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -135,14 +135,15 @@ public class EsSinkTest {
         esSinkMock.setBulkResponse(bulkResponse);
 
         List<Message> failedMessages = esSinkMock.pushMessage(this.messages);
-        Assert.assertEquals(messages.get(0), failedMessages.get(0));
-        Assert.assertEquals(messages.get(1), failedMessages.get(1));
+        Assert.assertEquals(2, failedMessages.size());
+        Assert.assertEquals(messages.get(0).getOffset(), failedMessages.get(0).getOffset());
+        Assert.assertEquals(messages.get(1).getOffset(), failedMessages.get(1).getOffset());
     }
 
     @Test
     public void shouldReturnEmptyMessageListIfAllTheResponsesBelongToBlacklistStatusCode() throws IOException {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -157,7 +158,7 @@ public class EsSinkTest {
     @Test
     public void shouldReportTelemetryIfTheResponsesBelongToBlacklistStatusCode() throws IOException {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -171,10 +172,10 @@ public class EsSinkTest {
     }
 
     @Test
-    public void shouldThrowNeedToRetryExceptionIfSomeOfTheFailuresDontBelongToBlacklist() throws IOException {
+    public void shouldReturnOnlyFailuresThatDontBelongToBlacklist() throws IOException {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 502);
-        BulkResponseItemMock bulkResponseItemMock3 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 502);
+        BulkResponseItemMock bulkResponseItemMock3 = new BulkResponseItemMock(2, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 400);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2, bulkResponseItemMock3};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -186,13 +187,15 @@ public class EsSinkTest {
         messages.add(messageWithProto);
         List<Message> failedMessages = esSinkMock.pushMessage(this.messages);
         verify(firehoseInstrumentation, times(2)).incrementCounter(any(String.class), any(String.class));
-        Assert.assertEquals(3, failedMessages.size());
+        Assert.assertEquals(1, failedMessages.size());
+        Assert.assertEquals(messageWithProto.getOffset(), failedMessages.get(0).getOffset());
+        Assert.assertArrayEquals(messageWithProto.getLogMessage(), failedMessages.get(0).getLogMessage());
     }
 
     @Test
     public void shouldLogBulkRequestFailedWhenBulkResponsesHasFailures() {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(true);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -208,7 +211,7 @@ public class EsSinkTest {
     @Test
     public void shouldNotLogBulkRequestFailedWhenBulkResponsesHasNotFailures() {
         BulkResponseItemMock bulkResponseItemMock1 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
-        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
+        BulkResponseItemMock bulkResponseItemMock2 = new BulkResponseItemMock(1, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 404);
         BulkItemResponse[] bulkItemResponses = {bulkResponseItemMock1, bulkResponseItemMock2};
         when(bulkResponse.hasFailures()).thenReturn(false);
         when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
@@ -221,6 +224,54 @@ public class EsSinkTest {
         verify(firehoseInstrumentation, times(0)).logWarn("Bulk request failed count: {}", 2);
     }
 
+    @Test
+    public void shouldMapFailuresOfSplitBulkRequestsBackToTheirMessages() throws Exception {
+        BulkItemResponse[] bulkItemResponses = {new BulkResponseItemMock(0, DocWriteRequest.OpType.UPDATE, new UpdateResponse(), 429)};
+        when(bulkResponse.hasFailures()).thenReturn(true);
+        when(bulkResponse.getItems()).thenReturn(bulkItemResponses);
+        BulkResponse successResponse = mock(BulkResponse.class);
+        when(successResponse.hasFailures()).thenReturn(false);
+        EsSink esSink = new EsSink(firehoseInstrumentation, SinkType.ELASTICSEARCH.name(), client, esRequestHandler,
+                new EsBulkRequestSplitter(5000, 1, 1, -1), 2, esRetryStatusCodeBlacklist) {
+            @Override
+            BulkResponse getBulkResponse(BulkRequest bulkRequest) {
+                return bulkRequest.requests().get(0) == updateRequest ? bulkResponse : successResponse;
+            }
+        };
+
+        esSink.prepare(messages);
+        List<Message> failedMessages = esSink.execute();
+        esSink.close();
+
+        Assert.assertEquals(1, failedMessages.size());
+        Assert.assertEquals(messages.get(1).getOffset(), failedMessages.get(0).getOffset());
+        verify(firehoseInstrumentation, times(2)).captureHistogram("firehose_sink_es_bulk_actions_total", 1);
+        verify(firehoseInstrumentation, times(1)).captureCount("firehose_sink_es_bulk_rejected_total", 1L);
+    }
+
+    @Test
+    public void shouldReturnOnlyMessagesOfTheBulkRequestThatThrewException() throws Exception {
+        when(bulkResponse.hasFailures()).thenReturn(false);
+        IOException exception = new IOException("connection reset");
+        EsSink esSink = new EsSink(firehoseInstrumentation, SinkType.ELASTICSEARCH.name(), client, esRequestHandler,
+                new EsBulkRequestSplitter(5000, 1, 1, -1), 1, esRetryStatusCodeBlacklist) {
+            @Override
+            BulkResponse getBulkResponse(BulkRequest bulkRequest) throws IOException {
+                if (bulkRequest.requests().get(0) == indexRequest) {
+                    throw exception;
+                }
+                return bulkResponse;
+            }
+        };
+
+        esSink.prepare(messages);
+        List<Message> failedMessages = esSink.execute();
+
+        Assert.assertEquals(1, failedMessages.size());
+        Assert.assertEquals(messages.get(0).getOffset(), failedMessages.get(0).getOffset());
+        Assert.assertEquals(exception, failedMessages.get(0).getErrorInfo().getException());
+    }
+
     public static class EsSinkMock extends EsSink {
 
         private BulkResponse bulkResponse;
@@ -234,7 +285,7 @@ public class EsSinkTest {
             this.bulkResponse = bulkResponse;
         }
 
-        BulkResponse getBulkResponse() {
+        BulkResponse getBulkResponse(BulkRequest bulkRequest) {
             return bulkResponse;
         }
     }
@@ -0,0 +1,119 @@
+package com.gotocompany.firehose.sink.elasticsearch.request;
+
+import com.gotocompany.firehose.config.enums.EsSinkMessageType;
+import com.gotocompany.firehose.config.enums.EsSinkRequestType;
+import com.gotocompany.firehose.consumer.TestAggregatedSupplyMessage;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.serializer.MessageToJson;
+import com.gotocompany.stencil.Parser;
+import com.gotocompany.stencil.StencilClientFactory;
+import com.gotocompany.stencil.client.StencilClient;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class EsProtoRequestHandlerTest {
+
+    private final StencilClient stencilClient = StencilClientFactory.getClient();
+
+    private Parser protoParser;
+    private MessageToJson jsonSerializer;
+    private Message messageWithProto;
+
+    @Before
+    public void setUp() {
+        String logMessage = "CgYIyOm+xgUSBgiE6r7GBRgNIICAgIDA9/y0LigCMAM=";
+        messageWithProto = new Message(null, Base64.getDecoder().decode(logMessage.getBytes()), "sample-topic", 0, 100);
+        protoParser = stencilClient.getParser(TestAggregatedSupplyMessage.class.getName());
+        jsonSerializer = new MessageToJson(protoParser, true, false);
+    }
+
+    private EsProtoRequestHandler createHandler(EsSinkRequestType requestType, String routingKeyName) {
+        return new EsProtoRequestHandler(EsSinkMessageType.PROTOBUF, protoParser, true,
+                "driver", "supply", requestType, "s2_id_level", routingKeyName);
+    }
+
+    @Test
+    public void shouldReturnTrueForProtoMessageType() {
+        assertTrue(createHandler(EsSinkRequestType.INSERT_OR_UPDATE, "vehicle_type").canCreate());
+    }
+
+    @Test
+    public void shouldReturnFalseForJsonMessageType() {
+        EsProtoRequestHandler handler = new EsProtoRequestHandler(EsSinkMessageType.JSON, protoParser, true,
+                "driver", "supply", EsSinkRequestType.INSERT_OR_UPDATE, "s2_id_level", "vehicle_type");
+
+        assertFalse(handler.canCreate());
+    }
+
+    @Test
+    public void shouldReturnIndexRequestForInsertOrUpdateMode() {
+        DocWriteRequest request = createHandler(EsSinkRequestType.INSERT_OR_UPDATE, "vehicle_type").getRequest(messageWithProto);
+
+        assertEquals(IndexRequest.class, request.getClass());
+        assertEquals("13", request.id());
+        assertEquals("supply", request.index());
+        assertEquals("driver", request.type());
+        assertEquals("BIKE", request.routing());
+    }
+
+    @Test
+    public void shouldReturnUpdateRequestForUpdateOnlyMode() {
+        DocWriteRequest request = createHandler(EsSinkRequestType.UPDATE_ONLY, "vehicle_type").getRequest(messageWithProto);
+
+        assertEquals(UpdateRequest.class, request.getClass());
+        assertEquals("13", request.id());
+        assertEquals("BIKE", request.routing());
+    }
+
+    @Test
+    public void shouldReturnRequestWithNullRoutingWhenNoRoutingKeyIsProvided() {
+        DocWriteRequest request = createHandler(EsSinkRequestType.INSERT_OR_UPDATE, "").getRequest(messageWithProto);
+
+        assertNull(request.routing());
+    }
+
+    @Test
+    public void shouldReturnSamePayloadAsJsonSerializer() {
+        IndexRequest request = (IndexRequest) createHandler(EsSinkRequestType.INSERT_OR_UPDATE, "vehicle_type").getRequest(messageWithProto);
+        IndexRequest jsonRequest = (IndexRequest) new EsUpsertRequestHandler(EsSinkMessageType.PROTOBUF, jsonSerializer, "driver", "supply",
+                EsSinkRequestType.INSERT_OR_UPDATE, "s2_id_level", "vehicle_type").getRequest(messageWithProto);
+
+        Map<String, Object> outputMap = request.sourceAsMap();
+        assertEquals(XContentType.JSON, request.getContentType());
+        assertEquals(jsonRequest.sourceAsMap(), outputMap);
+        assertEquals("BIKE", outputMap.get("vehicle_type"));
+        assertEquals("3", outputMap.get("unique_drivers"));
+    }
+
+    @Test
+    public void shouldUseJsonFieldNamesWhenProtoFieldNamesAreNotPreserved() {
+        EsProtoRequestHandler handler = new EsProtoRequestHandler(EsSinkMessageType.PROTOBUF, protoParser, false,
+                "driver", "supply", EsSinkRequestType.INSERT_OR_UPDATE, "s2IdLevel", "vehicleType");
+
+        IndexRequest request = (IndexRequest) handler.getRequest(messageWithProto);
+        assertEquals("13", request.id());
+        assertEquals("BIKE", request.routing());
+        assertTrue(request.sourceAsMap().containsKey("uniqueDrivers"));
+    }
+
+    @Test
+    public void shouldThrowExceptionForInvalidKey() {
+        EsProtoRequestHandler handler = new EsProtoRequestHandler(EsSinkMessageType.PROTOBUF, protoParser, true,
+                "driver", "supply", EsSinkRequestType.INSERT_OR_UPDATE, "wrongKey", "vehicle_type");
+        try {
+            handler.getRequest(messageWithProto);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Key: wrongKey not found in ESB Message", e.getMessage());
+        }
+    }
+}
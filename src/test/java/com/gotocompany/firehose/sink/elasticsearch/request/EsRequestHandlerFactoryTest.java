@@ -5,6 +5,7 @@ import com.gotocompany.firehose.config.enums.EsSinkMessageType;
 import com.gotocompany.firehose.config.enums.EsSinkRequestType;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.serializer.MessageToJson;
+import com.gotocompany.stencil.Parser;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -21,6 +22,9 @@ public class EsRequestHandlerFactoryTest {
     @Mock
     private FirehoseInstrumentation firehoseInstrumentation;
 
+    @Mock
+    private Parser protoParser;
+
     private MessageToJson jsonSerializer;
 
     @Before
@@ -32,7 +36,7 @@ public class EsRequestHandlerFactoryTest {
     public void shouldReturnInsertRequestHandler() {
         when(esSinkConfig.isSinkEsModeUpdateOnlyEnable()).thenReturn(false);
         EsRequestHandlerFactory esRequestHandlerFactory = new EsRequestHandlerFactory(esSinkConfig, firehoseInstrumentation, "id",
-                EsSinkMessageType.JSON, jsonSerializer, "customer_id", "booking", "order_number");
+                EsSinkMessageType.JSON, jsonSerializer, "customer_id", "booking", "order_number", null);
         EsRequestHandler requestHandler = esRequestHandlerFactory.getRequestHandler();
 
         verify(firehoseInstrumentation, times(1)).logInfo("ES request mode: {}", EsSinkRequestType.INSERT_OR_UPDATE);
@@ -43,10 +47,30 @@ public class EsRequestHandlerFactoryTest {
     public void shouldReturnUpdateRequestHandler() {
         when(esSinkConfig.isSinkEsModeUpdateOnlyEnable()).thenReturn(true);
         EsRequestHandlerFactory esRequestHandlerFactory = new EsRequestHandlerFactory(esSinkConfig, firehoseInstrumentation, "id",
-                EsSinkMessageType.JSON, jsonSerializer, "customer_id", "booking", "order_number");
+                EsSinkMessageType.JSON, jsonSerializer, "customer_id", "booking", "order_number", null);
         EsRequestHandler requestHandler = esRequestHandlerFactory.getRequestHandler();
 
         verify(firehoseInstrumentation, times(1)).logInfo("ES request mode: {}", EsSinkRequestType.UPDATE_ONLY);
         assertEquals(EsUpdateRequestHandler.class, requestHandler.getClass());
     }
+
+    @Test
+    public void shouldReturnProtoRequestHandlerForProtoMessageType() {
+        when(esSinkConfig.isSinkEsModeUpdateOnlyEnable()).thenReturn(false);
+        EsRequestHandlerFactory esRequestHandlerFactory = new EsRequestHandlerFactory(esSinkConfig, firehoseInstrumentation, "id",
+                EsSinkMessageType.PROTOBUF, jsonSerializer, "customer_id", "booking", "order_number", protoParser);
+        EsRequestHandler requestHandler = esRequestHandlerFactory.getRequestHandler();
+
+        assertEquals(EsProtoRequestHandler.class, requestHandler.getClass());
+    }
+
+    @Test
+    public void shouldReturnInsertRequestHandlerForJsonMessageTypeEvenWithProtoParser() {
+        when(esSinkConfig.isSinkEsModeUpdateOnlyEnable()).thenReturn(false);
+        EsRequestHandlerFactory esRequestHandlerFactory = new EsRequestHandlerFactory(esSinkConfig, firehoseInstrumentation, "id",
+                EsSinkMessageType.JSON, jsonSerializer, "customer_id", "booking", "order_number", protoParser);
+        EsRequestHandler requestHandler = esRequestHandlerFactory.getRequestHandler();
+
+        assertEquals(EsUpsertRequestHandler.class, requestHandler.getClass());
+    }
 }
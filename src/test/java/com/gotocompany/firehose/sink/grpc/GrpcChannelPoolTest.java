@@ -0,0 +1,69 @@
+package com.gotocompany.firehose.sink.grpc;
+
+import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
+import com.gotocompany.firehose.sink.grpc.client.GrpcChannelPool;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class GrpcChannelPoolTest {
+
+    @Mock
+    private ManagedChannel firstChannel;
+
+    @Mock
+    private ManagedChannel secondChannel;
+
+    @Mock
+    private MethodDescriptor.Marshaller<byte[]> marshaller;
+
+    @Mock
+    private FirehoseInstrumentation firehoseInstrumentation;
+
+    private GrpcChannelPool channelPool;
+    private MethodDescriptor<byte[], byte[]> methodDescriptor;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        methodDescriptor = MethodDescriptor.newBuilder(marshaller, marshaller)
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName("com.gotocompany.firehose.consumer.TestServer/TestRpcMethod")
+                .build();
+        channelPool = new GrpcChannelPool(Arrays.asList(firstChannel, secondChannel), firehoseInstrumentation);
+    }
+
+    @Test
+    public void shouldSpreadCallsRoundRobinAcrossChannels() {
+        channelPool.newCall(methodDescriptor, CallOptions.DEFAULT);
+        channelPool.newCall(methodDescriptor, CallOptions.DEFAULT);
+        channelPool.newCall(methodDescriptor, CallOptions.DEFAULT);
+
+        verify(firstChannel, times(2)).newCall(methodDescriptor, CallOptions.DEFAULT);
+        verify(secondChannel, times(1)).newCall(methodDescriptor, CallOptions.DEFAULT);
+        verify(firehoseInstrumentation, times(2)).captureGrpcChannelCall("channel=0");
+        verify(firehoseInstrumentation, times(1)).captureGrpcChannelCall("channel=1");
+    }
+
+    @Test
+    public void shouldShutdownAllChannels() {
+        channelPool.shutdown();
+
+        verify(firstChannel, times(1)).shutdown();
+        verify(secondChannel, times(1)).shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionForEmptyPool() {
+        new GrpcChannelPool(Collections.emptyList(), firehoseInstrumentation);
+    }
+}
@@ -1,9 +1,12 @@
 package com.gotocompany.firehose.sink.grpc;
 
 import com.gotocompany.firehose.config.GrpcSinkConfig;
+import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.grpc.client.GrpcClient;
 import com.gotocompany.firehose.consumer.Error;
+import com.gotocompany.firehose.consumer.TestGrpcBatchRequest;
+import com.gotocompany.firehose.consumer.TestGrpcBatchResponse;
 import com.gotocompany.firehose.consumer.TestGrpcRequest;
 import com.gotocompany.firehose.consumer.TestGrpcResponse;
 import com.gotocompany.firehose.consumer.TestServerGrpc;
@@ -25,6 +28,7 @@ import org.mockito.stubbing.Stubber;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +46,8 @@ public class GrpcClientTest {
     private RecordHeaders headers;
     private static final List<String> HEADER_KEYS = Arrays.asList("test-header-key-1", "test-header-key-2");
     private HeaderTestInterceptor headerTestInterceptor;
+    private Map<String, String> config;
+    private ManagedChannel managedChannel;
 
     @Before
     public void setup() throws IOException {
@@ -54,7 +60,7 @@ public class GrpcClientTest {
                 .addService(serviceDefinition)
                 .build()
                 .start();
-        Map<String, String> config = new HashMap<>();
+        config = new HashMap<>();
         config.put("SINK_GRPC_SERVICE_HOST", "localhost");
         config.put("SINK_GRPC_SERVICE_PORT", "5000");
         config.put("SINK_GRPC_METHOD_URL", "com.gotocompany.firehose.consumer.TestServer/TestRpcMethod");
@@ -62,7 +68,7 @@ public class GrpcClientTest {
 
         GrpcSinkConfig grpcSinkConfig = ConfigFactory.create(GrpcSinkConfig.class, config);
         StencilClient stencilClient = StencilClientFactory.getClient();
-        ManagedChannel managedChannel = ManagedChannelBuilder.forAddress(grpcSinkConfig.getSinkGrpcServiceHost(), grpcSinkConfig.getSinkGrpcServicePort()).usePlaintext().build();
+        managedChannel = ManagedChannelBuilder.forAddress(grpcSinkConfig.getSinkGrpcServiceHost(), grpcSinkConfig.getSinkGrpcServicePort()).usePlaintext().build();
         grpcClient = new GrpcClient(firehoseInstrumentation, grpcSinkConfig, managedChannel, stencilClient);
         headers = new RecordHeaders();
     }
@@ -166,6 +172,109 @@ public class GrpcClientTest {
         assertFalse(Boolean.parseBoolean(String.valueOf(response.getField(response.getDescriptorForType().findFieldByName("success")))));
     }
 
+    @Test
+    public void shouldCallTheGivenRpcMethodAsynchronouslyWithHeaders() throws Exception {
+        doAnswerProtoReponse(TestGrpcResponse.newBuilder()
+                .setSuccess(true)
+                .build()).when(testGrpcService).testRpcMethod(any(TestGrpcRequest.class), any());
+        TestGrpcRequest request = TestGrpcRequest.newBuilder()
+                .setField1("field1")
+                .setField2("field2")
+                .build();
+        headers.add(new RecordHeader(HEADER_KEYS.get(0), "test-value-1".getBytes()));
+        headers.add(new RecordHeader(HEADER_KEYS.get(1), "test-value-2".getBytes()));
+
+        DynamicMessage response = grpcClient.executeAsync(request.toByteArray(), headers).get();
+
+        assertTrue(Boolean.parseBoolean(String.valueOf(response.getField(TestGrpcResponse.getDescriptor().findFieldByName("success")))));
+        assertEquals(Arrays.asList("test-value-1", "test-value-2"), headerTestInterceptor.getKeyValues());
+    }
+
+    @Test
+    public void shouldCompleteWithErrorResponseWhenAsynchronousCallFails() throws Exception {
+        doThrow(new RuntimeException("error")).when(testGrpcService).testRpcMethod(any(TestGrpcRequest.class), any());
+        TestGrpcRequest request = TestGrpcRequest.newBuilder()
+                .setField1("field1")
+                .setField2("field2")
+                .build();
+
+        DynamicMessage response = grpcClient.executeAsync(request.toByteArray(), headers).get();
+
+        assertFalse(Boolean.parseBoolean(String.valueOf(response.getField(response.getDescriptorForType().findFieldByName("success")))));
+    }
+    @Test
+    public void shouldSendBatchOverOneClientStreamingCall() {
+        List<TestGrpcRequest> receivedRequests = new ArrayList<>();
+        doAnswer(invocation -> {
+            StreamObserver<TestGrpcBatchResponse> responseObserver = (StreamObserver<TestGrpcBatchResponse>) invocation.getArguments()[0];
+            return new StreamObserver<TestGrpcRequest>() {
+                @Override
+                public void onNext(TestGrpcRequest request) {
+                    receivedRequests.add(request);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onNext(TestGrpcBatchResponse.newBuilder().setSuccess(false).addFailedIndexes(1).build());
+                    responseObserver.onCompleted();
+                }
+            };
+        }).when(testGrpcService).testClientStreamingMethod(any());
+        GrpcClient batchClient = createBatchClient("CLIENT_STREAMING", "com.gotocompany.firehose.consumer.TestServer/TestClientStreamingMethod");
+
+        List<Integer> failedIndexes = batchClient.executeBatch(Arrays.asList(createMessage("a"), createMessage("b"), createMessage("c")));
+
+        assertEquals(Collections.singletonList(1), failedIndexes);
+        assertEquals(3, receivedRequests.size());
+        assertEquals("c", receivedRequests.get(2).getField1());
+    }
+
+    @Test
+    public void shouldSendBatchInOneEnvelopeMessage() {
+        List<TestGrpcBatchRequest> receivedRequests = new ArrayList<>();
+        doAnswer(invocation -> {
+            receivedRequests.add((TestGrpcBatchRequest) invocation.getArguments()[0]);
+            StreamObserver<TestGrpcBatchResponse> responseObserver = (StreamObserver<TestGrpcBatchResponse>) invocation.getArguments()[1];
+            responseObserver.onNext(TestGrpcBatchResponse.newBuilder().setSuccess(true).build());
+            responseObserver.onCompleted();
+            return null;
+        }).when(testGrpcService).testBatchMethod(any(TestGrpcBatchRequest.class), any());
+        GrpcClient batchClient = createBatchClient("ENVELOPE", "com.gotocompany.firehose.consumer.TestServer/TestBatchMethod");
+
+        List<Integer> failedIndexes = batchClient.executeBatch(Arrays.asList(createMessage("a"), createMessage("b")));
+
+        assertTrue(failedIndexes.isEmpty());
+        assertEquals(1, receivedRequests.size());
+        assertEquals(Arrays.asList(TestGrpcRequest.newBuilder().setField1("a").build(), TestGrpcRequest.newBuilder().setField1("b").build()),
+                receivedRequests.get(0).getRequestsList());
+    }
+
+    @Test
+    public void shouldFailWholeBatchWhenBatchCallFails() {
+        doThrow(new RuntimeException("error")).when(testGrpcService).testBatchMethod(any(TestGrpcBatchRequest.class), any());
+        GrpcClient batchClient = createBatchClient("ENVELOPE", "com.gotocompany.firehose.consumer.TestServer/TestBatchMethod");
+
+        List<Integer> failedIndexes = batchClient.executeBatch(Arrays.asList(createMessage("a"), createMessage("b")));
+
+        assertEquals(Arrays.asList(0, 1), failedIndexes);
+    }
+
+    private GrpcClient createBatchClient(String batchMode, String methodUrl) {
+        config.put("SINK_GRPC_METHOD_URL", methodUrl);
+        config.put("SINK_GRPC_RESPONSE_SCHEMA_PROTO_CLASS", "com.gotocompany.firehose.consumer.TestGrpcBatchResponse");
+        config.put("SINK_GRPC_BATCH_MODE", batchMode);
+        config.put("SINK_GRPC_BATCH_RESPONSE_FAILED_INDEX_FIELD", "failed_indexes");
+        GrpcSinkConfig grpcSinkConfig = ConfigFactory.create(GrpcSinkConfig.class, config);
+        return new GrpcClient(Mockito.mock(FirehoseInstrumentation.class), grpcSinkConfig, managedChannel, StencilClientFactory.getClient());
+    }
+
+    private Message createMessage(String field1) {
+        return new Message(null, TestGrpcRequest.newBuilder().setField1(field1).build().toByteArray(), "topic", 0, 0);
+    }
 
     private <T extends AbstractMessage> Stubber doAnswerProtoReponse(T response) {
         return doAnswer(invocation -> {
@@ -59,4 +59,18 @@ public class GrpcSinkFactoryTest {
         Assert.assertNotNull(sink);
         server.shutdownNow();
     }
+
+    @Test
+    public void shouldCreateSinkWithChannelPoolAndKeepalive() {
+        Map<String, String> config = new HashMap<>();
+        config.put("SINK_GRPC_METHOD_URL", "com.gotocompany.firehose.consumer.TestServer/TestRpcMethod");
+        config.put("SINK_GRPC_SERVICE_TARGET", "dns:///localhost:5000");
+        config.put("SINK_GRPC_LOAD_BALANCING_POLICY", "round_robin");
+        config.put("SINK_GRPC_CHANNEL_POOL_SIZE", "2");
+        config.put("SINK_GRPC_KEEPALIVE_TIME_MS", "30000");
+
+        Sink sink = GrpcSinkFactory.create(config, statsDReporter, stencilClient);
+
+        Assert.assertNotNull(sink);
+    }
 }
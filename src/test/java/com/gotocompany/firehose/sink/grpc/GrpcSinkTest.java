@@ -15,8 +15,10 @@ import org.junit.Test;
 import org.mockito.Mock;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -83,6 +85,41 @@ public class GrpcSinkTest {
         verify(firehoseInstrumentation, times(1)).logDebug("Failed messages count: {}", 1);
     }
 
+    @Test
+    public void shouldSendMessagesAsynchronouslyAndReturnFailedMessages() throws Exception {
+        Message successMessage = new Message(null, new byte[]{1}, "topic", 0, 1);
+        Message failureMessage = new Message(null, new byte[]{2}, "topic", 0, 2);
+        TestGrpcResponse successResponse = TestGrpcResponse.newBuilder().setSuccess(true).build();
+        TestGrpcResponse failureResponse = TestGrpcResponse.newBuilder().setSuccess(false).build();
+        when(grpcClient.executeAsync(eq(successMessage.getLogMessage()), any()))
+                .thenReturn(CompletableFuture.completedFuture(DynamicMessage.parseFrom(TestGrpcResponse.getDescriptor(), successResponse.toByteArray())));
+        when(grpcClient.executeAsync(eq(failureMessage.getLogMessage()), any()))
+                .thenReturn(CompletableFuture.completedFuture(DynamicMessage.parseFrom(TestGrpcResponse.getDescriptor(), failureResponse.toByteArray())));
+        sink = new GrpcSink(firehoseInstrumentation, grpcClient, stencilClient, 2);
+
+        List<Message> failedMessages = sink.pushMessage(Arrays.asList(successMessage, failureMessage, successMessage));
+
+        assertEquals(Collections.singletonList(failureMessage), failedMessages);
+        verify(grpcClient, times(3)).executeAsync(any(), any());
+        verify(grpcClient, never()).execute(any(), any());
+        verify(firehoseInstrumentation, times(1)).logDebug("Failed messages count: {}", 1);
+    }
+
+    @Test
+    public void shouldReturnFailedMessagesOfBatchCall() throws Exception {
+        Message firstMessage = new Message(null, new byte[]{1}, "topic", 0, 1);
+        Message secondMessage = new Message(null, new byte[]{2}, "topic", 0, 2);
+        List<Message> batch = Arrays.asList(firstMessage, secondMessage);
+        when(grpcClient.isBatchEnabled()).thenReturn(true);
+        when(grpcClient.executeBatch(batch)).thenReturn(Collections.singletonList(1));
+
+        List<Message> failedMessages = sink.pushMessage(batch);
+
+        assertEquals(Collections.singletonList(secondMessage), failedMessages);
+        verify(grpcClient, never()).execute(any(), any());
+        verify(firehoseInstrumentation, times(1)).logDebug("Failed messages count: {}", 1);
+    }
+
     @Test
     public void shouldCloseStencilClient() throws IOException {
         sink = new GrpcSink(firehoseInstrumentation, grpcClient, stencilClient);
@@ -18,7 +18,6 @@ import com.gotocompany.stencil.client.StencilClient;
 import com.gotocompany.stencil.Parser;
 import org.aeonbits.owner.ConfigFactory;
 import org.influxdb.InfluxDB;
-import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +27,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
@@ -116,13 +116,12 @@ public class InfluxSinkTest {
 
         sink = new InfluxSink(firehoseInstrumentation, "influx", config, stencilClient.getParser(config.getInputSchemaProtoClass()), client, stencilClient);
 
-        ArgumentCaptor<BatchPoints> batchPointsArgumentCaptor = ArgumentCaptor.forClass(BatchPoints.class);
+        ArgumentCaptor<String> recordsArgumentCaptor = ArgumentCaptor.forClass(String.class);
 
         sink.pushMessage(messages);
-        verify(client, times(1)).write(batchPointsArgumentCaptor.capture());
-        List<BatchPoints> batchPointsList = batchPointsArgumentCaptor.getAllValues();
+        verify(client, times(1)).write(eq(databaseName), eq("autogen"), eq(InfluxDB.ConsistencyLevel.ONE), recordsArgumentCaptor.capture());
 
-        assertEquals(expectedPoint.lineProtocol(), batchPointsList.get(0).getPoints().get(0).lineProtocol());
+        assertEquals(expectedPoint.lineProtocol(), recordsArgumentCaptor.getValue());
     }
 
     @Test
@@ -146,16 +145,31 @@ public class InfluxSinkTest {
         props.setProperty("SINK_INFLUX_TAG_NAME_PROTO_INDEX_MAPPING", emptyTagNameIndexMapping);
         config = ConfigFactory.create(InfluxSinkConfig.class, props);
         sink = new InfluxSink(firehoseInstrumentation, "influx", config, stencilClient.getParser(config.getInputSchemaProtoClass()), client, stencilClient);
-        ArgumentCaptor<BatchPoints> batchPointsArgumentCaptor = ArgumentCaptor.forClass(BatchPoints.class);
+        ArgumentCaptor<String> recordsArgumentCaptor = ArgumentCaptor.forClass(String.class);
 
         sink.pushMessage(messages);
         verify(firehoseInstrumentation, times(1)).capturePreExecutionLatencies(messages);
         verify(firehoseInstrumentation, times(1)).startExecution();
         verify(firehoseInstrumentation, times(1)).logInfo("Preparing {} messages", messages.size());
-        verify(client, times(1)).write(batchPointsArgumentCaptor.capture());
-        List<BatchPoints> batchPointsList = batchPointsArgumentCaptor.getAllValues();
+        verify(client, times(1)).write(eq(databaseName), eq("autogen"), eq(InfluxDB.ConsistencyLevel.ONE), recordsArgumentCaptor.capture());
 
-        assertEquals(expectedPoint.lineProtocol(), batchPointsList.get(0).getPoints().get(0).lineProtocol());
+        assertEquals(expectedPoint.lineProtocol(), recordsArgumentCaptor.getValue());
+    }
+
+    @Test
+    public void shouldWriteOneLinePerMessage() throws DeserializerException, IOException {
+        setupFieldNameIndexMappingProperties();
+        setupTagNameIndexMappingProperties();
+        config = ConfigFactory.create(InfluxSinkConfig.class, props);
+        sink = new InfluxSink(firehoseInstrumentation, "influx", config, stencilClient.getParser(config.getInputSchemaProtoClass()), client, stencilClient);
+        ArgumentCaptor<String> recordsArgumentCaptor = ArgumentCaptor.forClass(String.class);
+
+        sink.pushMessage(Arrays.asList(message, message));
+        sink.pushMessage(messages);
+
+        verify(client, times(2)).write(eq(databaseName), eq("autogen"), eq(InfluxDB.ConsistencyLevel.ONE), recordsArgumentCaptor.capture());
+        String line = pointBuilder.tag("driver_id", driverId).build().lineProtocol();
+        assertEquals(Arrays.asList(line + "\n" + line, line), recordsArgumentCaptor.getAllValues());
     }
 
     @Test
@@ -179,21 +193,19 @@ public class InfluxSinkTest {
     }
 
     @Test
-    public void shouldLogDataPointAndBatchPoints() throws IOException, DeserializerException {
+    public void shouldLogBatchPoints() throws IOException, DeserializerException {
         setupFieldNameIndexMappingProperties();
         setupTagNameIndexMappingProperties();
         config = ConfigFactory.create(InfluxSinkConfig.class, props);
 
         sink = new InfluxSink(firehoseInstrumentation, "influx", config, stencilClient.getParser(config.getInputSchemaProtoClass()), client, stencilClient);
-        ArgumentCaptor<BatchPoints> batchPointsArgumentCaptor = ArgumentCaptor.forClass(BatchPoints.class);
+        ArgumentCaptor<String> recordsArgumentCaptor = ArgumentCaptor.forClass(String.class);
 
         sink.pushMessage(messages);
-        verify(client, times(1)).write(batchPointsArgumentCaptor.capture());
-        List<BatchPoints> batchPointsList = batchPointsArgumentCaptor.getAllValues();
+        verify(client, times(1)).write(eq(databaseName), eq("autogen"), eq(InfluxDB.ConsistencyLevel.ONE), recordsArgumentCaptor.capture());
 
         verify(firehoseInstrumentation, times(1)).logInfo("Preparing {} messages", messages.size());
-        verify(firehoseInstrumentation, times(1)).logDebug("Data point: {}", batchPointsList.get(0).getPoints().get(0).toString());
-        verify(firehoseInstrumentation, times(1)).logDebug("Batch points: {}", batchPointsList.get(0).toString());
+        verify(firehoseInstrumentation, times(1)).logDebug("Batch points: {}", recordsArgumentCaptor.getValue());
     }
 
     private void setupFieldNameIndexMappingProperties() {
@@ -0,0 +1,95 @@
+package com.gotocompany.firehose.sink.influxdb.builder;
+
+import com.gotocompany.firehose.config.InfluxSinkConfig;
+import com.gotocompany.firehose.consumer.TestFeedbackLogMessage;
+import com.gotocompany.firehose.consumer.TestFeedbackSource;
+import com.gotocompany.firehose.exception.ConfigurationException;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import org.aeonbits.owner.ConfigFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineProtocolEncoderTest {
+
+    private Properties influxConfigProps;
+
+    @Before
+    public void setUp() {
+        influxConfigProps = new Properties();
+        influxConfigProps.setProperty("SINK_INFLUX_MEASUREMENT_NAME", "test_point_builder");
+        influxConfigProps.setProperty("SINK_INFLUX_PROTO_EVENT_TIMESTAMP_INDEX", "2");
+        influxConfigProps.setProperty("SINK_INFLUX_DB_NAME", "test");
+        influxConfigProps.setProperty("INPUT_SCHEMA_PROTO_CLASS", TestFeedbackLogMessage.class.getName());
+        influxConfigProps.setProperty("SINK_INFLUX_FIELD_NAME_PROTO_INDEX_MAPPING",
+                "{ \"2\": \"event_timestamp\", \"7\": \"tip_amount\", \"6\": \"feedback_comment\", \"10\": \"feedback_source\", \"15\": { \"1\": \"order_completion_time_seconds\" } }");
+        influxConfigProps.setProperty("SINK_INFLUX_TAG_NAME_PROTO_INDEX_MAPPING", "{ \"4\": \"customer_id\", \"3\": \"driver_id\", \"15\": \"order_completion_time\" }");
+    }
+
+    private DynamicMessage createMessage(String customerId, String feedbackComment) throws InvalidProtocolBufferException {
+        TestFeedbackLogMessage feedbackLogMessage = TestFeedbackLogMessage.newBuilder()
+                .setCustomerId(customerId)
+                .setDriverId("DRIVER")
+                .setTipAmount(3.14f)
+                .setFeedbackComment(feedbackComment)
+                .setFeedbackSource(TestFeedbackSource.Enum.DRIVER)
+                .setEventTimestamp(Timestamp.newBuilder().setSeconds(1000000).setNanos(500000000))
+                .setOrderCompletionTime(Timestamp.newBuilder().setSeconds(12345))
+                .build();
+        return DynamicMessage.parseFrom(TestFeedbackLogMessage.getDescriptor(), feedbackLogMessage.toByteArray());
+    }
+
+    @Test
+    public void shouldEncodeSameLineAsPointBuilder() throws InvalidProtocolBufferException {
+        InfluxSinkConfig influxSinkConfig = ConfigFactory.create(InfluxSinkConfig.class, influxConfigProps);
+        DynamicMessage message = createMessage("CUSTOMER", "good");
+        StringBuilder buffer = new StringBuilder();
+
+        new LineProtocolEncoder(influxSinkConfig).encode(message, buffer);
+
+        assertEquals(new PointBuilder(influxSinkConfig).buildPoint(message).lineProtocol(), buffer.toString());
+        assertEquals("test_point_builder,customer_id=CUSTOMER,driver_id=DRIVER,order_completion_time=12345000 "
+                + "event_timestamp=1000000500i,feedback_comment=\"good\",feedback_source=\"DRIVER\","
+                + "order_completion_time_seconds=12345i,tip_amount=3.140000104904175 1000000500000000", buffer.toString());
+    }
+
+    @Test
+    public void shouldEscapeTagsAndStringFields() throws InvalidProtocolBufferException {
+        influxConfigProps.setProperty("SINK_INFLUX_MEASUREMENT_NAME", "feedback measure");
+        InfluxSinkConfig influxSinkConfig = ConfigFactory.create(InfluxSinkConfig.class, influxConfigProps);
+        StringBuilder buffer = new StringBuilder();
+
+        new LineProtocolEncoder(influxSinkConfig).encode(createMessage("CUSTOMER 1,a=b", "very \"good\""), buffer);
+
+        assertEquals("feedback\\ measure,customer_id=CUSTOMER\\ 1\\,a\\=b,driver_id=DRIVER,order_completion_time=12345000 "
+                + "event_timestamp=1000000500i,feedback_comment=\"very \\\"good\\\"\",feedback_source=\"DRIVER\","
+                + "order_completion_time_seconds=12345i,tip_amount=3.140000104904175 1000000500000000", buffer.toString());
+    }
+
+    @Test
+    public void shouldSeparateLinesWithNewLine() throws InvalidProtocolBufferException {
+        InfluxSinkConfig influxSinkConfig = ConfigFactory.create(InfluxSinkConfig.class, influxConfigProps);
+        LineProtocolEncoder encoder = new LineProtocolEncoder(influxSinkConfig);
+        StringBuilder buffer = new StringBuilder();
+
+        encoder.encode(createMessage("CUSTOMER-1", "good"), buffer);
+        encoder.encode(createMessage("CUSTOMER-2", "bad"), buffer);
+
+        String[] lines = buffer.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(new PointBuilder(influxSinkConfig).buildPoint(createMessage("CUSTOMER-2", "bad")).lineProtocol(), lines[1]);
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void shouldThrowExceptionWhenFieldMappingIsEmpty() throws InvalidProtocolBufferException {
+        influxConfigProps.setProperty("SINK_INFLUX_FIELD_NAME_PROTO_INDEX_MAPPING", "{}");
+        InfluxSinkConfig influxSinkConfig = ConfigFactory.create(InfluxSinkConfig.class, influxConfigProps);
+
+        new LineProtocolEncoder(influxSinkConfig).encode(createMessage("CUSTOMER", "good"), new StringBuilder());
+    }
+}
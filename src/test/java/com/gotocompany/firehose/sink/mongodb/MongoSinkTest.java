@@ -1,6 +1,7 @@
 package com.gotocompany.firehose.sink.mongodb;
 
 import com.gotocompany.firehose.config.enums.SinkType;
+import com.gotocompany.depot.error.ErrorType;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.mongodb.client.MongoSinkClient;
@@ -114,8 +115,10 @@ public class MongoSinkTest {
         when(mongoSinkClient.processRequest(any())).thenReturn(writeErrors);
         List<Message> failedMessages = mongoSink.execute();
         assertEquals(2, failedMessages.size());
-        assertEquals(this.messages.get(0), failedMessages.get(0));
-        assertEquals(this.messages.get(1), failedMessages.get(1));
+        assertEquals(this.messages.get(0).getOffset(), failedMessages.get(0).getOffset());
+        assertEquals(this.messages.get(1).getOffset(), failedMessages.get(1).getOffset());
+        assertEquals(ErrorType.DEFAULT_ERROR, failedMessages.get(0).getErrorInfo().getErrorType());
+        assertEquals("Duplicate Key Error", failedMessages.get(0).getErrorInfo().getException().getMessage());
     }
 
     @Test
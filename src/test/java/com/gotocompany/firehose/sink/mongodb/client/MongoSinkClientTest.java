@@ -10,6 +10,7 @@ import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.WriteModel;
@@ -56,6 +57,7 @@ public class MongoSinkClientTest {
 
         mongoRetryStatusCodeBlacklist.add(11000);
         mongoRetryStatusCodeBlacklist.add(502);
+        when(mongoSinkConfig.isSinkMongoBulkWriteOrderedEnable()).thenReturn(true);
         request = new ArrayList<>();
 
         request.add(new ReplaceOneModel<>(
@@ -72,7 +74,7 @@ public class MongoSinkClientTest {
     public void shouldReturnEmptyArrayListWhenBulkResponseExecutedSuccessfully() {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 1, 1, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 1, 1, 0));
         List<BulkWriteError> nonBlacklistedErrors = mongoSinkClient.processRequest(request);
         Assert.assertEquals(0, nonBlacklistedErrors.size());
     }
@@ -86,7 +88,7 @@ public class MongoSinkClientTest {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 new ArrayList<>(), mongoClient, mongoSinkConfig);
 
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
         List<BulkWriteError> nonBlacklistedErrors = mongoSinkClient.processRequest(request);
         Assert.assertEquals(writeErrors.get(0), nonBlacklistedErrors.get(0));
         Assert.assertEquals(writeErrors.get(1), nonBlacklistedErrors.get(1));
@@ -100,7 +102,7 @@ public class MongoSinkClientTest {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
         List<BulkWriteError> nonBlacklistedErrors = mongoSinkClient.processRequest(request);
         Assert.assertEquals(writeErrors.get(0), nonBlacklistedErrors.get(0));
         Assert.assertEquals(writeErrors.get(1), nonBlacklistedErrors.get(1));
@@ -113,12 +115,12 @@ public class MongoSinkClientTest {
         List<BulkWriteError> writeErrors = Arrays.asList(writeError1, writeError2);
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(2)).logWarn("Non-retriable error due to response status: {} is under blacklisted status code", 11000);
         verify(firehoseInstrumentation, times(2)).logInfo("Message dropped because of status code: 11000");
-        verify(firehoseInstrumentation, times(2)).incrementCounter("firehose_sink_messages_drop_total", "cause=Duplicate Key Error");
+        verify(firehoseInstrumentation, times(1)).captureCount("firehose_sink_messages_drop_total", 2L, "cause=Duplicate Key Error");
     }
 
     @Test
@@ -128,12 +130,12 @@ public class MongoSinkClientTest {
         List<BulkWriteError> writeErrors = Arrays.asList(writeError1, writeError2);
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logWarn("Non-retriable error due to response status: {} is under blacklisted status code", 11000);
         verify(firehoseInstrumentation, times(1)).logInfo("Message dropped because of status code: 11000");
-        verify(firehoseInstrumentation, times(1)).incrementCounter("firehose_sink_messages_drop_total", "cause=Duplicate Key Error");
+        verify(firehoseInstrumentation, times(1)).captureCount("firehose_sink_messages_drop_total", 1L, "cause=Duplicate Key Error");
     }
 
     @Test
@@ -151,12 +153,12 @@ public class MongoSinkClientTest {
                 new Document(),
                 new ReplaceOptions().upsert(true)));
 
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0),
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0),
                 writeErrors, null, new ServerAddress()));
 
         List<BulkWriteError> nonBlacklistedErrors = mongoSinkClient.processRequest(request);
 
-        verify(firehoseInstrumentation, times(2)).incrementCounter(any(String.class), any(String.class));
+        verify(firehoseInstrumentation, times(2)).captureCount(any(String.class), any(Long.class), any(String.class));
         Assert.assertEquals(1, nonBlacklistedErrors.size());
         Assert.assertEquals(writeErrors.get(1), nonBlacklistedErrors.get(0));
 
@@ -169,7 +171,7 @@ public class MongoSinkClientTest {
         List<BulkWriteError> writeErrors = Arrays.asList(writeError1, writeError2);
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
         mongoSinkClient.processRequest(request);
         verify(firehoseInstrumentation, times(1)).logWarn("Bulk request failed count: {}", 2);
     }
@@ -180,7 +182,7 @@ public class MongoSinkClientTest {
 
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
-        when(mongoCollection.bulkWrite(request)).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0), writeErrors, null, new ServerAddress()));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(0)).logWarn("Bulk request failed count: {}", 2);
@@ -192,7 +194,7 @@ public class MongoSinkClientTest {
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 0, 0, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 0, 0, 0));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logWarn("Bulk request failed");
@@ -206,7 +208,7 @@ public class MongoSinkClientTest {
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 0, 1, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 0, 1, 0));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logWarn("Bulk request partially succeeded");
@@ -220,7 +222,7 @@ public class MongoSinkClientTest {
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(false, 0, 1, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(false, 0, 1, 0));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logWarn("Bulk Write operation was not acknowledged");
@@ -232,7 +234,7 @@ public class MongoSinkClientTest {
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 0, 2, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 0, 2, 0));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logInfo("Bulk request succeeded");
@@ -247,7 +249,7 @@ public class MongoSinkClientTest {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 2, 0, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 2, 0, 0));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logInfo("Bulk request succeeded");
@@ -263,7 +265,7 @@ public class MongoSinkClientTest {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 1, 1, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 1, 1, 0));
         mongoSinkClient.processRequest(request);
 
         verify(firehoseInstrumentation, times(1)).logInfo("Bulk request succeeded");
@@ -280,10 +282,10 @@ public class MongoSinkClientTest {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 0, 1, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 0, 1, 0));
         mongoSinkClient.processRequest(request);
 
-        verify(firehoseInstrumentation, times(1)).incrementCounter(Metrics.SINK_MESSAGES_DROP_TOTAL, "cause=Primary Key value not found");
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MESSAGES_DROP_TOTAL, 1L, "cause=Primary Key value not found");
     }
 
     @Test
@@ -292,11 +294,11 @@ public class MongoSinkClientTest {
         MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 3, 0, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 3, 0, 0));
         mongoSinkClient.processRequest(request);
 
-        verify(firehoseInstrumentation, times(3)).incrementCounter(Metrics.SINK_MONGO_INSERTED_TOTAL);
-        verify(firehoseInstrumentation, times(3)).incrementCounter(Metrics.SINK_MONGO_MODIFIED_TOTAL);
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MONGO_INSERTED_TOTAL, 3L);
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MONGO_MODIFIED_TOTAL, 3L);
 
     }
 
@@ -307,11 +309,11 @@ public class MongoSinkClientTest {
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 0, 3, 0));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 0, 3, 0));
         mongoSinkClient.processRequest(request);
 
-        verify(firehoseInstrumentation, times(3)).incrementCounter(Metrics.SINK_MONGO_UPDATED_TOTAL);
-        verify(firehoseInstrumentation, times(3)).incrementCounter(Metrics.SINK_MONGO_MODIFIED_TOTAL);
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MONGO_UPDATED_TOTAL, 3L);
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MONGO_MODIFIED_TOTAL, 3L);
     }
 
     @Test
@@ -321,14 +323,45 @@ public class MongoSinkClientTest {
                 mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
-        when(mongoCollection.bulkWrite(request)).thenReturn(new BulkWriteResultMock(true, 0, 0, 3));
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenReturn(new BulkWriteResultMock(true, 0, 0, 3));
         mongoSinkClient.processRequest(request);
 
-        verify(firehoseInstrumentation, times(3)).incrementCounter(Metrics.SINK_MONGO_INSERTED_TOTAL);
-        verify(firehoseInstrumentation, times(3)).incrementCounter(Metrics.SINK_MONGO_MODIFIED_TOTAL);
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MONGO_INSERTED_TOTAL, 3L);
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.SINK_MONGO_MODIFIED_TOTAL, 3L);
     }
 
 
+    @Test
+    public void shouldReturnUnexecutedWritesAfterFirstFailureOfOrderedBulkWrite() {
+        BulkWriteError writeError = new BulkWriteError(400, "DB not found", new BsonDocument(), 0);
+        MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
+                mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 0, 0),
+                Collections.singletonList(writeError), null, new ServerAddress()));
+
+        List<BulkWriteError> nonBlacklistedErrors = mongoSinkClient.processRequest(request);
+
+        Assert.assertEquals(2, nonBlacklistedErrors.size());
+        Assert.assertEquals(writeError, nonBlacklistedErrors.get(0));
+        Assert.assertEquals(MongoSinkClient.UNEXECUTED_WRITE_ERROR_CODE, nonBlacklistedErrors.get(1).getCode());
+        Assert.assertEquals(1, nonBlacklistedErrors.get(1).getIndex());
+    }
+
+    @Test
+    public void shouldReturnOnlyFailedWritesOfUnorderedBulkWrite() {
+        BulkWriteError writeError = new BulkWriteError(400, "DB not found", new BsonDocument(), 0);
+        MongoSinkClient mongoSinkClient = new MongoSinkClient(mongoCollection, firehoseInstrumentation,
+                mongoRetryStatusCodeBlacklist, mongoClient, mongoSinkConfig);
+        when(mongoSinkConfig.isSinkMongoBulkWriteOrderedEnable()).thenReturn(false);
+        when(mongoCollection.bulkWrite(eq(request), any(BulkWriteOptions.class))).thenThrow(new MongoBulkWriteException(new BulkWriteResultMock(false, 0, 1, 0),
+                Collections.singletonList(writeError), null, new ServerAddress()));
+
+        List<BulkWriteError> nonBlacklistedErrors = mongoSinkClient.processRequest(request);
+
+        Assert.assertEquals(Collections.singletonList(writeError), nonBlacklistedErrors);
+        verify(mongoCollection).bulkWrite(eq(request), argThat((BulkWriteOptions options) -> !options.isOrdered()));
+    }
+
     public static class BulkWriteResultMock extends BulkWriteResult {
 
         @Mock
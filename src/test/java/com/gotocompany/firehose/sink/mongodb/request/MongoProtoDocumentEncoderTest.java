@@ -0,0 +1,93 @@
+package com.gotocompany.firehose.sink.mongodb.request;
+
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Timestamp;
+import com.gotocompany.firehose.StatusBQ;
+import com.gotocompany.firehose.TestMessageBQ;
+import com.gotocompany.firehose.consumer.TestAggregatedSupplyMessage;
+import com.gotocompany.firehose.exception.DeserializerException;
+import com.gotocompany.stencil.StencilClientFactory;
+import com.gotocompany.stencil.client.StencilClient;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class MongoProtoDocumentEncoderTest {
+
+    private final StencilClient stencilClient = StencilClientFactory.getClient();
+
+    private MongoProtoDocumentEncoder encoder;
+    private DynamicMessage protoMessage;
+
+    @Before
+    public void setUp() {
+        encoder = new MongoProtoDocumentEncoder(stencilClient.getParser(TestMessageBQ.class.getName()), true);
+        TestMessageBQ message = TestMessageBQ.newBuilder()
+                .setOrderNumber("order-1")
+                .setCreatedAt(Timestamp.newBuilder().setSeconds(1600000000).setNanos(500000000).build())
+                .setStatus(StatusBQ.CANCELLED)
+                .setDiscount(1234567890123L)
+                .putCurrentState("state", "active")
+                .addAliases("alias-1")
+                .addAliases("alias-2")
+                .build();
+        protoMessage = encoder.parse(message.toByteArray());
+    }
+
+    @Test
+    public void shouldEncodeMessageToBsonDocument() {
+        BsonDocument document = encoder.encode(protoMessage);
+
+        assertEquals(new BsonString("order-1"), document.get("order_number"));
+        assertEquals(new BsonDateTime(1600000000500L), document.get("created_at"));
+        assertEquals(new BsonString("CANCELLED"), document.get("status"));
+        assertEquals(new BsonInt64(1234567890123L), document.get("discount"));
+        assertEquals(new BsonDocument("state", new BsonString("active")), document.get("current_state"));
+        assertEquals(new BsonArray(Arrays.asList(new BsonString("alias-1"), new BsonString("alias-2"))), document.get("aliases"));
+        assertFalse(document.containsKey("order_url"));
+    }
+
+    @Test
+    public void shouldUseJsonFieldNamesWhenProtoFieldNamesAreNotPreserved() {
+        MongoProtoDocumentEncoder camelCaseEncoder = new MongoProtoDocumentEncoder(stencilClient.getParser(TestMessageBQ.class.getName()), false);
+
+        BsonDocument document = camelCaseEncoder.encode(protoMessage);
+
+        assertTrue(document.containsKey("orderNumber"));
+        assertEquals("order-1", camelCaseEncoder.getPrimaryKeyValue(protoMessage, "orderNumber"));
+    }
+
+    @Test
+    public void shouldReturnPrimaryKeyValueAsText() {
+        MongoProtoDocumentEncoder supplyEncoder = new MongoProtoDocumentEncoder(stencilClient.getParser(TestAggregatedSupplyMessage.class.getName()), true);
+        DynamicMessage supplyMessage = supplyEncoder.parse(Base64.getDecoder().decode("CgYIyOm+xgUSBgiE6r7GBRgNIICAgIDA9/y0LigCMAM="));
+
+        assertEquals("13", supplyEncoder.getPrimaryKeyValue(supplyMessage, "s2_id_level"));
+        assertEquals("BIKE", supplyEncoder.getPrimaryKeyValue(supplyMessage, "vehicle_type"));
+        assertEquals("3", supplyEncoder.getPrimaryKeyValue(supplyMessage, "unique_drivers"));
+    }
+
+    @Test
+    public void shouldThrowExceptionForInvalidPrimaryKey() {
+        try {
+            encoder.getPrimaryKeyValue(protoMessage, "wrongKey");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Key: wrongKey not found in ESB Message", e.getMessage());
+        }
+    }
+
+    @Test(expected = DeserializerException.class)
+    public void shouldThrowDeserializerExceptionForInvalidPayload() {
+        encoder.parse("invalid-proto".getBytes());
+    }
+}
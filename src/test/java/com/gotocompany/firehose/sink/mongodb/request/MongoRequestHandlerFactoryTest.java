@@ -41,7 +41,7 @@ public class MongoRequestHandlerFactoryTest {
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(new Random().nextBoolean());
         MongoRequestHandlerFactory mongoRequestHandlerFactory = new MongoRequestHandlerFactory(mongoSinkConfig, firehoseInstrumentation, primaryKey,
-                MongoSinkMessageType.JSON, jsonSerializer);
+                MongoSinkMessageType.JSON, jsonSerializer, null);
         when(mongoSinkConfig.getKafkaRecordParserMode()).thenReturn("message");
         MongoRequestHandler requestHandler = mongoRequestHandlerFactory.getRequestHandler();
 
@@ -54,7 +54,7 @@ public class MongoRequestHandlerFactoryTest {
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(false);
         MongoRequestHandlerFactory mongoRequestHandlerFactory = new MongoRequestHandlerFactory(mongoSinkConfig, firehoseInstrumentation, primaryKey,
-                MongoSinkMessageType.JSON, jsonSerializer);
+                MongoSinkMessageType.JSON, jsonSerializer, null);
         when(mongoSinkConfig.getKafkaRecordParserMode()).thenReturn("message");
         MongoRequestHandler requestHandler = mongoRequestHandlerFactory.getRequestHandler();
 
@@ -68,7 +68,7 @@ public class MongoRequestHandlerFactoryTest {
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
         MongoRequestHandlerFactory mongoRequestHandlerFactory = new MongoRequestHandlerFactory(mongoSinkConfig, firehoseInstrumentation, primaryKey,
-                MongoSinkMessageType.JSON, jsonSerializer);
+                MongoSinkMessageType.JSON, jsonSerializer, null);
         when(mongoSinkConfig.getKafkaRecordParserMode()).thenReturn("message");
         MongoRequestHandler requestHandler = mongoRequestHandlerFactory.getRequestHandler();
 
@@ -81,7 +81,7 @@ public class MongoRequestHandlerFactoryTest {
         String primaryKey = "customer_id";
 
         MongoRequestHandlerFactory mongoRequestHandlerFactory = new MongoRequestHandlerFactory(mongoSinkConfig, firehoseInstrumentation, primaryKey,
-                MongoSinkMessageType.JSON, jsonSerializer);
+                MongoSinkMessageType.JSON, jsonSerializer, null);
         when(mongoSinkConfig.getKafkaRecordParserMode()).thenReturn("xyz");
 
         thrown.expect(IllegalArgumentException.class);
@@ -95,7 +95,7 @@ public class MongoRequestHandlerFactoryTest {
 
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(false);
         MongoRequestHandlerFactory mongoRequestHandlerFactory = new MongoRequestHandlerFactory(mongoSinkConfig, firehoseInstrumentation, primaryKey,
-                MongoSinkMessageType.JSON, jsonSerializer);
+                MongoSinkMessageType.JSON, jsonSerializer, null);
         when(mongoSinkConfig.getKafkaRecordParserMode()).thenReturn("message");
         MongoRequestHandler requestHandler = mongoRequestHandlerFactory.getRequestHandler();
 
@@ -108,7 +108,7 @@ public class MongoRequestHandlerFactoryTest {
         String primaryKey = null;
         when(mongoSinkConfig.isSinkMongoModeUpdateOnlyEnable()).thenReturn(true);
         MongoRequestHandlerFactory mongoRequestHandlerFactory = new MongoRequestHandlerFactory(mongoSinkConfig, firehoseInstrumentation, primaryKey,
-                MongoSinkMessageType.JSON, jsonSerializer);
+                MongoSinkMessageType.JSON, jsonSerializer, null);
 
         when(mongoSinkConfig.getKafkaRecordParserMode()).thenReturn("message");
         thrown.expect(IllegalArgumentException.class);
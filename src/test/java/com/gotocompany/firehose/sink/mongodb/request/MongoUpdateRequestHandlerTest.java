@@ -12,6 +12,8 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.mongodb.BasicDBObject;
 import com.mongodb.client.model.ReplaceOneModel;
 import com.gotocompany.firehose.consumer.TestAggregatedSupplyMessage;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
 import org.bson.Document;
 import org.json.simple.JSONObject;
 import org.junit.Before;
@@ -111,6 +113,19 @@ public class MongoUpdateRequestHandlerTest {
         assertEquals("3", outputMap.get("unique_drivers"));
     }
 
+    @Test
+    public void shouldReturnModelWithBsonPayloadWhenDocumentEncoderIsProvided() {
+        MongoProtoDocumentEncoder documentEncoder = new MongoProtoDocumentEncoder(stencilClient.getParser(TestAggregatedSupplyMessage.class.getName()), true);
+        MongoUpdateRequestHandler mongoUpdateRequestHandler = new MongoUpdateRequestHandler(MongoSinkMessageType.PROTOBUF, jsonSerializer, MongoSinkRequestType.UPDATE_ONLY,
+                "s2_id_level", "message", documentEncoder);
+
+        ReplaceOneModel<Document> request = mongoUpdateRequestHandler.getRequest(messageWithProto);
+        Document outputMap = request.getReplacement();
+        assertEquals(new Document("_id", "13"), request.getFilter());
+        assertEquals(new BsonString("BIKE"), outputMap.get("vehicle_type"));
+        assertEquals(new BsonInt64(3), outputMap.get("unique_drivers"));
+    }
+
     @Test
     public void shouldThrowJSONParseExceptionForInvalidJson() {
         MongoUpdateRequestHandler mongoUpdateRequestHandler = new MongoUpdateRequestHandler(MongoSinkMessageType.PROTOBUF, jsonSerializer, MongoSinkRequestType.UPDATE_ONLY,
@@ -12,6 +12,10 @@ import com.mongodb.BasicDBObject;
 import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.ReplaceOneModel;
 import com.gotocompany.firehose.consumer.TestAggregatedSupplyMessage;
+import org.bson.BsonDateTime;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
 import org.bson.Document;
 import org.json.simple.JSONObject;
 import org.junit.Before;
@@ -134,6 +138,32 @@ public class MongoUpsertRequestHandlerTest {
         assertEquals("3", outputMap.get("unique_drivers"));
     }
 
+    @Test
+    public void shouldReturnModelWithBsonPayloadWhenDocumentEncoderIsProvided() {
+        MongoProtoDocumentEncoder documentEncoder = new MongoProtoDocumentEncoder(stencilClient.getParser(TestAggregatedSupplyMessage.class.getName()), true);
+        MongoUpsertRequestHandler mongoUpsertRequestHandler = new MongoUpsertRequestHandler(MongoSinkMessageType.PROTOBUF, jsonSerializer, MongoSinkRequestType.UPSERT,
+                "s2_id_level", "message", documentEncoder);
+
+        ReplaceOneModel<Document> request = (ReplaceOneModel<Document>) mongoUpsertRequestHandler.getRequest(messageWithProto);
+        Document outputMap = request.getReplacement();
+        assertEquals("13", outputMap.get("_id"));
+        assertEquals(new Document("_id", "13"), request.getFilter());
+        assertEquals(new BsonString("BIKE"), outputMap.get("vehicle_type"));
+        assertEquals(new BsonInt64(3), outputMap.get("unique_drivers"));
+        assertTrue(outputMap.get("window_start_time") instanceof BsonDateTime);
+    }
+
+    @Test
+    public void shouldReturnInsertOneModelWithBsonPayloadForNullPrimaryKey() {
+        MongoProtoDocumentEncoder documentEncoder = new MongoProtoDocumentEncoder(stencilClient.getParser(TestAggregatedSupplyMessage.class.getName()), true);
+        MongoUpsertRequestHandler mongoUpsertRequestHandler = new MongoUpsertRequestHandler(MongoSinkMessageType.PROTOBUF, jsonSerializer, MongoSinkRequestType.UPSERT,
+                null, "message", documentEncoder);
+
+        InsertOneModel<Document> request = (InsertOneModel<Document>) mongoUpsertRequestHandler.getRequest(messageWithProto);
+        assertFalse(request.getDocument().containsKey("_id"));
+        assertEquals(new BsonInt32(13), request.getDocument().get("s2_id_level"));
+    }
+
     @Test
     public void shouldThrowJSONParseExceptionForInvalidJson() {
         MongoUpsertRequestHandler mongoUpsertRequestHandler = new MongoUpsertRequestHandler(MongoSinkMessageType.PROTOBUF, jsonSerializer, MongoSinkRequestType.UPSERT,
@@ -0,0 +1,157 @@
+package com.gotocompany.firehose.sink.prometheus.builder;
+
+import com.google.protobuf.Timestamp;
+import com.gotocompany.firehose.config.PromSinkConfig;
+import com.gotocompany.firehose.consumer.TestFeedbackLogMessage;
+import com.gotocompany.firehose.exception.ConfigurationException;
+import com.gotocompany.firehose.message.Message;
+import com.gotocompany.firehose.sink.prometheus.PromSinkConstants;
+import com.gotocompany.stencil.StencilClientFactory;
+import com.gotocompany.stencil.client.StencilClient;
+import cortexpb.Cortex;
+import org.aeonbits.owner.ConfigFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.Before;
+import org.junit.Test;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WriteRequestEncoderTest {
+
+    private final StencilClient stencilClient = StencilClientFactory.getClient();
+
+    private Properties promConfigProps;
+
+    @Before
+    public void setUp() {
+        promConfigProps = new Properties();
+        promConfigProps.setProperty("SINK_PROM_PROTO_EVENT_TIMESTAMP_INDEX", "2");
+        promConfigProps.setProperty("SINK_PROM_WITH_EVENT_TIMESTAMP", "true");
+        promConfigProps.setProperty("SINK_PROM_METRIC_NAME_PROTO_INDEX_MAPPING", "{\"7\": \"tip_amount\"}");
+        promConfigProps.setProperty("SINK_PROM_LABEL_NAME_PROTO_INDEX_MAPPING", "{\"4\": \"customer_id\"}");
+    }
+
+    private WriteRequestEncoder createEncoder() {
+        PromSinkConfig promSinkConfig = ConfigFactory.create(PromSinkConfig.class, promConfigProps);
+        return new WriteRequestEncoder(promSinkConfig, stencilClient.getParser(TestFeedbackLogMessage.class.getName()));
+    }
+
+    private Message createMessage(String customerId, float tipAmount, long seconds, long offset) {
+        return createMessage(customerId, tipAmount, seconds, 0, offset);
+    }
+
+    private Message createMessage(String customerId, float tipAmount, long seconds, int partition, long offset) {
+        TestFeedbackLogMessage feedbackLogMessage = TestFeedbackLogMessage.newBuilder()
+                .setCustomerId(customerId)
+                .setTipAmount(tipAmount)
+                .setEventTimestamp(Timestamp.newBuilder().setSeconds(seconds)).build();
+        return new Message(null, feedbackLogMessage.toByteArray(), "topic", partition, offset);
+    }
+
+    private Cortex.TimeSeries.Builder createTimeSeries(String customerId) {
+        return createTimeSeries(customerId, 0);
+    }
+
+    private Cortex.TimeSeries.Builder createTimeSeries(String customerId, int partition) {
+        return Cortex.TimeSeries.newBuilder()
+                .addLabels(Cortex.LabelPair.newBuilder().setName(PromSinkConstants.PROMETHEUS_LABEL_FOR_METRIC_NAME).setValue("tip_amount"))
+                .addLabels(Cortex.LabelPair.newBuilder().setName("customer_id").setValue(customerId))
+                .addLabels(Cortex.LabelPair.newBuilder().setName(PromSinkConstants.KAFKA_PARTITION).setValue(String.valueOf(partition)));
+    }
+
+    private byte[] uncompress(ByteArrayEntity entity) throws IOException {
+        return Snappy.uncompress(IOUtils.toByteArray(entity.getContent()));
+    }
+
+    @Test
+    public void shouldMergeSamplesOfTheSameSeries() throws IOException {
+        ByteArrayEntity entity = createEncoder().encode(Arrays.asList(
+                createMessage("CUSTOMER-1", 20, 2, 1),
+                createMessage("CUSTOMER-2", 30, 1, 2),
+                createMessage("CUSTOMER-1", 10, 0, 3)));
+
+        Cortex.WriteRequest expected = Cortex.WriteRequest.newBuilder()
+                .addTimeseries(createTimeSeries("CUSTOMER-1")
+                        .addSamples(Cortex.Sample.newBuilder().setValue(10).setTimestampMs(0))
+                        .addSamples(Cortex.Sample.newBuilder().setValue(20).setTimestampMs(2000)))
+                .addTimeseries(createTimeSeries("CUSTOMER-2")
+                        .addSamples(Cortex.Sample.newBuilder().setValue(30).setTimestampMs(1000)))
+                .build();
+
+        byte[] actual = uncompress(entity);
+        assertEquals(expected, Cortex.WriteRequest.parseFrom(actual));
+        assertArrayEquals(expected.toByteArray(), actual);
+    }
+
+    @Test
+    public void shouldReuseBufferAcrossBatches() throws IOException {
+        WriteRequestEncoder encoder = createEncoder();
+        encoder.encode(Arrays.asList(createMessage("CUSTOMER-1", 20, 2, 1), createMessage("CUSTOMER-2", 30, 1, 2)));
+
+        byte[] actual = uncompress(encoder.encode(Collections.singletonList(createMessage("CUSTOMER-3", 40, 3, 3))));
+
+        Cortex.WriteRequest expected = Cortex.WriteRequest.newBuilder()
+                .addTimeseries(createTimeSeries("CUSTOMER-3")
+                        .addSamples(Cortex.Sample.newBuilder().setValue(40).setTimestampMs(3000)))
+                .build();
+        assertEquals(expected, Cortex.WriteRequest.parseFrom(actual));
+    }
+
+    @Test
+    public void shouldKeepLabelSetsOfDifferentPartitionsApartAcrossBatches() throws IOException {
+        WriteRequestEncoder encoder = createEncoder();
+        encoder.encode(Collections.singletonList(createMessage("CUSTOMER-1", 20, 2, 0, 1)));
+
+        ByteArrayEntity entity = encoder.encode(Arrays.asList(
+                createMessage("CUSTOMER-1", 30, 1, 0, 2),
+                createMessage("CUSTOMER-1", 40, 3, 1, 1)));
+
+        Cortex.WriteRequest expected = Cortex.WriteRequest.newBuilder()
+                .addTimeseries(createTimeSeries("CUSTOMER-1", 0)
+                        .addSamples(Cortex.Sample.newBuilder().setValue(30).setTimestampMs(1000)))
+                .addTimeseries(createTimeSeries("CUSTOMER-1", 1)
+                        .addSamples(Cortex.Sample.newBuilder().setValue(40).setTimestampMs(3000)))
+                .build();
+        byte[] actual = uncompress(entity);
+        assertEquals(expected, Cortex.WriteRequest.parseFrom(actual));
+        assertEquals(Snappy.compress(expected.toByteArray()).length, entity.getContentLength());
+    }
+
+    @Test
+    public void shouldSortMetricNameLabelWithTheOtherLabels() throws IOException {
+        promConfigProps.setProperty("SINK_PROM_LABEL_NAME_PROTO_INDEX_MAPPING", "{\"4\": \"Customer_id\"}");
+
+        byte[] actual = uncompress(createEncoder().encode(Collections.singletonList(createMessage("CUSTOMER-1", 20, 2, 1))));
+
+        Cortex.WriteRequest expected = Cortex.WriteRequest.newBuilder()
+                .addTimeseries(Cortex.TimeSeries.newBuilder()
+                        .addLabels(Cortex.LabelPair.newBuilder().setName("Customer_id").setValue("CUSTOMER-1"))
+                        .addLabels(Cortex.LabelPair.newBuilder().setName(PromSinkConstants.PROMETHEUS_LABEL_FOR_METRIC_NAME).setValue("tip_amount"))
+                        .addLabels(Cortex.LabelPair.newBuilder().setName(PromSinkConstants.KAFKA_PARTITION).setValue("0"))
+                        .addSamples(Cortex.Sample.newBuilder().setValue(20).setTimestampMs(2000)))
+                .build();
+        assertEquals(expected, Cortex.WriteRequest.parseFrom(actual));
+        assertArrayEquals(expected.toByteArray(), actual);
+    }
+
+    @Test
+    public void shouldReturnEmptyRequest() throws IOException {
+        assertEquals(0, uncompress(createEncoder().encode(new ArrayList<>())).length);
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void shouldThrowExceptionWhenMetricMappingIsEmpty() throws IOException {
+        promConfigProps.remove("SINK_PROM_METRIC_NAME_PROTO_INDEX_MAPPING");
+
+        createEncoder().encode(Collections.singletonList(createMessage("CUSTOMER-1", 20, 2, 1)));
+    }
+}
@@ -5,8 +5,7 @@ import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 import com.gotocompany.firehose.sink.prometheus.PromSinkConstants;
 import com.gotocompany.firehose.sink.prometheus.builder.HeaderBuilder;
-import com.gotocompany.firehose.sink.prometheus.builder.RequestEntityBuilder;
-import com.gotocompany.firehose.sink.prometheus.builder.WriteRequestBuilder;
+import com.gotocompany.firehose.sink.prometheus.builder.WriteRequestEncoder;
 import cortexpb.Cortex;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
@@ -41,10 +40,7 @@ public class PromRequestTest {
     private HeaderBuilder headerBuilder;
 
     @Mock
-    private RequestEntityBuilder requestEntityBuilder;
-
-    @Mock
-    private WriteRequestBuilder writeRequestBuilder;
+    private WriteRequestEncoder writeRequestEncoder;
 
     private List<Message> messages;
 
@@ -78,10 +74,9 @@ public class PromRequestTest {
         URI uri = new URI(url);
         byte[] compressedBody = Snappy.compress(writeRequestBody.toByteArray());
         when(headerBuilder.build()).thenReturn(headerMap);
-        when(writeRequestBuilder.buildWriteRequest(messages)).thenReturn(writeRequestBody);
-        when(requestEntityBuilder.buildHttpEntity(writeRequestBody)).thenReturn(new ByteArrayEntity(compressedBody));
+        when(writeRequestEncoder.encode(messages)).thenReturn(new ByteArrayEntity(compressedBody));
 
-        PromRequest promRequest = new PromRequest(firehoseInstrumentation, headerBuilder, url, requestEntityBuilder, writeRequestBuilder);
+        PromRequest promRequest = new PromRequest(firehoseInstrumentation, headerBuilder, url, writeRequestEncoder);
         HttpEntityEnclosingRequestBase request = promRequest.build(messages).get(0);
 
         BasicHeader header1 = new BasicHeader(PromSinkConstants.CONTENT_ENCODING, PromSinkConstants.CONTENT_ENCODING_DEFAULT);
@@ -91,8 +86,7 @@ public class PromRequestTest {
         headers[1] = header2;
 
         verify(headerBuilder, times(1)).build();
-        verify(writeRequestBuilder, times(1)).buildWriteRequest(messages);
-        verify(requestEntityBuilder, times(1)).buildHttpEntity(writeRequestBody);
+        verify(writeRequestEncoder, times(1)).encode(messages);
 
         byte[] byteArrayIs = IOUtils.toByteArray(request.getEntity().getContent());
         byte[] uncompressedSnappy = Snappy.uncompress(byteArrayIs);
@@ -1,5 +1,6 @@
 package com.gotocompany.firehose.sinkdecorator;
 
+import com.gotocompany.firehose.config.enums.BackOffJitterType;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
 
 import org.junit.Before;
@@ -9,6 +10,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static java.lang.Math.toIntExact;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -75,4 +77,41 @@ public class ExponentialBackOffProviderTest {
         verify(firehoseInstrumentation, times(1)).logWarn("backing off for {} milliseconds ", (long) initialExpiryTimeInMS);
         verify(firehoseInstrumentation).captureSleepTime("firehose_retry_backoff_sleep_milliseconds", initialExpiryTimeInMS);
     }
+
+    @Test
+    public void shouldBackoffBetweenZeroAndExponentialTimeWithFullJitter() {
+        ExponentialBackOffProvider provider = new ExponentialBackOffProvider(initialExpiryTimeInMS, backOffRate,
+                maximumBackoffTimeInMS, firehoseInstrumentation, backOff, BackOffJitterType.FULL);
+
+        for (int i = 0; i < 100; i++) {
+            long delay = provider.calculateDelay(4);
+            assertTrue(delay >= 0 && delay <= 160);
+        }
+    }
+
+    @Test
+    public void shouldBackoffWithinInitialAndMaxTimeWithDecorrelatedJitter() {
+        ExponentialBackOffProvider provider = new ExponentialBackOffProvider(initialExpiryTimeInMS, backOffRate,
+                100, firehoseInstrumentation, backOff, BackOffJitterType.DECORRELATED);
+
+        long previousDelay = provider.calculateDelay(1, 0);
+        assertTrue(previousDelay >= initialExpiryTimeInMS && previousDelay <= 3 * initialExpiryTimeInMS);
+        for (int attemptCount = 2; attemptCount < 100; attemptCount++) {
+            long delay = provider.calculateDelay(attemptCount, previousDelay);
+            assertTrue(delay >= initialExpiryTimeInMS && delay <= Math.min(100, 3 * previousDelay));
+            previousDelay = delay;
+        }
+    }
+
+    @Test
+    public void shouldNotShareThePreviousBackoffOfRetrySequencesWithDecorrelatedJitter() {
+        ExponentialBackOffProvider provider = new ExponentialBackOffProvider(initialExpiryTimeInMS, backOffRate,
+                maximumBackoffTimeInMS, firehoseInstrumentation, backOff, BackOffJitterType.DECORRELATED);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(provider.calculateDelay(5, 10000) >= initialExpiryTimeInMS);
+            long delay = provider.calculateDelay(1, 0);
+            assertTrue(delay >= initialExpiryTimeInMS && delay <= 3 * initialExpiryTimeInMS);
+        }
+    }
 }
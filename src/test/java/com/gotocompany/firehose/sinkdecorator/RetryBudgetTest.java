@@ -0,0 +1,37 @@
+package com.gotocompany.firehose.sinkdecorator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void shouldAllowRetriesUpToMaxTokens() {
+        RetryBudget retryBudget = new RetryBudget(0.1, 10);
+
+        assertEquals(10, retryBudget.withdraw(15));
+        assertEquals(0, retryBudget.withdraw(1));
+    }
+
+    @Test
+    public void shouldDepositRatioOfFirstAttempts() {
+        RetryBudget retryBudget = new RetryBudget(0.1, 10);
+        retryBudget.withdraw(10);
+
+        retryBudget.deposit(25);
+
+        assertEquals(2, retryBudget.withdraw(5));
+        retryBudget.deposit(5);
+        assertEquals(1, retryBudget.withdraw(5));
+    }
+
+    @Test
+    public void shouldNotDepositBeyondMaxTokens() {
+        RetryBudget retryBudget = new RetryBudget(0.1, 10);
+
+        retryBudget.deposit(1000);
+
+        assertEquals(10, retryBudget.withdraw(100));
+    }
+}
@@ -2,6 +2,7 @@ package com.gotocompany.firehose.sinkdecorator;
 
 import com.gotocompany.firehose.config.DlqConfig;
 import com.gotocompany.firehose.config.ErrorConfig;
+import com.gotocompany.firehose.config.enums.BackOffJitterType;
 import com.gotocompany.firehose.error.ErrorHandler;
 import com.gotocompany.firehose.message.Message;
 import com.gotocompany.firehose.metrics.FirehoseInstrumentation;
@@ -23,6 +24,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -255,4 +257,34 @@ public class SinkWithDlqTest {
         verify(firehoseInstrumentation, times(10)).incrementCounter(Metrics.DLQ_RETRY_ATTEMPTS_TOTAL);
         verify(firehoseInstrumentation, times(1)).captureGlobalMessageMetrics(Metrics.MessageScope.DLQ, 0);
     }
+
+    @Test
+    public void shouldGrowDecorrelatedBackoffAcrossDlqRetryAttempts() throws IOException {
+        int initialDelay = 10;
+        int maxDelay = 100000;
+        when(dlqConfig.getDlqRetryMaxAttempts()).thenReturn(5);
+        when(dlqConfig.getDlqRetryFailAfterMaxAttemptEnable()).thenReturn(false);
+        Message messageWithError = new Message(message, new ErrorInfo(new IOException(), ErrorType.DESERIALIZATION_ERROR));
+        List<Message> messages = new ArrayList<>();
+        messages.add(messageWithError);
+        when(sinkWithRetry.pushMessage(messages)).thenReturn(messages);
+        when(dlqWriter.write(anyList())).thenReturn(messages);
+        BackOff backOff = mock(BackOff.class);
+        BackOffProvider decorrelatedBackOffProvider = spy(new ExponentialBackOffProvider(initialDelay, 2, maxDelay,
+                firehoseInstrumentation, backOff, BackOffJitterType.DECORRELATED));
+
+        SinkWithDlq sinkWithDlq = new SinkWithDlq(sinkWithRetry, dlqWriter, decorrelatedBackOffProvider, dlqConfig, errorHandler, firehoseInstrumentation);
+        sinkWithDlq.pushMessage(messages);
+
+        ArgumentCaptor<Long> delays = ArgumentCaptor.forClass(Long.class);
+        verify(backOff, times(5)).inMilliSeconds(delays.capture());
+        verify(decorrelatedBackOffProvider, times(1)).backOff(1, 0L);
+        for (int attempt = 2; attempt <= 5; attempt++) {
+            long previousDelay = delays.getAllValues().get(attempt - 2);
+            long delay = delays.getAllValues().get(attempt - 1);
+            verify(decorrelatedBackOffProvider, times(1)).backOff(attempt, previousDelay);
+            assertTrue(delay >= initialDelay && delay <= 3 * previousDelay);
+        }
+        verify(decorrelatedBackOffProvider, never()).backOff(anyInt());
+    }
 }
@@ -3,6 +3,7 @@ package com.gotocompany.firehose.sinkdecorator;
 import com.gotocompany.firehose.config.AppConfig;
 import com.gotocompany.firehose.config.ErrorConfig;
 import com.gotocompany.firehose.config.enums.InputSchemaType;
+import com.gotocompany.firehose.consumer.kafka.OffsetManager;
 import com.gotocompany.firehose.error.ErrorHandler;
 import com.gotocompany.firehose.exception.DeserializerException;
 import com.gotocompany.firehose.message.Message;
@@ -12,6 +13,8 @@ import com.gotocompany.firehose.sink.common.KeyOrMessageParser;
 import com.gotocompany.depot.error.ErrorInfo;
 import com.gotocompany.depot.error.ErrorType;
 import org.aeonbits.owner.ConfigFactory;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -20,6 +23,7 @@ import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -253,4 +257,162 @@ public class SinkWithRetryTest {
         assertEquals(1, args.get(1).size());
         assertEquals(messageWithError, args.get(1).get(0));
     }
+
+    private Message createFailedMessage(long offset) {
+        return new Message("key".getBytes(), "value".getBytes(), "topic", 1, offset, null, 0, 0, new ErrorInfo(null, ErrorType.DESERIALIZATION_ERROR));
+    }
+
+    private SinkWithRetry createParkingSink(OffsetManager offsetManager, long delayMillis) {
+        when(appConfig.getRetryParkingMaxMessages()).thenReturn(1);
+        when(appConfig.getRetryParkingMaxBytes()).thenReturn(1024L);
+        when(backOffProvider.calculateDelay(anyInt(), anyLong())).thenReturn(delayMillis);
+        return new SinkWithRetry(sinkDecorator, backOffProvider, firehoseInstrumentation, appConfig, parser, errorHandler, offsetManager, null);
+    }
+
+    @Test
+    public void shouldParkFailedMessagesAndCommitTheirOffsetsOnceRetried() throws Exception {
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(2);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage)).thenReturn(new ArrayList<>());
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 0);
+
+        List<Message> messageList = sinkWithRetry.pushMessage(Arrays.asList(createFailedMessage(1), failedMessage, createFailedMessage(3)));
+
+        assertTrue(messageList.isEmpty());
+        assertTrue(sinkWithRetry.canManageOffsets());
+        verify(sinkDecorator, timeout(5000).times(2)).pushMessage(anyList());
+        sinkWithRetry.close();
+        assertEquals(Collections.singletonMap(new TopicPartition("topic", 1), new OffsetAndMetadata(4)), offsetManager.getCommittableOffset());
+        verify(backOffProvider, never()).backOff(anyInt(), anyLong());
+    }
+
+    @Test
+    public void shouldNotCommitOffsetsOfParkedMessages() throws Exception {
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(2);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage));
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 60000);
+
+        sinkWithRetry.pushMessage(Arrays.asList(createFailedMessage(1), failedMessage, createFailedMessage(3)));
+
+        assertEquals(Collections.singletonMap(new TopicPartition("topic", 1), new OffsetAndMetadata(2)), offsetManager.getCommittableOffset());
+        sinkWithRetry.close();
+        verify(sinkDecorator, times(1)).pushMessage(anyList());
+    }
+
+    @Test
+    public void shouldReturnMessagesFailingParkedRetriesWithTheNextPush() throws Exception {
+        when(appConfig.getRetryMaxAttempts()).thenReturn(1);
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(1);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage))
+                .thenReturn(Collections.singletonList(failedMessage)).thenReturn(new ArrayList<>());
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 0);
+
+        assertTrue(sinkWithRetry.pushMessage(Collections.singletonList(failedMessage)).isEmpty());
+        verify(firehoseInstrumentation, timeout(5000)).captureValue(Metrics.RETRY_PARKED_MESSAGES, 0);
+        List<Message> messageList = sinkWithRetry.pushMessage(Collections.singletonList(createFailedMessage(2)));
+
+        assertEquals(Collections.singletonList(failedMessage), messageList);
+        assertTrue(offsetManager.getCommittableOffset().isEmpty());
+        sinkWithRetry.calculateCommittableOffsets();
+        assertEquals(Collections.singletonMap(new TopicPartition("topic", 1), new OffsetAndMetadata(3)), offsetManager.getCommittableOffset());
+        verify(firehoseInstrumentation, times(1)).captureMessageMetrics(Metrics.RETRY_MESSAGES_TOTAL, Metrics.MessageType.FAILURE, ErrorType.DESERIALIZATION_ERROR, 1);
+        sinkWithRetry.close();
+    }
+
+    @Test
+    public void shouldReturnMessagesFailingParkedRetriesWithAPushWithoutMessages() throws Exception {
+        when(appConfig.getRetryMaxAttempts()).thenReturn(1);
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(1);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage));
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 0);
+
+        sinkWithRetry.pushMessage(Collections.singletonList(failedMessage));
+        verify(firehoseInstrumentation, timeout(5000)).captureValue(Metrics.RETRY_PARKED_MESSAGES, 0);
+
+        assertTrue(sinkWithRetry.hasPendingFailedMessages());
+        assertEquals(Collections.singletonList(failedMessage), sinkWithRetry.pushMessage(Collections.emptyList()));
+        assertFalse(sinkWithRetry.hasPendingFailedMessages());
+        verify(sinkDecorator, times(2)).pushMessage(anyList());
+        sinkWithRetry.calculateCommittableOffsets();
+        assertEquals(Collections.singletonMap(new TopicPartition("topic", 1), new OffsetAndMetadata(2)), offsetManager.getCommittableOffset());
+        sinkWithRetry.close();
+    }
+
+    @Test
+    public void shouldNotCommitOffsetsOfMessagesFailingParkedRetriesWhenFailingAfterMaxAttempts() throws Exception {
+        when(appConfig.getRetryMaxAttempts()).thenReturn(1);
+        when(appConfig.getRetryFailAfterMaxAttemptsEnable()).thenReturn(true);
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(1);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage));
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 0);
+
+        sinkWithRetry.pushMessage(Collections.singletonList(failedMessage));
+        verify(firehoseInstrumentation, timeout(5000)).captureValue(Metrics.RETRY_PARKED_MESSAGES, 0);
+
+        try {
+            sinkWithRetry.pushMessage(Collections.emptyList());
+            fail("expected the push to fail after the maximum attempts");
+        } catch (IOException e) {
+            assertEquals("exceeded maximum Sink retry attempts", e.getMessage());
+        }
+        sinkWithRetry.calculateCommittableOffsets();
+        assertTrue(offsetManager.getCommittableOffset().isEmpty());
+        sinkWithRetry.close();
+    }
+
+    @Test
+    public void shouldDropParkedMessagesOfRevokedPartitions() throws Exception {
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(1);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage)).thenReturn(new ArrayList<>());
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 60000);
+
+        sinkWithRetry.pushMessage(Collections.singletonList(failedMessage));
+        sinkWithRetry.onPartitionsRevoked(Collections.singletonList(new TopicPartition("topic", 1)));
+
+        verify(firehoseInstrumentation).captureValue(Metrics.RETRY_PARKED_MESSAGES, 0);
+        assertTrue(offsetManager.getCommittableOffset().isEmpty());
+        sinkWithRetry.pushMessage(Collections.singletonList(createFailedMessage(2)));
+        assertEquals(Collections.singletonMap(new TopicPartition("topic", 1), new OffsetAndMetadata(3)), offsetManager.getCommittableOffset());
+        sinkWithRetry.close();
+        verify(sinkDecorator, times(2)).pushMessage(anyList());
+    }
+
+    @Test
+    public void shouldWaitForParkedMessagesWhenParkingIsFull() throws Exception {
+        OffsetManager offsetManager = new OffsetManager();
+        Message failedMessage = createFailedMessage(1);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(Collections.singletonList(failedMessage)).thenReturn(new ArrayList<>());
+        SinkWithRetry sinkWithRetry = createParkingSink(offsetManager, 200);
+
+        long start = System.currentTimeMillis();
+        sinkWithRetry.pushMessage(Collections.singletonList(failedMessage));
+        sinkWithRetry.pushMessage(Collections.singletonList(createFailedMessage(2)));
+
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        verify(sinkDecorator, times(3)).pushMessage(anyList());
+        sinkWithRetry.close();
+    }
+
+    @Test
+    public void shouldNotRetryMessagesBeyondRetryBudget() throws Exception {
+        Message retriedMessage = createFailedMessage(1);
+        Message deniedMessage = createFailedMessage(2);
+        when(sinkDecorator.pushMessage(anyList())).thenReturn(new ArrayList<>(Arrays.asList(retriedMessage, deniedMessage)))
+                .thenReturn(new ArrayList<>());
+        SinkWithRetry sinkWithRetry = new SinkWithRetry(sinkDecorator, backOffProvider, firehoseInstrumentation, appConfig, parser, errorHandler,
+                null, new RetryBudget(0.1, 1));
+
+        List<Message> messageList = sinkWithRetry.pushMessage(Arrays.asList(retriedMessage, deniedMessage));
+
+        assertEquals(Collections.singletonList(deniedMessage), messageList);
+        ArgumentCaptor<List> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(sinkDecorator, times(2)).pushMessage(argumentCaptor.capture());
+        assertEquals(Collections.singletonList(retriedMessage), argumentCaptor.getAllValues().get(1));
+        verify(firehoseInstrumentation, times(1)).captureCount(Metrics.RETRY_BUDGET_DENIED_TOTAL, 1L);
+    }
 }